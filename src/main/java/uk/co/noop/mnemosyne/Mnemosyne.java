@@ -6,14 +6,17 @@ import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import uk.co.noop.mnemosyne.eunomia.FileNameEunomia;
 import uk.co.noop.mnemosyne.mneme.Bucket;
+import uk.co.noop.mnemosyne.mneme.DiskMneme;
 import uk.co.noop.mnemosyne.mneme.Mneme;
 import uk.co.noop.mnemosyne.mneme.LocalMneme;
 import uk.co.noop.mnemosyne.mneme.S3Mneme;
 import uk.co.noop.themis.Themis;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static uk.co.noop.themis.Themis.validate;
 
@@ -23,7 +26,10 @@ import static uk.co.noop.themis.Themis.validate;
  */
 public class Mnemosyne {
 
-  private static final Map<String, Mneme> LOCAL_MNEMES = new HashMap<>();
+  private static final ConcurrentMap<String, Mneme> LOCAL_MNEMES =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentMap<Path, Mneme> DISK_MNEMES =
+      new ConcurrentHashMap<>();
 
   /**
    * <p>Creates a new {@link LocalMneme} with the specified <b>name</b>, or
@@ -48,6 +54,10 @@ public class Mnemosyne {
    * <p>(See: {@link Mneme#put(String, String)} and {@link Mneme#get(String)}
    * for more information.)</p>
    *
+   * <p>This method is safe to call from any thread. Retrieving an existing
+   * instance is lock-free, and concurrent callers asking for a new
+   * <b>name</b> will all receive the same, single, instance.</p>
+   *
    * <p>Note:</p>
    *
    * <p>The <b>name</b> parameter is validated against blank values using {@link
@@ -77,6 +87,12 @@ public class Mnemosyne {
 
     validate("name", name).againstBlankStrings();
 
+    final Mneme mneme = LOCAL_MNEMES.get(name);
+
+    if (mneme != null) {
+      return mneme;
+    }
+
     return LOCAL_MNEMES.computeIfAbsent(name, __ -> new LocalMneme());
   }
 
@@ -114,6 +130,115 @@ public class Mnemosyne {
     return getMneme(name);
   }
 
+  /**
+   * <p>Creates a new {@link DiskMneme} with the specified <b>name</b> in the
+   * specified <b>directory</b>, or retrieves the existing instance if one has
+   * already been created.</p>
+   *
+   * <p>The returned {@link Mneme} can be used for storing and retrieving
+   * various key/value <code>String</code> pairs durably on a local disk. Its
+   * segment files are kept in a sub-directory of <b>directory</b> named after
+   * the <b>name</b>, and any entries stored there previously are loaded.</p>
+   *
+   * <p>For example:</p>
+   *
+   * <p><code>
+   * final Mneme mneme =<br>
+   * &nbsp; Mnemosyne.getMneme("data-cache", Path.of("/var/lib/app"));<br>
+   * mneme.put("id123", "Lorem ipsum...");<br>
+   * mneme.get("id123"); // will return "Lorem Ipsum..."
+   * </code></p>
+   *
+   * <p>(See: {@link Mneme#put(String, String)} and {@link Mneme#get(String)}
+   * for more information.)</p>
+   *
+   * <p>This method is safe to call from any thread, and concurrent callers
+   * asking for the same <b>name</b> and <b>directory</b> will all receive the
+   * same, single, instance. Once that instance is closed it is forgotten, so
+   * the next call opens a new one.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>name</b> parameter is validated against blank values and
+   * paths, so that it always names a sub-directory of <b>directory</b>, and
+   * the <b>directory</b> parameter against <code>null</code> values, using
+   * {@link Themis}. (See: {@link FileNameEunomia#againstPaths()} and {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} for more information.)</p>
+   *
+   * @param name The name of the <code>Mneme</code>.
+   * @param directory The directory to keep the <code>Mneme</code> in.
+   *
+   * @return A new <code>DiskMneme</code> with the specified <b>name</b> or the
+   * existing instance if one has already been created. This will never be
+   * <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws java.io.UncheckedIOException if the <code>DiskMneme</code> cannot
+   * be opened
+   *
+   * @see DiskMneme
+   * @see Mneme
+   * @see Mneme#put(String, String)
+   * @see Mneme#get(String)
+   * @see Themis
+   * @see FileNameEunomia#againstPaths()
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public static Mneme getMneme(final String name, final Path directory) {
+
+    validate("name", name, FileNameEunomia.class).againstPaths();
+    validate("directory", directory).againstNullObjects();
+
+    final Path path = directory.resolve(name).toAbsolutePath().normalize();
+    final Mneme mneme = DISK_MNEMES.get(path);
+
+    if (mneme != null) {
+      return mneme;
+    }
+
+    return DISK_MNEMES.computeIfAbsent(path, RegisteredDiskMneme::new);
+  }
+
+  /**
+   * <p>Overloads {@link Mnemosyne#getMneme(String, Path)}.</p>
+   *
+   * @param name The name of the {@link Mneme}.
+   * @param directory The directory to keep the <code>Mneme</code> in.
+   *
+   * @return A new {@link DiskMneme} with the specified <b>name</b> or the
+   * existing instance if one has already been created. This will never be
+   * <code>null</code>.
+   *
+   * @see Mnemosyne#getMneme(String, Path)
+   * @see Mneme
+   * @see DiskMneme
+   */
+  public static Mneme mnemosyne(final String name, final Path directory) {
+    return getMneme(name, directory);
+  }
+
+  /**
+   * <p>Overloads {@link Mnemosyne#getMneme(String, Path)}.</p>
+   *
+   * @param name The name of the {@link Mneme}.
+   * @param directory The directory to keep the <code>Mneme</code> in.
+   *
+   * @return A new {@link DiskMneme} with the specified <b>name</b> or the
+   * existing instance if one has already been created. This will never be
+   * <code>null</code>.
+   *
+   * @see Mnemosyne#getMneme(String, Path)
+   * @see Mneme
+   * @see DiskMneme
+   */
+  public static Bucket bucket(final String name, final Path directory) {
+    return getMneme(name, directory);
+  }
+
   /**
    * <p>Creates a new {@link S3Mneme} for the specified <b>s3BucketName</b>.</p>
    *
@@ -266,4 +391,32 @@ public class Mnemosyne {
     super();
   }
 
+  /**
+   * <p>A {@link DiskMneme} that removes itself from {@link #DISK_MNEMES} once
+   * it has been closed, so that a closed instance is never handed out
+   * again.</p>
+   */
+  private static final class RegisteredDiskMneme extends DiskMneme {
+
+    private final Path path;
+
+    private RegisteredDiskMneme(final Path path) {
+      super(path);
+      this.path = path;
+    }
+
+    @Override
+    public void close() {
+
+      // Removed only once closed, so that a new instance is never opened on
+      // the directory while this one still holds it.
+      try {
+        super.close();
+      } finally {
+        DISK_MNEMES.remove(path, this);
+      }
+    }
+
+  }
+
 }
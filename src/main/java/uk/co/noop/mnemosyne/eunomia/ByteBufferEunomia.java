@@ -0,0 +1,81 @@
+package uk.co.noop.mnemosyne.eunomia;
+
+import uk.co.noop.themis.eunomia.AbstractEunomia;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A Eunomia instance for validating against various invalid <b>target</b>
+ * <code>ByteBuffer</code> scenarios.</p>
+ */
+public class ByteBufferEunomia
+    extends AbstractEunomia<ByteBuffer, ByteBufferEunomia> {
+
+  /**
+   * <p>Creates a new instance of <code>ByteBufferEunomia</code> using the
+   * specified <b>targetName</b> and <b>target</b>.</p>
+   *
+   * @param targetName The <b>target</b> name; this should not be
+   *                   <code>null</code>, empty or contain only whitespace
+   *                   characters but this is not validated.
+   * @param target The target.
+   */
+  public ByteBufferEunomia(final String targetName, final ByteBuffer target) {
+    super(targetName, target);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return <code>this</code> instance of <code>ByteBufferEunomia</code>.
+   */
+  @Override
+  protected ByteBufferEunomia getEunomia() { return this; }
+
+  /**
+   * <p>Validates against <b>target</b> buffers with no bytes remaining.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if there are no bytes between the position
+   * and the limit of the <b>target</b> <code>ByteBuffer</code>.</p>
+   *
+   * @return <code>this</code> instance of <code>ByteBufferEunomia</code> to
+   * further validate the <b>target</b> <code>ByteBuffer</code>. This will never
+   * be <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public ByteBufferEunomia againstEmptyByteBuffers() {
+    return againstInvalidValues(target -> !target.hasRemaining());
+  }
+
+  /**
+   * <p>Validates against read-only <b>target</b> buffers.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> <code>ByteBuffer</code>
+   * cannot be written to.</p>
+   *
+   * @return <code>this</code> instance of <code>ByteBufferEunomia</code> to
+   * further validate the <b>target</b> <code>ByteBuffer</code>. This will never
+   * be <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public ByteBufferEunomia againstReadOnlyByteBuffers() {
+    return againstInvalidValues(ByteBuffer::isReadOnly);
+  }
+
+}
@@ -0,0 +1,59 @@
+package uk.co.noop.mnemosyne.eunomia;
+
+import uk.co.noop.themis.eunomia.AbstractEunomia;
+
+import java.time.Duration;
+
+/**
+ * <p>A Eunomia instance for validating against various invalid <b>target</b>
+ * <code>Duration</code> scenarios.</p>
+ */
+public class DurationEunomia
+    extends AbstractEunomia<Duration, DurationEunomia> {
+
+  /**
+   * <p>Creates a new instance of <code>DurationEunomia</code> using the
+   * specified <b>targetName</b> and <b>target</b>.</p>
+   *
+   * @param targetName The <b>target</b> name; this should not be
+   *                   <code>null</code>, empty or contain only whitespace
+   *                   characters but this is not validated.
+   * @param target The target.
+   */
+  public DurationEunomia(final String targetName, final Duration target) {
+    super(targetName, target);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return <code>this</code> instance of <code>DurationEunomia</code>.
+   */
+  @Override
+  protected DurationEunomia getEunomia() { return this; }
+
+  /**
+   * <p>Validates against zero and negative <b>target</b> durations.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> <code>Duration</code>
+   * is zero or negative.</p>
+   *
+   * @return <code>this</code> instance of <code>DurationEunomia</code> to
+   * further validate the <b>target</b> <code>Duration</code>. This will never
+   * be <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public DurationEunomia againstNonPositiveDurations() {
+    return againstInvalidValues(
+        target -> target.isZero() || target.isNegative());
+  }
+
+}
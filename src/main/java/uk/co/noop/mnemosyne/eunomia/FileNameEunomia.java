@@ -0,0 +1,102 @@
+package uk.co.noop.mnemosyne.eunomia;
+
+import uk.co.noop.themis.eunomia.AbstractEunomia;
+import uk.co.noop.themis.eunomia.StringEunomia;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+import static uk.co.noop.themis.Themis.themis;
+
+/**
+ * <p>A Eunomia instance for validating against various invalid <b>target</b>
+ * file name <code>String</code> scenarios.</p>
+ */
+public class FileNameEunomia extends AbstractEunomia<String, FileNameEunomia> {
+
+  private final StringEunomia parent;
+
+  /**
+   * <p>Creates a new instance of <code>FileNameEunomia</code> using the
+   * specified <b>targetName</b> and <b>target</b>.</p>
+   *
+   * @param targetName The <b>target</b> name; this should not be
+   *                   <code>null</code>, empty or contain only whitespace
+   *                   characters but this is not validated.
+   * @param target The target.
+   */
+  public FileNameEunomia(final String targetName, final String target) {
+    super(targetName, target);
+    parent = themis(targetName, target);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return <code>this</code> instance of <code>FileNameEunomia</code>.
+   */
+  @Override
+  protected FileNameEunomia getEunomia() { return this; }
+
+  /**
+   * <p>Redirects to {@link StringEunomia#againstBlankStrings()}.</p>
+   *
+   * @return <code>this</code> instance of <code>FileNameEunomia</code> to
+   * further validate the <b>target</b> file name <code>String</code>. This
+   * will never be <code>null</code>.
+   *
+   * @see StringEunomia#againstBlankStrings()
+   */
+  public FileNameEunomia againstBlankFileNames() {
+    parent.againstBlankStrings();
+    return this;
+  }
+
+  /**
+   * <p>Validates against <b>target</b> values that are not the name of a
+   * single file or directory, such as absolute paths, paths containing a
+   * separator, <code>.</code> and <code>..</code>, so that resolving the
+   * <b>target</b> against a directory always names one of its
+   * children.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> file name
+   * <code>String</code> is a path.</p>
+   *
+   * @return <code>this</code> instance of <code>FileNameEunomia</code> to
+   * further validate the <b>target</b> file name <code>String</code>. This
+   * will never be <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public FileNameEunomia againstPaths() {
+    return againstBlankFileNames()
+        .againstInvalidValues(target -> !isFileName(target));
+  }
+
+  private static boolean isFileName(final String target) {
+
+    if (target.equals(".") || target.equals("..")) {
+      return false;
+    }
+
+    try {
+
+      final Path path = Path.of(target);
+
+      return !path.isAbsolute()
+          && path.getNameCount() == 1
+          && path.toString().equals(target);
+
+    } catch (final InvalidPathException e) {
+      return false;
+    }
+  }
+
+}
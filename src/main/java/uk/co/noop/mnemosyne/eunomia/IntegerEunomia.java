@@ -0,0 +1,79 @@
+package uk.co.noop.mnemosyne.eunomia;
+
+import uk.co.noop.themis.eunomia.AbstractEunomia;
+
+/**
+ * <p>A Eunomia instance for validating against various invalid <b>target</b>
+ * <code>Integer</code> scenarios.</p>
+ */
+public class IntegerEunomia extends AbstractEunomia<Integer, IntegerEunomia> {
+
+  /**
+   * <p>Creates a new instance of <code>IntegerEunomia</code> using the
+   * specified <b>targetName</b> and <b>target</b>.</p>
+   *
+   * @param targetName The <b>target</b> name; this should not be
+   *                   <code>null</code>, empty or contain only whitespace
+   *                   characters but this is not validated.
+   * @param target The target.
+   */
+  public IntegerEunomia(final String targetName, final Integer target) {
+    super(targetName, target);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return <code>this</code> instance of <code>IntegerEunomia</code>.
+   */
+  @Override
+  protected IntegerEunomia getEunomia() { return this; }
+
+  /**
+   * <p>Validates against zero and negative <b>target</b> values.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> <code>Integer</code> is
+   * less than one.</p>
+   *
+   * @return <code>this</code> instance of <code>IntegerEunomia</code> to
+   * further validate the <b>target</b> <code>Integer</code>. This will never be
+   * <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public IntegerEunomia againstNonPositiveIntegers() {
+    return againstInvalidValues(target -> target < 1);
+  }
+
+  /**
+   * <p>Validates against <b>target</b> values that are not a power of two.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> <code>Integer</code> is
+   * not a positive power of two.</p>
+   *
+   * @return <code>this</code> instance of <code>IntegerEunomia</code> to
+   * further validate the <b>target</b> <code>Integer</code>. This will never be
+   * <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public IntegerEunomia againstNonPowersOfTwo() {
+    return againstNonPositiveIntegers()
+        .againstInvalidValues(target -> Integer.bitCount(target) != 1);
+  }
+
+}
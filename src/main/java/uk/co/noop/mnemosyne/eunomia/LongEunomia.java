@@ -0,0 +1,55 @@
+package uk.co.noop.mnemosyne.eunomia;
+
+import uk.co.noop.themis.eunomia.AbstractEunomia;
+
+/**
+ * <p>A Eunomia instance for validating against various invalid <b>target</b>
+ * <code>Long</code> scenarios.</p>
+ */
+public class LongEunomia extends AbstractEunomia<Long, LongEunomia> {
+
+  /**
+   * <p>Creates a new instance of <code>LongEunomia</code> using the specified
+   * <b>targetName</b> and <b>target</b>.</p>
+   *
+   * @param targetName The <b>target</b> name; this should not be
+   *                   <code>null</code>, empty or contain only whitespace
+   *                   characters but this is not validated.
+   * @param target The target.
+   */
+  public LongEunomia(final String targetName, final Long target) {
+    super(targetName, target);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return <code>this</code> instance of <code>LongEunomia</code>.
+   */
+  @Override
+  protected LongEunomia getEunomia() { return this; }
+
+  /**
+   * <p>Validates against zero and negative <b>target</b> values.</p>
+   *
+   * <p>This will result in a {@link
+   * uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * ThemisInvalidTargetException} if the <b>target</b> <code>Long</code> is
+   * less than one.</p>
+   *
+   * @return <code>this</code> instance of <code>LongEunomia</code> to further
+   * validate the <b>target</b> <code>Long</code>. This will never be
+   * <code>null</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * <code>ThemisTargetException</code> will be thrown for any invalid parameter
+   * scenarios.
+   *
+   * @see uk.co.noop.themis.exception.ThemisInvalidTargetException
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public LongEunomia againstNonPositiveLongs() {
+    return againstInvalidValues(target -> target < 1);
+  }
+
+}
@@ -2,25 +2,51 @@ package uk.co.noop.mnemosyne.mneme;
 
 import uk.co.noop.themis.Themis;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-
-import static java.util.stream.Collectors.toSet;
-import static uk.co.noop.themis.Themis.validate;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
 
 /**
  * <p>{@link uk.co.noop.mnemosyne.Mnemosyne Mnemosyne} delegates the storing and
  * retrieving of key/value <code>String</code> pairs to {@link Mneme}
  * instances.</p>
  *
+ * <p>Backends only need to implement the single-key operations. The bulk
+ * operations are built from them, unless the backend declares a faster path
+ * through {@link #getCapabilities()} and overrides the method that goes with
+ * it: {@link #getBatch(Collection)}, {@link #putBatch(Map)} or {@link
+ * #removeBatch(Collection)}. Backends whose entries can be read in key order
+ * implement {@link OrderedScan}, from which the values and entries are read
+ * along with the keys. Backends that list
+ * their keys a page at a time can also override {@link #keySpliterator()},
+ * so that parallel streams over their entries split as the listing
+ * does.</p>
+ *
  * @see Mneme
+ * @see Capability
  * @see uk.co.noop.mnemosyne.Mnemosyne
  */
 public abstract class AbstractMneme implements Mneme {
 
+  private static final int BATCH_SIZE = 256;
+
   /**
    * <p>Creates a new instance of <code>AbstractMneme</code>.</p>
    */
@@ -50,6 +76,17 @@ public abstract class AbstractMneme implements Mneme {
    */
   @Override
   public boolean isEmpty() {
+
+    final Set<Capability> capabilities = getCapabilities();
+
+    if (capabilities.contains(Capability.CHEAP_SIZE)) {
+      return size() == 0;
+    }
+
+    if (this instanceof OrderedScan scan) {
+      return !scan.scanEntries().hasNext();
+    }
+
     return keySet().isEmpty();
   }
 
@@ -86,12 +123,12 @@ public abstract class AbstractMneme implements Mneme {
   @Override
   public boolean containsKey(final Object key) {
 
-    validate("key", key).againstNullObjects();
-
     if (key instanceof String keyString) {
       return containsKey(keyString);
     }
 
+    checkNotNull("key", key);
+
     throw new ClassCastException();
   }
 
@@ -129,12 +166,12 @@ public abstract class AbstractMneme implements Mneme {
   @Override
   public boolean containsValue(final Object value) {
 
-    validate("value", value).againstNullObjects();
-
     if (value instanceof String valueString) {
       return containsValue(valueString);
     }
 
+    checkNotNull("value", value);
+
     throw new ClassCastException();
   }
 
@@ -172,12 +209,12 @@ public abstract class AbstractMneme implements Mneme {
   @Override
   public String get(final Object key) {
 
-    validate("key", key).againstNullObjects();
-
     if (key instanceof String keyString) {
       return get(keyString);
     }
 
+    checkNotNull("key", key);
+
     throw new ClassCastException();
   }
 
@@ -214,12 +251,12 @@ public abstract class AbstractMneme implements Mneme {
   @Override
   public String remove(final Object key) {
 
-    validate("key", key).againstNullObjects();
-
     if (key instanceof String keyString) {
       return remove(keyString);
     }
 
+    checkNotNull("key", key);
+
     throw new ClassCastException();
   }
 
@@ -228,6 +265,10 @@ public abstract class AbstractMneme implements Mneme {
    *
    * <p>See: {@link Mneme#put(String, String)} for more information.</p>
    *
+   * <p>Backends declaring {@link Capability#BATCH_PUT} store the mappings
+   * together, through {@link #putBatch(Map)}; otherwise each is put in
+   * turn.</p>
+   *
    * <p>Note:</p>
    *
    * <p>The <b>map</b> parameter is validated against <code>null</code> values
@@ -250,20 +291,32 @@ public abstract class AbstractMneme implements Mneme {
   @Override
   public void putAll(final Map<? extends String, ? extends String> map) {
 
-    validate("map", map).againstNullObjects();
+    checkNotNull("map", map);
 
-    map.forEach(this::put);
+    if (getCapabilities().contains(Capability.BATCH_PUT)) {
+      putBatch(map);
+    } else {
+      map.forEach(this::put);
+    }
   }
 
   /**
    * {@inheritDoc}
+   *
+   * <p>The keys are listed, and then removed; backends declaring {@link
+   * Capability#BATCH_DELETE} remove them together, through {@link
+   * #removeBatch(Collection)}, and otherwise each is removed in turn.</p>
    */
   @Override
   public void clear() {
 
     final List<String> keys = new ArrayList<>(keySet());
 
-    keys.forEach(this::remove);
+    if (getCapabilities().contains(Capability.BATCH_DELETE)) {
+      removeBatch(keys);
+    } else {
+      keys.forEach(this::remove);
+    }
   }
 
   /**
@@ -277,10 +330,105 @@ public abstract class AbstractMneme implements Mneme {
   public abstract Set<String> keySet();
 
   /**
-   * <p>Returns a <code>Collection</code> view of the values contained in this
-   * {@link Mneme}. The collection is <b>not</b> backed by the
-   * <code>Mneme</code>, so changes to the <code>Mneme</code> are <b>not</b>
-   * reflected in the collection, and vice-versa.</p>
+   * <p>Returns the optional {@link Capability capabilities} of this {@link
+   * Mneme}, which decide the paths taken by its bulk operations. A backend
+   * declaring a capability should override the method that goes with it.
+   * None are declared by default.</p>
+   *
+   * @return the capabilities of this <code>Mneme</code>
+   *
+   * @see Capability
+   */
+  public Set<Capability> getCapabilities() {
+    return Collections.emptySet();
+  }
+
+  /**
+   * <p>Returns the values of those of the specified <b>keys</b> that are
+   * present in this {@link Mneme}. By default each key is read in turn;
+   * backends declaring {@link Capability#BATCH_GET} override this to read them
+   * together.</p>
+   *
+   * @param keys the keys whose values are to be returned
+   *
+   * @return the values of the <b>keys</b> that are present, by key
+   *
+   * @see Mneme#get(String)
+   */
+  protected Map<String, String> getBatch(final Collection<String> keys) {
+
+    final Map<String, String> values = new HashMap<>();
+
+    for (final String key : keys) {
+
+      final String value = get(key);
+
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * <p>Stores the specified <b>entries</b> in this {@link Mneme}. By default
+   * each entry is put in turn; backends declaring {@link
+   * Capability#BATCH_PUT} override this to store them together.</p>
+   *
+   * @param entries the mappings to be stored
+   *
+   * @see Mneme#put(String, String)
+   */
+  protected void putBatch(
+      final Map<? extends String, ? extends String> entries) {
+
+    entries.forEach(this::put);
+  }
+
+  /**
+   * <p>Removes the mappings of the specified <b>keys</b> from this {@link
+   * Mneme}. By default each key is removed in turn; backends declaring {@link
+   * Capability#BATCH_DELETE} override this to remove them together.</p>
+   *
+   * @param keys the keys whose mappings are to be removed
+   *
+   * @see Mneme#remove(String)
+   */
+  protected void removeBatch(final Collection<String> keys) {
+    keys.forEach(this::remove);
+  }
+
+  /**
+   * <p>Returns a spliterator over the keys of this {@link Mneme}, from which
+   * {@link #values()} and {@link #entrySet()} load their elements, splitting
+   * as it does. By default it is the spliterator of {@link #keySet()}, so a
+   * backend whose key set is a copy lists every key before the first is
+   * reached; backends that list their keys a page at a time override this to
+   * list each page as it is reached.</p>
+   *
+   * @return a spliterator over the keys of this <code>Mneme</code>
+   *
+   * @see Mneme#keySet()
+   */
+  protected Spliterator<String> keySpliterator() {
+    return keySet().spliterator();
+  }
+
+  /**
+   * <p>Returns a lazy <code>Collection</code> view of the values contained in
+   * this {@link Mneme}, with one value for each mapping (so duplicate values
+   * are kept).</p>
+   *
+   * <p>Nothing is read when the view is created. Each iteration lists the
+   * keys of the <code>Mneme</code> once, and then reads each value once, as
+   * the iterator reaches it, so stopping early only pays for the values read.
+   * (Backends declaring {@link Capability#BATCH_GET} read the values a batch
+   * at a time, and those implementing {@link OrderedScan} read them along
+   * with the keys.) Keys removed between being listed and being read are
+   * skipped. Removing a
+   * value through the iterator, or clearing the view, writes through to the
+   * <code>Mneme</code>.</p>
    *
    * @return a collection view of the values contained in this
    * <code>Mneme</code>
@@ -289,18 +437,20 @@ public abstract class AbstractMneme implements Mneme {
    */
   @Override
   public Collection<String> values() {
-
-    return keySet()
-        .stream()
-        .map(this::get)
-        .collect(toSet());
+    return new Values();
   }
 
   /**
-   * <p>Returns a <code>Set</code> view of the mappings contained in this
-   * {@link Mneme}. The set is <b>not</b> backed by the <code>Mneme</code>, so
-   * changes to the <code>Mneme</code> are <b>not</b> reflected in the set, and
-   * vice-versa.</p>
+   * <p>Returns a lazy <code>Set</code> view of the mappings contained in this
+   * {@link Mneme}.</p>
+   *
+   * <p>Nothing is read when the view is created. Each iteration lists the
+   * keys of the <code>Mneme</code> once, and then reads the value of each
+   * entry once, as the iterator reaches it, as for {@link #values()}. Keys
+   * removed between being listed and being read are skipped, so the value of
+   * an entry is never <code>null</code>. Setting the value of an entry,
+   * removing an entry through the iterator, or clearing the view, writes
+   * through to the <code>Mneme</code>.</p>
    *
    * @return a set view of the mappings contained in this <code>Mneme</code>
    *
@@ -308,24 +458,322 @@ public abstract class AbstractMneme implements Mneme {
    */
   @Override
   public Set<Entry<String, String>> entrySet() {
+    return new EntrySet();
+  }
+
+  /**
+   * <p>Returns the entries of this {@link Mneme} as <b>element</b>s, through
+   * the fastest path the backend declares. Unless the values come cheaply
+   * with the keys, each value is read as its entry is reached, skipping keys
+   * that have since been removed.</p>
+   */
+  private <T> Spliterator<T> loadEntries(
+      final Function<MnemeEntry, T> element,
+      final int characteristics) {
+
+    if (this instanceof OrderedScan scan) {
+
+      final Iterator<Entry<String, String>> entries = scan.scanEntries();
+
+      return Spliterators.spliteratorUnknownSize(
+          new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+              return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+
+              final Entry<String, String> entry = entries.next();
+
+              return element.apply(
+                  new MnemeEntry(entry.getKey(), entry.getValue()));
+            }
+
+          },
+          characteristics | Spliterator.ORDERED);
+    }
+
+    final boolean batched =
+        getCapabilities().contains(Capability.BATCH_GET);
+
+    return new MnemeSpliterator<>(
+        keySpliterator(),
+        batched ? BATCH_SIZE : 1,
+        element,
+        characteristics);
+  }
+
+  /**
+   * <p>Returns the sum of two counter values.</p>
+   */
+  static String addCounts(final String count, final String delta) {
+    return Long.toString(Long.parseLong(count) + Long.parseLong(delta));
+  }
+
+  private final class Values extends AbstractCollection<String> {
+
+    @Override
+    public Iterator<String> iterator() {
+      return new MnemeIterator<>(
+          Spliterators.iterator(
+              loadEntries(Function.identity(), Spliterator.NONNULL)),
+          MnemeEntry::getValue);
+    }
+
+    @Override
+    public Spliterator<String> spliterator() {
+      return loadEntries(MnemeEntry::getValue, Spliterator.NONNULL);
+    }
+
+    @Override
+    public int size() {
+      return AbstractMneme.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return AbstractMneme.this.isEmpty();
+    }
+
+    /**
+     * <p>Reads each value at most once, rather than once for each of the
+     * specified values, stopping as soon as they have all been found.</p>
+     */
+    @Override
+    public boolean containsAll(final Collection<?> values) {
+
+      final Set<Object> remaining = new HashSet<>(values);
+      final Iterator<String> iterator = iterator();
+
+      while (!remaining.isEmpty() && iterator.hasNext()) {
+        remaining.remove(iterator.next());
+      }
+
+      return remaining.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+      AbstractMneme.this.clear();
+    }
+
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+      return new MnemeIterator<>(
+          Spliterators.iterator(loadEntries(
+              Function.identity(),
+              Spliterator.DISTINCT | Spliterator.NONNULL)),
+          entry -> entry);
+    }
+
+    @Override
+    public Spliterator<Entry<String, String>> spliterator() {
+      return loadEntries(
+          entry -> entry,
+          Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    @Override
+    public int size() {
+      return AbstractMneme.this.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return AbstractMneme.this.isEmpty();
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+
+      return object instanceof Entry<?, ?> entry
+          && entry.getKey() instanceof String key
+          && !key.isBlank()
+          && entry.getValue() != null
+          && entry.getValue().equals(get(key));
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+
+      return contains(object)
+          && AbstractMneme.this.remove(
+              ((Entry<?, ?>) object).getKey(),
+              ((Entry<?, ?>) object).getValue());
+    }
+
+    @Override
+    public void clear() {
+      AbstractMneme.this.clear();
+    }
+
+  }
+
+  /**
+   * <p>Iterates loaded entries as elements, removing the entry of the last
+   * element from the {@link Mneme} on {@link #remove()}.</p>
+   */
+  private final class MnemeIterator<T> implements Iterator<T> {
+
+    private final Iterator<MnemeEntry> entries;
+    private final Function<MnemeEntry, T> element;
+
+    private String lastKey;
+
+    private MnemeIterator(
+        final Iterator<MnemeEntry> entries,
+        final Function<MnemeEntry, T> element) {
+
+      super();
+
+      this.entries = entries;
+      this.element = element;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return entries.hasNext();
+    }
+
+    @Override
+    public T next() {
+
+      final MnemeEntry entry = entries.next();
+
+      lastKey = entry.key;
+
+      return element.apply(entry);
+    }
+
+    @Override
+    public void remove() {
+
+      if (lastKey == null) {
+        throw new IllegalStateException();
+      }
+
+      AbstractMneme.this.remove(lastKey);
+      lastKey = null;
+    }
+
+  }
+
+  /**
+   * <p>Splits as the key spliterator it wraps does, loading the keys into
+   * elements a batch at a time as they are reached.</p>
+   */
+  private final class MnemeSpliterator<T> implements Spliterator<T> {
+
+    private final Spliterator<String> keys;
+    private final int batchSize;
+    private final Function<MnemeEntry, T> element;
+    private final int characteristics;
+    private final Deque<T> loaded = new ArrayDeque<>();
+
+    private MnemeSpliterator(
+        final Spliterator<String> keys,
+        final int batchSize,
+        final Function<MnemeEntry, T> element,
+        final int characteristics) {
+
+      super();
+
+      this.keys = keys;
+      this.batchSize = batchSize;
+      this.element = element;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+
+      while (loaded.isEmpty()) {
+
+        final List<String> batch = new ArrayList<>(batchSize);
+
+        while (batch.size() < batchSize && keys.tryAdvance(batch::add)) {
+          // Fills the batch.
+        }
+
+        if (batch.isEmpty()) {
+          return false;
+        }
+
+        load(batch);
+      }
+
+      action.accept(loaded.poll());
+
+      return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+
+      final Spliterator<String> split = keys.trySplit();
+
+      return split == null
+          ? null
+          : new MnemeSpliterator<>(
+              split,
+              batchSize,
+              element,
+              characteristics);
+    }
+
+    @Override
+    public long estimateSize() {
+
+      final long size = keys.estimateSize();
+
+      return size == Long.MAX_VALUE ? size : size + loaded.size();
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics | (keys.characteristics() & Spliterator.ORDERED);
+    }
+
+    private void load(final List<String> batch) {
+
+      final Map<String, String> values = batch.size() == 1
+          ? null
+          : getBatch(batch);
+
+      for (final String key : batch) {
+
+        final String value = values == null ? get(key) : values.get(key);
+
+        // Skips keys removed since they were listed.
+        if (value != null) {
+          loaded.add(element.apply(new MnemeEntry(key, value)));
+        }
+      }
+    }
 
-    return keySet()
-        .stream()
-        .map(MnemeEntry::new)
-        .collect(toSet());
   }
 
   private class MnemeEntry implements Entry<String, String> {
 
     private final String key;
 
-    private MnemeEntry(final String key) {
+    private String value;
+
+    private MnemeEntry(final String key, final String value) {
 
       super();
 
-      validate("key", key).againstBlankStrings();
+      checkNotBlank("key", key);
 
       this.key = key;
+      this.value = value;
     }
 
     /**
@@ -339,7 +787,9 @@ public abstract class AbstractMneme implements Mneme {
     }
 
     /**
-     * <p>Returns the value corresponding to this entry.</p>
+     * <p>Returns the value corresponding to this entry, as it was read when
+     * the iterator reached it, or as last set through {@link
+     * #setValue(String)}. This is never <code>null</code>.</p>
      * 
      * <p>See: {@link Mneme#get(String)} for more information.</p>
      *
@@ -349,7 +799,7 @@ public abstract class AbstractMneme implements Mneme {
      */
     @Override
     public String getValue() {
-      return get(key);
+      return value;
     }
 
     /**
@@ -368,7 +818,30 @@ public abstract class AbstractMneme implements Mneme {
      */
     @Override
     public String setValue(final String value) {
-      return put(key, value);
+
+      final String previousValue = put(key, value);
+
+      this.value = value;
+
+      return previousValue;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+
+      return object instanceof Entry<?, ?> entry
+          && key.equals(entry.getKey())
+          && Objects.equals(getValue(), entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return key.hashCode() ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
     }
 
   }
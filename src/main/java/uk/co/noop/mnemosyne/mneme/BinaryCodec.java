@@ -0,0 +1,113 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * <p>A {@link Codec} that writes each value as a compact sequence of
+ * primitive fields, with no field names or type information, and stores the
+ * bytes Base64 encoded, so that they fit in a <code>String</code> value.</p>
+ *
+ * <p>Extensions write and read the fields of a value in the same order,
+ * e.g.;</p>
+ *
+ * <pre>
+ * final Codec&lt;Point&gt; codec = new BinaryCodec&lt;&gt;() {
+ *   protected void write(final Point point, final DataOutput output)
+ *       throws IOException {
+ *     output.writeInt(point.x());
+ *     output.writeInt(point.y());
+ *   }
+ *   protected Point read(final DataInput input) throws IOException {
+ *     return new Point(input.readInt(), input.readInt());
+ *   }
+ * };
+ * </pre>
+ *
+ * @param <V> the type of the values
+ *
+ * @see Codec
+ * @see TypedMneme
+ */
+public abstract class BinaryCodec<V> implements Codec<V> {
+
+  private static final int INITIAL_BUFFER_SIZE = 64;
+
+  /**
+   * <p>Creates a new instance of <code>BinaryCodec</code>.</p>
+   */
+  protected BinaryCodec() {
+    super();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UncheckedIOException if the value cannot be written
+   */
+  @Override
+  public final String encode(final V value) {
+
+    final ByteArrayOutputStream bytes =
+        new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+    try (final DataOutputStream output = new DataOutputStream(bytes)) {
+      write(value, output);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is not Base64 encoded
+   * @throws UncheckedIOException if the value cannot be read
+   */
+  @Override
+  public final V decode(final String value) {
+
+    try (final DataInputStream input = new DataInputStream(
+        new ByteArrayInputStream(Base64.getDecoder().decode(value)))) {
+
+      return read(input);
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>Writes the fields of the specified <b>value</b> to the specified
+   * <b>output</b>. At least one byte must be written.</p>
+   *
+   * @param value the value to be written
+   * @param output the output to write the fields to
+   *
+   * @throws IOException if the fields cannot be written
+   */
+  protected abstract void write(V value, DataOutput output)
+      throws IOException;
+
+  /**
+   * <p>Reads the fields written by {@link #write(Object, DataOutput)} from the
+   * specified <b>input</b>.</p>
+   *
+   * @param input the input to read the fields from
+   *
+   * @return the value read
+   *
+   * @throws IOException if the fields cannot be read
+   */
+  protected abstract V read(DataInput input) throws IOException;
+
+}
@@ -0,0 +1,107 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A fixed-size Bloom filter over <code>String</code> keys, used to skip
+ * tables that cannot contain a key.</p>
+ */
+final class BloomFilter {
+
+  private final long[] bits;
+  private final int hashes;
+
+  private BloomFilter(final long[] bits, final int hashes) {
+    this.bits = bits;
+    this.hashes = hashes;
+  }
+
+  static BloomFilter create(final long[] keyHashes, final int bitsPerKey) {
+
+    final long bitCount =
+        Math.max(64, (long) keyHashes.length * bitsPerKey);
+    final BloomFilter filter = new BloomFilter(
+        new long[(int) ((bitCount + 63) >>> 6)],
+        Math.max(1, (int) Math.round(bitsPerKey * Math.log(2))));
+
+    for (final long keyHash : keyHashes) {
+      filter.add(keyHash);
+    }
+
+    return filter;
+  }
+
+  static BloomFilter read(final ByteBuffer buffer) {
+
+    final int hashes = buffer.getInt();
+    final long[] bits = new long[buffer.getInt()];
+
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = buffer.getLong();
+    }
+
+    return new BloomFilter(bits, hashes);
+  }
+
+  static long hash(final String key) {
+
+    long hash = 0xcbf29ce484222325L;
+
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+
+    return hash;
+  }
+
+  boolean mightContain(final long keyHash) {
+
+    final long bitCount = (long) bits.length << 6;
+    final int hash1 = (int) keyHash;
+    final int hash2 = (int) (keyHash >>> 32);
+
+    for (int i = 0; i < hashes; i++) {
+
+      final long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  void write(final DataOutputStream output) throws IOException {
+
+    output.writeInt(hashes);
+    output.writeInt(bits.length);
+
+    for (final long word : bits) {
+      output.writeLong(word);
+    }
+  }
+
+  private void add(final long keyHash) {
+
+    final long bitCount = (long) bits.length << 6;
+    final int hash1 = (int) keyHash;
+    final int hash2 = (int) (keyHash >>> 32);
+
+    for (int i = 0; i < hashes; i++) {
+
+      final long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>The optional capabilities a {@link Mneme} backend can declare through
+ * {@link AbstractMneme#getCapabilities()}.</p>
+ *
+ * <p>{@link AbstractMneme} builds its bulk operations ({@link
+ * AbstractMneme#clear() clear()}, {@link AbstractMneme#putAll(java.util.Map)
+ * putAll(Map)}, {@link AbstractMneme#values() values()}, {@link
+ * AbstractMneme#entrySet() entrySet()} and {@link AbstractMneme#isEmpty()
+ * isEmpty()}) from single-key operations, unless the backend declares the
+ * capability for a faster path and provides the method that goes with
+ * it. Backends whose entries can be read in key order implement {@link
+ * OrderedScan} instead.</p>
+ *
+ * @see AbstractMneme
+ * @see OrderedScan
+ */
+public enum Capability {
+
+  /**
+   * <p>Many values can be read at once, faster than one by one, through
+   * {@link AbstractMneme#getBatch(java.util.Collection)}. Used to read the
+   * values of {@link AbstractMneme#values() values()} and {@link
+   * AbstractMneme#entrySet() entrySet()}.</p>
+   */
+  BATCH_GET,
+
+  /**
+   * <p>Many entries can be written at once, faster than one by one, through
+   * {@link AbstractMneme#putBatch(java.util.Map)}. Used by {@link
+   * AbstractMneme#putAll(java.util.Map) putAll(Map)}.</p>
+   */
+  BATCH_PUT,
+
+  /**
+   * <p>Many entries can be removed at once, faster than one by one, through
+   * {@link AbstractMneme#removeBatch(java.util.Collection)}. Used by {@link
+   * AbstractMneme#clear() clear()}.</p>
+   */
+  BATCH_DELETE,
+
+  /**
+   * <p>{@link AbstractMneme#size() size()} is answered without listing the
+   * keys, by a backend that overrides it. Used by {@link
+   * AbstractMneme#isEmpty() isEmpty()}.</p>
+   */
+  CHEAP_SIZE
+
+}
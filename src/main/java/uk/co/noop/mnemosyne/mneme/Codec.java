@@ -0,0 +1,84 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.util.function.Function;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+
+/**
+ * <p>Converts the values of a {@link TypedMneme} to and from the
+ * <code>String</code> values stored in a {@link Mneme}.</p>
+ *
+ * <p>A codec for a text format, such as <i>JSON</i>, can be made from a
+ * pair of functions with {@link #of(Function, Function)}. A {@link
+ * BinaryCodec} writes a compact binary form instead.</p>
+ *
+ * @param <V> the type of the values
+ *
+ * @see TypedMneme
+ * @see BinaryCodec
+ */
+public interface Codec<V> {
+
+  /**
+   * <p>Encodes the specified <b>value</b>. The result must not be blank.</p>
+   *
+   * @param value the value to be encoded, which is never <code>null</code>
+   *
+   * @return the encoded value
+   */
+  String encode(V value);
+
+  /**
+   * <p>Decodes the specified <b>value</b>, as returned by {@link
+   * #encode(Object)}.</p>
+   *
+   * @param value the value to be decoded, which is never <code>null</code>
+   *
+   * @return the decoded value
+   */
+  V decode(String value);
+
+  /**
+   * <p>Returns a <code>Codec</code> that encodes values with the specified
+   * <b>encoder</b> and decodes them with the specified <b>decoder</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>encoder</b> and <b>decoder</b> parameters are validated against
+   * <code>null</code> values using {@link uk.co.noop.themis.Themis Themis}.
+   * (See: {@link uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} for more information.)</p>
+   *
+   * @param encoder the function encoding each value
+   * @param decoder the function decoding each value
+   * @param <V> the type of the values
+   *
+   * @return a <code>Codec</code> using the functions
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  static <V> Codec<V> of(
+      final Function<? super V, String> encoder,
+      final Function<String, ? extends V> decoder) {
+
+    checkNotNull("encoder", encoder);
+    checkNotNull("decoder", decoder);
+
+    return new Codec<>() {
+
+      @Override
+      public String encode(final V value) {
+        return encoder.apply(value);
+      }
+
+      @Override
+      public V decode(final String value) {
+        return decoder.apply(value);
+      }
+
+    };
+  }
+
+}
@@ -0,0 +1,910 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.themis.Themis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs locally, in as little heap as possible.</p>
+ *
+ * <p>Where {@link LocalMneme} holds two <code>String</code> objects, their
+ * backing arrays and a map node for every entry, <code>CompactMneme</code>
+ * holds none of them. Keys and values are written, length-prefixed, into large
+ * shared <code>byte[]</code> arenas (as Latin-1 where every character allows
+ * it, and as UTF-8 otherwise), and entries are located through an
+ * open-addressing index made of three <code>int[]</code> arrays.
+ * <code>String</code> objects are only created when a key or value is
+ * read.</p>
+ *
+ * <p>Values can optionally be deduplicated, so that identical values are only
+ * stored once however many keys map to them. Space left behind by removed and
+ * overwritten entries is reclaimed by rewriting the live entries into fresh
+ * arenas once more than half of the arena space is unused.</p>
+ *
+ * <p>Entries are located by <code>int</code> references into the arenas,
+ * which limits a <code>CompactMneme</code> to 2,048 arenas of 1 MiB, or about
+ * 2 GiB of keys and values. A key or value larger than 1 MiB is given an arena
+ * of its own, so each one uses up one of the 2,048 however large it is. Once
+ * every arena is in use, writes that need more space throw an
+ * <code>IllegalStateException</code>.</p>
+ *
+ * <p><code>CompactMneme</code> instances are safe for concurrent use; reads
+ * share a read lock and writes take the write lock.</p>
+ *
+ * @see Mneme
+ * @see LocalMneme
+ */
+public class CompactMneme extends AbstractMneme {
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(Capability.CHEAP_SIZE));
+
+  private static final int ARENA_SHIFT = 20;
+  private static final int ARENA_SIZE = 1 << ARENA_SHIFT;
+  private static final int OFFSET_MASK = ARENA_SIZE - 1;
+  private static final int MAXIMUM_ARENAS =
+      1 << (Integer.SIZE - 1 - ARENA_SHIFT);
+  private static final int INITIAL_CAPACITY = 1 << 4;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private static final int EMPTY = -1;
+  private static final int TOMBSTONE = -2;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final boolean deduplicateValues;
+
+  private List<byte[]> arenas;
+  private int currentArena;
+  private int arenaPosition;
+  private long usedBytes;
+  private long garbageBytes;
+  private Table entries;
+  private Table values;
+
+  /**
+   * <p>Creates a new instance of <code>CompactMneme</code> that does not
+   * deduplicate values.</p>
+   */
+  public CompactMneme() {
+    this(false);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>CompactMneme</code>.</p>
+   *
+   * @param deduplicateValues <code>true</code> to store each distinct value
+   *                          only once, at the cost of a second index and a
+   *                          lookup on every write; <code>false</code> to store
+   *                          every value separately.
+   */
+  public CompactMneme(final boolean deduplicateValues) {
+
+    super();
+
+    this.deduplicateValues = deduplicateValues;
+
+    reset();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+
+    lock.readLock().lock();
+
+    try {
+      return entries.size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A <code>CompactMneme</code> keeps a count of its entries.</p>
+   *
+   * @return {@link Capability#CHEAP_SIZE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+
+    checkNotBlank("key", key);
+
+    final boolean latin1 = isLatin1(key);
+    final byte[] keyBytes = encode(key, latin1);
+
+    lock.readLock().lock();
+
+    try {
+      return entries.find(keyBytes, latin1, hash(keyBytes, latin1)) >= 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>When values are deduplicated this is a single index lookup; otherwise
+   * every entry is compared.</p>
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+
+    final boolean latin1 = isLatin1(value);
+    final byte[] valueBytes = encode(value, latin1);
+
+    lock.readLock().lock();
+
+    try {
+
+      if (values != null) {
+        return values.find(valueBytes, latin1, hash(valueBytes, latin1)) >= 0;
+      }
+
+      for (int slot = 0; slot < entries.capacity; slot++) {
+        if (entries.refs[slot] >= 0
+            && matches(entries.data[slot], valueBytes, latin1)) {
+          return true;
+        }
+      }
+
+      return false;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+
+    final boolean latin1 = isLatin1(key);
+    final byte[] keyBytes = encode(key, latin1);
+
+    lock.readLock().lock();
+
+    try {
+
+      final int slot = entries.find(keyBytes, latin1, hash(keyBytes, latin1));
+
+      return slot < 0 ? null : read(entries.data[slot]);
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>. (A <code>null</code> return can
+   * also indicate that the {@link Mneme} previously associated
+   * <code>null</code> with <b>key</b>, if the implementation supports
+   * <code>null</code> values.)
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    final boolean keyLatin1 = isLatin1(key);
+    final byte[] keyBytes = encode(key, keyLatin1);
+    final int keyHash = hash(keyBytes, keyLatin1);
+    final boolean valueLatin1 = isLatin1(value);
+    final byte[] valueBytes = encode(value, valueLatin1);
+
+    lock.writeLock().lock();
+
+    try {
+
+      final int slot = entries.find(keyBytes, keyLatin1, keyHash);
+
+      if (slot >= 0) {
+
+        final int previousRef = entries.data[slot];
+        final String previousValue = read(previousRef);
+
+        entries.data[slot] = acquireValue(valueBytes, valueLatin1);
+        releaseValue(previousRef);
+        reclaimIfWasteful();
+
+        return previousValue;
+      }
+
+      entries.ensureCapacity();
+      entries.insert(
+          entries.findFree(keyHash),
+          keyHash,
+          write(keyBytes, keyLatin1),
+          acquireValue(valueBytes, valueLatin1));
+
+      return null;
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    final boolean latin1 = isLatin1(key);
+    final byte[] keyBytes = encode(key, latin1);
+
+    lock.writeLock().lock();
+
+    try {
+
+      final int slot = entries.find(keyBytes, latin1, hash(keyBytes, latin1));
+
+      if (slot < 0) {
+        return null;
+      }
+
+      final int valueRef = entries.data[slot];
+      final String previousValue = read(valueRef);
+
+      garbageBytes += storedLength(entries.refs[slot]);
+      releaseValue(valueRef);
+      entries.delete(slot);
+      reclaimIfWasteful();
+
+      return previousValue;
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>The counter is read and rewritten under the write lock, so no
+   * increment is lost to a concurrent write.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    lock.writeLock().lock();
+
+    try {
+
+      final String count = get(key);
+
+      put(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta)));
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every arena is released and a fresh, empty, index is allocated.</p>
+   */
+  @Override
+  public void clear() {
+
+    lock.writeLock().lock();
+
+    try {
+      reset();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+
+    lock.readLock().lock();
+
+    try {
+
+      final Set<String> keys = new HashSet<>();
+
+      for (int slot = 0; slot < entries.capacity; slot++) {
+        if (entries.refs[slot] >= 0) {
+          keys.add(read(entries.refs[slot]));
+        }
+      }
+
+      return keys;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the number of bytes of heap currently allocated by this
+   * <code>CompactMneme</code> for its arenas and indexes.</p>
+   *
+   * @return the number of bytes currently allocated
+   */
+  public long getAllocatedBytes() {
+
+    lock.readLock().lock();
+
+    try {
+
+      long allocatedBytes = entries.allocatedBytes();
+
+      if (values != null) {
+        allocatedBytes += values.allocatedBytes();
+      }
+
+      for (final byte[] arena : arenas) {
+        allocatedBytes += arena.length;
+      }
+
+      return allocatedBytes;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void reset() {
+
+    arenas = new ArrayList<>();
+    currentArena = -1;
+    arenaPosition = 0;
+    usedBytes = 0;
+    garbageBytes = 0;
+    entries = new Table(INITIAL_CAPACITY);
+    values = deduplicateValues ? new Table(INITIAL_CAPACITY) : null;
+  }
+
+  private int acquireValue(final byte[] valueBytes, final boolean latin1) {
+
+    if (values == null) {
+      return write(valueBytes, latin1);
+    }
+
+    final int hash = hash(valueBytes, latin1);
+    final int slot = values.find(valueBytes, latin1, hash);
+
+    if (slot >= 0) {
+      values.data[slot]++;
+      return values.refs[slot];
+    }
+
+    final int ref = write(valueBytes, latin1);
+
+    values.ensureCapacity();
+    values.insert(values.findFree(hash), hash, ref, 1);
+
+    return ref;
+  }
+
+  private void releaseValue(final int ref) {
+
+    if (values != null) {
+
+      final int slot = values.findRef(ref);
+
+      if (--values.data[slot] > 0) {
+        return;
+      }
+
+      values.delete(slot);
+    }
+
+    garbageBytes += storedLength(ref);
+  }
+
+  private void reclaimIfWasteful() {
+
+    if (garbageBytes < ARENA_SIZE || garbageBytes * 2 < usedBytes) {
+      return;
+    }
+
+    final List<byte[]> oldArenas = arenas;
+
+    arenas = new ArrayList<>();
+    currentArena = -1;
+    arenaPosition = 0;
+    usedBytes = 0;
+    garbageBytes = 0;
+
+    int[] oldValueRefs = null;
+
+    if (values != null) {
+
+      oldValueRefs = values.refs.clone();
+
+      for (int slot = 0; slot < values.capacity; slot++) {
+        if (values.refs[slot] >= 0) {
+          values.refs[slot] = copy(oldArenas, values.refs[slot]);
+        }
+      }
+    }
+
+    for (int slot = 0; slot < entries.capacity; slot++) {
+
+      if (entries.refs[slot] < 0) {
+        continue;
+      }
+
+      entries.refs[slot] = copy(oldArenas, entries.refs[slot]);
+
+      if (values == null) {
+        entries.data[slot] = copy(oldArenas, entries.data[slot]);
+      } else {
+        entries.data[slot] = values.refs[
+            values.findRef(oldArenas, oldValueRefs, entries.data[slot])];
+      }
+    }
+  }
+
+  private int write(final byte[] bytes, final boolean latin1) {
+
+    final int header = bytes.length << 1 | (latin1 ? 1 : 0);
+    final int length = varIntSize(header) + bytes.length;
+    final int ref = allocate(length);
+    final byte[] arena = arenas.get(ref >>> ARENA_SHIFT);
+    final int position = putVarInt(arena, ref & OFFSET_MASK, header);
+
+    System.arraycopy(bytes, 0, arena, position, bytes.length);
+
+    return ref;
+  }
+
+  private int copy(final List<byte[]> fromArenas, final int fromRef) {
+
+    final byte[] fromArena = fromArenas.get(fromRef >>> ARENA_SHIFT);
+    final int fromPosition = fromRef & OFFSET_MASK;
+    final int length = storedLength(fromArena, fromPosition);
+    final int ref = allocate(length);
+
+    System.arraycopy(
+        fromArena,
+        fromPosition,
+        arenas.get(ref >>> ARENA_SHIFT),
+        ref & OFFSET_MASK,
+        length);
+
+    return ref;
+  }
+
+  private int allocate(final int length) {
+
+    usedBytes += length;
+
+    if (length > ARENA_SIZE) {
+      return addArena(new byte[length]) << ARENA_SHIFT;
+    }
+
+    if (currentArena < 0 || arenaPosition + length > ARENA_SIZE) {
+      currentArena = addArena(new byte[ARENA_SIZE]);
+      arenaPosition = 0;
+    }
+
+    final int ref = currentArena << ARENA_SHIFT | arenaPosition;
+
+    arenaPosition += length;
+
+    return ref;
+  }
+
+  private int addArena(final byte[] arena) {
+
+    if (arenas.size() == MAXIMUM_ARENAS) {
+      throw new IllegalStateException("CompactMneme is full");
+    }
+
+    arenas.add(arena);
+
+    return arenas.size() - 1;
+  }
+
+  private String read(final int ref) {
+
+    final byte[] arena = arenas.get(ref >>> ARENA_SHIFT);
+    final int position = ref & OFFSET_MASK;
+    final int header = getVarInt(arena, position);
+
+    return new String(
+        arena,
+        position + varIntSize(header),
+        header >>> 1,
+        (header & 1) == 1 ? ISO_8859_1 : UTF_8);
+  }
+
+  private boolean matches(
+      final int ref,
+      final byte[] bytes,
+      final boolean latin1) {
+
+    return matches(arenas, ref, bytes, latin1);
+  }
+
+  private int storedLength(final int ref) {
+    return storedLength(arenas.get(ref >>> ARENA_SHIFT), ref & OFFSET_MASK);
+  }
+
+  private static boolean matches(
+      final List<byte[]> arenas,
+      final int ref,
+      final byte[] bytes,
+      final boolean latin1) {
+
+    final byte[] arena = arenas.get(ref >>> ARENA_SHIFT);
+    final int position = ref & OFFSET_MASK;
+    final int header = getVarInt(arena, position);
+
+    if (header != (bytes.length << 1 | (latin1 ? 1 : 0))) {
+      return false;
+    }
+
+    final int start = position + varIntSize(header);
+
+    return Arrays.equals(
+        arena, start, start + bytes.length,
+        bytes, 0, bytes.length);
+  }
+
+  private static int storedLength(final byte[] arena, final int position) {
+
+    final int header = getVarInt(arena, position);
+
+    return varIntSize(header) + (header >>> 1);
+  }
+
+  private static boolean isLatin1(final String string) {
+
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static byte[] encode(final String string, final boolean latin1) {
+    return string.getBytes(latin1 ? ISO_8859_1 : UTF_8);
+  }
+
+  private static int hash(final byte[] bytes, final boolean latin1) {
+    return hash(bytes, 0, bytes.length, latin1);
+  }
+
+  private static int hash(
+      final byte[] bytes,
+      final int from,
+      final int to,
+      final boolean latin1) {
+
+    int hash = latin1 ? 1 : 0;
+
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int varIntSize(final int value) {
+    return (Integer.SIZE - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+  }
+
+  private static int putVarInt(
+      final byte[] arena,
+      final int position,
+      final int value) {
+
+    int remaining = value;
+    int index = position;
+
+    while ((remaining & ~0x7F) != 0) {
+      arena[index++] = (byte) ((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+
+    arena[index++] = (byte) remaining;
+
+    return index;
+  }
+
+  private static int getVarInt(final byte[] arena, final int position) {
+
+    int value = 0;
+    int shift = 0;
+    int index = position;
+    byte current;
+
+    do {
+      current = arena[index++];
+      value |= (current & 0x7F) << shift;
+      shift += 7;
+    } while (current < 0);
+
+    return value;
+  }
+
+  /**
+   * <p>An open-addressing hash table of references into the arenas, held as
+   * parallel <code>int[]</code> arrays. The <b>data</b> array holds the value
+   * reference of each entry, or the reference count of each deduplicated
+   * value.</p>
+   */
+  private final class Table {
+
+    private int capacity;
+    private int size;
+    private int tombstones;
+    private int[] hashes;
+    private int[] refs;
+    private int[] data;
+
+    private Table(final int capacity) {
+      this.capacity = capacity;
+      this.hashes = new int[capacity];
+      this.refs = new int[capacity];
+      this.data = new int[capacity];
+      Arrays.fill(refs, EMPTY);
+    }
+
+    private int find(
+        final byte[] bytes,
+        final boolean latin1,
+        final int hash) {
+
+      final int mask = capacity - 1;
+
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+
+        final int ref = refs[slot];
+
+        if (ref == EMPTY) {
+          return -1;
+        }
+
+        if (ref != TOMBSTONE
+            && hashes[slot] == hash
+            && matches(ref, bytes, latin1)) {
+          return slot;
+        }
+      }
+    }
+
+    private int findRef(final int ref) {
+      return findRef(arenas, refs, ref);
+    }
+
+    private int findRef(
+        final List<byte[]> refArenas,
+        final int[] tableRefs,
+        final int ref) {
+
+      final byte[] arena = refArenas.get(ref >>> ARENA_SHIFT);
+      final int position = ref & OFFSET_MASK;
+      final int header = getVarInt(arena, position);
+      final int start = position + varIntSize(header);
+      final int mask = capacity - 1;
+      final int hash =
+          hash(arena, start, start + (header >>> 1), (header & 1) == 1);
+
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        if (tableRefs[slot] == ref) {
+          return slot;
+        }
+      }
+    }
+
+    private int findFree(final int hash) {
+
+      final int mask = capacity - 1;
+
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        if (refs[slot] < 0) {
+          return slot;
+        }
+      }
+    }
+
+    private void insert(
+        final int slot,
+        final int hash,
+        final int ref,
+        final int value) {
+
+      if (refs[slot] == TOMBSTONE) {
+        tombstones--;
+      }
+
+      hashes[slot] = hash;
+      refs[slot] = ref;
+      data[slot] = value;
+      size++;
+    }
+
+    private void delete(final int slot) {
+      refs[slot] = TOMBSTONE;
+      size--;
+      tombstones++;
+    }
+
+    private void ensureCapacity() {
+
+      if ((long) size + tombstones + 1 <= (capacity >>> 2) * 3L) {
+        return;
+      }
+
+      final int newCapacity =
+          size + 1 > (capacity >>> 1) ? capacity << 1 : capacity;
+
+      if (newCapacity > MAXIMUM_CAPACITY) {
+        throw new IllegalStateException("CompactMneme is full");
+      }
+
+      final int[] oldHashes = hashes;
+      final int[] oldRefs = refs;
+      final int[] oldData = data;
+      final int oldCapacity = capacity;
+
+      capacity = newCapacity;
+      hashes = new int[newCapacity];
+      refs = new int[newCapacity];
+      data = new int[newCapacity];
+      tombstones = 0;
+      Arrays.fill(refs, EMPTY);
+
+      for (int slot = 0; slot < oldCapacity; slot++) {
+
+        if (oldRefs[slot] >= 0) {
+
+          final int newSlot = findFree(oldHashes[slot]);
+
+          hashes[newSlot] = oldHashes[slot];
+          refs[newSlot] = oldRefs[slot];
+          data[newSlot] = oldData[slot];
+        }
+      }
+    }
+
+    private long allocatedBytes() {
+      return 3L * Integer.BYTES * capacity;
+    }
+
+  }
+
+}
@@ -0,0 +1,1240 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs durably on a local disk.</p>
+ *
+ * <p>Entries are appended to log-structured segment files in a single
+ * directory (in the style of <i>Bitcask</i>), and an in-memory index maps each
+ * key to the location of its latest value. Records are appended with a
+ * <code>FileChannel</code> and read back through a memory mapping of each
+ * segment. Once a segment is full it is sealed and summarised in a hint file,
+ * so that restarting only needs to read the (much smaller) hint files rather
+ * than every value.</p>
+ *
+ * <p>Overwritten and removed entries leave stale records behind. A background
+ * merge rewrites the live entries of the sealed segments into new segments and
+ * deletes the old ones once more than half of the sealed bytes are stale. (See:
+ * {@link #merge()} for more information.) The old segments are listed in a
+ * marker file before any of them is deleted, so a merge interrupted part way
+ * through its deletions is finished on restart, rather than leaving some of
+ * them behind.</p>
+ *
+ * <p><code>DiskMneme</code> instances are safe for concurrent use; reads are
+ * lock-free and writes are serialised. Every record carries a checksum and a
+ * sequence number, so a torn write at the end of a segment is discarded on
+ * restart and the latest write for each key always wins.</p>
+ *
+ * @see Mneme
+ * @see uk.co.noop.mnemosyne.Mnemosyne#getMneme(String, Path)
+ */
+public class DiskMneme extends AbstractMneme implements AutoCloseable {
+
+  /**
+   * <p>The default maximum segment size, in bytes.</p>
+   */
+  public static final int DEFAULT_MAX_SEGMENT_SIZE = 1 << 26;
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(Capability.CHEAP_SIZE));
+
+  private static final double MERGE_THRESHOLD = 0.5;
+  private static final long MERGE_INTERVAL_SECONDS = 60;
+
+  private static final int HEADER_SIZE = 20;
+  private static final int HINT_HEADER_SIZE = 24;
+  private static final int TOMBSTONE = -1;
+
+  private static final String DATA_SUFFIX = ".data";
+  private static final String HINT_SUFFIX = ".hint";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final String SUPERSEDED_FILE_NAME = "superseded";
+
+  private final Path directory;
+  private final int maxSegmentSize;
+  private final boolean syncWrites;
+  private final ConcurrentMap<String, Location> index =
+      new ConcurrentHashMap<>();
+  private final ConcurrentNavigableMap<Long, Segment> segments =
+      new ConcurrentSkipListMap<>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final ReentrantLock mergeLock = new ReentrantLock();
+  private final ScheduledExecutorService merger;
+
+  private volatile Segment active;
+  private long nextSequence;
+  private long nextSegmentId;
+  private volatile boolean closed;
+
+  /**
+   * <p>Creates a new instance of <code>DiskMneme</code> in the specified
+   * <b>directory</b>, using the {@link #DEFAULT_MAX_SEGMENT_SIZE} and leaving
+   * the flushing of writes to the operating system.</p>
+   *
+   * @param directory The directory to store the segment files in. It will be
+   *                  created if it does not exist, and any existing segments
+   *                  will be loaded.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the directory cannot be read or written
+   */
+  public DiskMneme(final Path directory) {
+    this(directory, DEFAULT_MAX_SEGMENT_SIZE, false);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>DiskMneme</code> in the specified
+   * <b>directory</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>directory</b> parameter is validated against <code>null</code>
+   * values using {@link Themis}, and the <b>maxSegmentSize</b> parameter is
+   * validated against non-positive values. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} and {@link
+   * IntegerEunomia#againstNonPositiveIntegers()} for more information.)</p>
+   *
+   * @param directory The directory to store the segment files in. It will be
+   *                  created if it does not exist, and any existing segments
+   *                  will be loaded.
+   * @param maxSegmentSize The size, in bytes, at which a segment is sealed and
+   *                       a new one started.
+   * @param syncWrites <code>true</code> to force every write to the storage
+   *                   device before returning, <code>false</code> to leave it
+   *                   to the operating system.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the directory cannot be read or written
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see IntegerEunomia#againstNonPositiveIntegers()
+   */
+  public DiskMneme(
+      final Path directory,
+      final int maxSegmentSize,
+      final boolean syncWrites) {
+
+    super();
+
+    checkNotNull("directory", directory);
+    validate("maxSegmentSize", maxSegmentSize, IntegerEunomia.class)
+        .againstNonPositiveIntegers();
+
+    this.directory = directory;
+    this.maxSegmentSize = maxSegmentSize;
+    this.syncWrites = syncWrites;
+
+    try {
+      Files.createDirectories(directory);
+      load();
+      active = openSegment(nextSegmentId++, maxSegmentSize);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    merger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-merge");
+      thread.setDaemon(true);
+      return thread;
+    });
+    merger.scheduleWithFixedDelay(
+        this::mergeIfStale,
+        MERGE_INTERVAL_SECONDS,
+        MERGE_INTERVAL_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+    ensureOpen();
+    return index.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A <code>DiskMneme</code> counts its entries from its in-memory
+   * index.</p>
+   *
+   * @return {@link Capability#CHEAP_SIZE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return index.containsKey(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+    ensureOpen();
+
+    for (final String key : index.keySet()) {
+      if (value.equals(read(key))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the value cannot be read
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return read(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>. (A <code>null</code> return can
+   * also indicate that the {@link Mneme} previously associated
+   * <code>null</code> with <b>key</b>, if the implementation supports
+   * <code>null</code> values.)
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the value cannot be written
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final byte[] valueBytes = value.getBytes(UTF_8);
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final String previousValue = read(key);
+
+      ensureActiveCapacity(recordLength(keyBytes, valueBytes));
+
+      final Location location =
+          append(active, nextSequence++, keyBytes, valueBytes);
+
+      retire(index.put(key, location));
+
+      return previousValue;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the removal cannot be written
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final String previousValue = read(key);
+
+      if (previousValue != null) {
+
+        final byte[] keyBytes = key.getBytes(UTF_8);
+
+        ensureActiveCapacity(recordLength(keyBytes, null));
+
+        final Location tombstone =
+            append(active, nextSequence++, keyBytes, null);
+
+        retire(index.remove(key));
+        retire(tombstone);
+      }
+
+      return previousValue;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>The counter is read and its new value appended while the write lock is
+   * held, so concurrent increments are not lost.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    writeLock.lock();
+
+    try {
+
+      final String count = get(key);
+
+      put(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta)));
+
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every segment file is deleted and a fresh, empty, segment is
+   * started.</p>
+   *
+   * @throws UncheckedIOException if the segment files cannot be deleted
+   */
+  @Override
+  public void clear() {
+
+    mergeLock.lock();
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      index.clear();
+
+      for (final Segment segment : segments.values()) {
+        delete(segment);
+      }
+
+      active = openSegment(nextSegmentId++, maxSegmentSize);
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+      mergeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+    ensureOpen();
+    return new HashSet<>(index.keySet());
+  }
+
+  /**
+   * <p>Rewrites the live entries of every sealed segment into new segments,
+   * then deletes the old segments along with their stale records.</p>
+   *
+   * <p>This runs in the background once more than half of the sealed bytes are
+   * stale, but can also be called directly. Reads and writes carry on
+   * throughout; only one merge runs at a time.</p>
+   *
+   * <p>Once the new segments have been forced to the storage device, the ids
+   * of the old segments are written to a marker file, which is only removed
+   * once every one of them has been deleted. The old segments hold tombstones
+   * that the new segments do not, so deleting only some of them could bring
+   * a removed key back; a marker found on restart has its deletions finished
+   * before any segment is loaded.</p>
+   *
+   * @throws UncheckedIOException if the segments cannot be merged
+   */
+  public void merge() {
+
+    mergeLock.lock();
+
+    try {
+
+      final List<Segment> merging;
+
+      writeLock.lock();
+
+      try {
+
+        ensureOpen();
+
+        if (active.size > 0) {
+          sealActive();
+        }
+
+        merging = new ArrayList<>(segments.headMap(active.id).values());
+
+      } finally {
+        writeLock.unlock();
+      }
+
+      if (merging.isEmpty()) {
+        return;
+      }
+
+      final Set<Long> mergingIds = new HashSet<>();
+
+      merging.forEach(segment -> mergingIds.add(segment.id));
+
+      Segment output = null;
+
+      for (final Map.Entry<String, Location> entry : index.entrySet()) {
+
+        final Location location = entry.getValue();
+
+        if (!mergingIds.contains(location.segmentId())) {
+          continue;
+        }
+
+        final byte[] keyBytes = entry.getKey().getBytes(UTF_8);
+        final byte[] valueBytes =
+            segments.get(location.segmentId()).read(location);
+
+        final int recordLength = recordLength(keyBytes, valueBytes);
+
+        if (output == null || output.size + recordLength > output.capacity) {
+
+          if (output != null) {
+            seal(output);
+          }
+
+          output = openMergeSegment(recordLength);
+        }
+
+        final Location merged =
+            append(output, location.sequence(), keyBytes, valueBytes);
+
+        if (!index.replace(entry.getKey(), location, merged)) {
+          retire(merged);
+        }
+      }
+
+      if (output != null) {
+        seal(output);
+      }
+
+      writeSuperseded(mergingIds);
+
+      for (final Segment segment : merging) {
+        delete(segment);
+      }
+
+      Files.delete(supersededPath());
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Seals the active segment, stops the background merge and closes every
+   * segment file. Once closed, every operation will throw an
+   * <code>IllegalStateException</code>.</p>
+   *
+   * <p>Calling <code>close()</code> more than once has no further effect.</p>
+   *
+   * @throws UncheckedIOException if the segment files cannot be closed
+   */
+  @Override
+  public void close() {
+
+    merger.shutdown();
+    mergeLock.lock();
+    writeLock.lock();
+
+    try {
+
+      if (closed) {
+        return;
+      }
+
+      if (active.size > 0) {
+        seal(active);
+      } else {
+        delete(active);
+      }
+
+      closed = true;
+
+      for (final Segment segment : segments.values()) {
+        segment.close();
+      }
+
+      segments.clear();
+      index.clear();
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+      mergeLock.unlock();
+    }
+  }
+
+  private void ensureOpen() {
+
+    if (closed) {
+      throw new IllegalStateException("DiskMneme has been closed");
+    }
+  }
+
+  private String read(final String key) {
+
+    while (true) {
+
+      final Location location = index.get(key);
+
+      if (location == null) {
+        return null;
+      }
+
+      final Segment segment = segments.get(location.segmentId());
+
+      if (segment != null) {
+        return new String(segment.read(location), UTF_8);
+      }
+
+      // The segment was merged away after the index was read; retry.
+      ensureOpen();
+    }
+  }
+
+  private void retire(final Location location) {
+
+    if (location != null) {
+
+      final Segment segment = segments.get(location.segmentId());
+
+      if (segment != null) {
+        segment.staleBytes.addAndGet(location.recordLength());
+      }
+    }
+  }
+
+  private void ensureActiveCapacity(final int recordLength)
+      throws IOException {
+
+    if (active.size + recordLength > active.capacity) {
+      sealActive();
+
+      if (recordLength > active.capacity) {
+        delete(active);
+        active = openSegment(nextSegmentId++, recordLength);
+      }
+    }
+  }
+
+  private Location append(
+      final Segment segment,
+      final long sequence,
+      final byte[] keyBytes,
+      final byte[] valueBytes) throws IOException {
+
+    final int valueLength = valueBytes == null ? TOMBSTONE : valueBytes.length;
+    final int recordLength = recordLength(keyBytes, valueBytes);
+    final ByteBuffer record = ByteBuffer.allocate(recordLength);
+
+    record.putInt(0)
+        .putLong(sequence)
+        .putInt(keyBytes.length)
+        .putInt(valueLength)
+        .put(keyBytes);
+
+    if (valueBytes != null) {
+      record.put(valueBytes);
+    }
+
+    final CRC32 crc = new CRC32();
+
+    crc.update(record.array(), 4, recordLength - 4);
+    record.putInt(0, (int) crc.getValue());
+    record.flip();
+
+    final int position = segment.size;
+
+    segment.write(record, position);
+
+    if (syncWrites) {
+      segment.force();
+    }
+
+    segment.size += recordLength;
+
+    return new Location(
+        segment.id,
+        sequence,
+        position + HEADER_SIZE + keyBytes.length,
+        valueLength,
+        recordLength);
+  }
+
+  private void sealActive() throws IOException {
+    seal(active);
+    active = openSegment(nextSegmentId++, maxSegmentSize);
+  }
+
+  private void seal(final Segment segment) throws IOException {
+    segment.force();
+    segment.truncate();
+    writeHint(segment);
+  }
+
+  private Segment openMergeSegment(final int recordLength)
+      throws IOException {
+
+    writeLock.lock();
+
+    try {
+      return openSegment(
+          nextSegmentId++,
+          Math.max(maxSegmentSize, recordLength));
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private Segment openSegment(final long id, final int capacity)
+      throws IOException {
+
+    final Segment segment = new Segment(id, dataPath(id), capacity, 0);
+
+    segments.put(id, segment);
+
+    return segment;
+  }
+
+  private void delete(final Segment segment) throws IOException {
+    segments.remove(segment.id);
+    segment.close();
+    Files.deleteIfExists(dataPath(segment.id));
+    Files.deleteIfExists(hintPath(segment.id));
+  }
+
+  private void mergeIfStale() {
+
+    long sealedBytes = 0;
+    long staleBytes = 0;
+
+    for (final Segment segment : segments.values()) {
+      if (segment != active) {
+        sealedBytes += segment.size;
+        staleBytes += segment.staleBytes.get();
+      }
+    }
+
+    if (sealedBytes > 0 && staleBytes > sealedBytes * MERGE_THRESHOLD) {
+      try {
+        merge();
+      } catch (final UncheckedIOException | IllegalStateException e) {
+        // Retried on the next run.
+      }
+    }
+  }
+
+  private void load() throws IOException {
+
+    deleteSuperseded();
+
+    final List<Long> ids = new ArrayList<>();
+
+    try (final Stream<Path> paths = Files.list(directory)) {
+      for (final Path path : (Iterable<Path>) paths::iterator) {
+
+        final String fileName = path.getFileName().toString();
+
+        if (fileName.endsWith(TEMPORARY_SUFFIX)) {
+          Files.delete(path);
+        } else if (fileName.endsWith(DATA_SUFFIX)) {
+          ids.add(Long.parseLong(
+              fileName.substring(0, fileName.length() - DATA_SUFFIX.length())));
+        }
+      }
+    }
+
+    ids.sort(null);
+
+    final Map<String, Long> removed = new HashMap<>();
+
+    for (final long id : ids) {
+
+      List<HintEntry> entries = readHint(id);
+      final Segment segment;
+
+      if (entries == null) {
+        entries = new ArrayList<>();
+        segment = new Segment(id, dataPath(id), 0, scan(id, entries));
+        writeHint(segment);
+      } else {
+        segment = new Segment(id, dataPath(id), 0, -1);
+      }
+
+      segments.put(id, segment);
+
+      for (final HintEntry entry : entries) {
+        replay(entry, id, removed);
+      }
+
+      nextSegmentId = id + 1;
+    }
+
+    for (final Segment segment : segments.values()) {
+      segment.staleBytes.set(segment.size);
+    }
+
+    for (final Location location : index.values()) {
+      segments.get(location.segmentId()).staleBytes
+          .addAndGet(-location.recordLength());
+    }
+  }
+
+  private void replay(
+      final HintEntry entry,
+      final long segmentId,
+      final Map<String, Long> removed) {
+
+    nextSequence = Math.max(nextSequence, entry.sequence() + 1);
+
+    final Location current = index.get(entry.key());
+    final long currentSequence = current != null
+        ? current.sequence()
+        : removed.getOrDefault(entry.key(), -1L);
+
+    if (entry.sequence() < currentSequence) {
+      return;
+    }
+
+    if (entry.valueLength() == TOMBSTONE) {
+      index.remove(entry.key());
+      removed.put(entry.key(), entry.sequence());
+    } else {
+      removed.remove(entry.key());
+      index.put(entry.key(), new Location(
+          segmentId,
+          entry.sequence(),
+          entry.valueOffset(),
+          entry.valueLength(),
+          entry.recordLength()));
+    }
+  }
+
+  private int scan(final long id, final List<HintEntry> entries)
+      throws IOException {
+
+    try (final FileChannel channel =
+             FileChannel.open(dataPath(id), READ, WRITE)) {
+      return scan(channel, entries);
+    }
+  }
+
+  private int scan(final FileChannel channel, final List<HintEntry> entries)
+      throws IOException {
+
+    final long fileSize = Math.min(channel.size(), Integer.MAX_VALUE);
+    final ByteBuffer data =
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+    final CRC32 crc = new CRC32();
+
+    int position = 0;
+
+    while (position + HEADER_SIZE <= fileSize) {
+
+      final int keyLength = data.getInt(position + 12);
+      final int valueLength = data.getInt(position + 16);
+      final long recordLength =
+          (long) HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+
+      if (keyLength <= 0
+          || valueLength < TOMBSTONE
+          || position + recordLength > fileSize) {
+        break;
+      }
+
+      crc.reset();
+      crc.update(data.slice(position + 4, (int) recordLength - 4));
+
+      if ((int) crc.getValue() != data.getInt(position)) {
+        break;
+      }
+
+      final byte[] keyBytes = new byte[keyLength];
+
+      data.get(position + HEADER_SIZE, keyBytes);
+      entries.add(new HintEntry(
+          new String(keyBytes, UTF_8),
+          data.getLong(position + 4),
+          position + HEADER_SIZE + keyLength,
+          valueLength,
+          (int) recordLength));
+
+      position += (int) recordLength;
+    }
+
+    if (position < channel.size()) {
+      channel.truncate(position);
+    }
+
+    return position;
+  }
+
+  private List<HintEntry> readHint(final long id) throws IOException {
+
+    final Path hintPath = hintPath(id);
+
+    if (!Files.exists(hintPath)) {
+      return null;
+    }
+
+    final ByteBuffer hint = ByteBuffer.wrap(Files.readAllBytes(hintPath));
+    final CRC32 crc = new CRC32();
+
+    if (hint.limit() < 4) {
+      return null;
+    }
+
+    crc.update(hint.array(), 0, hint.limit() - 4);
+
+    if ((int) crc.getValue() != hint.getInt(hint.limit() - 4)) {
+      return null;
+    }
+
+    final List<HintEntry> entries = new ArrayList<>();
+
+    hint.limit(hint.limit() - 4);
+
+    while (hint.remaining() >= HINT_HEADER_SIZE) {
+
+      final long sequence = hint.getLong();
+      final int keyLength = hint.getInt();
+      final int valueLength = hint.getInt();
+      final int valueOffset = hint.getInt();
+      final int recordLength = hint.getInt();
+      final byte[] keyBytes = new byte[keyLength];
+
+      hint.get(keyBytes);
+      entries.add(new HintEntry(
+          new String(keyBytes, UTF_8),
+          sequence,
+          valueOffset,
+          valueLength,
+          recordLength));
+    }
+
+    return entries;
+  }
+
+  private void writeHint(final Segment segment) throws IOException {
+
+    final ByteBuffer data = segment.buffer;
+    final Path temporaryPath =
+        directory.resolve(hintPath(segment.id).getFileName()
+            + TEMPORARY_SUFFIX);
+    final CRC32 crc = new CRC32();
+
+    try (final FileChannel hint = FileChannel.open(
+        temporaryPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+
+      int position = 0;
+
+      while (position < segment.size) {
+
+        final int keyLength = data.getInt(position + 12);
+        final int valueLength = data.getInt(position + 16);
+        final int recordLength =
+            HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+        final ByteBuffer entry =
+            ByteBuffer.allocate(HINT_HEADER_SIZE + keyLength)
+                .putLong(data.getLong(position + 4))
+                .putInt(keyLength)
+                .putInt(valueLength)
+                .putInt(position + HEADER_SIZE + keyLength)
+                .putInt(recordLength)
+                .put(data.slice(position + HEADER_SIZE, keyLength));
+
+        crc.update(entry.array());
+        entry.flip();
+
+        while (entry.hasRemaining()) {
+          hint.write(entry);
+        }
+
+        position += recordLength;
+      }
+
+      final ByteBuffer checksum =
+          ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+
+      while (checksum.hasRemaining()) {
+        hint.write(checksum);
+      }
+
+      hint.force(false);
+    }
+
+    Files.move(
+        temporaryPath,
+        hintPath(segment.id),
+        ATOMIC_MOVE,
+        REPLACE_EXISTING);
+  }
+
+  /**
+   * <p>Records the ids of the segments a merge is about to delete, replacing
+   * the marker file in a single step once it has been forced to the storage
+   * device.</p>
+   */
+  private void writeSuperseded(final Set<Long> ids) throws IOException {
+
+    final ByteBuffer marker = ByteBuffer.allocate(Long.BYTES * ids.size() + 4);
+    final Path temporaryPath =
+        directory.resolve(SUPERSEDED_FILE_NAME + TEMPORARY_SUFFIX);
+    final CRC32 crc = new CRC32();
+
+    ids.forEach(marker::putLong);
+    crc.update(marker.array(), 0, marker.position());
+    marker.putInt((int) crc.getValue()).flip();
+
+    try (final FileChannel channel = FileChannel.open(
+        temporaryPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+
+      while (marker.hasRemaining()) {
+        channel.write(marker);
+      }
+
+      channel.force(false);
+    }
+
+    Files.move(
+        temporaryPath,
+        supersededPath(),
+        ATOMIC_MOVE,
+        REPLACE_EXISTING);
+  }
+
+  /**
+   * <p>Finishes the deletions of a merge that stopped part way, if a marker
+   * file was left behind. A marker that fails its checksum was never
+   * committed, so none of its segments are deleted.</p>
+   */
+  private void deleteSuperseded() throws IOException {
+
+    final Path supersededPath = supersededPath();
+
+    if (!Files.exists(supersededPath)) {
+      return;
+    }
+
+    final ByteBuffer marker =
+        ByteBuffer.wrap(Files.readAllBytes(supersededPath));
+    final CRC32 crc = new CRC32();
+
+    if (marker.limit() >= 4 && (marker.limit() - 4) % Long.BYTES == 0) {
+
+      crc.update(marker.array(), 0, marker.limit() - 4);
+
+      if ((int) crc.getValue() == marker.getInt(marker.limit() - 4)) {
+
+        marker.limit(marker.limit() - 4);
+
+        while (marker.hasRemaining()) {
+
+          final long id = marker.getLong();
+
+          Files.deleteIfExists(dataPath(id));
+          Files.deleteIfExists(hintPath(id));
+        }
+      }
+    }
+
+    Files.delete(supersededPath);
+  }
+
+  private static int recordLength(
+      final byte[] keyBytes,
+      final byte[] valueBytes) {
+
+    return HEADER_SIZE
+        + keyBytes.length
+        + (valueBytes == null ? 0 : valueBytes.length);
+  }
+
+  private Path dataPath(final long id) {
+    return directory.resolve(String.format("%012d%s", id, DATA_SUFFIX));
+  }
+
+  private Path hintPath(final long id) {
+    return directory.resolve(String.format("%012d%s", id, HINT_SUFFIX));
+  }
+
+  private Path supersededPath() {
+    return directory.resolve(SUPERSEDED_FILE_NAME);
+  }
+
+  private record Location(
+      long segmentId,
+      long sequence,
+      int valueOffset,
+      int valueLength,
+      int recordLength) { }
+
+  private record HintEntry(
+      String key,
+      long sequence,
+      int valueOffset,
+      int valueLength,
+      int recordLength) { }
+
+  private static final class Segment {
+
+    private final long id;
+    private final Path path;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private final AtomicLong staleBytes = new AtomicLong();
+
+    private FileChannel channel;
+    private volatile int size;
+
+    private Segment(
+        final long id,
+        final Path path,
+        final int capacity,
+        final int size) throws IOException {
+
+      this.id = id;
+      this.path = path;
+      this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+      this.size = size < 0 ? (int) channel.size() : size;
+      this.capacity = Math.max(capacity, this.size);
+
+      // Mapping the full capacity up front (which extends the file) lets
+      // appends through the channel become readable without remapping.
+      this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          this.capacity);
+    }
+
+    private byte[] read(final Location location) {
+
+      final byte[] bytes = new byte[location.valueLength()];
+
+      buffer.get(location.valueOffset(), bytes);
+
+      return bytes;
+    }
+
+    private void write(final ByteBuffer record, final int position)
+        throws IOException {
+
+      boolean interrupted = Thread.interrupted();
+
+      try {
+        while (record.hasRemaining()) {
+          try {
+            channel.write(record, position + record.position());
+          } catch (final ClosedByInterruptException e) {
+            interrupted |= Thread.interrupted();
+            channel = FileChannel.open(path, READ, WRITE);
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void force() throws IOException {
+
+      final boolean interrupted = Thread.interrupted();
+
+      try {
+        channel.force(false);
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void truncate() throws IOException {
+      channel.truncate(size);
+    }
+
+    private void close() throws IOException {
+      channel.close();
+    }
+
+  }
+
+}
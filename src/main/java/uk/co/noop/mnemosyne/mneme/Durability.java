@@ -0,0 +1,114 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.DurationEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.time.Duration;
+
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>How promptly the writes to a durable {@link LocalMneme} are forced to
+ * the storage device by its write-ahead log.</p>
+ *
+ * <ul>
+ *   <li>{@link #everyWrite()}: a write returns once it has been forced to the
+ *   device. Concurrent writers share each force (a <i>group commit</i>), so
+ *   the cost is spread between them.</li>
+ *   <li>{@link #periodic(Duration)}: writes are forced in the background at a
+ *   fixed interval, so a crash of the machine loses at most that interval of
+ *   writes.</li>
+ *   <li>{@link #operatingSystem()}: a write returns once it has been handed
+ *   to the operating system, which survives a crash of the process but leaves
+ *   forcing it to the device to the operating system.</li>
+ * </ul>
+ *
+ * @see LocalMneme#LocalMneme(java.nio.file.Path, Durability)
+ */
+public final class Durability {
+
+  private static final Durability EVERY_WRITE =
+      new Durability(Mode.EVERY_WRITE, Duration.ZERO);
+  private static final Durability OPERATING_SYSTEM =
+      new Durability(Mode.OPERATING_SYSTEM, Duration.ZERO);
+
+  private final Mode mode;
+  private final Duration interval;
+
+  private Durability(final Mode mode, final Duration interval) {
+    this.mode = mode;
+    this.interval = interval;
+  }
+
+  /**
+   * <p>Returns the <code>Durability</code> that forces every write to the
+   * storage device before it returns.</p>
+   *
+   * @return the <code>Durability</code> of every write
+   */
+  public static Durability everyWrite() {
+    return EVERY_WRITE;
+  }
+
+  /**
+   * <p>Returns the <code>Durability</code> that forces writes to the storage
+   * device every <b>interval</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>interval</b> parameter is validated against <code>null</code>,
+   * zero and negative durations using {@link Themis}. (See: {@link
+   * DurationEunomia#againstNonPositiveDurations()} for more information.)</p>
+   *
+   * @param interval how often writes are forced to the storage device
+   *
+   * @return the periodic <code>Durability</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see DurationEunomia#againstNonPositiveDurations()
+   */
+  public static Durability periodic(final Duration interval) {
+
+    validate("interval", interval, DurationEunomia.class)
+        .againstNonPositiveDurations();
+
+    return new Durability(Mode.PERIODIC, interval);
+  }
+
+  /**
+   * <p>Returns the <code>Durability</code> that hands every write to the
+   * operating system before it returns, and leaves forcing it to the storage
+   * device to the operating system.</p>
+   *
+   * @return the <code>Durability</code> managed by the operating system
+   */
+  public static Durability operatingSystem() {
+    return OPERATING_SYSTEM;
+  }
+
+  Mode getMode() {
+    return mode;
+  }
+
+  Duration getInterval() {
+    return interval;
+  }
+
+  @Override
+  public String toString() {
+    return mode == Mode.PERIODIC
+        ? "Durability[" + mode + ", " + interval + "]"
+        : "Durability[" + mode + "]";
+  }
+
+  enum Mode {
+    EVERY_WRITE,
+    PERIODIC,
+    OPERATING_SYSTEM
+  }
+
+}
@@ -0,0 +1,17 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>Receives a change to, or an entry of, a {@link LocalMneme} as it is
+ * journalled, snapshotted or replayed: its key, its value (or
+ * <code>null</code> if it was removed) and the epoch millisecond it expires
+ * at (or zero if it does not expire).</p>
+ *
+ * @see WriteAheadLog
+ * @see ReplicationPrimary
+ */
+@FunctionalInterface
+interface EntryConsumer {
+
+  void accept(String key, String value, long deadline);
+
+}
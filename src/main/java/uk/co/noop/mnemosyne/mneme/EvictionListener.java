@@ -0,0 +1,21 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>A listener that is notified when a bounded {@link LocalMneme} evicts an
+ * entry to stay within its maximum weight.</p>
+ *
+ * @see LocalMneme#LocalMneme(long, EvictionListener)
+ */
+@FunctionalInterface
+public interface EvictionListener {
+
+  /**
+   * <p>Called once for every evicted entry, on the thread whose write caused
+   * the eviction, after that write has completed.</p>
+   *
+   * @param key the key of the evicted entry
+   * @param value the value of the evicted entry
+   */
+  void onEviction(String key, String value);
+
+}
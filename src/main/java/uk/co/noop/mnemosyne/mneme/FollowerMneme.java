@@ -0,0 +1,520 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.themis.Themis;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+
+/**
+ * <p>A read-only {@link Mneme} that follows a replicated {@link LocalMneme},
+ * possibly in another JVM, serving reads of its entries locally.</p>
+ *
+ * <p>A <code>FollowerMneme</code> connects to a {@link ReplicationPrimary}
+ * over TCP and bootstraps from a snapshot of its entries, then applies every
+ * later write as it is streamed, in the order it was made to each key. Until
+ * the first snapshot has been received, it is empty. If the connection is
+ * lost, it keeps serving the entries it has and reconnects in the background,
+ * replacing them with a new snapshot once it has been received in full.</p>
+ *
+ * <p>Replication is asynchronous, so reads may not yet reflect the latest
+ * writes of the primary. How far behind a follower is can be read from
+ * {@link #getReplicationStatus()}, and a reader that needs a given write can
+ * wait for it with {@link #awaitSequence(long, Duration)}.</p>
+ *
+ * <p>Writes throw <code>UnsupportedOperationException</code>.</p>
+ *
+ * <p>For example;</p>
+ *
+ * <pre>
+ * try (final FollowerMneme mneme = new FollowerMneme(
+ *     new InetSocketAddress("primary.example.com", 7070))) {
+ *   mneme.get("id123");
+ * }
+ * </pre>
+ *
+ * @see Mneme
+ * @see ReplicationPrimary
+ * @see LocalMneme#LocalMneme(ReplicationPrimary)
+ */
+public class FollowerMneme extends AbstractMneme implements AutoCloseable {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+  private static final long RECONNECT_DELAY_MILLIS = 500;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InetSocketAddress primary;
+  private final ExecutorService executor;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition applied = lock.newCondition();
+
+  private volatile LocalMneme replica = new LocalMneme();
+  private volatile Socket socket;
+  private volatile boolean connected;
+  private volatile boolean closed;
+  private volatile long appliedSequence = -1;
+  private volatile long primarySequence;
+  private volatile long lagMillis;
+
+  /**
+   * <p>Creates a new instance of <code>FollowerMneme</code>, following the
+   * {@link ReplicationPrimary} listening on the specified <b>primary</b>
+   * address. The connection is made in the background, and retried until the
+   * follower is closed.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>primary</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param primary The address of the primary to follow.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see ReplicationPrimary#getAddress()
+   */
+  public FollowerMneme(final InetSocketAddress primary) {
+
+    super();
+
+    checkNotNull("primary", primary);
+
+    this.primary = primary;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-follower");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    executor.execute(this::follow);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+    return replica.containsKey(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+    return replica.containsValue(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this <code>Mneme</code> contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+    return replica.get(key);
+  }
+
+  /**
+   * <p>Not supported; a <code>FollowerMneme</code> is only written by its
+   * primary.</p>
+   *
+   * @param key ignored
+   * @param value ignored
+   *
+   * @return never
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public String put(final String key, final String value) {
+    throw new UnsupportedOperationException("FollowerMneme is read-only");
+  }
+
+  /**
+   * <p>Not supported; a <code>FollowerMneme</code> is only written by its
+   * primary.</p>
+   *
+   * @param key ignored
+   *
+   * @return never
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public String remove(final String key) {
+    throw new UnsupportedOperationException("FollowerMneme is read-only");
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The view is read-only, like the <code>FollowerMneme</code>.</p>
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(replica.keySet());
+  }
+
+  /**
+   * <p>Returns how far this follower is behind its primary.</p>
+   *
+   * @return the current {@link ReplicationStatus}
+   */
+  public ReplicationStatus getReplicationStatus() {
+    return new ReplicationStatus(
+        connected,
+        appliedSequence,
+        primarySequence,
+        Duration.ofMillis(lagMillis));
+  }
+
+  /**
+   * <p>Waits until this follower has applied every write of its primary up
+   * to the specified <b>sequence</b>, or the specified <b>timeout</b> has
+   * passed.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>timeout</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param sequence the sequence to wait for, as returned by {@link
+   *                 ReplicationPrimary#getSequence()}
+   * @param timeout how long to wait
+   *
+   * @return <code>true</code> if the <b>sequence</b> has been applied, or
+   * <code>false</code> if the <b>timeout</b> passed first
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws InterruptedException if the current thread is interrupted while
+   * waiting
+   *
+   * @see Themis
+   * @see ReplicationPrimary#getSequence()
+   */
+  public boolean awaitSequence(final long sequence, final Duration timeout)
+      throws InterruptedException {
+
+    checkNotNull("timeout", timeout);
+
+    long remaining = timeout.toNanos();
+
+    lock.lock();
+
+    try {
+      while (appliedSequence < sequence) {
+
+        if (remaining <= 0) {
+          return false;
+        }
+
+        remaining = applied.awaitNanos(remaining);
+      }
+
+      return true;
+
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * <p>Disconnects from the primary and stops following it. The entries
+   * already applied remain readable.</p>
+   */
+  @Override
+  public void close() {
+
+    closed = true;
+
+    final Socket current = socket;
+
+    if (current != null) {
+      try {
+        current.close();
+      } catch (final IOException e) {
+        // Nothing more can be done; the socket is released either way.
+      }
+    }
+
+    executor.shutdownNow();
+  }
+
+  private void follow() {
+
+    while (!closed) {
+
+      try (Socket connection = new Socket()) {
+
+        socket = connection;
+
+        if (closed) {
+          return;
+        }
+
+        connection.connect(primary, CONNECT_TIMEOUT_MILLIS);
+        connection.setTcpNoDelay(true);
+
+        final DataInputStream input = new DataInputStream(
+            new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE));
+
+        if (input.readLong() != ReplicationProtocol.MAGIC) {
+          throw new IOException("Not a replication primary: " + primary);
+        }
+
+        connected = true;
+        bootstrap(input);
+
+        while (!closed) {
+          apply(input);
+        }
+
+      } catch (final IOException e) {
+        // Reconnected below, bootstrapping from a new snapshot.
+      } finally {
+        connected = false;
+      }
+
+      try {
+        TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+      } catch (final InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * <p>Reads a snapshot into a new replica, which replaces the current one
+   * once it is complete, so reads are never served from a partial
+   * snapshot.</p>
+   */
+  private void bootstrap(final DataInputStream input) throws IOException {
+
+    final LocalMneme bootstrapped = new LocalMneme();
+
+    while (true) {
+
+      final byte type = input.readByte();
+
+      if (type == ReplicationProtocol.SNAPSHOT_END) {
+
+        final long sequence = input.readLong();
+
+        // A primary that has restarted numbers its writes from zero again.
+        replica = bootstrapped;
+        primarySequence = sequence;
+        advance(sequence);
+
+        return;
+      }
+
+      if (type != ReplicationProtocol.ENTRY) {
+        throw new IOException("Unexpected frame during bootstrap: " + type);
+      }
+
+      restore(
+          bootstrapped,
+          ReplicationProtocol.readString(input),
+          ReplicationProtocol.readString(input),
+          input.readLong());
+    }
+  }
+
+  private void apply(final DataInputStream input) throws IOException {
+
+    final byte type = input.readByte();
+    final long sequence = input.readLong();
+    final long timestamp = input.readLong();
+
+    if (type == ReplicationProtocol.MUTATION) {
+
+      restore(
+          replica,
+          ReplicationProtocol.readString(input),
+          ReplicationProtocol.readString(input),
+          input.readLong());
+
+    } else if (type == ReplicationProtocol.BATCH) {
+      restore(replica, ReplicationProtocol.readBatch(input));
+    } else if (type != ReplicationProtocol.HEARTBEAT) {
+      throw new IOException("Unexpected frame: " + type);
+    }
+
+    primarySequence = Math.max(primarySequence, sequence);
+    lagMillis = Math.max(0, System.currentTimeMillis() - timestamp);
+    advance(sequence);
+  }
+
+  private void advance(final long sequence) {
+
+    lock.lock();
+
+    try {
+      appliedSequence = sequence;
+      applied.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void restore(
+      final LocalMneme target,
+      final String key,
+      final String value,
+      final long deadline) {
+
+    if (value == null) {
+      target.remove(key);
+      return;
+    }
+
+    if (deadline == 0) {
+      target.put(key, value);
+      return;
+    }
+
+    final long timeToLive = deadline - System.currentTimeMillis();
+
+    if (timeToLive > 0) {
+      target.put(key, value, Duration.ofMillis(timeToLive));
+    } else {
+      target.remove(key);
+    }
+  }
+
+  /**
+   * <p>Restores the <b>changes</b> of a {@link WriteBatch} as a single atomic
+   * step, as the primary applied them.</p>
+   */
+  private static void restore(
+      final LocalMneme target,
+      final List<JournalEntry> changes) {
+
+    final long now = System.currentTimeMillis();
+    final Map<String, String> updates = new HashMap<>();
+    final Map<String, Long> timesToLive = new HashMap<>();
+
+    for (final JournalEntry change : changes) {
+
+      final long deadline = change.deadline();
+      final long timeToLive = deadline - now;
+
+      if (change.value() == null || deadline != 0 && timeToLive <= 0) {
+        updates.put(change.key(), WriteBatch.REMOVED);
+        continue;
+      }
+
+      updates.put(change.key(), change.value());
+
+      if (deadline != 0) {
+        timesToLive.put(change.key(), MILLISECONDS.toNanos(timeToLive));
+      }
+    }
+
+    target.apply(updates, key -> timesToLive.getOrDefault(key, 0L));
+  }
+
+  /**
+   * <p>How far a {@link FollowerMneme} is behind its primary.</p>
+   *
+   * @param connected whether the follower is connected to its primary
+   * @param appliedSequence the sequence of the latest write applied, or
+   *                        <code>-1</code> until the first snapshot has been
+   *                        received
+   * @param primarySequence the latest sequence of the primary the follower
+   *                        has been told of
+   * @param lag how long the latest write or heartbeat took to be applied
+   *            after the primary sent it, as measured by the clocks of the
+   *            primary and the follower
+   */
+  public record ReplicationStatus(
+      boolean connected,
+      long appliedSequence,
+      long primarySequence,
+      Duration lag) {
+
+    /**
+     * <p>Returns the number of writes of the primary the follower has yet to
+     * apply, as far as it has been told.</p>
+     *
+     * @return the number of writes behind
+     */
+    public long sequenceLag() {
+      return Math.max(0, primarySequence - appliedSequence);
+    }
+
+  }
+
+}
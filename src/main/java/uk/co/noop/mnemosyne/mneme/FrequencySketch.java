@@ -0,0 +1,126 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>A Count-Min sketch of 4-bit counters, used to estimate how often each key
+ * has been accessed recently.</p>
+ *
+ * <p>Each key is counted in four of the sixteen counters packed into a
+ * <code>long</code>, in four different rows of the table, and its frequency is
+ * the smallest of the four. Once the number of increments reaches ten times
+ * the table size every counter is halved, so that the estimates age and keys
+ * that were only popular in the past lose their advantage.</p>
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L,
+      0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MINIMUM_CAPACITY = 1 << 4;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private long[] table = new long[MINIMUM_CAPACITY];
+  private int sampleSize = 10 * MINIMUM_CAPACITY;
+  private int size;
+
+  /**
+   * <p>Grows the table, discarding the current counts, if it is too small to
+   * count <b>expectedKeys</b> keys accurately.</p>
+   */
+  void ensureCapacity(final int expectedKeys) {
+
+    if (expectedKeys <= table.length || table.length == MAXIMUM_CAPACITY) {
+      return;
+    }
+
+    final int capacity = Math.min(
+        MAXIMUM_CAPACITY,
+        Integer.highestOneBit(expectedKeys - 1) << 1);
+
+    table = new long[capacity];
+    sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    size = 0;
+  }
+
+  int frequency(final String key) {
+
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+
+    int frequency = Integer.MAX_VALUE;
+
+    for (int i = 0; i < SEEDS.length; i++) {
+
+      final int count =
+          (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xFL);
+
+      frequency = Math.min(frequency, count);
+    }
+
+    return frequency;
+  }
+
+  void increment(final String key) {
+
+    final int hash = spread(key.hashCode());
+    final int start = (hash & 3) << 2;
+
+    boolean added = false;
+
+    for (int i = 0; i < SEEDS.length; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(final int index, final int counter) {
+
+    final int offset = counter << 2;
+    final long mask = 0xFL << offset;
+
+    if ((table[index] & mask) == mask) {
+      return false;
+    }
+
+    table[index] += 1L << offset;
+
+    return true;
+  }
+
+  private void reset() {
+
+    int odd = 0;
+
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(final int hash, final int row) {
+
+    long index = (hash + SEEDS[row]) * SEEDS[row];
+
+    index += index >>> 32;
+
+    return (int) index & (table.length - 1);
+  }
+
+  private static int spread(final int hash) {
+
+    int spread = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+
+    spread = ((spread >>> 16) ^ spread) * 0x45d9f3b;
+
+    return (spread >>> 16) ^ spread;
+  }
+
+}
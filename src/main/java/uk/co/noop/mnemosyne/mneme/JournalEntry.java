@@ -0,0 +1,12 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>A change to a {@link LocalMneme} as it is journalled or replicated: its
+ * key, its value (or <code>null</code> if it was removed) and the epoch
+ * millisecond it expires at (or zero if it does not expire).</p>
+ *
+ * @see WriteAheadLog
+ * @see ReplicationPrimary
+ */
+record JournalEntry(String key, String value, long deadline) {
+}
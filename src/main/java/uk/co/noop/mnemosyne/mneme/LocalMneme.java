@@ -1,28 +1,478 @@
 package uk.co.noop.mnemosyne.mneme;
 
+import uk.co.noop.mnemosyne.eunomia.DurationEunomia;
+import uk.co.noop.mnemosyne.eunomia.LongEunomia;
 import uk.co.noop.themis.Themis;
 
-import java.util.HashMap;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 
-import static uk.co.noop.themis.Themis.validate;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotEmpty;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkPositive;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkWritable;
+import static uk.co.noop.mnemosyne.mneme.WriteBatch.REMOVED;
 
 /**
  * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
  * pairs locally.</p>
  *
+ * <p><code>LocalMneme</code> instances are safe for concurrent use. Reads are
+ * lock-free and writes only contend when they target the same key. (See:
+ * {@link ConcurrentHashMap} for more information.) The atomic operations
+ * inherited from <code>Map</code> (e.g. {@link #putIfAbsent(String, String)},
+ * {@link #compute(String, BiFunction)} and
+ * {@link #merge(String, String, BiFunction)}) are applied as a single atomic
+ * step.</p>
+ *
+ * <p>A <code>LocalMneme</code> is unbounded by default. It can instead be
+ * given a maximum weight, in bytes, in which case entries are evicted to stay
+ * within it. Eviction follows a <i>Window TinyLFU</i> policy: recently added
+ * entries are held in a small window, and only displace established entries
+ * if they are estimated to be used more often, so a one-off scan of many keys
+ * does not flush the frequently used ones. Reads of a bounded
+ * <code>LocalMneme</code> remain lock-free, but its writes are serialised.
+ * (See: {@link #LocalMneme(long, EvictionListener)} and
+ * {@link #getStatistics()} for more information.)</p>
+ *
+ * <p>Entries can also be given a time-to-live, either per entry or as a
+ * default for every write, after which they expire. Expired entries are
+ * hidden from reads immediately, and removed by a hierarchical timing wheel
+ * as later writes advance it, so expiring an entry takes constant time and
+ * never requires a scan of the <code>LocalMneme</code>. (See:
+ * {@link #put(String, String, Duration)} and
+ * {@link #LocalMneme(Duration)} for more information.)</p>
+ *
+ * <p>A <code>LocalMneme</code> can be made durable by a write-ahead log in a
+ * directory, from which its entries are restored when it is next created.
+ * Every write is appended to the log before it returns, and forced to the
+ * storage device as promptly as its {@link Durability} requires; concurrent
+ * writers share each force. The log is periodically replaced by a snapshot of
+ * the entries, so restoring them does not replay the full history of writes.
+ * (See: {@link #LocalMneme(Path, Durability)} and {@link #close()} for more
+ * information.)</p>
+ *
+ * <p>A <code>LocalMneme</code> can also be replicated to other JVMs, whose
+ * {@link FollowerMneme}s apply its writes as they are streamed to them over
+ * TCP and serve reads locally. (See: {@link
+ * #LocalMneme(ReplicationPrimary)} for more information.)</p>
+ *
+ * <p>Related writes can be grouped into a {@link WriteBatch}, which is
+ * applied as a single atomic step that readers see all at once. (See: {@link
+ * #apply(WriteBatch)} for more information.)</p>
+ *
  * @see Mneme
+ * @see ConcurrentHashMap
  */
-public class LocalMneme extends AbstractMneme {
+public class LocalMneme extends AbstractMneme implements AutoCloseable {
+
+  private static final Duration MAXIMUM_TIME_TO_LIVE =
+      Duration.ofNanos(Long.MAX_VALUE >>> 1);
 
-  private final Map<String, String> map = new HashMap<>();
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(
+          EnumSet.of(Capability.CHEAP_SIZE));
+
+  // Returned by the functions passed to change(...) when they leave the
+  // current value in place. Compared by reference, so it is never confused
+  // with a value.
+  private static final String UNCHANGED = new String();
+
+  private final Map<String, String> map = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Set<String> keys = new KeySet();
+  private final Map<String, TimingWheel.Timer> timers =
+      new ConcurrentHashMap<>();
+  // Held shared by journalled changes and exclusively to start a snapshot of
+  // the journal, so that the snapshot sees every change already journalled.
+  private final ReadWriteLock journal = new ReentrantReadWriteLock();
+  // Held while a WriteBatch is applied. Its updates are published in
+  // batched, which reads consult before the map, until every one of them has
+  // been written to the map.
+  private final ReentrantLock batches = new ReentrantLock();
+  private volatile Batch batched;
+  private final Ticker ticker;
+  private final TimingWheel wheel;
+  private final WindowTinyLfuPolicy policy;
+  private final long defaultTimeToLive;
+  private final WriteAheadLog log;
+  private final ReplicationPrimary primary;
 
   /**
-   * <p>Creates a new instance of <code>LocalMneme</code>.</p>
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code>.</p>
    */
   public LocalMneme() {
+    this(Ticker.SYSTEM);
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> that
+   * reads the time from the specified <b>ticker</b>.</p>
+   */
+  LocalMneme(final Ticker ticker) {
+
+    super();
+
+    this.ticker = ticker;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = null;
+    this.defaultTimeToLive = 0;
+    this.log = null;
+    this.primary = null;
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> whose
+   * entries expire the specified <b>defaultTimeToLive</b> after they are
+   * written, unless a time-to-live is given for the write.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>defaultTimeToLive</b> parameter is validated against
+   * <code>null</code>, zero and negative durations using {@link Themis}. (See:
+   * {@link DurationEunomia#againstNonPositiveDurations()} for more
+   * information.)</p>
+   *
+   * @param defaultTimeToLive The time-to-live of entries written without one.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see DurationEunomia#againstNonPositiveDurations()
+   * @see #put(String, String, Duration)
+   */
+  public LocalMneme(final Duration defaultTimeToLive) {
+    this(defaultTimeToLive, Ticker.SYSTEM);
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> whose
+   * entries expire the specified <b>defaultTimeToLive</b> after they are
+   * written, reading the time from the specified <b>ticker</b>.</p>
+   *
+   * @see #LocalMneme(Duration)
+   */
+  LocalMneme(final Duration defaultTimeToLive, final Ticker ticker) {
+
+    super();
+
+    checkPositive("defaultTimeToLive", defaultTimeToLive);
+
+    this.ticker = ticker;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = null;
+    this.defaultTimeToLive = toNanos(defaultTimeToLive);
+    this.log = null;
+    this.primary = null;
+  }
+
+  /**
+   * <p>Creates a new instance of <code>LocalMneme</code> bounded by the
+   * specified <b>maximumWeight</b>.</p>
+   *
+   * @param maximumWeight The maximum total weight of the entries, in bytes,
+   *                      where the weight of an entry is the size of its key
+   *                      and value held as UTF-16 (two bytes per
+   *                      <code>char</code>).
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see LongEunomia#againstNonPositiveLongs()
+   */
+  public LocalMneme(final long maximumWeight) {
+    this(maximumWeight, null);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>LocalMneme</code> bounded by the
+   * specified <b>maximumWeight</b>, notifying the specified <b>listener</b> of
+   * every eviction.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>maximumWeight</b> parameter is validated against non-positive
+   * values using {@link Themis}. (See: {@link
+   * LongEunomia#againstNonPositiveLongs()} for more information.)</p>
+   *
+   * @param maximumWeight The maximum total weight of the entries, in bytes,
+   *                      where the weight of an entry is the size of its key
+   *                      and value held as UTF-16 (two bytes per
+   *                      <code>char</code>).
+   * @param listener The listener to notify of evictions, or <code>null</code>
+   *                 for none. It is called on the writing thread once the
+   *                 write that caused the eviction has completed, and any
+   *                 exception it throws is passed on to that writer.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see LongEunomia#againstNonPositiveLongs()
+   */
+  public LocalMneme(
+      final long maximumWeight,
+      final EvictionListener listener) {
+
+    super();
+
+    checkPositive("maximumWeight", maximumWeight);
+
+    this.ticker = Ticker.SYSTEM;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = new WindowTinyLfuPolicy(map, maximumWeight, listener);
+    this.defaultTimeToLive = 0;
+    this.log = null;
+    this.primary = null;
+  }
+
+  /**
+   * <p>Creates a new instance of <code>LocalMneme</code> bounded by the
+   * specified <b>maximumWeight</b>, notifying the specified <b>listener</b> of
+   * every eviction, whose entries expire the specified
+   * <b>defaultTimeToLive</b> after they are written, unless a time-to-live is
+   * given for the write.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>maximumWeight</b> parameter is validated against non-positive
+   * values, and the <b>defaultTimeToLive</b> parameter against
+   * <code>null</code>, zero and negative durations, using {@link Themis}.
+   * (See: {@link LongEunomia#againstNonPositiveLongs()} and {@link
+   * DurationEunomia#againstNonPositiveDurations()} for more information.)</p>
+   *
+   * @param maximumWeight The maximum total weight of the entries, in bytes,
+   *                      where the weight of an entry is the size of its key
+   *                      and value held as UTF-16 (two bytes per
+   *                      <code>char</code>).
+   * @param listener The listener to notify of evictions, or <code>null</code>
+   *                 for none. Expired entries are not passed to it.
+   * @param defaultTimeToLive The time-to-live of entries written without one.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see LongEunomia#againstNonPositiveLongs()
+   * @see DurationEunomia#againstNonPositiveDurations()
+   */
+  public LocalMneme(
+      final long maximumWeight,
+      final EvictionListener listener,
+      final Duration defaultTimeToLive) {
+
+    this(maximumWeight, listener, defaultTimeToLive, Ticker.SYSTEM);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>LocalMneme</code> bounded by the
+   * specified <b>maximumWeight</b>, whose entries expire the specified
+   * <b>defaultTimeToLive</b> after they are written, reading the time from
+   * the specified <b>ticker</b>.</p>
+   *
+   * @see #LocalMneme(long, EvictionListener, Duration)
+   */
+  LocalMneme(
+      final long maximumWeight,
+      final EvictionListener listener,
+      final Duration defaultTimeToLive,
+      final Ticker ticker) {
+
+    super();
+
+    checkPositive("maximumWeight", maximumWeight);
+    checkPositive("defaultTimeToLive", defaultTimeToLive);
+
+    this.ticker = ticker;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = new WindowTinyLfuPolicy(map, maximumWeight, listener);
+    this.defaultTimeToLive = toNanos(defaultTimeToLive);
+    this.log = null;
+    this.primary = null;
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> made
+   * durable by a write-ahead log in the specified <b>directory</b>, restoring
+   * the entries written to it before. Entries that have expired since are not
+   * restored.</p>
+   *
+   * <p>Every write is appended to the log, and made as durable as the
+   * specified <b>durability</b> requires, before it returns. Once the log
+   * grows large, it is replaced in the background by a snapshot of the
+   * entries. A write that is interrupted by a crash is either restored in
+   * full or not at all.</p>
+   *
+   * <p>Only one <code>LocalMneme</code> may use a <b>directory</b> at a time,
+   * and it should be closed once it is no longer needed.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>directory</b> and <b>durability</b> parameters are validated
+   * against <code>null</code> using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param directory The directory of the write-ahead log, which is created
+   *                  if it does not exist.
+   * @param durability How promptly writes are forced to the storage device.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws java.io.UncheckedIOException if the log could not be read or
+   * created.
+   *
+   * @see Themis
+   * @see Durability
+   * @see #snapshot()
+   * @see #close()
+   */
+  public LocalMneme(final Path directory, final Durability durability) {
+    this(directory, durability, Ticker.SYSTEM);
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> made
+   * durable by a write-ahead log in the specified <b>directory</b>, reading
+   * the time from the specified <b>ticker</b>.</p>
+   *
+   * @see #LocalMneme(Path, Durability)
+   */
+  LocalMneme(
+      final Path directory,
+      final Durability durability,
+      final Ticker ticker) {
+
+    super();
+
+    checkNotNull("directory", directory);
+    checkNotNull("durability", durability);
+
+    // Assigned before the log, which restores its entries through them.
+    this.ticker = ticker;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = null;
+    this.defaultTimeToLive = 0;
+    this.log = new WriteAheadLog(
+        directory,
+        durability,
+        this::restore,
+        this::entries,
+        journal.writeLock());
+    this.primary = null;
+  }
+
+  /**
+   * <p>Creates a new, unbounded, instance of <code>LocalMneme</code> that is
+   * replicated by the specified <b>primary</b> to its followers. Each
+   * follower bootstraps from a snapshot of the entries, then applies every
+   * later write in the order it was made to each key. (See: {@link
+   * FollowerMneme} for more information.)</p>
+   *
+   * <p>Writes are shipped asynchronously, so they never wait for a follower.
+   * Once the <b>primary</b> has been closed, writes throw {@link
+   * IllegalStateException} rather than diverge from the followers.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>primary</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param primary The primary to replicate through, which must not already
+   *                replicate another <code>LocalMneme</code>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if the <b>primary</b> already replicates
+   * a <code>LocalMneme</code>, or has been closed.
+   *
+   * @see Themis
+   * @see ReplicationPrimary
+   * @see FollowerMneme
+   */
+  public LocalMneme(final ReplicationPrimary primary) {
+
     super();
+
+    checkNotNull("primary", primary);
+
+    this.ticker = Ticker.SYSTEM;
+    this.wheel = new TimingWheel(ticker.nanoTime());
+    this.policy = null;
+    this.defaultTimeToLive = 0;
+    this.log = null;
+    this.primary = primary;
+
+    primary.attach(this::entries, journal.writeLock());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entries are counted without being copied. Only the timers that
+   * have come due are visited to remove expired entries, and the increments
+   * of counters that have not been stored yet are counted without being
+   * stored.</p>
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+
+    expireEntries(true);
+
+    int size = map.size();
+
+    if (counters.isEmpty()) {
+      return size;
+    }
+
+    for (final Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+      if (counter.getValue().sum() != 0
+          && !map.containsKey(counter.getKey())) {
+        size++;
+      }
+    }
+
+    return size;
   }
 
   /**
@@ -45,9 +495,19 @@ public class LocalMneme extends AbstractMneme {
   @Override
   public boolean containsKey(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
+
+    final String pending = batched(key);
+
+    if (pending != null) {
+      return pending != REMOVED;
+    }
 
-    return map.containsKey(key);
+    foldCounter(key);
+
+    final String value = map.get(key);
+
+    return value != null && !hasExpired(key, value);
   }
 
   /**
@@ -70,9 +530,22 @@ public class LocalMneme extends AbstractMneme {
   @Override
   public boolean containsValue(final String value) {
 
-    validate("value", value).againstBlankStrings();
+    checkNotBlank("value", value);
+    foldCounters();
+
+    if (timers.isEmpty()) {
+      return map.containsValue(value);
+    }
+
+    final long now = ticker.nanoTime();
 
-    return map.containsValue(value);
+    return map.entrySet()
+        .stream()
+        .anyMatch(entry -> entry.getValue().equals(value)
+            && !hasExpired(
+                timers.get(entry.getKey()),
+                entry.getValue(),
+                now));
   }
 
   /**
@@ -97,9 +570,35 @@ public class LocalMneme extends AbstractMneme {
   @Override
   public String get(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
+
+    return read(key);
+  }
+
+  /**
+   * <p>Reads the value of an already validated <b>key</b>, as {@link
+   * #get(String)} does.</p>
+   */
+  private String read(final String key) {
+
+    final String pending = batched(key);
+    final String value;
+    final boolean hit;
+
+    if (pending == null) {
+      foldCounter(key);
+      value = map.get(key);
+      hit = value != null && !hasExpired(key, value);
+    } else {
+      value = pending;
+      hit = pending != REMOVED;
+    }
+
+    if (policy != null) {
+      policy.recordRead(key, hit);
+    }
 
-    return map.get(key);
+    return hit ? value : null;
   }
 
   /**
@@ -126,10 +625,75 @@ public class LocalMneme extends AbstractMneme {
   @Override
   public String put(final String key, final String value) {
 
-    validate("key", key).againstBlankStrings();
-    validate("value", value).againstBlankStrings();
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
 
-    return map.put(key, value);
+    return store(key, value);
+  }
+
+  /**
+   * <p>Stores an already validated <b>key</b> and <b>value</b>, as {@link
+   * #put(String, String)} does.</p>
+   */
+  private String store(final String key, final String value) {
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(key, defaultTimeToLive, current -> value).previous;
+    }
+
+    return write(key, () -> map.put(key, value));
+  }
+
+  /**
+   * <p>Associates the specified <b>value</b> with the specified <b>key</b>
+   * until the specified <b>timeToLive</b> has passed, after which the entry
+   * expires. A later write of the <b>key</b> replaces the time-to-live with
+   * its own, or the default time-to-live of this <code>LocalMneme</code> if it
+   * has none.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> and <b>value</b> parameters are validated against
+   * <code>null</code>, empty and whitespace-only strings, and the
+   * <b>timeToLive</b> parameter against <code>null</code>, zero and negative
+   * durations, using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()} and
+   * {@link DurationEunomia#againstNonPositiveDurations()} for more
+   * information.)</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   * @param timeToLive how long the entry is kept
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no unexpired mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme#put(String, String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see DurationEunomia#againstNonPositiveDurations()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public String put(
+      final String key,
+      final String value,
+      final Duration timeToLive) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    checkPositive("timeToLive", timeToLive);
+
+    expireEntries(false);
+    foldCounter(key);
+
+    return change(key, toNanos(timeToLive), current -> value).previous;
   }
 
   /**
@@ -152,21 +716,1289 @@ public class LocalMneme extends AbstractMneme {
   @Override
   public String remove(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
+
+    expireEntries(false);
+    foldCounter(key);
 
-    return map.remove(key);
+    if (requiresChange(key)) {
+      return change(key, 0, current -> null).previous;
+    }
+
+    return write(key, () -> map.remove(key));
   }
 
   /**
    * {@inheritDoc}
    *
+   * <p>Removing a key through the view, or its iterator, removes it as
+   * {@link #remove(String)} does, so that the removal is journalled,
+   * replicated and cancels the expiry of the entry.</p>
+   *
    * @return a set view of the keys contained in this {@link Mneme}
    *
    * @see Mneme
    */
   @Override
   public Set<String> keySet() {
-    return map.keySet();
+
+    expireEntries(true);
+    foldCounters();
+
+    return keys;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The check and the store are applied as a single atomic operation.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String putIfAbsent(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> current == null ? value : UNCHANGED).previous;
+    }
+
+    return write(key, () -> map.putIfAbsent(key, value));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The check and the removal are applied as a single atomic
+   * operation.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value expected to be associated with the specified
+   *              <b>key</b>
+   *
+   * @return <code>true</code> if the value was removed
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean remove(final Object key, final Object value) {
+
+    checkNotNull("key", key);
+    checkNotNull("value", value);
+
+    if (!(key instanceof String)) {
+      return map.remove(key, value);
+    }
+
+    final String keyString = (String) key;
+
+    expireEntries(false);
+    foldCounter(keyString);
+
+    if (requiresChange(keyString)) {
+      return change(
+          keyString,
+          0,
+          current -> value.equals(current) ? null : UNCHANGED).written;
+    }
+
+    return write(keyString, () -> map.remove(key, value));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The check and the store are applied as a single atomic operation.</p>
+   *
+   * @param key key with which the specified <b>oldValue</b> is associated
+   * @param oldValue value expected to be associated with the specified
+   *                 <b>key</b>
+   * @param newValue value to be associated with the specified <b>key</b>
+   *
+   * @return <code>true</code> if the value was replaced
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean replace(
+      final String key,
+      final String oldValue,
+      final String newValue) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("oldValue", oldValue);
+    checkNotBlank("newValue", newValue);
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> oldValue.equals(current) ? newValue : UNCHANGED).written;
+    }
+
+    return write(key, () -> map.replace(key, oldValue, newValue));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The check and the store are applied as a single atomic operation.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String replace(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> current == null ? UNCHANGED : value).previous;
+    }
+
+    return write(key, () -> map.replace(key, value));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entire method invocation is performed atomically, so the
+   * <b>mappingFunction</b> is applied at most once per <b>key</b>. It should
+   * be short and simple, and must not attempt to update any other mappings of
+   * this {@link Mneme}.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param mappingFunction the function to compute a value
+   *
+   * @return the current (existing or computed) value associated with the
+   * specified <b>key</b>, or <code>null</code> if the computed value is
+   * <code>null</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String computeIfAbsent(
+      final String key,
+      final Function<? super String, ? extends String> mappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("mappingFunction", mappingFunction);
+
+    final Function<String, String> validatedFunction =
+        k -> validateComputedValue(mappingFunction.apply(k));
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> current == null
+              ? validatedFunction.apply(key)
+              : UNCHANGED).current;
+    }
+
+    return write(key, () -> map.computeIfAbsent(key, validatedFunction));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entire method invocation is performed atomically. The
+   * <b>remappingFunction</b> should be short and simple, and must not attempt
+   * to update any other mappings of this {@link Mneme}.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String computeIfPresent(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    final BiFunction<String, String, String> validatedFunction =
+        (k, v) -> validateComputedValue(remappingFunction.apply(k, v));
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> current == null
+              ? UNCHANGED
+              : validatedFunction.apply(key, current)).current;
+    }
+
+    return write(key, () -> map.computeIfPresent(key, validatedFunction));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entire method invocation is performed atomically. The
+   * <b>remappingFunction</b> should be short and simple, and must not attempt
+   * to update any other mappings of this {@link Mneme}.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String compute(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    final BiFunction<String, String, String> validatedFunction =
+        (k, v) -> validateComputedValue(remappingFunction.apply(k, v));
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> validatedFunction.apply(key, current)).current;
+    }
+
+    return write(key, () -> map.compute(key, validatedFunction));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entire method invocation is performed atomically. The
+   * <b>remappingFunction</b> should be short and simple, and must not attempt
+   * to update any other mappings of this {@link Mneme}.</p>
+   *
+   * @param key key with which the resulting value is to be associated
+   * @param value the value to be merged with the existing value associated
+   *              with the <b>key</b> or, if no existing value is associated
+   *              with the <b>key</b>, to be associated with the <b>key</b>
+   * @param remappingFunction the function to recompute a value if present
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if no value is associated with the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank merged value.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String merge(
+      final String key,
+      final String value,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    final BiFunction<String, String, String> validatedFunction =
+        (v1, v2) -> validateComputedValue(remappingFunction.apply(v1, v2));
+
+    expireEntries(false);
+    foldCounter(key);
+
+    if (requiresChange(key)) {
+      return change(
+          key,
+          defaultTimeToLive,
+          current -> current == null
+              ? value
+              : validatedFunction.apply(current, value)).current;
+    }
+
+    return write(key, () -> map.merge(key, value, validatedFunction));
+  }
+
+  /**
+   * <p>Applies every put and remove of the specified <b>batch</b> as a single
+   * atomic step. The updates are published to readers all at once, before
+   * they are written to the entries, so a read of a key that sees any of them
+   * sees every one, and reads never wait for a batch. Writes of the keys of
+   * the batch wait for it to be applied; concurrent batches are applied one at
+   * a time.</p>
+   *
+   * <p>A batch costs less than the same number of individual writes: expired
+   * entries are removed once, and the writes of a durable
+   * <code>LocalMneme</code> are appended to its write-ahead log as a single
+   * record, and forced to the storage device as a single commit, so that a
+   * crash restores all of them or none. The writes of a replicated
+   * <code>LocalMneme</code> are streamed as a single frame, which each {@link
+   * FollowerMneme} applies as a single atomic step. While a batch of a
+   * durable or replicated <code>LocalMneme</code> is applied, every other
+   * write of it waits, not only writes of the keys of the batch.</p>
+   *
+   * <p>Only the reads of a single key, {@link #get(Object)}, {@link
+   * #containsKey(Object)} and the reads built on them, see a batch all at
+   * once. {@link #keySet()}, {@link #size()}, {@link #entrySet()}, {@link
+   * #containsValue(Object)} and the views built on them read the entries as
+   * they are written, and so may see only some of the updates of a batch
+   * being applied. A bounded <code>LocalMneme</code> may also evict a key
+   * written by a batch before the rest of the batch has been applied, in
+   * which case the key reads as its batched value until the batch has been
+   * applied and as absent afterwards.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>batch</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param batch the puts and removes to apply
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>LocalMneme</code> has been
+   * closed, in which case none of the updates are applied.
+   *
+   * @see WriteBatch
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   */
+  public void apply(final WriteBatch batch) {
+
+    checkNotNull("batch", batch);
+
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    apply(batch.updates(), key -> defaultTimeToLive);
+  }
+
+  /**
+   * <p>Applies <b>updates</b>, mapping each removed key to {@link
+   * WriteBatch#REMOVED}, as {@link #apply(WriteBatch)} does, storing each put
+   * value with the time-to-live returned by <b>timeToLive</b> for its key (in
+   * nanoseconds, or zero for none).</p>
+   */
+  void apply(
+      final Map<String, String> updates,
+      final ToLongFunction<String> timeToLive) {
+
+    final Batch pending = new Batch(updates);
+    final boolean journalled = log != null || primary != null;
+    long sequence = 0;
+
+    expireEntries(false);
+
+    batches.lock();
+
+    // Held exclusively for the whole batch, so that no other change is
+    // journalled between the record of the batch and its updates, and a
+    // snapshot of the journal sees all of them or none.
+    if (journalled) {
+      journal.writeLock().lock();
+    }
+
+    try {
+
+      // Journalled before any update is written, so that a batch refused by
+      // a closed journal leaves every entry as it was.
+      if (journalled) {
+        sequence = journal(pending.updates, timeToLive);
+      }
+
+      batched = pending;
+
+      for (final Map.Entry<String, String> update
+          : pending.updates.entrySet()) {
+
+        final String key = update.getKey();
+        final String value =
+            update.getValue() == REMOVED ? null : update.getValue();
+        final long expiry = value == null ? 0 : timeToLive.applyAsLong(key);
+
+        foldCounter(key);
+
+        if (expiry > 0 || requiresChange(key)) {
+          stage(key, expiry, current -> value, false);
+        } else if (value == null) {
+          write(key, () -> map.remove(key));
+        } else {
+          write(key, () -> map.put(key, value));
+        }
+      }
+
+    } finally {
+
+      batched = null;
+      pending.applied.countDown();
+
+      if (journalled) {
+        journal.writeLock().unlock();
+      }
+
+      batches.unlock();
+    }
+
+    if (sequence > 0) {
+      log.commit(sequence);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The bytes are stored Base64 encoded, as the only copy of the value, so
+   * that they are evicted, expired, journalled, replicated and weighed by the
+   * eviction policy like any other value. {@link #getBytes(String)} and
+   * {@link #read(String, ByteBuffer)} decode them on each call.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value the bytes to be associated with the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public void putBytes(final String key, final ByteBuffer value) {
+
+    checkNotBlank("key", key);
+    checkNotEmpty("value", value);
+
+    final ByteBuffer encoded = Base64.getEncoder().encode(value);
+
+    store(key, new String(
+        encoded.array(),
+        encoded.arrayOffset(),
+        encoded.remaining(),
+        ISO_8859_1));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The stored value is decoded into a new buffer on each call, so no
+   * decoded copy is kept alongside it, and concurrent reads do not
+   * contend.</p>
+   *
+   * @param key the key whose associated bytes are to be returned
+   *
+   * @return a read-only buffer of the bytes to which the specified <b>key</b>
+   * is mapped, or <code>null</code> if this {@link Mneme} contains no mapping
+   * for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalArgumentException if the value was not stored by {@link
+   * #putBytes(String, ByteBuffer)}
+   *
+   * @see Mneme
+   */
+  @Override
+  public ByteBuffer getBytes(final String key) {
+
+    checkNotBlank("key", key);
+
+    final String value = read(key);
+
+    return value == null
+        ? null
+        : ByteBuffer.wrap(Base64.getDecoder().decode(value)).asReadOnlyBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The stored value is decoded on each call, and the bytes copied into
+   * the <b>destination</b>. (See: {@link #getBytes(String)} for more
+   * information.)</p>
+   *
+   * @param key the key whose associated bytes are to be read
+   * @param destination the buffer to read the bytes into
+   *
+   * @return the number of bytes read, or <code>-1</code> if this {@link
+   * Mneme} contains no mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws BufferOverflowException if the value does not fit in the bytes
+   * remaining in the <b>destination</b>
+   * @throws IllegalArgumentException if the value was not stored by {@link
+   * #putBytes(String, ByteBuffer)}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int read(final String key, final ByteBuffer destination) {
+
+    checkNotBlank("key", key);
+    checkWritable("destination", destination);
+
+    final String value = read(key);
+
+    if (value == null) {
+      return -1;
+    }
+
+    final byte[] bytes = Base64.getDecoder().decode(value);
+
+    if (bytes.length > destination.remaining()) {
+      throw new BufferOverflowException();
+    }
+
+    destination.put(bytes);
+
+    return bytes.length;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Increments are added to striped cells kept for the counter, so
+   * concurrent writers of a single counter do not contend, and are gathered
+   * into its stored value the next time its key is read or written, or the
+   * whole <code>LocalMneme</code> is read. If the stored value has been
+   * replaced by one that is not a number in the meantime, the increments
+   * waiting in the cells are dropped.</p>
+   *
+   * <p>A durable or replicated <code>LocalMneme</code> instead applies each
+   * increment to the stored value before it returns, so that it is journalled
+   * like any other write, and refused once the <code>LocalMneme</code> has
+   * been closed.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   * @throws IllegalStateException if this <code>LocalMneme</code> is durable
+   * or replicated and has been closed.
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    final String count = Long.toString(delta);
+
+    if (log != null || primary != null) {
+      change(key, defaultTimeToLive, current -> current == null
+          ? count
+          : addCounts(current, count));
+      return;
+    }
+
+    final String current = map.get(key);
+
+    if (current != null && !hasExpired(key, current)) {
+      Long.parseLong(current);
+    }
+
+    LongAdder cells = counters.get(key);
+
+    if (cells == null) {
+      cells = counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    cells.add(delta);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A <code>LocalMneme</code> counts its entries without copying its
+   * keys, or storing its counters. (See: {@link #size()} for more
+   * information.)</p>
+   *
+   * @return {@link Capability#CHEAP_SIZE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * <p>Returns a snapshot of the hit, miss and eviction statistics of this
+   * <code>LocalMneme</code>. Statistics are only recorded when a maximum
+   * weight has been set; otherwise every count is zero.</p>
+   *
+   * @return the current {@link Statistics}
+   */
+  public Statistics getStatistics() {
+
+    if (policy == null) {
+      return new Statistics(0, 0, 0, 0, 0);
+    }
+
+    return new Statistics(
+        policy.getHitCount(),
+        policy.getMissCount(),
+        policy.getEvictionCount(),
+        policy.getEvictionWeight(),
+        policy.getWeightedSize());
+  }
+
+  /**
+   * <p>Hit, miss and eviction statistics for a bounded {@link LocalMneme}.</p>
+   *
+   * @param hitCount the number of reads that found a value
+   * @param missCount the number of reads that found no value
+   * @param evictionCount the number of entries evicted
+   * @param evictionWeight the total weight of the entries evicted
+   * @param weightedSize the current total weight of the entries
+   */
+  public record Statistics(
+      long hitCount,
+      long missCount,
+      long evictionCount,
+      long evictionWeight,
+      long weightedSize) {
+
+    /**
+     * <p>Returns the proportion of reads that found a value, or
+     * <code>1.0</code> if there have been no reads.</p>
+     *
+     * @return the hit rate, between <code>0.0</code> and <code>1.0</code>
+     */
+    public double hitRate() {
+
+      final long requestCount = hitCount + missCount;
+
+      return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+  }
+
+  /**
+   * <p>Writes a snapshot of the entries of a durable
+   * <code>LocalMneme</code> and truncates its write-ahead log, so that they
+   * are restored without replaying the writes that preceded it. Snapshots are
+   * also written automatically as the log grows; this method does nothing if
+   * this <code>LocalMneme</code> is not durable.</p>
+   *
+   * @throws java.io.UncheckedIOException if the snapshot could not be
+   * written.
+   * @throws IllegalStateException if this <code>LocalMneme</code> has been
+   * closed.
+   *
+   * @see #LocalMneme(Path, Durability)
+   */
+  public void snapshot() {
+    if (log != null) {
+      log.snapshot();
+    }
+  }
+
+  /**
+   * <p>Forces every write of a durable <code>LocalMneme</code> to the storage
+   * device and closes its write-ahead log, or closes the primary of a
+   * replicated one. Its entries remain readable, but later writes throw
+   * {@link IllegalStateException}. This method does nothing if this
+   * <code>LocalMneme</code> is neither durable nor replicated, and has no
+   * effect if it has already been closed.</p>
+   *
+   * @throws java.io.UncheckedIOException if the write-ahead log could not be
+   * written.
+   *
+   * @see #LocalMneme(Path, Durability)
+   * @see #LocalMneme(ReplicationPrimary)
+   */
+  @Override
+  public void close() {
+
+    if (log != null) {
+      log.close();
+    }
+
+    if (primary != null) {
+      primary.close();
+    }
+  }
+
+  /**
+   * <p>Gathers the increments waiting in the cells of the counter of
+   * <b>key</b>, if any, into its stored value. The cells are drained inside
+   * the update of the entry, so concurrent gatherings of the same counter
+   * cannot both take them, and increments made meanwhile stay in the cells;
+   * a value that is not a number drops them, so that later reads of the
+   * <b>key</b> do not have to write it.</p>
+   */
+  private void foldCounter(final String key) {
+
+    if (counters.isEmpty()) {
+      return;
+    }
+
+    final LongAdder cells = counters.get(key);
+
+    if (cells == null || cells.sum() == 0) {
+      return;
+    }
+
+    final UnaryOperator<String> fold = current -> {
+
+      final long delta = cells.sum();
+
+      if (delta == 0) {
+        return UNCHANGED;
+      }
+
+      final String value;
+
+      try {
+        value = current == null
+            ? Long.toString(delta)
+            : addCounts(current, Long.toString(delta));
+      } catch (final NumberFormatException e) {
+        cells.add(-delta);
+        return UNCHANGED;
+      }
+
+      cells.add(-delta);
+
+      return value;
+    };
+
+    if (requiresChange(key)) {
+      change(key, defaultTimeToLive, fold);
+      return;
+    }
+
+    write(key, () -> map.compute(key, (k, current) -> {
+
+      final String value = fold.apply(current);
+
+      return value == UNCHANGED ? current : value;
+    }));
+  }
+
+  private void foldCounters() {
+
+    if (counters.isEmpty()) {
+      return;
+    }
+
+    counters.keySet().forEach(this::foldCounter);
+  }
+
+  /**
+   * <p>Performs a write of <b>key</b>, waiting for a batch that updates the
+   * <b>key</b> both before the write and after it, so that a write which
+   * raced the publication of the batch is not hidden by it once it
+   * returns.</p>
+   */
+  private <T> T write(final String key, final Supplier<T> operation) {
+
+    awaitBatch(key);
+
+    final T result =
+        policy == null ? operation.get() : policy.write(key, operation);
+
+    awaitBatch(key);
+
+    return result;
+  }
+
+  private void awaitBatch(final String key) {
+
+    final Batch batch = batched;
+
+    if (batch == null
+        || !batch.updates.containsKey(key)
+        || batches.isHeldByCurrentThread()) {
+
+      return;
+    }
+
+    boolean interrupted = false;
+
+    while (true) {
+      try {
+        batch.applied.await();
+        break;
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * <p>Returns the value of <b>key</b> in the batch being applied, {@link
+   * WriteBatch#REMOVED} if the batch removes it, or <code>null</code> if no
+   * batch updating it is being applied.</p>
+   */
+  private String batched(final String key) {
+
+    final Batch batch = batched;
+
+    return batch == null ? null : batch.updates.get(key);
+  }
+
+  /**
+   * <p>Applies <b>function</b> to the unexpired value of <b>key</b>, as a
+   * single atomic step, storing the value it returns with the specified
+   * <b>timeToLive</b> (in nanoseconds, or zero for none) unless it returns
+   * {@link #UNCHANGED}.</p>
+   */
+  private Change change(
+      final String key,
+      final long timeToLive,
+      final UnaryOperator<String> function) {
+
+    final Change change = stage(key, timeToLive, function, true);
+
+    if (change.sequence > 0) {
+      log.commit(change.sequence);
+    }
+
+    return change;
+  }
+
+  /**
+   * <p>Applies a change as {@link #change(String, long, UnaryOperator)} does,
+   * but leaves committing its journal record to the caller, and only
+   * journals it if <b>journalChange</b> is <code>true</code>.</p>
+   */
+  private Change stage(
+      final String key,
+      final long timeToLive,
+      final UnaryOperator<String> function,
+      final boolean journalChange) {
+
+    final Change change = new Change();
+    final boolean journalled = log != null || primary != null;
+
+    if (journalled) {
+      journal.readLock().lock();
+    }
+
+    try {
+      write(key, () -> map.compute(key, (k, value) -> {
+
+        final long now = ticker.nanoTime();
+        final TimingWheel.Timer timer = timers.get(k);
+        final String current =
+            value == null || hasExpired(timer, value, now) ? null : value;
+        final String result = function.apply(current);
+
+        change.previous = current;
+        change.written = result != UNCHANGED;
+        change.current = change.written ? result : current;
+
+        if (change.written || change.current != value) {
+
+          // Journalled before the timer is rescheduled, so that a write
+          // refused by a closed journal leaves the entry as it was.
+          if (journalled
+              && journalChange
+              && (change.current != value || change.current != null)) {
+            journal(change, k, timeToLive);
+          }
+
+          reschedule(k, timer, change.current, timeToLive, now);
+        }
+
+        return change.current;
+      }));
+    } finally {
+      if (journalled) {
+        journal.readLock().unlock();
+      }
+    }
+
+    return change;
+  }
+
+  private void journal(
+      final Change change,
+      final String key,
+      final long timeToLive) {
+
+    final long deadline = change.current == null || timeToLive == 0
+        ? 0
+        : ticker.currentTimeMillis() + NANOSECONDS.toMillis(timeToLive);
+
+    if (log != null) {
+      change.sequence = log.append(key, change.current, deadline);
+    }
+
+    if (primary != null) {
+      primary.publish(key, change.current, deadline);
+    }
+  }
+
+  /**
+   * <p>Appends the <b>updates</b> of a batch to the write-ahead log as a
+   * single record, and publishes them to followers as a single frame,
+   * returning the sequence to commit (or zero if there is no log).</p>
+   */
+  private long journal(
+      final Map<String, String> updates,
+      final ToLongFunction<String> timeToLive) {
+
+    final long now = ticker.currentTimeMillis();
+    final List<JournalEntry> changes = new ArrayList<>(updates.size());
+
+    updates.forEach((key, update) -> {
+
+      final String value = update == REMOVED ? null : update;
+      final long expiry = value == null ? 0 : timeToLive.applyAsLong(key);
+
+      changes.add(new JournalEntry(
+          key,
+          value,
+          expiry == 0 ? 0 : now + NANOSECONDS.toMillis(expiry)));
+    });
+
+    final long sequence = log == null ? 0 : log.append(changes);
+
+    if (primary != null) {
+      primary.publish(changes);
+    }
+
+    return sequence;
+  }
+
+  private void reschedule(
+      final String key,
+      final TimingWheel.Timer timer,
+      final String value,
+      final long timeToLive,
+      final long now) {
+
+    if (timer != null) {
+      timers.remove(key);
+      wheel.cancel(timer);
+    }
+
+    if (value != null && timeToLive > 0) {
+      timers.put(key, wheel.schedule(key, value, now + timeToLive));
+    }
+  }
+
+  /**
+   * <p>Returns <code>true</code> if writes of <b>key</b> must maintain its
+   * expiry timer or be logged, rather than write the map directly.</p>
+   */
+  private boolean requiresChange(final String key) {
+    return log != null
+        || primary != null
+        || defaultTimeToLive > 0
+        || timers.containsKey(key);
+  }
+
+  private boolean hasExpired(final String key, final String value) {
+
+    final TimingWheel.Timer timer = timers.get(key);
+
+    return timer != null && hasExpired(timer, value, ticker.nanoTime());
+  }
+
+  private static boolean hasExpired(
+      final TimingWheel.Timer timer,
+      final String value,
+      final long now) {
+
+    return timer != null && timer.getValue() == value && timer.hasExpired(now);
+  }
+
+  /**
+   * <p>Removes the entries whose timers have expired, advancing the timing
+   * wheel if it is behind or if <b>always</b> is <code>true</code>.</p>
+   */
+  private void expireEntries(final boolean always) {
+
+    if (timers.isEmpty()) {
+      return;
+    }
+
+    final long now = ticker.nanoTime();
+
+    if (!always && !wheel.isBehind(now)) {
+      return;
+    }
+
+    final List<TimingWheel.Timer> expired = wheel.advance(now);
+
+    for (final TimingWheel.Timer timer : expired) {
+
+      final String key = timer.getKey();
+
+      write(key, () -> map.compute(
+          key,
+          (k, value) -> timers.remove(k, timer) && value == timer.getValue()
+              ? null
+              : value));
+    }
+  }
+
+  /**
+   * <p>Restores an entry replayed from the write-ahead log, which is removed
+   * if <b>value</b> is <code>null</code> or its epoch millisecond
+   * <b>deadline</b> has passed.</p>
+   */
+  private void restore(
+      final String key,
+      final String value,
+      final long deadline) {
+
+    final long now = ticker.nanoTime();
+    final long timeToLive = deadline == 0
+        ? 0
+        : MILLISECONDS.toNanos(deadline - ticker.currentTimeMillis());
+    final TimingWheel.Timer timer = timers.remove(key);
+
+    if (timer != null) {
+      wheel.cancel(timer);
+    }
+
+    if (value == null || deadline != 0 && timeToLive <= 0) {
+      map.remove(key);
+    } else {
+      map.put(key, value);
+      reschedule(key, null, value, timeToLive, now);
+    }
+  }
+
+  /**
+   * <p>Passes each unexpired entry, with the epoch millisecond it expires at
+   * (or zero), to <b>consumer</b>, for a snapshot of the write-ahead log or
+   * the bootstrap of a follower.</p>
+   */
+  private void entries(final EntryConsumer consumer) {
+
+    final long now = ticker.nanoTime();
+    final long wallClock = ticker.currentTimeMillis();
+
+    map.forEach((key, value) -> {
+
+      final TimingWheel.Timer timer = timers.get(key);
+
+      if (timer == null || timer.getValue() != value) {
+        consumer.accept(key, value, 0);
+      } else if (!timer.hasExpired(now)) {
+        consumer.accept(
+            key,
+            value,
+            wallClock + NANOSECONDS.toMillis(timer.getDeadline() - now) + 1);
+      }
+    });
+  }
+
+  private static long toNanos(final Duration timeToLive) {
+    return timeToLive.compareTo(MAXIMUM_TIME_TO_LIVE) > 0
+        ? MAXIMUM_TIME_TO_LIVE.toNanos()
+        : timeToLive.toNanos();
+  }
+
+  private static String validateComputedValue(final String value) {
+
+    if (value != null) {
+      checkNotBlank("value", value);
+    }
+
+    return value;
+  }
+
+  /**
+   * <p>The keys of the entries, read from the map, whose removals go through
+   * {@link #remove(String)}.</p>
+   */
+  private final class KeySet extends AbstractSet<String> {
+
+    @Override
+    public Iterator<String> iterator() {
+
+      final Iterator<String> iterator = map.keySet().iterator();
+
+      return new Iterator<>() {
+
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public String next() {
+          last = iterator.next();
+          return last;
+        }
+
+        @Override
+        public void remove() {
+
+          if (last == null) {
+            throw new IllegalStateException();
+          }
+
+          LocalMneme.this.remove(last);
+          last = null;
+        }
+
+      };
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public boolean contains(final Object key) {
+      return key != null && map.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final Object key) {
+      return key instanceof String string
+          && map.containsKey(string)
+          && LocalMneme.this.remove(string) != null;
+    }
+
+  }
+
+  /**
+   * <p>A {@link WriteBatch} being applied, which writes of its keys wait
+   * for.</p>
+   */
+  private static final class Batch {
+
+    private final Map<String, String> updates;
+    private final CountDownLatch applied = new CountDownLatch(1);
+
+    private Batch(final Map<String, String> updates) {
+      this.updates = updates;
+    }
+
+  }
+
+  private static final class Change {
+
+    private String previous;
+    private String current;
+    private boolean written;
+    private long sequence;
+
   }
 
 }
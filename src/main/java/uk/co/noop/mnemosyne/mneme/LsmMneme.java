@@ -0,0 +1,1501 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs on a local disk, built as a <i>log-structured merge-tree</i> for
+ * write-heavy datasets that are larger than memory.</p>
+ *
+ * <p>Writes go to a sorted in-memory <i>memtable</i>. Once the memtable
+ * reaches its size limit it is frozen and flushed, in the background, to an
+ * immutable sorted table file in level 0. Tables are then compacted down
+ * through the levels; each level from 1 onwards holds non-overlapping tables
+ * and is ten times larger than the one above it, so a read checks the
+ * memtables, the level 0 tables and at most one table per deeper level. Every
+ * table carries a Bloom filter, so most tables that do not hold a key are
+ * never read.</p>
+ *
+ * <p>If flushing or compaction falls behind, writers are stalled until it
+ * catches up, rather than letting the backlog of unflushed memtables or level
+ * 0 tables grow without bound. (See: {@link #getMetrics()} for more
+ * information.)</p>
+ *
+ * <p>Entries are durable once their memtable has been flushed, which happens
+ * in the background and when the <code>LsmMneme</code> is closed; there is no
+ * write-ahead log, so entries still in memory are lost if the process
+ * dies.</p>
+ *
+ * <p><code>LsmMneme</code> instances are safe for concurrent use; reads are
+ * lock-free and writes are serialised. Keys are kept in order, so a range of
+ * entries can be read with {@link #scan(String, String)}.</p>
+ *
+ * @see Mneme
+ */
+public class LsmMneme extends AbstractMneme
+    implements OrderedScan, AutoCloseable {
+
+  /**
+   * <p>The default memtable size, in bytes.</p>
+   */
+  public static final int DEFAULT_MEMTABLE_SIZE = 1 << 22;
+
+  /**
+   * <p>The value used internally to record a removed entry. Valid values are
+   * never blank, so it cannot collide with a stored value.</p>
+   */
+  static final String TOMBSTONE = "";
+
+  private static final int LEVELS = 7;
+  private static final int LEVEL_SIZE_MULTIPLIER = 10;
+  private static final int L0_COMPACTION_TRIGGER = 4;
+  private static final int L0_STALL_TRIGGER = 12;
+  private static final int MAX_IMMUTABLE_MEMTABLES = 2;
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final long COMPACTION_INTERVAL_SECONDS = 10;
+  private static final long STALL_WAIT_MILLIS = 100;
+
+  private static final String MANIFEST = "MANIFEST";
+  private static final String TABLE_SUFFIX = ".sst";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final int memtableSize;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final ReentrantLock compactionLock = new ReentrantLock();
+  private final Object stateLock = new Object();
+  private final String[] compactionPointers = new String[LEVELS];
+  private final ScheduledExecutorService compactor;
+  private final AtomicBoolean compacting = new AtomicBoolean();
+
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder compactions = new LongAdder();
+  private final LongAdder bytesCompacted = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder writeStalls = new LongAdder();
+  private final LongAdder writeStallNanos = new LongAdder();
+
+  private volatile Version version;
+  private volatile IOException backgroundFailure;
+  private volatile boolean closed;
+  private long nextTableId;
+
+  /**
+   * <p>Creates a new instance of <code>LsmMneme</code> in the specified
+   * <b>directory</b>, using the {@link #DEFAULT_MEMTABLE_SIZE}.</p>
+   *
+   * @param directory The directory to store the table files in. It will be
+   *                  created if it does not exist, and any existing tables
+   *                  will be loaded.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the directory cannot be read or written
+   */
+  public LsmMneme(final Path directory) {
+    this(directory, DEFAULT_MEMTABLE_SIZE);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>LsmMneme</code> in the specified
+   * <b>directory</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>directory</b> parameter is validated against <code>null</code>
+   * values using {@link Themis}, and the <b>memtableSize</b> parameter is
+   * validated against non-positive values. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} and {@link
+   * IntegerEunomia#againstNonPositiveIntegers()} for more information.)</p>
+   *
+   * @param directory The directory to store the table files in. It will be
+   *                  created if it does not exist, and any existing tables
+   *                  will be loaded.
+   * @param memtableSize The approximate size, in bytes, at which a memtable is
+   *                     frozen and flushed to disk. Level 1 holds ten times
+   *                     this, and tables are split at twice this.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the directory cannot be read or written
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see IntegerEunomia#againstNonPositiveIntegers()
+   */
+  public LsmMneme(final Path directory, final int memtableSize) {
+
+    super();
+
+    checkNotNull("directory", directory);
+    validate("memtableSize", memtableSize, IntegerEunomia.class)
+        .againstNonPositiveIntegers();
+
+    this.directory = directory;
+    this.memtableSize = memtableSize;
+
+    try {
+      Files.createDirectories(directory);
+      version = new Version(new Memtable(), List.of(), load());
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-compaction");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every table is read to count the live entries, so this is an
+   * <i>O(n)</i> operation.</p>
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+
+    ensureOpen();
+
+    final Iterator<Entry<String, String>> entries = entries(null, null);
+
+    int size = 0;
+
+    while (entries.hasNext()) {
+      entries.next();
+      size++;
+    }
+
+    return size;
+  }
+
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return read(key) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+    ensureOpen();
+
+    final Iterator<Entry<String, String>> entries = entries(null, null);
+
+    while (entries.hasNext()) {
+      if (value.equals(entries.next().getValue())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return read(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If flushing or compaction has fallen behind, this waits for it to catch
+   * up before writing.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>. (A <code>null</code> return can
+   * also indicate that the {@link Mneme} previously associated
+   * <code>null</code> with <b>key</b>, if the implementation supports
+   * <code>null</code> values.)
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if a background flush or compaction has
+   * failed
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    awaitCapacity();
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final String previousValue = read(key);
+
+      write(key, value);
+
+      return previousValue;
+
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if a background flush or compaction has
+   * failed
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+    awaitCapacity();
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final String previousValue = read(key);
+
+      if (previousValue != null) {
+        write(key, TOMBSTONE);
+      }
+
+      return previousValue;
+
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>The counter is read and its new value written to the memtable under
+   * the write lock, so concurrent increments are not lost.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+    awaitCapacity();
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final String count = read(key);
+
+      write(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta)));
+
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every memtable is discarded and every table file is deleted.</p>
+   *
+   * @throws UncheckedIOException if the table files cannot be deleted
+   */
+  @Override
+  public void clear() {
+
+    compactionLock.lock();
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final List<List<LsmTable>> levels = version.levels();
+
+      synchronized (stateLock) {
+        version = new Version(new Memtable(), List.of(), emptyLevels());
+        stateLock.notifyAll();
+      }
+
+      writeManifest();
+
+      for (final List<LsmTable> level : levels) {
+        for (final LsmTable table : level) {
+          Files.deleteIfExists(table.getPath());
+        }
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+      compactionLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return a set view of the keys contained in this {@link Mneme}, in
+   * ascending order
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+
+    ensureOpen();
+
+    final Set<String> keys = new LinkedHashSet<>();
+    final Iterator<Entry<String, String>> entries = entries(null, null);
+
+    while (entries.hasNext()) {
+      keys.add(entries.next().getKey());
+    }
+
+    return keys;
+  }
+
+  /**
+   * <p>Returns the entries with keys from <b>fromKey</b>, inclusive, to
+   * <b>toKey</b>, exclusive, in ascending key order.</p>
+   *
+   * <p>The entries are read lazily from a consistent view of the
+   * <code>LsmMneme</code> taken when this is called, so the stream should be
+   * consumed promptly.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>fromKey</b> and <b>toKey</b> parameters are validated against
+   * blank values using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param fromKey the lowest key to include
+   * @param toKey the key to stop before
+   *
+   * @return the entries in the range, in ascending key order
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public Stream<Entry<String, String>> scan(
+      final String fromKey,
+      final String toKey) {
+
+    checkNotBlank("fromKey", fromKey);
+    checkNotBlank("toKey", toKey);
+    ensureOpen();
+
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            entries(fromKey, toKey),
+            Spliterator.ORDERED
+                | Spliterator.SORTED
+                | Spliterator.DISTINCT
+                | Spliterator.NONNULL),
+        false);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entries are read lazily, in a single merge of the tables, from a
+   * consistent view of the <code>LsmMneme</code> taken when this is
+   * called.</p>
+   *
+   * @return an iterator over the entries, in ascending key order
+   *
+   * @see OrderedScan
+   */
+  @Override
+  public Iterator<Entry<String, String>> scanEntries() {
+    ensureOpen();
+    return entries(null, null);
+  }
+
+  /**
+   * <p>Freezes the current memtable and flushes every memtable to level 0,
+   * waiting for the flush to complete.</p>
+   *
+   * @throws UncheckedIOException if the memtables cannot be flushed
+   */
+  public void flush() {
+
+    compactionLock.lock();
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+      rotate();
+
+      while (!version.immutables().isEmpty()) {
+        flushOldest();
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+      compactionLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Flushes every memtable, then compacts the levels until each is within
+   * its size limit, waiting for the compactions to complete.</p>
+   *
+   * <p>Compaction normally runs in the background after each flush, but can
+   * also be called directly; only one compaction runs at a time.</p>
+   *
+   * @throws UncheckedIOException if the tables cannot be compacted
+   */
+  public void compact() {
+
+    flush();
+    compactionLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      Compaction compaction;
+
+      while ((compaction = pickCompaction()) != null) {
+        runCompaction(compaction);
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      compactionLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Returns a snapshot of the flush and compaction statistics of this
+   * <code>LsmMneme</code>.</p>
+   *
+   * @return the current {@link Metrics}
+   */
+  public Metrics getMetrics() {
+
+    final List<Integer> tablesPerLevel = new ArrayList<>();
+
+    for (final List<LsmTable> level : version.levels()) {
+      tablesPerLevel.add(level.size());
+    }
+
+    return new Metrics(
+        flushes.sum(),
+        compactions.sum(),
+        bytesCompacted.sum(),
+        bytesWritten.sum(),
+        writeStalls.sum(),
+        Duration.ofNanos(writeStallNanos.sum()),
+        List.copyOf(tablesPerLevel));
+  }
+
+  /**
+   * <p>Flushes every memtable to disk and stops background compaction. Once
+   * closed, every operation will throw an
+   * <code>IllegalStateException</code>.</p>
+   *
+   * <p>Calling <code>close()</code> more than once has no further effect.</p>
+   *
+   * @throws UncheckedIOException if the memtables cannot be flushed
+   */
+  @Override
+  public void close() {
+
+    compactionLock.lock();
+    writeLock.lock();
+
+    try {
+
+      compactor.shutdown();
+
+      if (closed) {
+        return;
+      }
+
+      rotate();
+
+      while (!version.immutables().isEmpty()) {
+        flushOldest();
+      }
+
+      closed = true;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      writeLock.unlock();
+      compactionLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Flush and compaction statistics for an {@link LsmMneme}.</p>
+   *
+   * @param flushes the number of memtables flushed to level 0
+   * @param compactions the number of compactions completed
+   * @param bytesCompacted the number of table bytes read by compactions
+   * @param bytesWritten the number of table bytes written by flushes and
+   *                     compactions
+   * @param writeStalls the number of writes that were stalled waiting for
+   *                    flushing or compaction to catch up
+   * @param writeStallTime the total time writes spent stalled
+   * @param tablesPerLevel the number of tables in each level, starting at
+   *                       level 0
+   */
+  public record Metrics(
+      long flushes,
+      long compactions,
+      long bytesCompacted,
+      long bytesWritten,
+      long writeStalls,
+      Duration writeStallTime,
+      List<Integer> tablesPerLevel) {
+
+  }
+
+  private void ensureOpen() {
+
+    if (closed) {
+      throw new IllegalStateException("LsmMneme has been closed");
+    }
+  }
+
+  private String read(final String key) {
+
+    final Version current = version;
+
+    String value = current.memtable().entries.get(key);
+
+    for (int i = 0; value == null && i < current.immutables().size(); i++) {
+      value = current.immutables().get(i).entries.get(key);
+    }
+
+    if (value == null) {
+      value = readTables(current.levels(), key);
+    }
+
+    return value == null || value.equals(TOMBSTONE) ? null : value;
+  }
+
+  private static String readTables(
+      final List<List<LsmTable>> levels,
+      final String key) {
+
+    for (final LsmTable table : levels.get(0)) {
+
+      final String value = table.get(key);
+
+      if (value != null) {
+        return value;
+      }
+    }
+
+    for (int level = 1; level < levels.size(); level++) {
+
+      final LsmTable table = findTable(levels.get(level), key);
+
+      if (table != null) {
+
+        final String value = table.get(key);
+
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private static LsmTable findTable(
+      final List<LsmTable> tables,
+      final String key) {
+
+    int low = 0;
+    int high = tables.size() - 1;
+
+    while (low <= high) {
+
+      final int middle = (low + high) >>> 1;
+      final LsmTable table = tables.get(middle);
+
+      if (table.getLastKey().compareTo(key) < 0) {
+        low = middle + 1;
+      } else if (table.getFirstKey().compareTo(key) > 0) {
+        high = middle - 1;
+      } else {
+        return table;
+      }
+    }
+
+    return null;
+  }
+
+  private Iterator<Entry<String, String>> entries(
+      final String fromKey,
+      final String toKey) {
+
+    final Version current = version;
+    final List<Iterator<Entry<String, String>>> sources = new ArrayList<>();
+
+    sources.add(memtableEntries(current.memtable(), fromKey, toKey));
+
+    for (final Memtable memtable : current.immutables()) {
+      sources.add(memtableEntries(memtable, fromKey, toKey));
+    }
+
+    for (final LsmTable table : current.levels().get(0)) {
+      sources.add(table.iterator(fromKey));
+    }
+
+    for (int level = 1; level < current.levels().size(); level++) {
+      sources.add(levelEntries(current.levels().get(level), fromKey));
+    }
+
+    final Iterator<Entry<String, String>> merged =
+        new MergingIterator(sources, true);
+
+    return toKey == null ? merged : new Iterator<>() {
+
+      private Entry<String, String> next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Entry<String, String> next() {
+
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+
+        final Entry<String, String> entry = next;
+
+        next = advance();
+
+        return entry;
+      }
+
+      private Entry<String, String> advance() {
+
+        if (merged.hasNext()) {
+
+          final Entry<String, String> entry = merged.next();
+
+          if (entry.getKey().compareTo(toKey) < 0) {
+            return entry;
+          }
+        }
+
+        return null;
+      }
+
+    };
+  }
+
+  private static Iterator<Entry<String, String>> memtableEntries(
+      final Memtable memtable,
+      final String fromKey,
+      final String toKey) {
+
+    ConcurrentNavigableMap<String, String> entries = memtable.entries;
+
+    if (fromKey != null) {
+      entries = entries.tailMap(fromKey, true);
+    }
+
+    if (toKey != null) {
+      entries = entries.headMap(toKey, false);
+    }
+
+    return entries.entrySet().iterator();
+  }
+
+  private static Iterator<Entry<String, String>> levelEntries(
+      final List<LsmTable> tables,
+      final String fromKey) {
+
+    return new Iterator<>() {
+
+      private int index = 0;
+      private Iterator<Entry<String, String>> current =
+          Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+
+        while (!current.hasNext() && index < tables.size()) {
+
+          final LsmTable table = tables.get(index++);
+
+          if (fromKey == null || table.getLastKey().compareTo(fromKey) >= 0) {
+            current = table.iterator(fromKey);
+          }
+        }
+
+        return current.hasNext();
+      }
+
+      @Override
+      public Entry<String, String> next() {
+
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        return current.next();
+      }
+
+    };
+  }
+
+  private void write(final String key, final String value) {
+
+    final Memtable memtable = version.memtable();
+
+    memtable.entries.put(key, value);
+
+    final long bytes = memtable.bytes.addAndGet(
+        ENTRY_OVERHEAD + 2L * (key.length() + value.length()));
+
+    if (bytes >= memtableSize) {
+      rotate();
+      compactor.execute(this::flushAndCompact);
+    }
+  }
+
+  private void rotate() {
+
+    synchronized (stateLock) {
+
+      final Version current = version;
+
+      if (current.memtable().entries.isEmpty()) {
+        return;
+      }
+
+      final List<Memtable> immutables = new ArrayList<>();
+
+      immutables.add(current.memtable());
+      immutables.addAll(current.immutables());
+
+      version = new Version(
+          new Memtable(),
+          List.copyOf(immutables),
+          current.levels());
+    }
+  }
+
+  private void awaitCapacity() {
+
+    startCompaction();
+
+    synchronized (stateLock) {
+
+      long stallStart = 0;
+
+      while (version.immutables().size() >= MAX_IMMUTABLE_MEMTABLES
+          || version.levels().get(0).size() >= L0_STALL_TRIGGER) {
+
+        if (backgroundFailure != null) {
+          throw new UncheckedIOException(backgroundFailure);
+        }
+
+        if (stallStart == 0) {
+          stallStart = System.nanoTime();
+          writeStalls.increment();
+        }
+
+        try {
+          stateLock.wait(STALL_WAIT_MILLIS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(
+              "Interrupted while waiting for compaction", e);
+        }
+      }
+
+      if (stallStart != 0) {
+        writeStallNanos.add(System.nanoTime() - stallStart);
+      }
+    }
+  }
+
+  /**
+   * <p>Schedules the background flush and compaction the first time it is
+   * called, so that it never starts before the constructor has returned.
+   * Tables loaded from the directory are compacted once the first
+   * write arrives, before it waits for capacity. Scheduled while holding the
+   * write lock, so never after closing.</p>
+   */
+  private void startCompaction() {
+
+    if (compacting.get()) {
+      return;
+    }
+
+    writeLock.lock();
+
+    try {
+
+      if (closed || !compacting.compareAndSet(false, true)) {
+        return;
+      }
+
+      compactor.scheduleWithFixedDelay(
+          this::flushAndCompact,
+          0,
+          COMPACTION_INTERVAL_SECONDS,
+          TimeUnit.SECONDS);
+
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void flushAndCompact() {
+
+    compactionLock.lock();
+
+    try {
+
+      if (closed) {
+        return;
+      }
+
+      while (!version.immutables().isEmpty()) {
+        flushOldest();
+      }
+
+      Compaction compaction;
+
+      while ((compaction = pickCompaction()) != null) {
+        runCompaction(compaction);
+      }
+
+      backgroundFailure = null;
+
+    } catch (final IOException e) {
+      fail(e);
+    } catch (final RuntimeException e) {
+      fail(new IOException("Background flush or compaction failed", e));
+    } finally {
+      compactionLock.unlock();
+    }
+  }
+
+  private void fail(final IOException e) {
+
+    backgroundFailure = e;
+
+    synchronized (stateLock) {
+      stateLock.notifyAll();
+    }
+  }
+
+  private void flushOldest() throws IOException {
+
+    final List<Memtable> immutables = version.immutables();
+    final Memtable oldest = immutables.get(immutables.size() - 1);
+    final LsmTable table = writeTable(
+        oldest.entries.entrySet().iterator(),
+        Long.MAX_VALUE);
+
+    synchronized (stateLock) {
+
+      final Version current = version;
+      final List<List<LsmTable>> levels = copyLevels(current.levels());
+
+      if (table != null) {
+        levels.get(0).add(0, table);
+      }
+
+      final List<Memtable> remaining = new ArrayList<>(current.immutables());
+
+      remaining.remove(oldest);
+      version = new Version(
+          current.memtable(),
+          List.copyOf(remaining),
+          freeze(levels));
+      stateLock.notifyAll();
+    }
+
+    writeManifest();
+    flushes.increment();
+
+    if (table != null) {
+      bytesWritten.add(table.getSize());
+    }
+  }
+
+  private Compaction pickCompaction() {
+
+    final List<List<LsmTable>> levels = version.levels();
+
+    if (levels.get(0).size() >= L0_COMPACTION_TRIGGER) {
+      return new Compaction(
+          0,
+          levels.get(0),
+          overlapping(levels.get(1), levels.get(0)));
+    }
+
+    for (int level = 1; level < LEVELS - 1; level++) {
+
+      if (bytes(levels.get(level)) > maxLevelBytes(level)) {
+
+        final LsmTable table = nextTable(level, levels.get(level));
+
+        return new Compaction(
+            level,
+            List.of(table),
+            overlapping(levels.get(level + 1), List.of(table)));
+      }
+    }
+
+    return null;
+  }
+
+  private LsmTable nextTable(final int level, final List<LsmTable> tables) {
+
+    final String pointer = compactionPointers[level];
+
+    if (pointer != null) {
+      for (final LsmTable table : tables) {
+        if (table.getFirstKey().compareTo(pointer) > 0) {
+          return table;
+        }
+      }
+    }
+
+    return tables.get(0);
+  }
+
+  private void runCompaction(final Compaction compaction)
+      throws IOException {
+
+    final int outputLevel = compaction.level() + 1;
+    final List<List<LsmTable>> levels = version.levels();
+
+    boolean bottommost = true;
+
+    for (int level = outputLevel + 1; level < LEVELS; level++) {
+      bottommost &= levels.get(level).isEmpty();
+    }
+
+    final List<Iterator<Entry<String, String>>> sources = new ArrayList<>();
+
+    for (final LsmTable table : compaction.upper()) {
+      sources.add(table.iterator(null));
+    }
+
+    sources.add(levelEntries(compaction.lower(), null));
+
+    final Iterator<Entry<String, String>> merged =
+        new MergingIterator(sources, bottommost);
+    final List<LsmTable> outputs = new ArrayList<>();
+
+    while (merged.hasNext()) {
+
+      final LsmTable table = writeTable(merged, 2L * memtableSize);
+
+      if (table != null) {
+        outputs.add(table);
+      }
+    }
+
+    synchronized (stateLock) {
+
+      final Version current = version;
+      final List<List<LsmTable>> installed = copyLevels(current.levels());
+
+      installed.get(compaction.level()).removeAll(compaction.upper());
+      installed.get(outputLevel).removeAll(compaction.lower());
+      installed.get(outputLevel).addAll(outputs);
+      installed.get(outputLevel)
+          .sort(Comparator.comparing(LsmTable::getFirstKey));
+      version = new Version(
+          current.memtable(),
+          current.immutables(),
+          freeze(installed));
+      stateLock.notifyAll();
+    }
+
+    writeManifest();
+
+    for (final LsmTable table : compaction.upper()) {
+      bytesCompacted.add(table.getSize());
+      Files.deleteIfExists(table.getPath());
+    }
+
+    for (final LsmTable table : compaction.lower()) {
+      bytesCompacted.add(table.getSize());
+      Files.deleteIfExists(table.getPath());
+    }
+
+    for (final LsmTable table : outputs) {
+      bytesWritten.add(table.getSize());
+    }
+
+    compactionPointers[compaction.level()] =
+        compaction.upper().get(compaction.upper().size() - 1).getLastKey();
+    compactions.increment();
+  }
+
+  private LsmTable writeTable(
+      final Iterator<Entry<String, String>> entries,
+      final long maxBytes) throws IOException {
+
+    final long id = nextTableId++;
+
+    return LsmTable.write(tablePath(id), id, entries, maxBytes);
+  }
+
+  private long maxLevelBytes(final int level) {
+
+    long maxBytes = memtableSize;
+
+    for (int i = 0; i < level; i++) {
+      maxBytes *= LEVEL_SIZE_MULTIPLIER;
+    }
+
+    return maxBytes;
+  }
+
+  private static long bytes(final List<LsmTable> tables) {
+
+    long bytes = 0;
+
+    for (final LsmTable table : tables) {
+      bytes += table.getSize();
+    }
+
+    return bytes;
+  }
+
+  private static List<LsmTable> overlapping(
+      final List<LsmTable> tables,
+      final List<LsmTable> range) {
+
+    String first = range.get(0).getFirstKey();
+    String last = range.get(0).getLastKey();
+
+    for (final LsmTable table : range) {
+
+      if (table.getFirstKey().compareTo(first) < 0) {
+        first = table.getFirstKey();
+      }
+
+      if (table.getLastKey().compareTo(last) > 0) {
+        last = table.getLastKey();
+      }
+    }
+
+    final List<LsmTable> overlapping = new ArrayList<>();
+
+    for (final LsmTable table : tables) {
+      if (table.overlaps(first, last)) {
+        overlapping.add(table);
+      }
+    }
+
+    return List.copyOf(overlapping);
+  }
+
+  private static List<List<LsmTable>> emptyLevels() {
+
+    final List<List<LsmTable>> levels = new ArrayList<>();
+
+    for (int level = 0; level < LEVELS; level++) {
+      levels.add(List.of());
+    }
+
+    return List.copyOf(levels);
+  }
+
+  private static List<List<LsmTable>> copyLevels(
+      final List<List<LsmTable>> levels) {
+
+    final List<List<LsmTable>> copy = new ArrayList<>();
+
+    for (final List<LsmTable> level : levels) {
+      copy.add(new ArrayList<>(level));
+    }
+
+    return copy;
+  }
+
+  private static List<List<LsmTable>> freeze(
+      final List<List<LsmTable>> levels) {
+
+    final List<List<LsmTable>> frozen = new ArrayList<>();
+
+    for (final List<LsmTable> level : levels) {
+      frozen.add(List.copyOf(level));
+    }
+
+    return List.copyOf(frozen);
+  }
+
+  private void writeManifest() throws IOException {
+
+    final Path temporary = directory.resolve(MANIFEST + TEMPORARY_SUFFIX);
+    final List<List<LsmTable>> levels = version.levels();
+
+    try (final BufferedWriter writer =
+             Files.newBufferedWriter(temporary, UTF_8)) {
+
+      writer.write("next " + nextTableId);
+      writer.newLine();
+
+      for (int level = 0; level < levels.size(); level++) {
+        for (final LsmTable table : levels.get(level)) {
+          writer.write(level + " " + table.getId());
+          writer.newLine();
+        }
+      }
+    }
+
+    Files.move(
+        temporary,
+        directory.resolve(MANIFEST),
+        ATOMIC_MOVE,
+        REPLACE_EXISTING);
+  }
+
+  private List<List<LsmTable>> load() throws IOException {
+
+    final List<List<LsmTable>> levels = copyLevels(emptyLevels());
+    final Set<Path> live = new HashSet<>();
+    final Path manifest = directory.resolve(MANIFEST);
+
+    if (Files.exists(manifest)) {
+      for (final String line : Files.readAllLines(manifest, UTF_8)) {
+
+        final String[] fields = line.split(" ");
+
+        if (fields[0].equals("next")) {
+          nextTableId = Long.parseLong(fields[1]);
+        } else {
+
+          final long id = Long.parseLong(fields[1]);
+          final LsmTable table = LsmTable.open(tablePath(id), id);
+
+          levels.get(Integer.parseInt(fields[0])).add(table);
+          live.add(table.getPath());
+        }
+      }
+    }
+
+    levels.get(0).sort(
+        Comparator.comparingLong(LsmTable::getId).reversed());
+
+    for (int level = 1; level < levels.size(); level++) {
+      levels.get(level).sort(Comparator.comparing(LsmTable::getFirstKey));
+    }
+
+    try (final Stream<Path> paths = Files.list(directory)) {
+      for (final Path path : (Iterable<Path>) paths::iterator) {
+
+        final String fileName = path.getFileName().toString();
+
+        if (fileName.endsWith(TEMPORARY_SUFFIX)
+            || (fileName.endsWith(TABLE_SUFFIX) && !live.contains(path))) {
+          Files.delete(path);
+        }
+      }
+    }
+
+    return freeze(levels);
+  }
+
+  private Path tablePath(final long id) {
+    return directory.resolve(String.format("%012d%s", id, TABLE_SUFFIX));
+  }
+
+  private record Version(
+      Memtable memtable,
+      List<Memtable> immutables,
+      List<List<LsmTable>> levels) {
+
+  }
+
+  private record Compaction(
+      int level,
+      List<LsmTable> upper,
+      List<LsmTable> lower) {
+
+  }
+
+  private static final class Memtable {
+
+    private final ConcurrentNavigableMap<String, String> entries =
+        new ConcurrentSkipListMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+  }
+
+  /**
+   * <p>Merges sorted sources into a single sorted sequence. Where more than one
+   * source holds a key, the entry from the earliest source wins.</p>
+   */
+  private static final class MergingIterator
+      implements Iterator<Entry<String, String>> {
+
+    private final PriorityQueue<Source> queue;
+    private final boolean dropTombstones;
+
+    private Entry<String, String> next;
+
+    private MergingIterator(
+        final List<Iterator<Entry<String, String>>> sources,
+        final boolean dropTombstones) {
+
+      this.queue = new PriorityQueue<>(
+          Math.max(1, sources.size()),
+          Comparator.<Source, String>comparing(source -> source.head.getKey())
+              .thenComparingInt(source -> source.priority));
+      this.dropTombstones = dropTombstones;
+
+      for (int i = 0; i < sources.size(); i++) {
+        if (sources.get(i).hasNext()) {
+          queue.add(new Source(i, sources.get(i)));
+        }
+      }
+
+      next = advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry<String, String> next() {
+
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+
+      final Entry<String, String> entry = next;
+
+      next = advance();
+
+      return entry;
+    }
+
+    private Entry<String, String> advance() {
+
+      while (!queue.isEmpty()) {
+
+        final Entry<String, String> entry = poll();
+
+        while (!queue.isEmpty()
+            && queue.peek().head.getKey().equals(entry.getKey())) {
+          poll();
+        }
+
+        if (!dropTombstones || !entry.getValue().equals(TOMBSTONE)) {
+          return entry;
+        }
+      }
+
+      return null;
+    }
+
+    private Entry<String, String> poll() {
+
+      final Source source = queue.poll();
+      final Entry<String, String> entry = source.head;
+
+      if (source.entries.hasNext()) {
+        source.head = source.entries.next();
+        queue.add(source);
+      }
+
+      return entry;
+    }
+
+  }
+
+  private static final class Source {
+
+    private final int priority;
+    private final Iterator<Entry<String, String>> entries;
+
+    private Entry<String, String> head;
+
+    private Source(
+        final int priority,
+        final Iterator<Entry<String, String>> entries) {
+
+      this.priority = priority;
+      this.entries = entries;
+      this.head = entries.next();
+    }
+
+  }
+
+}
@@ -0,0 +1,390 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * <p>An immutable, sorted string table used by {@link LsmMneme}.</p>
+ *
+ * <p>Entries are written in key order into blocks of roughly
+ * {@value #BLOCK_SIZE} bytes, followed by a block index (the first key of each
+ * block), the last key, a {@link BloomFilter} and a fixed-size footer. The
+ * block index and the Bloom filter are held in memory; blocks are read through
+ * a memory mapping of the file.</p>
+ *
+ * <p>A removed entry is written as a tombstone, which is read back as
+ * {@link LsmMneme#TOMBSTONE}.</p>
+ */
+final class LsmTable {
+
+  static final int BLOCK_SIZE = 4096;
+
+  private static final int BITS_PER_KEY = 10;
+  private static final int FOOTER_SIZE = 32;
+  private static final long MAGIC = 0x4d6e656d65535354L;
+
+  private final long id;
+  private final Path path;
+  private final long size;
+  private final long entryCount;
+  private final String firstKey;
+  private final String lastKey;
+  private final String[] blockKeys;
+  private final int[] blockOffsets;
+  private final int[] blockLengths;
+  private final BloomFilter bloomFilter;
+  private final MappedByteBuffer data;
+
+  private LsmTable(
+      final long id,
+      final Path path,
+      final MappedByteBuffer data) throws IOException {
+
+    this.id = id;
+    this.path = path;
+    this.data = data;
+    this.size = data.capacity();
+
+    if (size < FOOTER_SIZE || data.getLong((int) size - 8) != MAGIC) {
+      throw new IOException("Corrupt table " + path);
+    }
+
+    final int footer = (int) size - FOOTER_SIZE;
+    final int indexOffset = (int) data.getLong(footer);
+    final int bloomFilterOffset = (int) data.getLong(footer + 8);
+    final ByteBuffer index =
+        data.slice(indexOffset, bloomFilterOffset - indexOffset);
+    final int blocks = index.getInt();
+
+    blockKeys = new String[blocks];
+    blockOffsets = new int[blocks];
+    blockLengths = new int[blocks];
+
+    for (int i = 0; i < blocks; i++) {
+      blockKeys[i] = readString(index);
+      blockOffsets[i] = index.getInt();
+      blockLengths[i] = index.getInt();
+    }
+
+    firstKey = blockKeys[0];
+    lastKey = readString(index);
+    bloomFilter = BloomFilter.read(
+        data.slice(bloomFilterOffset, footer - bloomFilterOffset));
+    entryCount = data.getLong(footer + 16);
+  }
+
+  /**
+   * <p>Writes entries from <b>entries</b>, which must be in ascending key
+   * order, to a new table at <b>path</b>. Writing stops at the first entry
+   * boundary after <b>maxBytes</b> of entry data, leaving the rest of
+   * <b>entries</b> unconsumed.</p>
+   *
+   * @return the new table, or <code>null</code> if <b>entries</b> was empty
+   */
+  static LsmTable write(
+      final Path path,
+      final long id,
+      final Iterator<Entry<String, String>> entries,
+      final long maxBytes) throws IOException {
+
+    final List<byte[]> blockKeys = new ArrayList<>();
+    final List<int[]> blocks = new ArrayList<>();
+
+    long[] keyHashes = new long[1024];
+    int entryCount = 0;
+    String lastKey = null;
+
+    try (final FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE);
+         final DataOutputStream output = new DataOutputStream(
+             new BufferedOutputStream(
+                 Channels.newOutputStream(channel), 1 << 16))) {
+
+      int blockStart = 0;
+
+      while (entries.hasNext() && output.size() < maxBytes) {
+
+        final Entry<String, String> entry = entries.next();
+        final byte[] keyBytes = entry.getKey().getBytes(UTF_8);
+
+        if (output.size() == blockStart) {
+          blockKeys.add(keyBytes);
+        }
+
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+
+        if (entry.getValue().isEmpty()) {
+          output.writeInt(-1);
+        } else {
+          final byte[] valueBytes = entry.getValue().getBytes(UTF_8);
+          output.writeInt(valueBytes.length);
+          output.write(valueBytes);
+        }
+
+        if (entryCount == keyHashes.length) {
+          keyHashes = Arrays.copyOf(keyHashes, entryCount << 1);
+        }
+
+        keyHashes[entryCount++] = BloomFilter.hash(entry.getKey());
+        lastKey = entry.getKey();
+
+        if (output.size() - blockStart >= BLOCK_SIZE) {
+          blocks.add(new int[] {blockStart, output.size() - blockStart});
+          blockStart = output.size();
+        }
+      }
+
+      if (entryCount == 0) {
+        return null;
+      }
+
+      if (output.size() > blockStart) {
+        blocks.add(new int[] {blockStart, output.size() - blockStart});
+      }
+
+      final long indexOffset = output.size();
+
+      output.writeInt(blocks.size());
+
+      for (int i = 0; i < blocks.size(); i++) {
+        output.writeInt(blockKeys.get(i).length);
+        output.write(blockKeys.get(i));
+        output.writeInt(blocks.get(i)[0]);
+        output.writeInt(blocks.get(i)[1]);
+      }
+
+      final byte[] lastKeyBytes = lastKey.getBytes(UTF_8);
+
+      output.writeInt(lastKeyBytes.length);
+      output.write(lastKeyBytes);
+
+      final long bloomFilterOffset = output.size();
+
+      BloomFilter.create(Arrays.copyOf(keyHashes, entryCount), BITS_PER_KEY)
+          .write(output);
+
+      output.writeLong(indexOffset);
+      output.writeLong(bloomFilterOffset);
+      output.writeLong(entryCount);
+      output.writeLong(MAGIC);
+      output.flush();
+      channel.force(true);
+
+    } finally {
+      if (entryCount == 0) {
+        Files.deleteIfExists(path);
+      }
+    }
+
+    return open(path, id);
+  }
+
+  static LsmTable open(final Path path, final long id) throws IOException {
+
+    try (final FileChannel channel = FileChannel.open(path, READ)) {
+      return new LsmTable(
+          id,
+          path,
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  long getId() {
+    return id;
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getSize() {
+    return size;
+  }
+
+  long getEntryCount() {
+    return entryCount;
+  }
+
+  String getFirstKey() {
+    return firstKey;
+  }
+
+  String getLastKey() {
+    return lastKey;
+  }
+
+  boolean overlaps(final String first, final String last) {
+    return firstKey.compareTo(last) <= 0 && lastKey.compareTo(first) >= 0;
+  }
+
+  /**
+   * @return the value stored for <b>key</b>, {@link LsmMneme#TOMBSTONE} if it
+   * was removed, or <code>null</code> if this table knows nothing of it
+   */
+  String get(final String key) {
+
+    if (key.compareTo(firstKey) < 0
+        || key.compareTo(lastKey) > 0
+        || !bloomFilter.mightContain(BloomFilter.hash(key))) {
+      return null;
+    }
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final int block = findBlock(key);
+    final int end = blockOffsets[block] + blockLengths[block];
+
+    int position = blockOffsets[block];
+
+    while (position < end) {
+
+      final int keyLength = data.getInt(position);
+      final int valueLength = data.getInt(position + 4 + keyLength);
+
+      if (keyLength == keyBytes.length && matches(position + 4, keyBytes)) {
+        return valueLength < 0
+            ? LsmMneme.TOMBSTONE
+            : readString(position + 8 + keyLength, valueLength);
+      }
+
+      position += 8 + keyLength + Math.max(valueLength, 0);
+    }
+
+    return null;
+  }
+
+  /**
+   * @return the entries of this table in key order, starting at the first key
+   * greater than or equal to <b>fromKey</b> (or at the start when
+   * <code>null</code>)
+   */
+  Iterator<Entry<String, String>> iterator(final String fromKey) {
+
+    return new Iterator<>() {
+
+      private int block =
+          fromKey == null || fromKey.compareTo(firstKey) <= 0
+              ? 0
+              : findBlock(fromKey);
+      private int position = blockOffsets[block];
+      private Entry<String, String> next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Entry<String, String> next() {
+
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+
+        final Entry<String, String> entry = next;
+
+        next = advance();
+
+        return entry;
+      }
+
+      private Entry<String, String> advance() {
+
+        while (block < blockKeys.length) {
+
+          if (position >= blockOffsets[block] + blockLengths[block]) {
+
+            if (++block < blockKeys.length) {
+              position = blockOffsets[block];
+            }
+
+            continue;
+          }
+
+          final int keyLength = data.getInt(position);
+          final int valueLength = data.getInt(position + 4 + keyLength);
+          final String key = readString(position + 4, keyLength);
+          final String value = valueLength < 0
+              ? LsmMneme.TOMBSTONE
+              : readString(position + 8 + keyLength, valueLength);
+
+          position += 8 + keyLength + Math.max(valueLength, 0);
+
+          if (fromKey == null || key.compareTo(fromKey) >= 0) {
+            return new SimpleImmutableEntry<>(key, value);
+          }
+        }
+
+        return null;
+      }
+
+    };
+  }
+
+  private int findBlock(final String key) {
+
+    int low = 0;
+    int high = blockKeys.length - 1;
+
+    while (low < high) {
+
+      final int middle = (low + high + 1) >>> 1;
+
+      if (blockKeys[middle].compareTo(key) <= 0) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    return low;
+  }
+
+  private boolean matches(final int position, final byte[] bytes) {
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (data.get(position + i) != bytes[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private String readString(final int position, final int length) {
+
+    final byte[] bytes = new byte[length];
+
+    data.get(position, bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+
+    final byte[] bytes = new byte[buffer.getInt()];
+
+    buffer.get(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+}
@@ -1,8 +1,16 @@
 package uk.co.noop.mnemosyne.mneme;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
 import java.util.Map;
 import java.util.Set;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotEmpty;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkWritable;
+
 /**
  * <p>{@link uk.co.noop.mnemosyne.Mnemosyne Mnemosyne} delegates the storing and
  * retrieving of key/value <code>String</code> pairs to <code>Mneme</code>
@@ -228,4 +236,245 @@ public interface Mneme extends Map<String, String>, Bucket {
    */
   Set<String> keySet();
 
+  /**
+   * <p>Associates the bytes remaining in the specified <b>value</b> with the
+   * specified <b>key</b> in this <code>Mneme</code>, replacing any previous
+   * value. How the bytes are stored is up to the backend, so they should be
+   * read back with {@link #getBytes(String)} or {@link #read(String,
+   * ByteBuffer)} rather than {@link #get(String)}.</p>
+   *
+   * <p>By default the bytes are stored as their Base64 encoding with {@link
+   * #put(Object, Object) put}. Backends that can hold bytes override this to
+   * store them as they are.</p>
+   *
+   * <p>The position of the <b>value</b> is moved to its limit.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values, and the
+   * <b>value</b> parameter against <code>null</code> and empty buffers, using
+   * {@link uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} and {@link
+   * uk.co.noop.mnemosyne.eunomia.ByteBufferEunomia#againstEmptyByteBuffers()
+   * ByteBufferEunomia#againstEmptyByteBuffers()} for more information.)</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value the bytes to be associated with the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.mnemosyne.eunomia.ByteBufferEunomia#againstEmptyByteBuffers()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  default void putBytes(final String key, final ByteBuffer value) {
+
+    checkNotBlank("key", key);
+    checkNotEmpty("value", value);
+
+    final ByteBuffer encoded = Base64.getEncoder().encode(value);
+
+    put(key, new String(
+        encoded.array(),
+        encoded.arrayOffset(),
+        encoded.remaining(),
+        ISO_8859_1));
+  }
+
+  /**
+   * <p>Returns the bytes of the value to which the specified <b>key</b> is
+   * mapped, as a read-only buffer, or <code>null</code> if this
+   * <code>Mneme</code> contains no mapping for the <b>key</b>. The value must
+   * have been stored by {@link #putBytes(String, ByteBuffer)}.</p>
+   *
+   * <p>By default the value is read with {@link #get(Object) get} and its
+   * Base64 encoding decoded into a new array. Backends that hold bytes
+   * override this to return a view of them.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values using {@link
+   * uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param key the key whose associated bytes are to be returned
+   *
+   * @return a read-only buffer of the bytes to which the specified <b>key</b>
+   * is mapped, or <code>null</code> if this <code>Mneme</code> contains no
+   * mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalArgumentException if the value was not stored by {@link
+   * #putBytes(String, ByteBuffer)}
+   *
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  default ByteBuffer getBytes(final String key) {
+
+    checkNotBlank("key", key);
+
+    final String value = get(key);
+
+    return value == null
+        ? null
+        : ByteBuffer.wrap(Base64.getDecoder().decode(value)).asReadOnlyBuffer();
+  }
+
+  /**
+   * <p>Reads the bytes of the value to which the specified <b>key</b> is
+   * mapped into the specified <b>destination</b>, which may be a direct
+   * buffer, starting at its position. The value must have been stored by
+   * {@link #putBytes(String, ByteBuffer)}.</p>
+   *
+   * <p>By default the value is read with {@link #get(Object) get}, decoded,
+   * and then copied into the <b>destination</b>. Backends that hold bytes
+   * override this to copy them straight into it.</p>
+   *
+   * <p>The position of the <b>destination</b> is moved past the bytes read.
+   * If the value does not fit in the bytes remaining in the
+   * <b>destination</b>, its position is left unchanged (although the bytes
+   * after it may have been overwritten).</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values, and the
+   * <b>destination</b> parameter against <code>null</code> and read-only
+   * buffers, using {@link uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} and {@link
+   * uk.co.noop.mnemosyne.eunomia.ByteBufferEunomia#againstReadOnlyByteBuffers()
+   * ByteBufferEunomia#againstReadOnlyByteBuffers()} for more
+   * information.)</p>
+   *
+   * @param key the key whose associated bytes are to be read
+   * @param destination the buffer to read the bytes into
+   *
+   * @return the number of bytes read, or <code>-1</code> if this
+   * <code>Mneme</code> contains no mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws java.nio.BufferOverflowException if the value does not fit in the
+   * bytes remaining in the <b>destination</b>
+   * @throws IllegalArgumentException if the value was not stored by {@link
+   * #putBytes(String, ByteBuffer)}
+   *
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.mnemosyne.eunomia.ByteBufferEunomia#againstReadOnlyByteBuffers()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  default int read(final String key, final ByteBuffer destination) {
+
+    checkNotBlank("key", key);
+    checkWritable("destination", destination);
+
+    final String value = get(key);
+
+    if (value == null) {
+      return -1;
+    }
+
+    final byte[] bytes = Base64.getDecoder().decode(value);
+
+    if (bytes.length > destination.remaining()) {
+      throw new BufferOverflowException();
+    }
+
+    destination.put(bytes);
+
+    return bytes.length;
+  }
+
+  /**
+   * <p>Adds the specified <b>delta</b> to the counter of the specified
+   * <b>key</b>, which starts at zero. Increments are atomic, so none are lost
+   * to concurrent increments, and backends may spread the increments of a
+   * single counter over several cells so that concurrent writers do not
+   * contend on it.</p>
+   *
+   * <p>A counter is read with {@link #getCounter(String)}. It is stored as the
+   * decimal value of the <b>key</b>, which {@link #get(String)} returns,
+   * although on backends that spread their counters that value only includes
+   * the increments gathered into it so far.</p>
+   *
+   * <p>By default the counter is updated with {@link #merge(Object, Object,
+   * java.util.function.BiFunction) merge}, so implementations whose
+   * <code>merge</code> is not atomic must override this method to keep
+   * increments atomic.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values using {@link
+   * uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see #getCounter(String)
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  default void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    merge(key, Long.toString(delta), AbstractMneme::addCounts);
+  }
+
+  /**
+   * <p>Returns the counter of the specified <b>key</b>: the sum of every
+   * {@link #increment(String, long) increment} made to it, or zero if there
+   * have been none.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values using {@link
+   * uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param key the key of the counter
+   *
+   * @return the value of the counter
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see #increment(String, long)
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  default long getCounter(final String key) {
+
+    checkNotBlank("key", key);
+
+    final String value = get(key);
+
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
 }
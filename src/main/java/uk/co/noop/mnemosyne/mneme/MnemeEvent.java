@@ -0,0 +1,55 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>A change made to an {@link ObservableMneme}, as published to its
+ * subscribers.</p>
+ *
+ * @param type whether the entry was put or removed
+ * @param key the key of the entry
+ * @param value the value put, or <code>null</code> if the entry was removed
+ *
+ * @see ObservableMneme
+ */
+public record MnemeEvent(Type type, String key, String value) {
+
+  /**
+   * <p>Returns the event of <b>key</b> being mapped to <b>value</b>.</p>
+   *
+   * @param key the key of the entry
+   * @param value the value put
+   *
+   * @return a {@link Type#PUT} event
+   */
+  public static MnemeEvent put(final String key, final String value) {
+    return new MnemeEvent(Type.PUT, key, value);
+  }
+
+  /**
+   * <p>Returns the event of the entry of <b>key</b> being removed.</p>
+   *
+   * @param key the key of the entry
+   *
+   * @return a {@link Type#REMOVE} event
+   */
+  public static MnemeEvent remove(final String key) {
+    return new MnemeEvent(Type.REMOVE, key, null);
+  }
+
+  /**
+   * <p>The kinds of change published by an {@link ObservableMneme}.</p>
+   */
+  public enum Type {
+
+    /**
+     * <p>A key was mapped to a value, replacing any previous value.</p>
+     */
+    PUT,
+
+    /**
+     * <p>The entry of a key was removed.</p>
+     */
+    REMOVE
+
+  }
+
+}
@@ -0,0 +1,758 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} that publishes every change made through it to any
+ * number of {@link Flow.Subscriber}s, so that indexes and caches downstream
+ * of another <code>Mneme</code> can be kept up to date incrementally rather
+ * than by rescanning its keys.</p>
+ *
+ * <p>An <code>ObservableMneme</code> wraps any other <code>Mneme</code>, and
+ * reads and writes are passed on to it. Each successful put or removal is then
+ * published as a {@link MnemeEvent}, in the order the writes of each key were
+ * made; writes of the same key are serialised to keep that order, while writes
+ * of different keys proceed in parallel. Writes made to the wrapped
+ * <code>Mneme</code> directly are not published.</p>
+ *
+ * <p>Each subscriber has its own bounded buffer, and is delivered to
+ * asynchronously, as it requests events. When a subscriber's buffer is full,
+ * its {@link Overflow} decides whether further events are dropped for it
+ * (counted by {@link #getDroppedCount()}) or the writer waits for space.
+ * Closing the <code>ObservableMneme</code> completes every subscription.</p>
+ *
+ * <p>For example;</p>
+ *
+ * <pre>
+ * final ObservableMneme mneme = new ObservableMneme(new S3Mneme(...));
+ * mneme.subscribe(indexer, 1024, ObservableMneme.Overflow.BLOCK);
+ * </pre>
+ *
+ * @see Mneme
+ * @see MnemeEvent
+ * @see Flow.Publisher
+ */
+public class ObservableMneme extends AbstractMneme
+    implements Flow.Publisher<MnemeEvent>, AutoCloseable {
+
+  /**
+   * <p>The default buffer size of each subscriber, in events.</p>
+   */
+  public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+
+  private static final int STRIPES = 64;
+
+  private final Mneme mneme;
+  private final Executor executor;
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private final List<Channel> channels = new CopyOnWriteArrayList<>();
+  private final LongAdder droppedCount = new LongAdder();
+
+  private volatile boolean closed;
+
+  /**
+   * <p>Creates a new instance of <code>ObservableMneme</code> publishing the
+   * changes made to the specified <b>mneme</b>, delivering them to
+   * subscribers from the {@link ForkJoinPool#commonPool() common pool}.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>mneme</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param mneme The <code>Mneme</code> to read and write through.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   */
+  public ObservableMneme(final Mneme mneme) {
+    this(mneme, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * <p>Creates a new instance of <code>ObservableMneme</code> publishing the
+   * changes made to the specified <b>mneme</b>, delivering them to
+   * subscribers from the specified <b>executor</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>mneme</b> and <b>executor</b> parameters are validated against
+   * <code>null</code> using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param mneme The <code>Mneme</code> to read and write through.
+   * @param executor The executor that calls the subscribers, which should
+   *                 have a thread available for each subscriber that may
+   *                 block.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   */
+  public ObservableMneme(final Mneme mneme, final Executor executor) {
+
+    super();
+
+    checkNotNull("mneme", mneme);
+    checkNotNull("executor", executor);
+
+    this.mneme = mneme;
+    this.executor = executor;
+
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      stripes[stripe] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * <p>Subscribes the specified <b>subscriber</b> to the changes made from
+   * now on, with a buffer of {@link #DEFAULT_BUFFER_SIZE} events. Writers
+   * wait for the subscriber when its buffer is full.</p>
+   *
+   * @param subscriber the subscriber to publish {@link MnemeEvent}s to
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see #subscribe(Flow.Subscriber, int, Overflow)
+   */
+  @Override
+  public void subscribe(final Flow.Subscriber<? super MnemeEvent> subscriber) {
+    subscribe(subscriber, DEFAULT_BUFFER_SIZE, Overflow.BLOCK);
+  }
+
+  /**
+   * <p>Subscribes the specified <b>subscriber</b> to the changes made from
+   * now on, buffering up to <b>bufferSize</b> events it has not yet
+   * requested, and applying the specified <b>overflow</b> once they are
+   * full. A subscriber that subscribes after this
+   * <code>ObservableMneme</code> has been closed is completed at once.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>subscriber</b> and <b>overflow</b> parameters are validated
+   * against <code>null</code>, and the <b>bufferSize</b> parameter against
+   * non-positive values, using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} and {@link
+   * IntegerEunomia#againstNonPositiveIntegers()} for more information.)</p>
+   *
+   * @param subscriber the subscriber to publish {@link MnemeEvent}s to
+   * @param bufferSize the maximum number of events buffered for the
+   *                   subscriber, rounded up to a power of two
+   * @param overflow what to do with an event once the buffer is full
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see Overflow
+   */
+  public void subscribe(
+      final Flow.Subscriber<? super MnemeEvent> subscriber,
+      final int bufferSize,
+      final Overflow overflow) {
+
+    checkNotNull("subscriber", subscriber);
+    validate("bufferSize", bufferSize, IntegerEunomia.class)
+        .againstNonPositiveIntegers();
+    checkNotNull("overflow", overflow);
+
+    final Channel channel =
+        new Channel(new SubmissionPublisher<>(executor, bufferSize), overflow);
+
+    channel.publisher().subscribe(subscriber);
+    channels.add(channel);
+
+    // Checked after adding, so a concurrent close cannot miss the channel.
+    if (closed) {
+      channels.remove(channel);
+      channel.publisher().close();
+    }
+  }
+
+  /**
+   * <p>Returns the number of events dropped for subscribers whose buffers
+   * were full.</p>
+   *
+   * @return the number of dropped events
+   *
+   * @see Overflow#DROP
+   */
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  /**
+   * <p>Completes every subscription, once the events already buffered have
+   * been delivered. Writes are still passed on to the wrapped {@link Mneme},
+   * but no longer published.</p>
+   */
+  @Override
+  public void close() {
+
+    closed = true;
+
+    for (final Channel channel : channels) {
+      channels.remove(channel);
+      channel.publisher().close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the number of key/value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+    return mneme.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+    return mneme.containsKey(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+    return mneme.containsValue(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this <code>Mneme</code> contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+    return mneme.get(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A {@link MnemeEvent.Type#PUT} event is published once the value has
+   * been stored.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> {
+
+      final String previous = mneme.put(key, value);
+
+      publish(MnemeEvent.put(key, value));
+
+      return previous;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A {@link MnemeEvent.Type#REMOVE} event is published if there was a
+   * mapping to remove.</p>
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> {
+
+      final String previous = mneme.remove(key);
+
+      if (previous != null) {
+        publish(MnemeEvent.remove(key));
+      }
+
+      return previous;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+    return mneme.keySet();
+  }
+
+  /**
+   * <p>Applies {@link Mneme#putIfAbsent(Object, Object)} to the wrapped
+   * {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if the
+   * value was stored.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the current value associated with <b>key</b>, or
+   * <code>null</code> if the <b>value</b> was stored
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String putIfAbsent(final String key, final String value) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> {
+
+      final String current = mneme.putIfAbsent(key, value);
+
+      if (current == null) {
+        publish(MnemeEvent.put(key, value));
+      }
+
+      return current;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#remove(Object, Object)} to the wrapped {@link
+   * Mneme}, publishing a {@link MnemeEvent.Type#REMOVE} event if the entry
+   * was removed.</p>
+   *
+   * @param key key whose mapping is to be removed
+   * @param value value expected to be associated with the <b>key</b>
+   *
+   * @return <code>true</code> if the entry was removed
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public boolean remove(final Object key, final Object value) {
+
+    checkNotNull("key", key);
+
+    if (!(key instanceof String keyString)) {
+      return false;
+    }
+
+    return write(keyString, () -> {
+
+      final boolean removed = mneme.remove(keyString, value);
+
+      if (removed) {
+        publish(MnemeEvent.remove(keyString));
+      }
+
+      return removed;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#replace(Object, Object, Object)} to the wrapped
+   * {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if the
+   * value was replaced.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param oldValue value expected to be associated with the <b>key</b>
+   * @param newValue value to be associated with the <b>key</b>
+   *
+   * @return <code>true</code> if the value was replaced
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public boolean replace(
+      final String key,
+      final String oldValue,
+      final String newValue) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> {
+
+      final boolean replaced = mneme.replace(key, oldValue, newValue);
+
+      if (replaced) {
+        publish(MnemeEvent.put(key, newValue));
+      }
+
+      return replaced;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#replace(Object, Object)} to the wrapped {@link
+   * Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if the value was
+   * replaced.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value to be associated with the <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or
+   * <code>null</code> if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String replace(final String key, final String value) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> {
+
+      final String previous = mneme.replace(key, value);
+
+      if (previous != null) {
+        publish(MnemeEvent.put(key, value));
+      }
+
+      return previous;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#computeIfAbsent(Object, Function)} to the
+   * wrapped {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if
+   * a value was computed and stored.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param mappingFunction the function to compute a value
+   *
+   * @return the current (existing or computed) value associated with
+   * <b>key</b>, or <code>null</code> if the computed value is
+   * <code>null</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String computeIfAbsent(
+      final String key,
+      final Function<? super String, ? extends String> mappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("mappingFunction", mappingFunction);
+
+    return write(key, () -> {
+
+      final boolean[] computed = new boolean[1];
+      final String current = mneme.computeIfAbsent(key, k -> {
+        computed[0] = true;
+        return mappingFunction.apply(k);
+      });
+
+      if (computed[0] && current != null) {
+        publish(MnemeEvent.put(key, current));
+      }
+
+      return current;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#computeIfPresent(Object, BiFunction)} to the
+   * wrapped {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} or
+   * {@link MnemeEvent.Type#REMOVE} event if the value was recomputed.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String computeIfPresent(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> {
+
+      final boolean[] computed = new boolean[1];
+      final String current = mneme.computeIfPresent(key, (k, value) -> {
+        computed[0] = true;
+        return remappingFunction.apply(k, value);
+      });
+
+      if (computed[0]) {
+        publish(current == null
+            ? MnemeEvent.remove(key)
+            : MnemeEvent.put(key, current));
+      }
+
+      return current;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#compute(Object, BiFunction)} to the wrapped
+   * {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if a value
+   * was stored, or a {@link MnemeEvent.Type#REMOVE} event if one was
+   * removed.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String compute(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> {
+
+      final boolean[] existed = new boolean[1];
+      final String current = mneme.compute(key, (k, value) -> {
+        existed[0] = value != null;
+        return remappingFunction.apply(k, value);
+      });
+
+      if (current != null) {
+        publish(MnemeEvent.put(key, current));
+      } else if (existed[0]) {
+        publish(MnemeEvent.remove(key));
+      }
+
+      return current;
+    });
+  }
+
+  /**
+   * <p>Applies {@link Mneme#merge(Object, Object, BiFunction)} to the
+   * wrapped {@link Mneme}, publishing a {@link MnemeEvent.Type#PUT} event if
+   * a value was stored, or a {@link MnemeEvent.Type#REMOVE} event if one was
+   * removed.</p>
+   *
+   * @param key key with which the resulting value is to be associated
+   * @param value the value to store, or merge with the existing value
+   * @param remappingFunction the function to merge the values
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   */
+  @Override
+  public String merge(
+      final String key,
+      final String value,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> {
+
+      final String current = mneme.merge(key, value, remappingFunction);
+
+      // A merge always stores a value, unless the function removes it.
+      publish(current == null
+          ? MnemeEvent.remove(key)
+          : MnemeEvent.put(key, current));
+
+      return current;
+    });
+  }
+
+  /**
+   * <p>Applies <b>operation</b>, which writes <b>key</b> and publishes the
+   * change, while holding the lock of the stripe of <b>key</b>.</p>
+   */
+  private <T> T write(final String key, final Supplier<T> operation) {
+
+    final ReentrantLock stripe =
+        stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+
+    stripe.lock();
+
+    try {
+      return operation.get();
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  private void publish(final MnemeEvent event) {
+
+    for (final Channel channel : channels) {
+
+      final SubmissionPublisher<MnemeEvent> publisher = channel.publisher();
+
+      if (publisher.isClosed() || !publisher.hasSubscribers()) {
+        channels.remove(channel);
+        publisher.close();
+        continue;
+      }
+
+      if (channel.overflow() == Overflow.BLOCK) {
+        publisher.submit(event);
+      } else {
+        publisher.offer(event, (subscriber, dropped) -> {
+          droppedCount.increment();
+          return false;
+        });
+      }
+    }
+  }
+
+  /**
+   * <p>What an {@link ObservableMneme} does with an event for a subscriber
+   * whose buffer is full.</p>
+   */
+  public enum Overflow {
+
+    /**
+     * <p>The event is dropped for that subscriber, and counted by {@link
+     * ObservableMneme#getDroppedCount()}.</p>
+     */
+    DROP,
+
+    /**
+     * <p>The writer waits until the subscriber has made room for the
+     * event.</p>
+     */
+    BLOCK
+
+  }
+
+  private record Channel(
+      SubmissionPublisher<MnemeEvent> publisher,
+      Overflow overflow) {
+  }
+
+}
@@ -0,0 +1,816 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs locally, outside the Java heap.</p>
+ *
+ * <p>Keys and values are stored as UTF-8 in direct memory, so the garbage
+ * collector never has to trace them and heap use stays near-constant however
+ * many entries are stored. Entries are located through an open-addressing
+ * index, which is itself held in direct memory, and each entry is written to a
+ * power-of-two sized block carved out of large slabs. Freed blocks are kept on
+ * per-size free lists and reused by later writes.</p>
+ *
+ * <p><code>OffHeapMneme</code> instances are safe for concurrent use; reads
+ * share a read lock and writes take the write lock.</p>
+ *
+ * <p>Calling {@link #close()} drops every reference to the direct memory,
+ * after which every operation will throw an
+ * <code>IllegalStateException</code>. The memory itself is only freed once the
+ * garbage collector reclaims the buffers that hold it, which may be some time
+ * later.</p>
+ *
+ * @see Mneme
+ * @see LocalMneme
+ */
+public class OffHeapMneme extends AbstractMneme implements AutoCloseable {
+
+  /**
+   * <p>The default slab size, in bytes.</p>
+   */
+  public static final int DEFAULT_SLAB_SIZE = 1 << 26;
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(Capability.CHEAP_SIZE));
+
+  private static final int INITIAL_CAPACITY = 1 << 10;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final int INDEX_PAGE_SHIFT = 20;
+  private static final int INDEX_PAGE_SLOTS = 1 << INDEX_PAGE_SHIFT;
+  private static final int SLOT_SIZE = 16;
+  private static final int HEADER_SIZE = 8;
+  private static final int MINIMUM_BLOCK_SHIFT = 4;
+
+  private static final long EMPTY = 0L;
+  private static final long TOMBSTONE = -1L;
+
+  private final int slabSize;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private final long[] freeLists = new long[Integer.SIZE];
+
+  private ByteBuffer[] index;
+  private int capacity;
+  private int size;
+  private int tombstones;
+  private int currentSlab;
+  private int slabPosition;
+  private long allocatedBytes;
+  private boolean closed;
+
+  /**
+   * <p>Creates a new instance of <code>OffHeapMneme</code> using the {@link
+   * #DEFAULT_SLAB_SIZE}.</p>
+   */
+  public OffHeapMneme() {
+    this(DEFAULT_SLAB_SIZE);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>OffHeapMneme</code>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>slabSize</b> parameter is validated against values that are not
+   * a power of two. (See: {@link IntegerEunomia#againstNonPowersOfTwo()} for
+   * more information.)</p>
+   *
+   * @param slabSize The size, in bytes, of each slab of direct memory. Entries
+   *                 larger than this are given a dedicated slab.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see IntegerEunomia#againstNonPowersOfTwo()
+   */
+  public OffHeapMneme(final int slabSize) {
+
+    super();
+
+    validate("slabSize", slabSize, IntegerEunomia.class)
+        .againstNonPowersOfTwo()
+        .againstInvalidValues(target -> target < 1 << MINIMUM_BLOCK_SHIFT);
+
+    this.slabSize = slabSize;
+
+    reset();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+
+    lock.readLock().lock();
+
+    try {
+      ensureOpen();
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>An <code>OffHeapMneme</code> keeps a count of its entries.</p>
+   *
+   * @return {@link Capability#CHEAP_SIZE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+
+    checkNotBlank("key", key);
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+
+    lock.readLock().lock();
+
+    try {
+      ensureOpen();
+      return find(keyBytes, hash(keyBytes)) >= 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+
+    final byte[] valueBytes = value.getBytes(UTF_8);
+
+    lock.readLock().lock();
+
+    try {
+
+      ensureOpen();
+
+      for (int slot = 0; slot < capacity; slot++) {
+
+        final long address = slotAddress(slot);
+
+        if (address != EMPTY && address != TOMBSTONE) {
+
+          final ByteBuffer slab = slab(address);
+          final int offset = offset(address);
+
+          if (slab.getInt(offset + 4) == valueBytes.length
+              && matches(
+                  slab,
+                  offset + HEADER_SIZE + slab.getInt(offset),
+                  valueBytes)) {
+            return true;
+          }
+        }
+      }
+
+      return false;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+
+    lock.readLock().lock();
+
+    try {
+
+      ensureOpen();
+
+      final int slot = find(keyBytes, hash(keyBytes));
+
+      return slot < 0 ? null : readValue(slotAddress(slot));
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>. (A <code>null</code> return can
+   * also indicate that the {@link Mneme} previously associated
+   * <code>null</code> with <b>key</b>, if the implementation supports
+   * <code>null</code> values.)
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final byte[] valueBytes = value.getBytes(UTF_8);
+    final int hash = hash(keyBytes);
+
+    lock.writeLock().lock();
+
+    try {
+
+      ensureOpen();
+
+      final int slot = find(keyBytes, hash);
+
+      if (slot >= 0) {
+
+        final long previousAddress = slotAddress(slot);
+        final String previousValue = readValue(previousAddress);
+
+        final int previousShift = blockShift(recordSize(
+            slab(previousAddress).getInt(offset(previousAddress)),
+            slab(previousAddress).getInt(offset(previousAddress) + 4)));
+
+        if (previousShift
+            == blockShift(recordSize(keyBytes.length, valueBytes.length))) {
+
+          write(previousAddress, keyBytes, valueBytes);
+
+        } else {
+
+          free(previousAddress, previousShift);
+          setSlot(slot, write(allocate(keyBytes, valueBytes), keyBytes,
+              valueBytes), hash);
+        }
+
+        return previousValue;
+      }
+
+      if ((long) size + tombstones + 1 > (capacity >>> 2) * 3L) {
+        resize(size + 1 > (capacity >>> 1) ? capacity << 1 : capacity);
+      }
+
+      final int freeSlot = findFree(hash);
+
+      if (slotAddress(freeSlot) == TOMBSTONE) {
+        tombstones--;
+      }
+
+      setSlot(freeSlot, write(allocate(keyBytes, valueBytes), keyBytes,
+          valueBytes), hash);
+      size++;
+
+      return null;
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+
+    lock.writeLock().lock();
+
+    try {
+
+      ensureOpen();
+
+      final int slot = find(keyBytes, hash(keyBytes));
+
+      if (slot < 0) {
+        return null;
+      }
+
+      final long address = slotAddress(slot);
+      final String previousValue = readValue(address);
+
+      free(address, blockShift(recordSize(
+          slab(address).getInt(offset(address)),
+          slab(address).getInt(offset(address) + 4))));
+      setSlot(slot, TOMBSTONE, 0);
+      size--;
+      tombstones++;
+
+      return previousValue;
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>The count is read and written back while the write lock is held, so
+   * concurrent increments of a counter are applied one after another.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    lock.writeLock().lock();
+
+    try {
+
+      final String count = get(key);
+
+      put(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta)));
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>All the direct memory is released and a fresh, empty, index is
+   * allocated.</p>
+   */
+  @Override
+  public void clear() {
+
+    lock.writeLock().lock();
+
+    try {
+      ensureOpen();
+      reset();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+
+    lock.readLock().lock();
+
+    try {
+
+      ensureOpen();
+
+      final Set<String> keys = new HashSet<>();
+
+      for (int slot = 0; slot < capacity; slot++) {
+
+        final long address = slotAddress(slot);
+
+        if (address != EMPTY && address != TOMBSTONE) {
+          keys.add(readKey(address));
+        }
+      }
+
+      return keys;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the number of bytes of direct memory currently allocated by
+   * this <code>OffHeapMneme</code>, including its index.</p>
+   *
+   * @return the number of bytes of direct memory currently allocated
+   */
+  public long getAllocatedBytes() {
+
+    lock.readLock().lock();
+
+    try {
+      return allocatedBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Drops the references this <code>OffHeapMneme</code> holds to its
+   * direct memory. Once closed, every operation will throw an
+   * <code>IllegalStateException</code>.</p>
+   *
+   * <p>The direct memory is not freed here. It is freed when the garbage
+   * collector reclaims the buffers, which happens no sooner than their next
+   * collection. Until then it still counts towards
+   * <code>-XX:MaxDirectMemorySize</code>.</p>
+   *
+   * <p>Calling <code>close()</code> more than once has no further effect.</p>
+   */
+  @Override
+  public void close() {
+
+    lock.writeLock().lock();
+
+    try {
+      closed = true;
+      slabs.clear();
+      index = null;
+      capacity = 0;
+      size = 0;
+      allocatedBytes = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureOpen() {
+
+    if (closed) {
+      throw new IllegalStateException("OffHeapMneme has been closed");
+    }
+  }
+
+  private void reset() {
+
+    slabs.clear();
+    Arrays.fill(freeLists, EMPTY);
+    currentSlab = -1;
+    slabPosition = 0;
+    allocatedBytes = 0;
+    size = 0;
+    tombstones = 0;
+    index = newIndex(INITIAL_CAPACITY);
+    capacity = INITIAL_CAPACITY;
+  }
+
+  private ByteBuffer[] newIndex(final int slots) {
+
+    final int pageSlots = Math.min(slots, INDEX_PAGE_SLOTS);
+    final ByteBuffer[] pages = new ByteBuffer[slots / pageSlots];
+
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = ByteBuffer.allocateDirect(pageSlots * SLOT_SIZE);
+    }
+
+    allocatedBytes += (long) slots * SLOT_SIZE;
+
+    return pages;
+  }
+
+  private void resize(final int newCapacity) {
+
+    if (newCapacity > MAXIMUM_CAPACITY) {
+      throw new IllegalStateException("OffHeapMneme index is full");
+    }
+
+    final ByteBuffer[] oldIndex = index;
+    final int oldCapacity = capacity;
+
+    allocatedBytes -= (long) oldCapacity * SLOT_SIZE;
+    index = newIndex(newCapacity);
+    capacity = newCapacity;
+    tombstones = 0;
+
+    for (int slot = 0; slot < oldCapacity; slot++) {
+
+      final ByteBuffer page = oldIndex[slot >>> INDEX_PAGE_SHIFT];
+      final int position = (slot & (INDEX_PAGE_SLOTS - 1)) * SLOT_SIZE;
+      final long address = page.getLong(position);
+
+      if (address != EMPTY && address != TOMBSTONE) {
+        final int hash = page.getInt(position + 8);
+        setSlot(findFree(hash), address, hash);
+      }
+    }
+  }
+
+  private int find(final byte[] keyBytes, final int hash) {
+
+    final int mask = capacity - 1;
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+
+      final long address = slotAddress(slot);
+
+      if (address == EMPTY) {
+        return -1;
+      }
+
+      if (address != TOMBSTONE && slotHash(slot) == hash) {
+
+        final ByteBuffer slab = slab(address);
+        final int offset = offset(address);
+
+        if (slab.getInt(offset) == keyBytes.length
+            && matches(slab, offset + HEADER_SIZE, keyBytes)) {
+          return slot;
+        }
+      }
+    }
+  }
+
+  private int findFree(final int hash) {
+
+    final int mask = capacity - 1;
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+
+      final long address = slotAddress(slot);
+
+      if (address == EMPTY || address == TOMBSTONE) {
+        return slot;
+      }
+    }
+  }
+
+  private long slotAddress(final int slot) {
+    return index[slot >>> INDEX_PAGE_SHIFT]
+        .getLong((slot & (INDEX_PAGE_SLOTS - 1)) * SLOT_SIZE);
+  }
+
+  private int slotHash(final int slot) {
+    return index[slot >>> INDEX_PAGE_SHIFT]
+        .getInt((slot & (INDEX_PAGE_SLOTS - 1)) * SLOT_SIZE + 8);
+  }
+
+  private void setSlot(final int slot, final long address, final int hash) {
+
+    final ByteBuffer page = index[slot >>> INDEX_PAGE_SHIFT];
+    final int position = (slot & (INDEX_PAGE_SLOTS - 1)) * SLOT_SIZE;
+
+    page.putLong(position, address);
+    page.putInt(position + 8, hash);
+  }
+
+  private long allocate(final byte[] keyBytes, final byte[] valueBytes) {
+
+    final long recordSize = recordSize(keyBytes.length, valueBytes.length);
+
+    if (recordSize > 1 << 30) {
+      throw new IllegalArgumentException("Entry is too large to store");
+    }
+
+    final int shift = blockShift(recordSize);
+    final long free = freeLists[shift];
+
+    if (free != EMPTY) {
+      freeLists[shift] = slab(free).getLong(offset(free));
+      return free;
+    }
+
+    final int blockSize = 1 << shift;
+
+    if (blockSize > slabSize) {
+      slabs.add(ByteBuffer.allocateDirect(blockSize));
+      allocatedBytes += blockSize;
+      return address(slabs.size() - 1, 0);
+    }
+
+    if (currentSlab < 0 || slabPosition + blockSize > slabSize) {
+      retireCurrentSlab();
+      slabs.add(ByteBuffer.allocateDirect(slabSize));
+      allocatedBytes += slabSize;
+      currentSlab = slabs.size() - 1;
+      slabPosition = 0;
+    }
+
+    final long address = address(currentSlab, slabPosition);
+
+    slabPosition += blockSize;
+
+    return address;
+  }
+
+  private void retireCurrentSlab() {
+
+    if (currentSlab < 0) {
+      return;
+    }
+
+    int remaining = slabSize - slabPosition;
+
+    while (remaining >= 1 << MINIMUM_BLOCK_SHIFT) {
+
+      final int shift = 31 - Integer.numberOfLeadingZeros(remaining);
+
+      free(address(currentSlab, slabPosition), shift);
+      slabPosition += 1 << shift;
+      remaining -= 1 << shift;
+    }
+  }
+
+  private void free(final long address, final int shift) {
+    slab(address).putLong(offset(address), freeLists[shift]);
+    freeLists[shift] = address;
+  }
+
+  private long write(
+      final long address,
+      final byte[] keyBytes,
+      final byte[] valueBytes) {
+
+    final ByteBuffer slab = slab(address);
+    final int offset = offset(address);
+
+    slab.putInt(offset, keyBytes.length);
+    slab.putInt(offset + 4, valueBytes.length);
+    slab.put(offset + HEADER_SIZE, keyBytes);
+    slab.put(offset + HEADER_SIZE + keyBytes.length, valueBytes);
+
+    return address;
+  }
+
+  private String readKey(final long address) {
+
+    final ByteBuffer slab = slab(address);
+    final int offset = offset(address);
+    final byte[] bytes = new byte[slab.getInt(offset)];
+
+    slab.get(offset + HEADER_SIZE, bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  private String readValue(final long address) {
+
+    final ByteBuffer slab = slab(address);
+    final int offset = offset(address);
+    final byte[] bytes = new byte[slab.getInt(offset + 4)];
+
+    slab.get(offset + HEADER_SIZE + slab.getInt(offset), bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  private ByteBuffer slab(final long address) {
+    return slabs.get((int) (address >>> 32) - 1);
+  }
+
+  private static int offset(final long address) {
+    return (int) address;
+  }
+
+  private static long address(final int slab, final int offset) {
+    return ((long) (slab + 1) << 32) | offset;
+  }
+
+  private static long recordSize(final int keyLength, final int valueLength) {
+    return (long) HEADER_SIZE + keyLength + valueLength;
+  }
+
+  private static int blockShift(final long recordSize) {
+    return Math.max(
+        MINIMUM_BLOCK_SHIFT,
+        64 - Long.numberOfLeadingZeros(recordSize - 1));
+  }
+
+  private static boolean matches(
+      final ByteBuffer slab,
+      final int position,
+      final byte[] bytes) {
+
+    for (int i = 0; i < bytes.length; i++) {
+      if (slab.get(position + i) != bytes[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static int hash(final byte[] bytes) {
+
+    final int hash = Arrays.hashCode(bytes);
+
+    return hash ^ (hash >>> 16);
+  }
+
+}
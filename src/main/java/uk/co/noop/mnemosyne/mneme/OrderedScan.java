@@ -0,0 +1,28 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * <p>Implemented by a {@link Mneme} whose entries can be read in ascending
+ * key order, together with their values, faster than by listing the keys and
+ * reading each value in turn. {@link AbstractMneme} uses it to read the
+ * entries of {@link AbstractMneme#values() values()} and {@link
+ * AbstractMneme#entrySet() entrySet()}, and to answer {@link
+ * AbstractMneme#isEmpty() isEmpty()}.</p>
+ *
+ * @see AbstractMneme
+ * @see LsmMneme
+ * @see RadixMneme
+ */
+public interface OrderedScan {
+
+  /**
+   * <p>Returns an iterator over every entry, with its value, in ascending key
+   * order.</p>
+   *
+   * @return an iterator over the entries, in ascending key order
+   */
+  Iterator<Entry<String, String>> scanEntries();
+
+}
@@ -0,0 +1,1396 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.themis.Themis;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs locally, in ascending key order, in a radix tree.</p>
+ *
+ * <p>Keys are not stored as <code>String</code>s. Each node of the tree holds
+ * the characters its keys share beyond its parent, so a prefix that starts
+ * many keys (e.g. the <code>tenant/</code> of <code>tenant/entity/id</code>)
+ * is held once. Nodes adapt to their fan-out: children are held in a small
+ * sorted array, searched linearly or by bisection as it grows, and in a
+ * directly indexed 256-slot table once there are more than sixteen of them
+ * and all are labelled with Latin-1 characters.</p>
+ *
+ * <p>Lookups, and the navigation methods (e.g. {@link #ceilingKey(String)}),
+ * only follow the path of the key they are given, and
+ * {@link #keysWithPrefix(String)} and
+ * {@link #subMap(String, boolean, String, boolean)} only visit the subtree of
+ * the keys they return, rather than scanning every key.</p>
+ *
+ * <p><code>RadixMneme</code> instances are safe for concurrent use. Reads
+ * share a lock, and writes hold it exclusively.</p>
+ *
+ * @see Mneme
+ */
+public class RadixMneme extends AbstractMneme implements OrderedScan {
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(Capability.CHEAP_SIZE));
+
+  private static final int SPARSE_CHILDREN = 1 << 4;
+  private static final int DENSE_CHILDREN = 1 << 8;
+  private static final int LINEAR_SEARCH_CHILDREN = 1 << 3;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private Node root = new Node((char) 0, new char[0]);
+  private int size;
+
+  /**
+   * <p>Creates a new, empty, instance of <code>RadixMneme</code>.</p>
+   */
+  public RadixMneme() {
+    super();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+
+    lock.readLock().lock();
+
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A <code>RadixMneme</code> keeps a count of its entries.</p>
+   *
+   * @return {@link Capability#CHEAP_SIZE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+    return get(key) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+
+    lock.readLock().lock();
+
+    try {
+      return containsValue(root, value);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+
+    lock.readLock().lock();
+
+    try {
+
+      final Node node = find(key);
+
+      return node == null ? null : node.value;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    lock.writeLock().lock();
+
+    try {
+      return insert(key, value);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    lock.writeLock().lock();
+
+    try {
+      return delete(key);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>The counter is read and replaced under the write lock of the tree, so
+   * concurrent increments do not overwrite each other.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    lock.writeLock().lock();
+
+    try {
+
+      final String count = get(key);
+
+      put(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta)));
+
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+
+    lock.writeLock().lock();
+
+    try {
+      root = new Node((char) 0, new char[0]);
+      size = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The keys are returned in ascending order. The set is <b>not</b> backed
+   * by the {@link Mneme}.</p>
+   *
+   * @return a set of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+    return keysWithPrefix("");
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entries are copied from the tree in a single walk, under the read
+   * lock, so the iterator is <b>not</b> backed by the
+   * <code>RadixMneme</code>.</p>
+   *
+   * @return an iterator over the entries, in ascending key order
+   *
+   * @see OrderedScan
+   */
+  @Override
+  public Iterator<Entry<String, String>> scanEntries() {
+
+    final List<Entry<String, String>> entries = new ArrayList<>(size());
+
+    lock.readLock().lock();
+
+    try {
+      collectEntries(root, new StringBuilder(), entries);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return entries.iterator();
+  }
+
+  /**
+   * <p>Returns the keys that start with the specified <b>prefix</b>, in
+   * ascending order. Only the subtree holding those keys is visited. The set
+   * is <b>not</b> backed by the {@link RadixMneme}.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>prefix</b> parameter is validated against <code>null</code>
+   * values using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} for more information.)</p>
+   *
+   * @param prefix the prefix of the keys to return; an empty prefix returns
+   *               every key
+   *
+   * @return the keys starting with <b>prefix</b>, in ascending order
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public Set<String> keysWithPrefix(final String prefix) {
+
+    checkNotNull("prefix", prefix);
+
+    final Set<String> keys = new LinkedHashSet<>();
+
+    lock.readLock().lock();
+
+    try {
+
+      final StringBuilder path = new StringBuilder();
+
+      Node node = root;
+
+      // Descend to the node whose keys all start with the prefix, which may
+      // end part way through the characters of that node.
+      while (true) {
+
+        for (final char character : node.prefix) {
+
+          final int depth = path.length();
+
+          if (depth < prefix.length() && character != prefix.charAt(depth)) {
+            return keys;
+          }
+
+          path.append(character);
+        }
+
+        if (path.length() >= prefix.length()) {
+          break;
+        }
+
+        node = node.child(prefix.charAt(path.length()));
+
+        if (node == null) {
+          return keys;
+        }
+
+        path.append(node.label);
+      }
+
+      collectKeys(node, path, keys);
+
+      return keys;
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Returns a copy of the mappings with keys from <b>fromKey</b>,
+   * inclusive, to <b>toKey</b>, exclusive, in ascending key order.</p>
+   *
+   * @param fromKey the lowest key to include
+   * @param toKey the key to stop before
+   *
+   * @return the mappings in the range, in ascending key order
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see #subMap(String, boolean, String, boolean)
+   */
+  public NavigableMap<String, String> subMap(
+      final String fromKey,
+      final String toKey) {
+
+    return subMap(fromKey, true, toKey, false);
+  }
+
+  /**
+   * <p>Returns a copy of the mappings with keys between <b>fromKey</b> and
+   * <b>toKey</b>, in ascending key order. Only the subtrees that may hold keys
+   * in the range are visited. The map is <b>not</b> backed by the
+   * {@link RadixMneme}, so changes to the <code>RadixMneme</code> are
+   * <b>not</b> reflected in the map, and vice-versa.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>fromKey</b> and <b>toKey</b> parameters are validated against
+   * blank values using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param fromKey the low end of the range
+   * @param fromInclusive <code>true</code> if <b>fromKey</b> is in the range
+   * @param toKey the high end of the range
+   * @param toInclusive <code>true</code> if <b>toKey</b> is in the range
+   *
+   * @return the mappings in the range, in ascending key order
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public NavigableMap<String, String> subMap(
+      final String fromKey,
+      final boolean fromInclusive,
+      final String toKey,
+      final boolean toInclusive) {
+
+    checkNotBlank("fromKey", fromKey);
+    checkNotBlank("toKey", toKey);
+
+    final NavigableMap<String, String> entries = new TreeMap<>();
+
+    lock.readLock().lock();
+
+    try {
+      new RangeCollector(fromKey, fromInclusive, toKey, toInclusive, entries)
+          .collect(root, new StringBuilder());
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return entries;
+  }
+
+  /**
+   * <p>Returns the lowest key.</p>
+   *
+   * @return the lowest key
+   *
+   * @throws NoSuchElementException if this {@link RadixMneme} is empty
+   */
+  public String firstKey() {
+
+    lock.readLock().lock();
+
+    try {
+
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+
+      return first(root, new StringBuilder());
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the highest key.</p>
+   *
+   * @return the highest key
+   *
+   * @throws NoSuchElementException if this {@link RadixMneme} is empty
+   */
+  public String lastKey() {
+
+    lock.readLock().lock();
+
+    try {
+
+      if (size == 0) {
+        throw new NoSuchElementException();
+      }
+
+      return last(root, new StringBuilder());
+
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the lowest key greater than or equal to the specified
+   * <b>key</b>.</p>
+   *
+   * @param key the key to search from
+   *
+   * @return the least key greater than or equal to <b>key</b>, or
+   * <code>null</code> if there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see java.util.NavigableMap#ceilingKey(Object)
+   */
+  public String ceilingKey(final String key) {
+    return ceilingKey(key, true);
+  }
+
+  /**
+   * <p>Returns the lowest key strictly greater than the specified
+   * <b>key</b>.</p>
+   *
+   * @param key the key to search from
+   *
+   * @return the least key greater than <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see java.util.NavigableMap#higherKey(Object)
+   */
+  public String higherKey(final String key) {
+    return ceilingKey(key, false);
+  }
+
+  /**
+   * <p>Returns the highest key less than or equal to the specified
+   * <b>key</b>.</p>
+   *
+   * @param key the key to search from
+   *
+   * @return the greatest key less than or equal to <b>key</b>, or
+   * <code>null</code> if there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see java.util.NavigableMap#floorKey(Object)
+   */
+  public String floorKey(final String key) {
+    return floorKey(key, true);
+  }
+
+  /**
+   * <p>Returns the highest key strictly less than the specified
+   * <b>key</b>.</p>
+   *
+   * @param key the key to search from
+   *
+   * @return the greatest key less than <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see java.util.NavigableMap#lowerKey(Object)
+   */
+  public String lowerKey(final String key) {
+    return floorKey(key, false);
+  }
+
+  private String ceilingKey(final String key, final boolean inclusive) {
+
+    checkNotBlank("key", key);
+
+    lock.readLock().lock();
+
+    try {
+      return ceiling(root, new StringBuilder(), 0, key, inclusive);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private String floorKey(final String key, final boolean inclusive) {
+
+    checkNotBlank("key", key);
+
+    lock.readLock().lock();
+
+    try {
+      return floor(root, new StringBuilder(), 0, key, inclusive);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Node find(final String key) {
+
+    Node node = root;
+    int depth = 0;
+
+    while (true) {
+
+      final char[] characters = node.prefix;
+
+      if (key.length() - depth < characters.length) {
+        return null;
+      }
+
+      for (int i = 0; i < characters.length; i++) {
+        if (key.charAt(depth + i) != characters[i]) {
+          return null;
+        }
+      }
+
+      depth += characters.length;
+
+      if (depth == key.length()) {
+        return node;
+      }
+
+      node = node.child(key.charAt(depth++));
+
+      if (node == null) {
+        return null;
+      }
+    }
+  }
+
+  private String insert(final String key, final String value) {
+
+    Node parent = null;
+    Node node = root;
+    int depth = 0;
+
+    while (true) {
+
+      final char[] characters = node.prefix;
+      final int matched = match(characters, key, depth);
+
+      if (matched < characters.length) {
+
+        // The key leaves the node part way through its characters, so split
+        // the node where they differ.
+        final Node split =
+            new Node(node.label, Arrays.copyOf(characters, matched));
+
+        node.label = characters[matched];
+        node.prefix =
+            Arrays.copyOfRange(characters, matched + 1, characters.length);
+        split.addChild(node);
+        parent.replaceChild(split);
+        depth += matched;
+
+        if (depth == key.length()) {
+          split.value = value;
+        } else {
+          split.addChild(leaf(key, depth, value));
+        }
+
+        size++;
+
+        return null;
+      }
+
+      depth += matched;
+
+      if (depth == key.length()) {
+
+        final String previous = node.value;
+
+        node.value = value;
+
+        if (previous == null) {
+          size++;
+        }
+
+        return previous;
+      }
+
+      final Node child = node.child(key.charAt(depth));
+
+      if (child == null) {
+        node.addChild(leaf(key, depth, value));
+        size++;
+        return null;
+      }
+
+      parent = node;
+      node = child;
+      depth++;
+    }
+  }
+
+  private String delete(final String key) {
+
+    Node parent = null;
+    Node node = root;
+    int depth = 0;
+
+    while (true) {
+
+      final char[] characters = node.prefix;
+
+      if (match(characters, key, depth) < characters.length) {
+        return null;
+      }
+
+      depth += characters.length;
+
+      if (depth == key.length()) {
+        break;
+      }
+
+      final Node child = node.child(key.charAt(depth++));
+
+      if (child == null) {
+        return null;
+      }
+
+      parent = node;
+      node = child;
+    }
+
+    final String previous = node.value;
+
+    if (previous == null) {
+      return null;
+    }
+
+    node.value = null;
+    size--;
+
+    // Keep the tree compressed: a node without a value must have at least
+    // two children, so remove or merge any node that no longer does.
+    if (node.childCount == 0) {
+
+      parent.removeChild(node.label);
+
+      if (parent != root && parent.value == null && parent.childCount == 1) {
+        parent.absorbOnlyChild();
+      }
+
+    } else if (node.childCount == 1) {
+      node.absorbOnlyChild();
+    }
+
+    return previous;
+  }
+
+  private static int match(
+      final char[] characters,
+      final String key,
+      final int depth) {
+
+    final int length = Math.min(characters.length, key.length() - depth);
+
+    int matched = 0;
+
+    while (matched < length
+        && characters[matched] == key.charAt(depth + matched)) {
+      matched++;
+    }
+
+    return matched;
+  }
+
+  private static Node leaf(
+      final String key,
+      final int depth,
+      final String value) {
+
+    final Node leaf = new Node(
+        key.charAt(depth),
+        key.substring(depth + 1).toCharArray());
+
+    leaf.value = value;
+
+    return leaf;
+  }
+
+  /**
+   * <p>Returns the least key in the subtree of <b>node</b> greater than (or,
+   * if <b>inclusive</b>, equal to) <b>key</b>. On entry <b>path</b> holds the
+   * key of <b>node</b>, the first <b>matched</b> characters of which are known
+   * to equal those of <b>key</b>.</p>
+   */
+  private static String ceiling(
+      final Node node,
+      final StringBuilder path,
+      final int matched,
+      final String key,
+      final boolean inclusive) {
+
+    final int comparison = compare(path, matched, key);
+
+    if (comparison > 0) {
+      return first(node, path);
+    }
+
+    if (comparison < 0) {
+      return null;
+    }
+
+    if (path.length() == key.length()) {
+
+      if (node.value != null && inclusive) {
+        return path.toString();
+      }
+
+      final Node child = node.ceilingChild(0);
+
+      return child == null ? null : first(child, append(path, child));
+    }
+
+    final char next = key.charAt(path.length());
+
+    for (Node child = node.ceilingChild(next);
+         child != null;
+         child = node.ceilingChild(child.label + 1)) {
+
+      final int length = path.length();
+      final String result = child.label == next
+          ? ceiling(child, append(path, child), length, key, inclusive)
+          : first(child, append(path, child));
+
+      if (result != null) {
+        return result;
+      }
+
+      path.setLength(length);
+    }
+
+    return null;
+  }
+
+  /**
+   * <p>Returns the greatest key in the subtree of <b>node</b> less than (or,
+   * if <b>inclusive</b>, equal to) <b>key</b>. On entry <b>path</b> holds the
+   * key of <b>node</b>, the first <b>matched</b> characters of which are known
+   * to equal those of <b>key</b>.</p>
+   */
+  private static String floor(
+      final Node node,
+      final StringBuilder path,
+      final int matched,
+      final String key,
+      final boolean inclusive) {
+
+    final int comparison = compare(path, matched, key);
+
+    if (comparison < 0) {
+      return last(node, path);
+    }
+
+    if (comparison > 0) {
+      return null;
+    }
+
+    if (path.length() == key.length()) {
+      return node.value != null && inclusive ? path.toString() : null;
+    }
+
+    final char next = key.charAt(path.length());
+    final int length = path.length();
+
+    for (Node child = node.floorChild(next);
+         child != null;
+         child = node.floorChild(child.label - 1)) {
+
+      final String result = child.label == next
+          ? floor(child, append(path, child), length, key, inclusive)
+          : last(child, append(path, child));
+
+      if (result != null) {
+        return result;
+      }
+
+      path.setLength(length);
+    }
+
+    return node.value != null ? path.toString() : null;
+  }
+
+  /**
+   * <p>Compares the keys starting with <b>path</b>, the first <b>matched</b>
+   * characters of which are known to equal those of <b>key</b>, with
+   * <b>key</b>: returning a negative number if they are all less than it, a
+   * positive number if they are all greater than it, and zero if <b>path</b>
+   * is a prefix of <b>key</b>.</p>
+   */
+  private static int compare(
+      final StringBuilder path,
+      final int matched,
+      final String key) {
+
+    final int length = Math.min(path.length(), key.length());
+
+    for (int i = matched; i < length; i++) {
+
+      final int comparison = Character.compare(path.charAt(i), key.charAt(i));
+
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+
+    return path.length() > key.length() ? 1 : 0;
+  }
+
+  private static String first(final Node node, final StringBuilder path) {
+
+    Node current = node;
+
+    while (current.value == null) {
+      current = current.ceilingChild(0);
+      append(path, current);
+    }
+
+    return path.toString();
+  }
+
+  private static String last(final Node node, final StringBuilder path) {
+
+    Node current = node;
+    Node child;
+
+    while ((child = current.floorChild(Character.MAX_VALUE)) != null) {
+      current = child;
+      append(path, current);
+    }
+
+    return path.toString();
+  }
+
+  private static StringBuilder append(
+      final StringBuilder path,
+      final Node node) {
+
+    return path.append(node.label).append(node.prefix);
+  }
+
+  private static boolean containsValue(final Node node, final String value) {
+
+    if (value.equals(node.value)) {
+      return true;
+    }
+
+    for (Node child = node.ceilingChild(0);
+         child != null;
+         child = node.ceilingChild(child.label + 1)) {
+
+      if (containsValue(child, value)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static void collectKeys(
+      final Node node,
+      final StringBuilder path,
+      final Set<String> keys) {
+
+    if (node.value != null) {
+      keys.add(path.toString());
+    }
+
+    for (Node child = node.ceilingChild(0);
+         child != null;
+         child = node.ceilingChild(child.label + 1)) {
+
+      final int length = path.length();
+
+      collectKeys(child, append(path, child), keys);
+      path.setLength(length);
+    }
+  }
+
+  private static void collectEntries(
+      final Node node,
+      final StringBuilder path,
+      final List<Entry<String, String>> entries) {
+
+    if (node.value != null) {
+      entries.add(new SimpleImmutableEntry<>(path.toString(), node.value));
+    }
+
+    for (Node child = node.ceilingChild(0);
+         child != null;
+         child = node.ceilingChild(child.label + 1)) {
+
+      final int length = path.length();
+
+      collectEntries(child, append(path, child), entries);
+      path.setLength(length);
+    }
+  }
+
+  /**
+   * <p>Collects the entries with keys in a range, skipping the subtrees that
+   * lie wholly outside it.</p>
+   */
+  private static final class RangeCollector {
+
+    private final String fromKey;
+    private final boolean fromInclusive;
+    private final String toKey;
+    private final boolean toInclusive;
+    private final NavigableMap<String, String> entries;
+
+    private RangeCollector(
+        final String fromKey,
+        final boolean fromInclusive,
+        final String toKey,
+        final boolean toInclusive,
+        final NavigableMap<String, String> entries) {
+
+      this.fromKey = fromKey;
+      this.fromInclusive = fromInclusive;
+      this.toKey = toKey;
+      this.toInclusive = toInclusive;
+      this.entries = entries;
+    }
+
+    /**
+     * <p>Collects the entries of the subtree of <b>node</b>, whose keys start
+     * with <b>path</b>, returning <code>false</code> once a key beyond the
+     * range has been reached.</p>
+     */
+    private boolean collect(final Node node, final StringBuilder path) {
+
+      if (comparePrefix(path, toKey) > 0) {
+        return false;
+      }
+
+      if (comparePrefix(path, fromKey) < 0) {
+        return true;
+      }
+
+      if (node.value != null) {
+
+        final String key = path.toString();
+        final int from = key.compareTo(fromKey);
+        final int to = key.compareTo(toKey);
+
+        if (to > 0 || (to == 0 && !toInclusive)) {
+          return false;
+        }
+
+        if (from > 0 || (from == 0 && fromInclusive)) {
+          entries.put(key, node.value);
+        }
+      }
+
+      for (Node child = node.ceilingChild(0);
+           child != null;
+           child = node.ceilingChild(child.label + 1)) {
+
+        final int length = path.length();
+        final boolean more = collect(child, append(path, child));
+
+        path.setLength(length);
+
+        if (!more) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    /**
+     * <p>Compares the keys starting with <b>path</b> with <b>key</b>:
+     * returning a negative number if they are all less than it, a positive
+     * number if they are all greater than it, and zero otherwise.</p>
+     */
+    private static int comparePrefix(
+        final StringBuilder path,
+        final String key) {
+
+      final int length = Math.min(path.length(), key.length());
+
+      for (int i = 0; i < length; i++) {
+
+        final int comparison = Character.compare(path.charAt(i), key.charAt(i));
+
+        if (comparison != 0) {
+          return comparison;
+        }
+      }
+
+      return path.length() > key.length() ? 1 : 0;
+    }
+
+  }
+
+  /**
+   * <p>A node of the tree: the character labelling the edge from its parent,
+   * the characters its keys share beyond that, the value of the key ending
+   * here (if any), and its children.</p>
+   *
+   * <p>Up to sixteen children are held in arrays sorted by label; beyond
+   * that, if every label is a Latin-1 character, in a table indexed by label
+   * instead.</p>
+   */
+  private static final class Node {
+
+    private char label;
+    private char[] prefix;
+    private String value;
+    private char[] labels;
+    private Node[] children;
+    private int childCount;
+
+    private Node(final char label, final char[] prefix) {
+      this.label = label;
+      this.prefix = prefix;
+    }
+
+    private boolean isDense() {
+      return children != null && labels == null;
+    }
+
+    private Node child(final char c) {
+
+      if (isDense()) {
+        return c < DENSE_CHILDREN ? children[c] : null;
+      }
+
+      final int index = indexOf(c);
+
+      return index >= 0 ? children[index] : null;
+    }
+
+    private void addChild(final Node child) {
+
+      if (isDense()) {
+
+        if (child.label < DENSE_CHILDREN) {
+          children[child.label] = child;
+          childCount++;
+          return;
+        }
+
+        toSparse(childCount + 1);
+
+      } else if (childCount == SPARSE_CHILDREN
+          && child.label < DENSE_CHILDREN
+          && labels[childCount - 1] < DENSE_CHILDREN) {
+
+        toDense();
+        children[child.label] = child;
+        childCount++;
+        return;
+      }
+
+      if (labels == null) {
+        labels = new char[2];
+        children = new Node[2];
+      } else if (childCount == labels.length) {
+        labels = Arrays.copyOf(labels, childCount * 2);
+        children = Arrays.copyOf(children, childCount * 2);
+      }
+
+      final int index = -indexOf(child.label) - 1;
+
+      System.arraycopy(labels, index, labels, index + 1, childCount - index);
+      System.arraycopy(
+          children, index, children, index + 1, childCount - index);
+      labels[index] = child.label;
+      children[index] = child;
+      childCount++;
+    }
+
+    private void replaceChild(final Node child) {
+
+      if (isDense()) {
+        children[child.label] = child;
+      } else {
+        children[indexOf(child.label)] = child;
+      }
+    }
+
+    private void removeChild(final char c) {
+
+      if (isDense()) {
+
+        children[c] = null;
+        childCount--;
+
+        if (childCount <= LINEAR_SEARCH_CHILDREN) {
+          toSparse(childCount);
+        }
+
+        return;
+      }
+
+      final int index = indexOf(c);
+
+      System.arraycopy(
+          labels, index + 1, labels, index, childCount - index - 1);
+      System.arraycopy(
+          children, index + 1, children, index, childCount - index - 1);
+      childCount--;
+      children[childCount] = null;
+    }
+
+    /**
+     * <p>Returns the child with the least label greater than or equal to
+     * <b>from</b>, or <code>null</code> if there is none.</p>
+     */
+    private Node ceilingChild(final int from) {
+
+      if (isDense()) {
+
+        for (int c = from; c < DENSE_CHILDREN; c++) {
+          if (children[c] != null) {
+            return children[c];
+          }
+        }
+
+        return null;
+      }
+
+      if (from > Character.MAX_VALUE) {
+        return null;
+      }
+
+      final int index = indexOf((char) from);
+      final int position = index >= 0 ? index : -index - 1;
+
+      return position < childCount ? children[position] : null;
+    }
+
+    /**
+     * <p>Returns the child with the greatest label less than or equal to
+     * <b>to</b>, or <code>null</code> if there is none.</p>
+     */
+    private Node floorChild(final int to) {
+
+      if (isDense()) {
+
+        for (int c = Math.min(to, DENSE_CHILDREN - 1); c >= 0; c--) {
+          if (children[c] != null) {
+            return children[c];
+          }
+        }
+
+        return null;
+      }
+
+      if (to < 0) {
+        return null;
+      }
+
+      final int index = indexOf((char) to);
+      final int position = index >= 0 ? index : -index - 2;
+
+      return position >= 0 ? children[position] : null;
+    }
+
+    /**
+     * <p>Merges the only child of this node into it, so that this node takes
+     * its characters, value and children.</p>
+     */
+    private void absorbOnlyChild() {
+
+      final Node child = ceilingChild(0);
+      final char[] merged =
+          Arrays.copyOf(prefix, prefix.length + 1 + child.prefix.length);
+
+      merged[prefix.length] = child.label;
+      System.arraycopy(
+          child.prefix, 0, merged, prefix.length + 1, child.prefix.length);
+
+      prefix = merged;
+      value = child.value;
+      labels = child.labels;
+      children = child.children;
+      childCount = child.childCount;
+    }
+
+    /**
+     * <p>Returns the index of the child labelled <b>c</b> in the sorted
+     * arrays, or <code>(-(insertion point) - 1)</code> if there is none.</p>
+     */
+    private int indexOf(final char c) {
+
+      if (labels == null) {
+        return -1;
+      }
+
+      if (childCount > LINEAR_SEARCH_CHILDREN) {
+        return Arrays.binarySearch(labels, 0, childCount, c);
+      }
+
+      for (int i = 0; i < childCount; i++) {
+
+        if (labels[i] == c) {
+          return i;
+        }
+
+        if (labels[i] > c) {
+          return -i - 1;
+        }
+      }
+
+      return -childCount - 1;
+    }
+
+    private void toDense() {
+
+      final Node[] table = new Node[DENSE_CHILDREN];
+
+      for (int i = 0; i < childCount; i++) {
+        table[labels[i]] = children[i];
+      }
+
+      labels = null;
+      children = table;
+    }
+
+    private void toSparse(final int capacity) {
+
+      final char[] sparseLabels = new char[Math.max(2, capacity)];
+      final Node[] sparseChildren = new Node[sparseLabels.length];
+
+      int count = 0;
+
+      for (int c = 0; c < DENSE_CHILDREN; c++) {
+        if (children[c] != null) {
+          sparseLabels[count] = (char) c;
+          sparseChildren[count++] = children[c];
+        }
+      }
+
+      labels = sparseLabels;
+      children = sparseChildren;
+    }
+
+  }
+
+}
@@ -0,0 +1,429 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.mneme.ReplicationProtocol.Mutation;
+import uk.co.noop.themis.Themis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+
+/**
+ * <p>Streams the writes of a {@link LocalMneme} over TCP to any number of
+ * {@link FollowerMneme}s, so that several JVMs can serve reads of the same
+ * entries without each rebuilding them.</p>
+ *
+ * <p>A follower that connects is first sent a snapshot of the entries, then
+ * every write made since the snapshot began, in the order it was made. Writes
+ * are queued for each follower and sent by a thread of its own, so a write of
+ * the <code>LocalMneme</code> never waits for a follower. A follower that
+ * falls more than {@link #MAXIMUM_BACKLOG} writes behind is disconnected, and
+ * bootstraps again from a new snapshot when it reconnects.</p>
+ *
+ * <p>For example;</p>
+ *
+ * <pre>
+ * final ReplicationPrimary primary =
+ *     new ReplicationPrimary(new InetSocketAddress(7070));
+ * final LocalMneme mneme = new LocalMneme(primary);
+ * </pre>
+ *
+ * @see LocalMneme#LocalMneme(ReplicationPrimary)
+ * @see FollowerMneme
+ */
+public final class ReplicationPrimary implements AutoCloseable {
+
+  /**
+   * <p>The number of writes that may be queued for a follower before it is
+   * disconnected.</p>
+   */
+  public static final int MAXIMUM_BACKLOG = 1 << 20;
+
+  private static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ServerSocket server;
+  private final ExecutorService executor;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition published = lock.newCondition();
+  private final List<Follower> followers = new ArrayList<>();
+
+  private Consumer<EntryConsumer> entries;
+  private Lock quiesce;
+  private long sequence;
+
+  private volatile boolean closed;
+
+  /**
+   * <p>Creates a new instance of <code>ReplicationPrimary</code>, listening
+   * for followers on the specified <b>address</b>. Followers are served once
+   * the primary is given to a {@link LocalMneme}.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>address</b> parameter is validated against <code>null</code>
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} for more
+   * information.)</p>
+   *
+   * @param address The address to listen on. A port of zero picks a free
+   *                port, which is then returned by {@link #getAddress()}.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the <b>address</b> could not be bound.
+   *
+   * @see Themis
+   * @see LocalMneme#LocalMneme(ReplicationPrimary)
+   */
+  public ReplicationPrimary(final InetSocketAddress address) {
+
+    checkNotNull("address", address);
+
+    try {
+      server = new ServerSocket();
+      server.bind(address);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    executor = Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-primary");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * <p>Returns the address this primary listens for followers on.</p>
+   *
+   * @return the bound address
+   */
+  public InetSocketAddress getAddress() {
+    return (InetSocketAddress) server.getLocalSocketAddress();
+  }
+
+  /**
+   * <p>Returns the sequence of the latest write, which a follower has applied
+   * every write up to once its applied sequence reaches it.</p>
+   *
+   * @return the latest sequence, or zero if nothing has been written
+   *
+   * @see FollowerMneme#awaitSequence(long, java.time.Duration)
+   */
+  public long getSequence() {
+
+    lock.lock();
+
+    try {
+      return sequence;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the number of followers currently connected.</p>
+   *
+   * @return the number of followers
+   */
+  public int getFollowerCount() {
+
+    lock.lock();
+
+    try {
+      return followers.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * <p>Stops listening and disconnects every follower. Later writes of the
+   * replicated {@link LocalMneme} throw {@link IllegalStateException}. Has no
+   * effect if this primary has already been closed.</p>
+   */
+  @Override
+  public void close() {
+
+    final List<Follower> disconnected;
+
+    lock.lock();
+
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      disconnected = new ArrayList<>(followers);
+      published.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    // Closing the sockets also releases any thread blocked writing to a
+    // follower that has stopped reading.
+    disconnected.forEach(follower -> closeQuietly(follower.socket));
+    closeQuietly(server);
+    executor.shutdownNow();
+  }
+
+  /**
+   * <p>Starts serving followers from the <code>LocalMneme</code> whose entries
+   * are passed by <b>entries</b>. Holding <b>quiesce</b> must exclude any
+   * change that is published but not yet visible to <b>entries</b>.</p>
+   */
+  void attach(final Consumer<EntryConsumer> entries, final Lock quiesce) {
+
+    lock.lock();
+
+    try {
+
+      if (closed) {
+        throw new IllegalStateException("ReplicationPrimary has been closed");
+      }
+
+      if (this.entries != null) {
+        throw new IllegalStateException(
+            "ReplicationPrimary already replicates a LocalMneme");
+      }
+
+      this.entries = entries;
+      this.quiesce = quiesce;
+
+    } finally {
+      lock.unlock();
+    }
+
+    executor.execute(this::accept);
+  }
+
+  /**
+   * <p>Queues the change of <b>key</b> to <b>value</b> for every follower.
+   * Must be called while the change is made, so that the changes of each key
+   * are queued in the order they are made.</p>
+   *
+   * @throws IllegalStateException if the primary has been closed
+   */
+  void publish(final String key, final String value, final long deadline) {
+    publish(List.of(new JournalEntry(key, value, deadline)));
+  }
+
+  /**
+   * <p>Queues the <b>changes</b> of a {@link WriteBatch} for every follower,
+   * as a single frame that each applies as a single atomic step. Must be
+   * called while no other change of their keys is made.</p>
+   *
+   * @throws IllegalStateException if the primary has been closed
+   */
+  void publish(final List<JournalEntry> changes) {
+
+    final long timestamp = System.currentTimeMillis();
+
+    lock.lock();
+
+    try {
+
+      if (closed) {
+        throw new IllegalStateException("ReplicationPrimary has been closed");
+      }
+
+      sequence += changes.size();
+
+      final Mutation mutation = new Mutation(sequence, timestamp, changes);
+
+      for (final Follower follower : followers) {
+        follower.offer(mutation);
+      }
+
+      if (!followers.isEmpty()) {
+        published.signalAll();
+      }
+
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void accept() {
+
+    while (!closed) {
+      try {
+
+        final Socket socket = server.accept();
+
+        socket.setTcpNoDelay(true);
+        executor.execute(() -> serve(socket));
+
+      } catch (final IOException e) {
+        // Either the primary has been closed, which ends the loop, or the
+        // connection failed, which only affects that follower.
+      }
+    }
+  }
+
+  private void serve(final Socket socket) {
+
+    final Follower follower = new Follower(socket);
+    final long start;
+
+    // Every change published before the follower is registered is visible
+    // to the snapshot; every one after it is queued for the follower.
+    quiesce.lock();
+
+    try {
+      lock.lock();
+
+      try {
+
+        if (closed) {
+          closeQuietly(socket);
+          return;
+        }
+
+        start = sequence;
+        followers.add(follower);
+
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      quiesce.unlock();
+    }
+
+    try (socket) {
+
+      final DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+
+      output.writeLong(ReplicationProtocol.MAGIC);
+
+      entries.accept((key, value, deadline) -> {
+        try {
+          ReplicationProtocol.writeEntry(output, key, value, deadline);
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+      ReplicationProtocol.writeSnapshotEnd(output, start);
+      output.flush();
+
+      stream(follower, output);
+
+    } catch (final IOException | UncheckedIOException e) {
+      // The follower reconnects and bootstraps again.
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.lock();
+
+      try {
+        followers.remove(follower);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private void stream(
+      final Follower follower,
+      final DataOutputStream output)
+      throws IOException, InterruptedException {
+
+    final List<Mutation> batch = new ArrayList<>();
+
+    while (true) {
+
+      final long current;
+
+      lock.lock();
+
+      try {
+
+        if (follower.queue.isEmpty() && !closed && !follower.overflowed) {
+          published.await(HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        if (closed || follower.overflowed) {
+          return;
+        }
+
+        batch.addAll(follower.queue);
+        follower.queue.clear();
+        current = sequence;
+
+      } finally {
+        lock.unlock();
+      }
+
+      for (final Mutation mutation : batch) {
+        ReplicationProtocol.writeMutation(output, mutation);
+      }
+
+      ReplicationProtocol.writeHeartbeat(
+          output,
+          current,
+          System.currentTimeMillis());
+      output.flush();
+      batch.clear();
+    }
+  }
+
+  private static void closeQuietly(final AutoCloseable closeable) {
+    try {
+      closeable.close();
+    } catch (final Exception e) {
+      // Nothing more can be done; the socket is released either way.
+    }
+  }
+
+  /**
+   * <p>The writes queued for a connected follower. Guarded by the lock of the
+   * primary.</p>
+   */
+  private static final class Follower {
+
+    private final Socket socket;
+    private final ArrayDeque<Mutation> queue = new ArrayDeque<>();
+
+    private boolean overflowed;
+
+    private Follower(final Socket socket) {
+      this.socket = socket;
+    }
+
+    private void offer(final Mutation mutation) {
+
+      if (overflowed) {
+        return;
+      }
+
+      if (queue.size() >= MAXIMUM_BACKLOG) {
+        overflowed = true;
+        queue.clear();
+        return;
+      }
+
+      queue.add(mutation);
+    }
+
+  }
+
+}
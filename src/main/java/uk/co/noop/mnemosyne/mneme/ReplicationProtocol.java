@@ -0,0 +1,169 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>The frames streamed from a {@link ReplicationPrimary} to each of its
+ * followers over TCP.</p>
+ *
+ * <p>On connecting, a follower is sent the {@link #MAGIC} number, then an
+ * {@link #ENTRY} frame for each entry of the primary and a {@link
+ * #SNAPSHOT_END} frame holding the sequence the snapshot was taken at. Every
+ * later change is sent as a {@link #MUTATION} frame, and the changes of each
+ * {@link WriteBatch} as a single {@link #BATCH} frame, which the follower
+ * applies as a single atomic step. Each group of frames sent together (or,
+ * when there are none, each heartbeat interval) is followed by a {@link
+ * #HEARTBEAT} frame, so that the follower can measure how far behind it
+ * is:</p>
+ *
+ * <pre>
+ * ENTRY:        [type: byte][key][value][deadline: long]
+ * SNAPSHOT_END: [type: byte][sequence: long]
+ * MUTATION:     [type: byte][sequence: long][timestamp: long]
+ *               [key][value, or a length of -1 if removed][deadline: long]
+ * BATCH:        [type: byte][sequence: long][timestamp: long][count: int]
+ *               then, for each change, [key][value][deadline: long]
+ * HEARTBEAT:    [type: byte][sequence: long][timestamp: long]
+ * </pre>
+ *
+ * <p>where strings are written as an <code>int</code> length and UTF-8
+ * bytes, timestamps and deadlines are epoch milliseconds, and a deadline of
+ * zero means the entry does not expire. Every change is numbered, and a
+ * {@link #BATCH} frame carries the sequence of the last of its changes.</p>
+ */
+final class ReplicationProtocol {
+
+  static final long MAGIC = 0x4d6e656d6f52504cL;
+  static final byte ENTRY = 1;
+  static final byte SNAPSHOT_END = 2;
+  static final byte MUTATION = 3;
+  static final byte HEARTBEAT = 4;
+  static final byte BATCH = 5;
+
+  private ReplicationProtocol() {
+  }
+
+  static void writeEntry(
+      final DataOutputStream output,
+      final String key,
+      final String value,
+      final long deadline) throws IOException {
+
+    output.writeByte(ENTRY);
+    writeString(output, key);
+    writeString(output, value);
+    output.writeLong(deadline);
+  }
+
+  static void writeSnapshotEnd(
+      final DataOutputStream output,
+      final long sequence) throws IOException {
+
+    output.writeByte(SNAPSHOT_END);
+    output.writeLong(sequence);
+  }
+
+  static void writeMutation(
+      final DataOutputStream output,
+      final Mutation mutation) throws IOException {
+
+    final List<JournalEntry> changes = mutation.changes();
+
+    output.writeByte(changes.size() == 1 ? MUTATION : BATCH);
+    output.writeLong(mutation.sequence());
+    output.writeLong(mutation.timestamp());
+
+    if (changes.size() != 1) {
+      output.writeInt(changes.size());
+    }
+
+    for (final JournalEntry change : changes) {
+      writeString(output, change.key());
+      writeString(output, change.value());
+      output.writeLong(change.deadline());
+    }
+  }
+
+  static void writeHeartbeat(
+      final DataOutputStream output,
+      final long sequence,
+      final long timestamp) throws IOException {
+
+    output.writeByte(HEARTBEAT);
+    output.writeLong(sequence);
+    output.writeLong(timestamp);
+  }
+
+  static String readString(final DataInputStream input) throws IOException {
+
+    final int length = input.readInt();
+
+    if (length < 0) {
+      return null;
+    }
+
+    final byte[] bytes = new byte[length];
+
+    input.readFully(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * <p>Reads the changes of a {@link #BATCH} frame, after its sequence and
+   * timestamp.</p>
+   */
+  static List<JournalEntry> readBatch(final DataInputStream input)
+      throws IOException {
+
+    final int count = input.readInt();
+
+    if (count < 0) {
+      throw new IOException("Corrupt batch of " + count + " changes");
+    }
+
+    final List<JournalEntry> changes = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      changes.add(new JournalEntry(
+          readString(input),
+          readString(input),
+          input.readLong()));
+    }
+
+    return changes;
+  }
+
+  private static void writeString(
+      final DataOutputStream output,
+      final String string) throws IOException {
+
+    if (string == null) {
+      output.writeInt(-1);
+      return;
+    }
+
+    final byte[] bytes = string.getBytes(UTF_8);
+
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  /**
+   * <p>A change made to the replicated {@link LocalMneme}, or the changes of
+   * a {@link WriteBatch} applied to it, numbered (by its last change) in the
+   * order it was made.</p>
+   */
+  record Mutation(
+      long sequence,
+      long timestamp,
+      List<JournalEntry> changes) {
+  }
+
+}
@@ -0,0 +1,623 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>An index of the keys of an <i>S3</i> bucket, kept in the bucket itself
+ * so that an {@link S3Mneme} can enumerate its keys without listing the
+ * bucket.</p>
+ *
+ * <p>The index is a base object, holding every key as of a sequence number,
+ * and a run of delta objects, numbered from the next sequence number on,
+ * each holding the keys added and removed by one commit:</p>
+ *
+ * <pre>
+ * base:  GZIP([count: int]([shared prefix: short][suffix: UTF])...)
+ *        with the sequence number in its user metadata
+ * delta: [count: int]([added: boolean][key: UTF])...
+ * </pre>
+ *
+ * <p>where the keys of the base are sorted, and each is stored as the length
+ * of the prefix it shares with the previous key and the rest of it. Reading
+ * the index reads the base and then each delta in turn until one is missing.
+ * The changes made by concurrent writers are committed together, as a
+ * single delta, by whichever writer next holds the commit lock. Each delta
+ * is only created if its number is still free, so writers in other processes
+ * extend the same unbroken run.</p>
+ *
+ * <p>Every {@link #COMPACTION_INTERVAL} deltas, the deltas are folded into a
+ * new base, which replaces the old one only if it is unchanged, and are then
+ * deleted. A writer whose delta was created in a range already folded (and
+ * deleted) by another process notices that the base has moved past it, and
+ * commits its delta again after the new base. A reader that finds a delta
+ * missing because it was folded in the meantime notices that the base has
+ * changed, and reads the index again.</p>
+ */
+final class S3Manifest {
+
+  /**
+   * <p>The number of deltas after which they are folded into the base.</p>
+   */
+  static final int COMPACTION_INTERVAL = 64;
+
+  private static final String SEQUENCE = "mnemosyne-sequence";
+  private static final String IF_MATCH = "If-Match";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+
+  private static final int NOT_FOUND = 404;
+  private static final int CONFLICT = 409;
+  private static final int PRECONDITION_FAILED = 412;
+  private static final int MAXIMUM_DELETE_BATCH_SIZE = 1000;
+
+  private final AmazonS3 s3;
+  private final String bucketName;
+  private final String key;
+  private final String deltaPrefix;
+  private final Supplier<Collection<String>> listing;
+  private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock commitLock = new ReentrantLock();
+
+  // Guarded by commitLock: the last delta known to exist (or the sequence of
+  // the base, if it is later), or -1 until the base has been read, and the
+  // sequence of the base when it was last read.
+  private long sequence = -1;
+  private long baseSequence;
+
+  /**
+   * <p>Creates the index kept at <b>key</b> (and under <b>key</b> followed by
+   * a slash) in the bucket, which is rebuilt from <b>listing</b> if it does
+   * not exist yet, or when it is reconciled.</p>
+   */
+  S3Manifest(
+      final AmazonS3 s3,
+      final String bucketName,
+      final String key,
+      final Supplier<Collection<String>> listing) {
+
+    super();
+
+    this.s3 = s3;
+    this.bucketName = bucketName;
+    this.key = key;
+    this.deltaPrefix = key + '/';
+    this.listing = listing;
+  }
+
+  /**
+   * <p>Returns <code>true</code> if <b>objectKey</b> is the key of the base or
+   * of a delta of this index.</p>
+   */
+  boolean isManifestObject(final String objectKey) {
+    return objectKey != null
+        && (objectKey.equals(key) || objectKey.startsWith(deltaPrefix));
+  }
+
+  /**
+   * <p>Returns every key in the index, rebuilding it from the listing of the
+   * bucket if it does not exist yet.</p>
+   */
+  Set<String> keys() {
+
+    final Snapshot snapshot = read();
+
+    if (snapshot.eTag() != null) {
+      return snapshot.keys();
+    }
+
+    reconcile();
+
+    return read().keys();
+  }
+
+  /**
+   * <p>Returns once the addition of <b>objectKey</b> is in the index.</p>
+   */
+  void added(final String objectKey) {
+    commit(new Change(List.of(objectKey), true));
+  }
+
+  /**
+   * <p>Returns once the removal of <b>objectKeys</b> is in the index.</p>
+   */
+  void removed(final Collection<String> objectKeys) {
+    if (!objectKeys.isEmpty()) {
+      commit(new Change(List.copyOf(objectKeys), false));
+    }
+  }
+
+  /**
+   * <p>Replaces the base with the keys of a full listing of the bucket,
+   * keeping the changes committed since the listing began.</p>
+   */
+  void reconcile() {
+
+    while (true) {
+
+      // Every change in a delta read here was made to the bucket before the
+      // listing begins, so the listing includes it.
+      final Snapshot snapshot = read();
+      final Set<String> keys = new HashSet<>();
+
+      for (final String objectKey : listing.get()) {
+        if (!isManifestObject(objectKey)) {
+          keys.add(objectKey);
+        }
+      }
+
+      if (writeBase(keys, snapshot.last(), snapshot.eTag())) {
+        deleteDeltas(snapshot.sequence() + 1, snapshot.last());
+        return;
+      }
+    }
+  }
+
+  /**
+   * <p>Folds the deltas into a new base, unless another writer replaces the
+   * base first. If there is no base yet, the index is rebuilt from the
+   * listing instead, as the deltas alone would miss any keys written before
+   * the index was first used.</p>
+   */
+  void compact() {
+
+    final Snapshot snapshot = read();
+
+    if (snapshot.eTag() == null) {
+      reconcile();
+      return;
+    }
+
+    if (snapshot.last() > snapshot.sequence()
+        && writeBase(snapshot.keys(), snapshot.last(), snapshot.eTag())) {
+
+      deleteDeltas(snapshot.sequence() + 1, snapshot.last());
+    }
+  }
+
+  private void commit(final Change change) {
+
+    pending.add(change);
+
+    commitLock.lock();
+
+    try {
+      if (!change.committed) {
+        flush();
+      }
+    } finally {
+      commitLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Writes every pending change as the next delta. The changes are only
+   * taken off the queue once the delta exists, so if it cannot be written
+   * they are committed by the next writer instead.</p>
+   */
+  private void flush() {
+
+    final List<Change> changes = new ArrayList<>(pending);
+    final byte[] delta = encodeDelta(changes);
+
+    if (sequence < 0) {
+      baseSequence = readBaseSequence();
+      sequence = baseSequence;
+    }
+
+    while (true) {
+
+      final long next = sequence + 1;
+
+      if (!createDelta(next, delta)) {
+        // Taken by a writer in another process.
+        sequence = next;
+        continue;
+      }
+
+      baseSequence = readBaseSequence();
+
+      if (baseSequence < next) {
+        sequence = next;
+        break;
+      }
+
+      // Created in a range already folded into the base, so readers would
+      // never see it.
+      deleteDeltas(next, next);
+      sequence = baseSequence;
+    }
+
+    for (int i = 0; i < changes.size(); i++) {
+      pending.poll().committed = true;
+    }
+
+    if (sequence - baseSequence >= COMPACTION_INTERVAL) {
+      compact();
+    }
+  }
+
+  private Snapshot read() {
+
+    while (true) {
+
+      final S3Object base = getObject(key);
+      final Set<String> keys;
+      final long baseSequence;
+      final String eTag;
+
+      if (base == null) {
+        keys = new HashSet<>();
+        baseSequence = 0;
+        eTag = null;
+      } else {
+        try (base) {
+          keys = decodeBase(base.getObjectContent().readAllBytes());
+          baseSequence = sequenceOf(base.getObjectMetadata());
+          eTag = base.getObjectMetadata().getETag();
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      long last = baseSequence;
+
+      while (true) {
+
+        try (final S3Object delta = getObject(deltaKey(last + 1))) {
+
+          if (delta == null) {
+            break;
+          }
+
+          applyDelta(delta.getObjectContent().readAllBytes(), keys);
+
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+
+        last++;
+      }
+
+      // A delta is only deleted once a new base has replaced the one read,
+      // so an unchanged base means none were missed.
+      final ObjectMetadata current = getObjectMetadata(key);
+
+      if (current == null
+          ? eTag == null
+          : eTag != null && eTag.equals(current.getETag())) {
+
+        return new Snapshot(keys, baseSequence, last, eTag);
+      }
+    }
+  }
+
+  private long readBaseSequence() {
+
+    final ObjectMetadata metadata = getObjectMetadata(key);
+
+    return metadata == null ? 0 : sequenceOf(metadata);
+  }
+
+  private boolean writeBase(
+      final Set<String> keys,
+      final long baseSequence,
+      final String eTag) {
+
+    return write(key, encodeBase(keys), eTag, baseSequence);
+  }
+
+  /**
+   * <p>Creates the object of <b>objectKey</b>, or replaces it if it still has
+   * the <b>eTag</b>, returning <code>false</code> if it has changed. A
+   * <b>baseSequence</b> that is not negative is stored with it.</p>
+   */
+  private boolean write(
+      final String objectKey,
+      final byte[] content,
+      final String eTag,
+      final long baseSequence) {
+
+    try {
+      s3.putObject(request(objectKey, content, eTag, baseSequence));
+      return true;
+    } catch (final AmazonS3Exception e) {
+      return isLostRace(e);
+    }
+  }
+
+  /**
+   * <p>Creates the delta numbered <b>delta</b>, returning <code>false</code>
+   * if it already exists. A conflicting concurrent creation is retried, as
+   * it may yet fail, and skipping the number would break the run.</p>
+   */
+  private boolean createDelta(final long delta, final byte[] content) {
+
+    while (true) {
+      try {
+        s3.putObject(request(deltaKey(delta), content, null, -1));
+        return true;
+      } catch (final AmazonS3Exception e) {
+
+        if (e.getStatusCode() == PRECONDITION_FAILED) {
+          return false;
+        }
+
+        if (e.getStatusCode() != CONFLICT) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private PutObjectRequest request(
+      final String objectKey,
+      final byte[] content,
+      final String eTag,
+      final long baseSequence) {
+
+    final ObjectMetadata metadata = new ObjectMetadata();
+
+    metadata.setContentLength(content.length);
+
+    if (baseSequence >= 0) {
+      metadata.addUserMetadata(SEQUENCE, Long.toString(baseSequence));
+    }
+
+    final PutObjectRequest request = new PutObjectRequest(
+        bucketName,
+        objectKey,
+        new ByteArrayInputStream(content),
+        metadata);
+
+    if (eTag == null) {
+      request.putCustomRequestHeader(IF_NONE_MATCH, "*");
+    } else {
+      request.putCustomRequestHeader(
+          IF_MATCH,
+          eTag.startsWith("\"") ? eTag : '"' + eTag + '"');
+    }
+
+    return request;
+  }
+
+  private void deleteDeltas(final long first, final long last) {
+
+    final List<String> batch = new ArrayList<>(MAXIMUM_DELETE_BATCH_SIZE);
+
+    for (long delta = first; delta <= last; delta++) {
+
+      batch.add(deltaKey(delta));
+
+      if (batch.size() == MAXIMUM_DELETE_BATCH_SIZE || delta == last) {
+        s3.deleteObjects(new DeleteObjectsRequest(bucketName)
+            .withKeys(batch.toArray(new String[0]))
+            .withQuiet(true));
+        batch.clear();
+      }
+    }
+  }
+
+  private S3Object getObject(final String objectKey) {
+
+    try {
+      return s3.getObject(bucketName, objectKey);
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+    }
+  }
+
+  private ObjectMetadata getObjectMetadata(final String objectKey) {
+
+    try {
+      return s3.getObjectMetadata(bucketName, objectKey);
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+    }
+  }
+
+  private String deltaKey(final long delta) {
+    return deltaPrefix + delta;
+  }
+
+  private static long sequenceOf(final ObjectMetadata metadata) {
+
+    final String value = metadata.getUserMetaDataOf(SEQUENCE);
+
+    return value == null ? 0 : Long.parseLong(value);
+  }
+
+  private static boolean isLostRace(final AmazonS3Exception e) {
+
+    final int statusCode = e.getStatusCode();
+
+    if (statusCode == PRECONDITION_FAILED
+        || statusCode == CONFLICT
+        || statusCode == NOT_FOUND) {
+
+      return false;
+    }
+
+    throw e;
+  }
+
+  private static byte[] encodeBase(final Set<String> keys) {
+
+    final List<String> sorted = new ArrayList<>(keys);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    sorted.sort(null);
+
+    try (final DataOutputStream output =
+             new DataOutputStream(new GZIPOutputStream(bytes))) {
+
+      String previous = "";
+
+      output.writeInt(sorted.size());
+
+      for (final String objectKey : sorted) {
+
+        final int shared = sharedPrefixLength(previous, objectKey);
+
+        output.writeShort(shared);
+        output.writeUTF(objectKey.substring(shared));
+
+        previous = objectKey;
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static Set<String> decodeBase(final byte[] content) {
+
+    try (final DataInputStream input = new DataInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(content)))) {
+
+      final int count = input.readInt();
+      final Set<String> keys = new HashSet<>(Math.max(16, count * 2));
+
+      String previous = "";
+
+      for (int i = 0; i < count; i++) {
+
+        final int shared = input.readUnsignedShort();
+        final String objectKey =
+            previous.substring(0, shared) + input.readUTF();
+
+        keys.add(objectKey);
+        previous = objectKey;
+      }
+
+      return keys;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] encodeDelta(final List<Change> changes) {
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (final DataOutputStream output = new DataOutputStream(bytes)) {
+
+      int count = 0;
+
+      for (final Change change : changes) {
+        count += change.keys.size();
+      }
+
+      output.writeInt(count);
+
+      for (final Change change : changes) {
+        for (final String objectKey : change.keys) {
+          output.writeBoolean(change.added);
+          output.writeUTF(objectKey);
+        }
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static void applyDelta(final byte[] content, final Set<String> keys)
+      throws IOException {
+
+    final DataInputStream input =
+        new DataInputStream(new ByteArrayInputStream(content));
+    final int count = input.readInt();
+
+    for (int i = 0; i < count; i++) {
+
+      final boolean added = input.readBoolean();
+      final String objectKey = input.readUTF();
+
+      if (added) {
+        keys.add(objectKey);
+      } else {
+        keys.remove(objectKey);
+      }
+    }
+  }
+
+  private static int sharedPrefixLength(final String a, final String b) {
+
+    final int length = Math.min(a.length(), b.length());
+
+    for (int i = 0; i < length; i++) {
+      if (a.charAt(i) != b.charAt(i)) {
+        return i;
+      }
+    }
+
+    return length;
+  }
+
+  /**
+   * <p>The keys of the index, read from the base of <b>sequence</b> and
+   * <b>eTag</b> (<code>null</code> if there is none) and every delta up to
+   * <b>last</b>.</p>
+   */
+  private record Snapshot(
+      Set<String> keys,
+      long sequence,
+      long last,
+      String eTag) { }
+
+  /**
+   * <p>Keys added to or removed from the bucket, waiting to be committed.</p>
+   */
+  private static final class Change {
+
+    private final List<String> keys;
+    private final boolean added;
+
+    // Guarded by commitLock.
+    private boolean committed;
+
+    private Change(final List<String> keys, final boolean added) {
+      this.keys = keys;
+      this.added = added;
+    }
+
+  }
+
+}
@@ -1,25 +1,149 @@
 package uk.co.noop.mnemosyne.mneme;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import uk.co.noop.mnemosyne.eunomia.S3BucketNameEunomia;
 import uk.co.noop.themis.Themis;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotEmpty;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkPositive;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkWritable;
 import static uk.co.noop.themis.Themis.validate;
 
 /**
  * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
  * pairs in an <i>S3</i> bucket.</p>
  *
+ * <p>The conditional operations ({@link #putIfAbsent(String, String)}, {@link
+ * #remove(Object, Object)}, the <code>replace</code> and
+ * <code>compute</code> methods and {@link #merge(String, String,
+ * java.util.function.BiFunction)}) are atomic across every writer of the
+ * bucket. Each reads the object and its <i>ETag</i>, and then writes or
+ * deletes it only if the <i>ETag</i> is unchanged (or, for a missing object,
+ * only if it is still missing), using <i>S3</i> preconditions. If another
+ * writer got there first, the operation is retried from the read.</p>
+ *
+ * <p>Counters are sharded: each {@link #increment(String, long) increment}
+ * updates one of several objects kept for the counter under the reserved
+ * <code>mnemosyne-counters/</code> prefix, so concurrent writers of a single
+ * counter rarely contend for an object. The shards are occasionally compacted
+ * into the object of the counter's own key (see {@link
+ * #compactCounter(String)}). That object is created, holding zero, by the
+ * first increment, and marked in its metadata as a counter, so that removing
+ * the key knows to remove the shards too. Keys under the reserved prefix are
+ * not reported by {@link #keySet()}.</p>
+ *
+ * <p>An <code>S3Mneme</code> can keep a manifest of its keys in the bucket,
+ * so that enumerating them reads the manifest rather than listing the
+ * bucket. (See: {@link #S3Mneme(AmazonS3, String, String)} for more
+ * information.)</p>
+ *
+ * <p>An <code>S3Mneme</code> can also store each distinct value once, under
+ * its hash, with the objects of its keys pointing to it. (See: {@link
+ * #S3Mneme(AmazonS3, String, Duration)} for more information.)</p>
+ *
  * @see Mneme
  */
 public class S3Mneme extends AbstractMneme {
 
+  /**
+   * <p>The most keys <i>S3</i> deletes in a single request.</p>
+   */
+  private static final int MAXIMUM_DELETE_BATCH_SIZE = 1000;
+
+  /**
+   * <p>The most keys <i>S3</i> lists in a single page.</p>
+   */
+  private static final int MAXIMUM_LIST_PAGE_SIZE = 1000;
+
+  /**
+   * <p>The number of objects each counter is spread over.</p>
+   */
+  private static final int COUNTER_SHARDS = 32;
+
+  /**
+   * <p>One in this many increments compacts the shards of its counter.</p>
+   */
+  private static final int COMPACTION_INTERVAL = 1024;
+
+  /**
+   * <p>Values shorter than this many bytes are kept in the objects of their
+   * keys even when values are deduplicated, since a pointer would save little
+   * and cost a further request to read.</p>
+   */
+  private static final int MINIMUM_BLOB_SIZE = 1024;
+
+  private static final String COUNTER_PREFIX = "mnemosyne-counters/";
+  private static final String BLOB_PREFIX = "mnemosyne-blobs/";
+  private static final String BLOB_METADATA = "mnemosyne-blob";
+  private static final String REFRESHED_METADATA = "mnemosyne-refreshed";
+  private static final String GATHERED_METADATA = "mnemosyne-gathered";
+  private static final String COUNTER_METADATA = "mnemosyne-counter";
+  private static final String BLOB_HASH_ALGORITHM = "SHA-256";
+
+  private static final String IF_MATCH = "If-Match";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+
+  private static final int NOT_FOUND = 404;
+  private static final int CONFLICT = 409;
+  private static final int PRECONDITION_FAILED = 412;
+  private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+  private static final int TRANSFER_BUFFER_POOL_SIZE = 16;
+
+  private static final BlockingQueue<byte[]> TRANSFER_BUFFERS =
+      new ArrayBlockingQueue<>(TRANSFER_BUFFER_POOL_SIZE);
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(Capability.BATCH_DELETE));
+
   private final AmazonS3 s3;
   private final String bucketName;
+  private final S3Manifest manifest;
+  private final Duration blobGracePeriod;
 
   /**
    * <p>Creates a new instance of <code>S3Mneme</code>.</p>
@@ -33,12 +157,127 @@ public class S3Mneme extends AbstractMneme {
 
     super();
 
-    validate("s3", s3).againstNullObjects();
+    checkNotNull("s3", s3);
+    validate("bucketName", bucketName, S3BucketNameEunomia.class)
+        .againstNonExistentS3BucketNames(s3);
+
+    this.s3 = s3;
+    this.bucketName = bucketName;
+    this.manifest = null;
+    this.blobGracePeriod = null;
+  }
+
+  /**
+   * <p>Creates a new instance of <code>S3Mneme</code> that keeps a manifest
+   * of its keys in the bucket, at the specified <b>manifestKey</b> and under
+   * it followed by a slash. {@link #keySet()}, and so {@link #size()},
+   * {@link #isEmpty()}, {@link #values()}, {@link #entrySet()} and {@link
+   * #clear()}, read the manifest (one compressed object, and any changes
+   * committed since it was last compacted) instead of listing the bucket,
+   * which is paginated, slower and costlier.</p>
+   *
+   * <p>Every put and every removal also commits the change to the manifest
+   * before it returns, so each costs one more request; concurrent writers
+   * share it. The changes are folded into the manifest every
+   * {@value S3Manifest#COMPACTION_INTERVAL} commits. The manifest is built
+   * from a listing of the bucket when it is first read, and objects written
+   * by anything other than an <code>S3Mneme</code> keeping the same manifest
+   * are only picked up by {@link #reconcileManifest()}.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>manifestKey</b> parameter is validated against blank values
+   * using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()} for more
+   * information.)</p>
+   *
+   * @param s3 An instance of {@link AmazonS3}.
+   * @param bucketName The <i>S3</i> bucket name.
+   * @param manifestKey The key of the manifest, which is hidden from {@link
+   *                    #keySet()}.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see AmazonS3
+   * @see #reconcileManifest()
+   */
+  public S3Mneme(
+      final AmazonS3 s3,
+      final String bucketName,
+      final String manifestKey) {
+
+    super();
+
+    checkNotNull("s3", s3);
+    validate("bucketName", bucketName, S3BucketNameEunomia.class)
+        .againstNonExistentS3BucketNames(s3);
+    checkNotBlank("manifestKey", manifestKey);
+
+    this.s3 = s3;
+    this.bucketName = bucketName;
+    this.manifest =
+        new S3Manifest(s3, bucketName, manifestKey, this::listKeys);
+    this.blobGracePeriod = null;
+  }
+
+  /**
+   * <p>Creates a new instance of <code>S3Mneme</code> that stores each
+   * distinct value of 1 KiB or more once, as a blob under the reserved
+   * <code>mnemosyne-blobs/</code> prefix named by the <i>SHA-256</i> hash of
+   * its content. The object of each key holding such a value holds only the
+   * hash, which is also kept in its metadata, so writing a value that is
+   * already stored uploads nothing but the pointer. Since the <i>ETag</i> of
+   * the pointer follows its content, and so the value, the conditional
+   * operations still see a key move from one blob to another. Reading the
+   * value costs one more request, for the blob. Shorter values, and the shards of
+   * counters, are kept in the objects of their keys as before.</p>
+   *
+   * <p>Blobs are not deleted when the keys pointing to them are overwritten
+   * or removed; {@link #collectGarbage()} deletes the blobs that no key
+   * points to. A blob is only deleted once it is older than the
+   * <b>blobGracePeriod</b>, and a write reusing a blob that is more than half
+   * the grace period old refreshes it with a copy in place, so the grace
+   * period must comfortably exceed the time a write takes. Every
+   * <code>S3Mneme</code> of the bucket must deduplicate values, since any
+   * other reads the hash held by a key pointing to a blob.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>blobGracePeriod</b> parameter is validated against
+   * <code>null</code>, zero and negative durations using {@link Themis}. (See:
+   * {@link uk.co.noop.themis.eunomia.DurationEunomia#againstNonPositiveDurations()
+   * DurationEunomia#againstNonPositiveDurations()} for more information.)</p>
+   *
+   * @param s3 An instance of {@link AmazonS3}.
+   * @param bucketName The <i>S3</i> bucket name.
+   * @param blobGracePeriod How long a blob is kept after it was last written
+   *                        or refreshed, even if no key points to it.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see AmazonS3
+   * @see #collectGarbage()
+   */
+  public S3Mneme(
+      final AmazonS3 s3,
+      final String bucketName,
+      final Duration blobGracePeriod) {
+
+    super();
+
+    checkNotNull("s3", s3);
     validate("bucketName", bucketName, S3BucketNameEunomia.class)
         .againstNonExistentS3BucketNames(s3);
+    checkPositive("blobGracePeriod", blobGracePeriod);
 
     this.s3 = s3;
     this.bucketName = bucketName;
+    this.manifest = null;
+    this.blobGracePeriod = blobGracePeriod;
   }
 
   /**
@@ -61,7 +300,7 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public boolean containsKey(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
 
     return s3.doesObjectExist(bucketName, key);
   }
@@ -86,7 +325,7 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public boolean containsValue(final String value) {
 
-    validate("value", value).againstBlankStrings();
+    checkNotBlank("value", value);
 
     return values().contains(value);
   }
@@ -113,9 +352,11 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public String get(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
 
-    return s3.getObjectAsString(bucketName, key);
+    return blobGracePeriod == null
+        ? getObjectAsString(key)
+        : read(key);
   }
 
   /**
@@ -142,16 +383,20 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public String put(final String key, final String value) {
 
-    validate("key", key).againstBlankStrings();
-    validate("value", value).againstBlankStrings();
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
 
-    String previousValue = null;
+    final String previousValue = read(key);
 
-    if (containsKey(key)) {
-      previousValue = get(key);
+    if (blobGracePeriod == null) {
+      s3.putObject(bucketName, key, value);
+    } else {
+      s3.putObject(putRequest(key, ByteBuffer.wrap(value.getBytes(UTF_8))));
     }
 
-    s3.putObject(bucketName, key, value);
+    // Recorded even if the key was present when it was read, as it may have
+    // been removed (and dropped from the manifest) since.
+    added(key);
 
     return previousValue;
   }
@@ -159,6 +404,11 @@ public class S3Mneme extends AbstractMneme {
   /**
    * {@inheritDoc}
    *
+   * <p>If the <b>key</b> holds a counter, its shards are removed too, which
+   * costs a further request to check the metadata of the object and a
+   * listing of the shards. Only a key holding a decimal <code>long</code> is
+   * checked, so removing any other key costs no more than before.</p>
+   *
    * @param key key whose mapping is to be removed from the {@link Mneme}
    *
    * @return the previous value associated with <b>key</b>, or <code>null</code>
@@ -176,13 +426,26 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public String remove(final String key) {
 
-    validate("key", key).againstBlankStrings();
+    checkNotBlank("key", key);
+
+    final String previousValue = read(key);
+
+    if (previousValue == null) {
+      return null;
+    }
+
+    final boolean counter = isCounter(key, previousValue);
+
+    s3.deleteObject(bucketName, key);
+    removed(List.of(key));
 
-    String previousValue = null;
+    if (counter) {
 
-    if (containsKey(key)) {
-      previousValue = get(key);
-      s3.deleteObject(bucketName, key);
+      final List<String> shardKeys = listShardKeys(key);
+
+      if (!shardKeys.isEmpty()) {
+        deleteObjects(shardKeys);
+      }
     }
 
     return previousValue;
@@ -198,11 +461,1770 @@ public class S3Mneme extends AbstractMneme {
   @Override
   public Set<String> keySet() {
 
-    return s3.listObjects(bucketName)
-        .getObjectSummaries()
+    return (manifest == null ? listKeys() : manifest.keys())
         .stream()
-        .map(S3ObjectSummary::getKey)
+        .filter(key -> !isHidden(key))
         .collect(toSet());
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The shards of every counter are removed too.</p>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void clear() {
+    removeBatch(manifest == null
+        ? listKeys()
+        : new ArrayList<>(manifest.keys()));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is only created if it does not exist, so of any number of
+   * concurrent writers, only one succeeds.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String putIfAbsent(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    while (true) {
+
+      if (write(key, value, null)) {
+        return null;
+      }
+
+      final Stored stored = readStored(key);
+
+      // Retries if the object was deleted since the write failed.
+      if (stored != null) {
+        return stored.value();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is only deleted if it has not been written since its value
+   * was read.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value expected to be associated with the specified
+   *              <b>key</b>
+   *
+   * @return <code>true</code> if the value was removed
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public boolean remove(final Object key, final Object value) {
+
+    checkNotNull("key", key);
+    checkNotNull("value", value);
+
+    if (!(key instanceof String keyString)) {
+      return false;
+    }
+
+    checkNotBlank("key", keyString);
+
+    while (true) {
+
+      final Stored stored = readStored(keyString);
+
+      if (stored == null || !stored.value().equals(value)) {
+        return false;
+      }
+
+      if (delete(keyString, stored.eTag())) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is only written if it has not been written since its value
+   * was read.</p>
+   *
+   * @param key key with which the specified <b>oldValue</b> is associated
+   * @param oldValue value expected to be associated with the specified
+   *                 <b>key</b>
+   * @param newValue value to be associated with the specified <b>key</b>
+   *
+   * @return <code>true</code> if the value was replaced
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public boolean replace(
+      final String key,
+      final String oldValue,
+      final String newValue) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("oldValue", oldValue);
+    checkNotBlank("newValue", newValue);
+
+    while (true) {
+
+      final Stored stored = readStored(key);
+
+      if (stored == null || !stored.value().equals(oldValue)) {
+        return false;
+      }
+
+      if (write(key, newValue, stored.eTag())) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is only written if it has not been written since its value
+   * was read.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with the specified <b>key</b>, or
+   * <code>null</code> if there was no mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String replace(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    while (true) {
+
+      final Stored stored = readStored(key);
+
+      if (stored == null) {
+        return null;
+      }
+
+      if (write(key, value, stored.eTag())) {
+        return stored.value();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is only created if it still does not exist when the value
+   * has been computed. The <b>mappingFunction</b> may be called more than
+   * once, if another writer creates the object first, and must not have side
+   * effects.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param mappingFunction the function to compute a value
+   *
+   * @return the current (existing or computed) value associated with the
+   * specified <b>key</b>, or <code>null</code> if the computed value is
+   * <code>null</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String computeIfAbsent(
+      final String key,
+      final Function<? super String, ? extends String> mappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("mappingFunction", mappingFunction);
+
+    while (true) {
+
+      final Stored stored = readStored(key);
+
+      if (stored != null) {
+        return stored.value();
+      }
+
+      final String value = validateComputedValue(mappingFunction.apply(key));
+
+      if (value == null) {
+        return null;
+      }
+
+      if (write(key, value, null)) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The new value is only stored (or the object deleted) if the object has
+   * not been written since its value was read. The <b>remappingFunction</b>
+   * may be called more than once, if another writer gets there first, and
+   * must not have side effects.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String computeIfPresent(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return compareAndCompute(
+        key,
+        (k, current) -> current == null
+            ? null
+            : remappingFunction.apply(k, current));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The new value is only stored (or the object deleted) if the object has
+   * not been written since its value was read, or, if it did not exist, only
+   * if it still does not exist. The <b>remappingFunction</b> may be called
+   * more than once, if another writer gets there first, and must not have
+   * side effects.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String compute(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return compareAndCompute(key, remappingFunction);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The merged value is only stored (or the object deleted) if the object
+   * has not been written since its value was read, or, if it did not exist,
+   * only if it still does not exist. The <b>remappingFunction</b> may be
+   * called more than once, if another writer gets there first, and must not
+   * have side effects.</p>
+   *
+   * @param key key with which the resulting value is to be associated
+   * @param value the value to be merged with the existing value
+   * @param remappingFunction the function to recompute a value if present
+   *
+   * @return the new value associated with the specified <b>key</b>, or
+   * <code>null</code> if no value is associated with the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios,
+   * including a blank computed value.
+   *
+   * @see Mneme
+   */
+  @Override
+  public String merge(
+      final String key,
+      final String value,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return compareAndCompute(
+        key,
+        (k, current) -> current == null
+            ? value
+            : remappingFunction.apply(current, value));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The bytes are uploaded as they are, straight from the <b>value</b>,
+   * without the request for the previous value made by {@link #put(String,
+   * String)}. They are not Base64 encoded, so the object holds exactly the
+   * bytes stored, and {@link #get(String)} only returns them intact if they
+   * happen to be <i>UTF-8</i>.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value the bytes to be associated with the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public void putBytes(final String key, final ByteBuffer value) {
+
+    checkNotBlank("key", key);
+    checkNotEmpty("value", value);
+
+    if (blobGracePeriod != null) {
+      s3.putObject(putRequest(key, value.duplicate()));
+    } else {
+
+      final ObjectMetadata metadata = new ObjectMetadata();
+
+      metadata.setContentLength(value.remaining());
+
+      s3.putObject(bucketName, key, inputStream(value), metadata);
+    }
+
+    value.position(value.limit());
+
+    added(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is downloaded straight into a buffer sized from its content
+   * length, which the returned buffer is a read-only view of.</p>
+   *
+   * @param key the key whose associated bytes are to be returned
+   *
+   * @return a read-only buffer of the bytes to which the specified <b>key</b>
+   * is mapped, or <code>null</code> if this {@link Mneme} contains no mapping
+   * for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws UncheckedIOException if the object cannot be downloaded
+   *
+   * @see Mneme
+   */
+  @Override
+  public ByteBuffer getBytes(final String key) {
+
+    checkNotBlank("key", key);
+
+    try (final S3Object object = getValueObject(key)) {
+
+      if (object == null) {
+        return null;
+      }
+
+      final byte[] bytes = new byte[Math.toIntExact(
+          object.getObjectMetadata().getContentLength())];
+
+      final int length =
+          object.getObjectContent().readNBytes(bytes, 0, bytes.length);
+
+      return ByteBuffer.wrap(bytes, 0, length).slice().asReadOnlyBuffer();
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The object is downloaded straight into the <b>destination</b> if it
+   * is backed by an array, or otherwise through a transfer buffer taken from a
+   * pool shared by every instance. An object that is too large for the
+   * <b>destination</b>, judging by its content length, is not
+   * downloaded.</p>
+   *
+   * @param key the key whose associated bytes are to be read
+   * @param destination the buffer to read the bytes into
+   *
+   * @return the number of bytes read, or <code>-1</code> if this {@link
+   * Mneme} contains no mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws BufferOverflowException if the value does not fit in the bytes
+   * remaining in the <b>destination</b>
+   * @throws UncheckedIOException if the object cannot be downloaded
+   *
+   * @see Mneme
+   */
+  @Override
+  public int read(final String key, final ByteBuffer destination) {
+
+    checkNotBlank("key", key);
+    checkWritable("destination", destination);
+
+    try (final S3Object object = getValueObject(key)) {
+
+      if (object == null) {
+        return -1;
+      }
+
+      if (object.getObjectMetadata().getContentLength()
+          > destination.remaining()) {
+
+        object.getObjectContent().abort();
+        throw new BufferOverflowException();
+      }
+
+      final InputStream content = object.getObjectContent();
+      final int start = destination.position();
+
+      if (destination.hasArray()) {
+
+        final int length = content.readNBytes(
+            destination.array(),
+            destination.arrayOffset() + start,
+            destination.remaining());
+
+        destination.position(start + length);
+
+      } else {
+
+        final byte[] transfer = borrowTransferBuffer();
+
+        try {
+
+          int length;
+
+          while (destination.hasRemaining() && (length = content.read(
+              transfer,
+              0,
+              Math.min(transfer.length, destination.remaining()))) != -1) {
+
+            destination.put(transfer, 0, length);
+          }
+
+        } finally {
+          TRANSFER_BUFFERS.offer(transfer);
+        }
+      }
+
+      if (!destination.hasRemaining() && content.read() != -1) {
+        destination.position(start);
+        object.getObjectContent().abort();
+        throw new BufferOverflowException();
+      }
+
+      return destination.position() - start;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The <b>delta</b> is added, with a conditional write, to one of the
+   * shards of the counter chosen at random, so concurrent increments of a
+   * single counter rarely retry. An increment that creates a shard first
+   * makes sure the object of the <b>key</b> is marked as a counter. Shards sealed by a compaction are skipped;
+   * if every shard tried is sealed, the compaction is finished first. One in
+   * every 1,024 increments then compacts the shards of the counter (see
+   * {@link #compactCounter(String)}), so that its value at the <b>key</b>
+   * catches up and its shards do not accumulate indefinitely.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final String count = Long.toString(delta);
+    int sealed = 0;
+
+    while (true) {
+
+      final String shardKey = shardKey(key, random.nextInt(COUNTER_SHARDS));
+      final Stored shard = readStored(shardKey);
+
+      if (shard == null) {
+
+        markCounter(key);
+
+        if (write(shardKey, count, null)) {
+          break;
+        }
+
+      } else if (sealId(shard.value()) == null) {
+
+        if (write(shardKey, addCounts(shard.value(), count), shard.eTag())) {
+          break;
+        }
+
+      } else if (++sealed == COUNTER_SHARDS) {
+
+        // The compaction that sealed them may have stopped part way.
+        compactCounter(key);
+        sealed = 0;
+      }
+    }
+
+    if (random.nextInt(COMPACTION_INTERVAL) == 0) {
+      compactCounter(key);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The counter is the value at the <b>key</b> plus the values of its
+   * shards that have not yet been gathered into it, which are listed and read
+   * in turn, so reading a counter costs a request for each of its shards. The
+   * value at the <b>key</b> is checked again afterwards, and the counter read
+   * again if a compaction changed it in the meantime, so a compaction in
+   * progress is never counted twice or missed.</p>
+   *
+   * @param key the key of the counter
+   *
+   * @return the value of the counter
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public long getCounter(final String key) {
+
+    checkNotBlank("key", key);
+
+    while (true) {
+
+      final Stored base = readStored(key);
+      final Map<String, String> gathered = gathered(base);
+      long counter = base == null ? 0 : Long.parseLong(base.value());
+
+      for (final String shardKey : listShardKeys(key)) {
+
+        final String shard = read(shardKey);
+
+        if (shard != null && !isGathered(shardKey, shard, gathered)) {
+          counter += shardCount(shard);
+        }
+      }
+
+      final ObjectMetadata current = getObjectMetadata(key);
+
+      if (Objects.equals(
+          base == null ? null : base.eTag(),
+          current == null ? null : current.getETag())) {
+
+        return counter;
+      }
+    }
+  }
+
+  /**
+   * <p>Gathers the shards of the counter of the specified <b>key</b> into
+   * the value at the <b>key</b>, so that {@link #get(String)} returns the
+   * whole counter until it is next incremented.</p>
+   *
+   * <p>Each shard is first sealed, by rewriting it with a unique seal id, after
+   * which increments leave it alone. The values of the sealed shards are then
+   * added to the <b>key</b> with a single conditional write, which also
+   * records their seal ids in the metadata of the <b>key</b>, and only then
+   * are the shards deleted. A shard whose seal id is already recorded is not
+   * added again, so a compaction that stops part way (or runs at the same time
+   * as another) neither loses nor double counts a shard; the next compaction
+   * picks up where it left off. (If the sealed shards sum to zero, one of
+   * them is left for the next compaction, so that the write changes the value
+   * and so conflicts with any other compaction writing it.)</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against blank values using {@link
+   * uk.co.noop.themis.Themis Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * StringEunomia#againstBlankStrings()} for more information.)</p>
+   *
+   * @param key the key of the counter
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see #increment(String, long)
+   * @see uk.co.noop.themis.Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  public void compactCounter(final String key) {
+
+    checkNotBlank("key", key);
+
+    final Map<String, Stored> sealed = new HashMap<>();
+
+    for (final String shardKey : listShardKeys(key)) {
+
+      final Stored shard = seal(shardKey);
+
+      if (shard != null) {
+        sealed.put(shardKey, shard);
+      }
+    }
+
+    if (sealed.isEmpty()) {
+      return;
+    }
+
+    for (final String shardKey : gather(key, sealed)) {
+      delete(shardKey, sealed.get(shardKey).eTag());
+    }
+  }
+
+  /**
+   * <p>Rebuilds the manifest of keys from a full listing of the bucket,
+   * keeping the changes committed to it while the listing was made, so that
+   * it picks up objects written by anything other than an
+   * <code>S3Mneme</code> keeping the same manifest. The deltas it replaces
+   * are deleted.</p>
+   *
+   * @throws IllegalStateException if this <code>S3Mneme</code> does not keep
+   * a manifest.
+   *
+   * @see #S3Mneme(AmazonS3, String, String)
+   */
+  public void reconcileManifest() {
+
+    if (manifest == null) {
+      throw new IllegalStateException("S3Mneme does not keep a manifest");
+    }
+
+    manifest.reconcile();
+  }
+
+  /**
+   * <p>Deletes the blobs of deduplicated values that no key points to, and
+   * that were last written or refreshed longer ago than the grace period.
+   * The blobs are listed first, and then the object of every key is read
+   * (without its content) to mark the blobs still in use, so collecting
+   * costs a request per key. Each remaining blob is checked again just
+   * before it is deleted, so one refreshed by a write in the meantime is
+   * kept.</p>
+   *
+   * @return the number of blobs deleted
+   *
+   * @throws IllegalStateException if this <code>S3Mneme</code> does not
+   * deduplicate values.
+   *
+   * @see #S3Mneme(AmazonS3, String, Duration)
+   */
+  public int collectGarbage() {
+
+    if (blobGracePeriod == null) {
+      throw new IllegalStateException("S3Mneme does not deduplicate values");
+    }
+
+    final Instant cutoff = Instant.now().minus(blobGracePeriod);
+    final Set<String> unmarked = new HashSet<>();
+    ObjectListing listing = s3.listObjects(bucketName, BLOB_PREFIX);
+
+    while (true) {
+
+      for (final S3ObjectSummary summary : listing.getObjectSummaries()) {
+        if (summary.getLastModified().toInstant().isBefore(cutoff)) {
+          unmarked.add(summary.getKey());
+        }
+      }
+
+      if (!listing.isTruncated()) {
+        break;
+      }
+
+      listing = s3.listNextBatchOfObjects(listing);
+    }
+
+    for (final String key : keySet()) {
+
+      if (unmarked.isEmpty()) {
+        return 0;
+      }
+
+      final ObjectMetadata metadata = getObjectMetadata(key);
+      final String hash = metadata == null ? null : blobHash(metadata);
+
+      if (hash != null) {
+        unmarked.remove(BLOB_PREFIX + hash);
+      }
+    }
+
+    final List<String> garbage = new ArrayList<>(MAXIMUM_DELETE_BATCH_SIZE);
+    int deleted = 0;
+
+    for (final String blobKey : unmarked) {
+
+      final ObjectMetadata metadata = getObjectMetadata(blobKey);
+
+      if (metadata != null
+          && metadata.getLastModified().toInstant().isBefore(cutoff)) {
+
+        garbage.add(blobKey);
+      }
+
+      if (garbage.size() == MAXIMUM_DELETE_BATCH_SIZE) {
+        deleteObjects(garbage);
+        deleted += garbage.size();
+        garbage.clear();
+      }
+    }
+
+    if (!garbage.isEmpty()) {
+      deleteObjects(garbage);
+      deleted += garbage.size();
+    }
+
+    return deleted;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>An <code>S3Mneme</code> deletes many objects in a single request.</p>
+   *
+   * @return {@link Capability#BATCH_DELETE}
+   */
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * <p>Deletes the objects of the specified <b>keys</b> with as few
+   * <i>S3</i> requests as possible, each deleting up to 1,000 objects.</p>
+   *
+   * @param keys the keys whose mappings are to be removed
+   */
+  @Override
+  protected void removeBatch(final Collection<String> keys) {
+
+    final List<String> batch = new ArrayList<>(MAXIMUM_DELETE_BATCH_SIZE);
+
+    for (final String key : keys) {
+
+      checkNotBlank("key", key);
+
+      batch.add(key);
+
+      if (batch.size() == MAXIMUM_DELETE_BATCH_SIZE) {
+        deleteObjects(batch);
+        batch.clear();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      deleteObjects(batch);
+    }
+  }
+
+  /**
+   * <p>Returns a spliterator over the keys of the bucket that lists them a
+   * page at a time, as they are reached. Splitting hands the rest of the
+   * current page to the split and moves on to the next page, so each worker
+   * of a parallel stream reads the values of its own pages while the listing
+   * continues; the last page is split in halves.</p>
+   *
+   * @return a spliterator over the keys of this <code>S3Mneme</code>
+   */
+  @Override
+  protected Spliterator<String> keySpliterator() {
+    return manifest == null
+        ? new ListingSpliterator(s3.listObjects(bucketName))
+        : super.keySpliterator();
+  }
+
+  /**
+   * <p>Lists the keys of every object in the bucket, including the shards of
+   * counters, following the listing from page to page.</p>
+   */
+  private List<String> listKeys() {
+
+    final List<String> keys = new ArrayList<>();
+    ObjectListing listing = s3.listObjects(bucketName);
+
+    while (true) {
+
+      for (final S3ObjectSummary summary : listing.getObjectSummaries()) {
+        keys.add(summary.getKey());
+      }
+
+      if (!listing.isTruncated()) {
+        return keys;
+      }
+
+      listing = s3.listNextBatchOfObjects(listing);
+    }
+  }
+
+  /**
+   * <p>Lists the keys of the shards of the counter of a validated
+   * <b>key</b>, skipping the shards of counters whose keys merely start with
+   * it.</p>
+   */
+  private List<String> listShardKeys(final String key) {
+
+    final String prefix = COUNTER_PREFIX + key + '/';
+
+    return s3.listObjects(bucketName, prefix)
+        .getObjectSummaries()
+        .stream()
+        .map(S3ObjectSummary::getKey)
+        .filter(shardKey -> isShardIndex(shardKey, prefix.length()))
+        .collect(toList());
+  }
+
+  /**
+   * <p>Marks the object of a validated <b>key</b> as a counter, creating it
+   * with a value of zero if there is none, unless it is already marked.</p>
+   */
+  private void markCounter(final String key) {
+
+    final ObjectMetadata metadata = getObjectMetadata(key);
+
+    if (metadata != null
+        && metadata.getUserMetadata().containsKey(COUNTER_METADATA)) {
+      return;
+    }
+
+    while (true) {
+
+      final Stored base = readStored(key);
+
+      if (base != null && base.userMetadata().containsKey(COUNTER_METADATA)) {
+        return;
+      }
+
+      final Map<String, String> userMetadata = new HashMap<>();
+      final String gathered =
+          base == null ? null : base.userMetadata().get(GATHERED_METADATA);
+
+      if (gathered != null) {
+        userMetadata.put(GATHERED_METADATA, gathered);
+      }
+
+      userMetadata.put(COUNTER_METADATA, Boolean.TRUE.toString());
+
+      if (write(
+          key,
+          base == null ? "0" : base.value(),
+          base == null ? null : base.eTag(),
+          userMetadata)) {
+
+        return;
+      }
+    }
+  }
+
+  /**
+   * <p>Returns <code>true</code> if the object of a validated <b>key</b>,
+   * holding the <b>value</b>, is marked as a counter. Only values that are a
+   * decimal <code>long</code> are checked, as no other value can be a
+   * counter.</p>
+   */
+  private boolean isCounter(final String key, final String value) {
+
+    try {
+      Long.parseLong(value);
+    } catch (final NumberFormatException e) {
+      return false;
+    }
+
+    final ObjectMetadata metadata = getObjectMetadata(key);
+
+    return metadata != null
+        && metadata.getUserMetadata().containsKey(COUNTER_METADATA);
+  }
+
+  private static boolean isCounterShard(final String key) {
+    return key != null && key.startsWith(COUNTER_PREFIX);
+  }
+
+  private static boolean isBlob(final String key) {
+    return key != null && key.startsWith(BLOB_PREFIX);
+  }
+
+  private static String shardKey(final String key, final int shard) {
+    return COUNTER_PREFIX + key + '/' + shard;
+  }
+
+  /**
+   * <p>Seals the shard of a validated <b>shardKey</b>, unless it is already
+   * sealed, returning it as sealed, or <code>null</code> if there is no
+   * shard. The seal id makes the content (and so the <i>ETag</i>) of the
+   * shard unique, so an increment that read it before it was sealed cannot
+   * overwrite it.</p>
+   */
+  private Stored seal(final String shardKey) {
+
+    while (true) {
+
+      final Stored shard = readStored(shardKey);
+
+      if (shard == null || sealId(shard.value()) != null) {
+        return shard;
+      }
+
+      write(shardKey, shard.value() + ' ' + UUID.randomUUID(), shard.eTag());
+    }
+  }
+
+  /**
+   * <p>Adds the values of the <b>sealed</b> shards that have not been
+   * gathered yet to the value of a validated <b>key</b>, recording their seal
+   * ids with it, and returns the keys of the shards it now includes, which
+   * can be deleted. (See: {@link #compactCounter(String)} for more
+   * information.)</p>
+   *
+   * <p>Each shard that is not recorded is checked to still exist after the
+   * value is read. A shard that has gone was gathered and deleted by another
+   * compaction, whose record may since have been replaced by that of a later
+   * shard with the same index; one that is still there cannot have been
+   * gathered before the value was read without being recorded in it, and
+   * cannot be gathered after without failing the conditional write.</p>
+   */
+  private List<String> gather(
+      final String key,
+      final Map<String, Stored> sealed) {
+
+    while (true) {
+
+      final Stored base = readStored(key);
+      final Map<String, String> gathered = gathered(base);
+      final List<String> included = new ArrayList<>();
+      final List<String> pending = new ArrayList<>();
+      long count = 0;
+
+      for (final Map.Entry<String, Stored> entry : sealed.entrySet()) {
+
+        final String shard = entry.getValue().value();
+
+        if (shardCount(shard) == 0
+            || isGathered(entry.getKey(), shard, gathered)) {
+
+          included.add(entry.getKey());
+
+        } else if (exists(entry.getKey(), entry.getValue().eTag())) {
+          pending.add(entry.getKey());
+          count += shardCount(shard);
+        }
+      }
+
+      if (pending.isEmpty()) {
+        return included;
+      }
+
+      if (count == 0) {
+        count -= shardCount(
+            sealed.get(pending.remove(pending.size() - 1)).value());
+      }
+
+      for (final String shardKey : pending) {
+        gathered.put(
+            shardIndex(shardKey),
+            sealId(sealed.get(shardKey).value()));
+      }
+
+      final String delta = Long.toString(count);
+
+      if (write(
+          key,
+          base == null ? delta : addCounts(base.value(), delta),
+          base == null ? null : base.eTag(),
+          Map.of(
+              GATHERED_METADATA, formatGathered(gathered),
+              COUNTER_METADATA, Boolean.TRUE.toString()))) {
+
+        included.addAll(pending);
+
+        return included;
+      }
+    }
+  }
+
+  /**
+   * <p>Returns <code>true</code> if the object of a validated <b>key</b>
+   * still has the <b>eTag</b>.</p>
+   */
+  private boolean exists(final String key, final String eTag) {
+
+    final ObjectMetadata metadata = getObjectMetadata(key);
+
+    return metadata != null && eTag.equals(metadata.getETag());
+  }
+
+  /**
+   * <p>Returns the seal ids recorded with the value of a counter, by shard
+   * index.</p>
+   */
+  private static Map<String, String> gathered(final Stored base) {
+
+    final Map<String, String> gathered = new HashMap<>();
+    final String record =
+        base == null ? null : base.userMetadata().get(GATHERED_METADATA);
+
+    if (record != null && !record.isEmpty()) {
+
+      for (final String entry : record.split(",")) {
+
+        final int separator = entry.indexOf('=');
+
+        gathered.put(
+            entry.substring(0, separator),
+            entry.substring(separator + 1));
+      }
+    }
+
+    return gathered;
+  }
+
+  private static String formatGathered(final Map<String, String> gathered) {
+
+    final StringBuilder record = new StringBuilder();
+
+    gathered.forEach((index, sealId) -> {
+
+      if (record.length() > 0) {
+        record.append(',');
+      }
+
+      record.append(index).append('=').append(sealId);
+    });
+
+    return record.toString();
+  }
+
+  private static boolean isGathered(
+      final String shardKey,
+      final String shard,
+      final Map<String, String> gathered) {
+
+    final String sealId = sealId(shard);
+
+    return sealId != null && sealId.equals(gathered.get(shardIndex(shardKey)));
+  }
+
+  private static String shardIndex(final String shardKey) {
+    return shardKey.substring(shardKey.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * <p>Returns the seal id of a shard, or <code>null</code> if it is not
+   * sealed.</p>
+   */
+  private static String sealId(final String shard) {
+
+    final int separator = shard.indexOf(' ');
+
+    return separator < 0 ? null : shard.substring(separator + 1);
+  }
+
+  private static long shardCount(final String shard) {
+
+    final int separator = shard.indexOf(' ');
+
+    return Long.parseLong(
+        separator < 0 ? shard : shard.substring(0, separator));
+  }
+
+  private static boolean isShardIndex(final String shardKey, final int start) {
+
+    if (start == shardKey.length()) {
+      return false;
+    }
+
+    for (int i = start; i < shardKey.length(); i++) {
+      if (!Character.isDigit(shardKey.charAt(i))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * <p>Reads the value of a <b>key</b> that has already been validated,
+   * returning <code>null</code> if there is no object for it.</p>
+   */
+  private String read(final String key) {
+
+    if (blobGracePeriod != null) {
+
+      final Stored stored = readStored(key);
+
+      return stored == null ? null : stored.value();
+    }
+
+    return s3.doesObjectExist(bucketName, key)
+        ? s3.getObjectAsString(bucketName, key)
+        : null;
+  }
+
+  /**
+   * <p>Returns the object of a <b>key</b> that has already been validated, or
+   * <code>null</code> if there is no object for it.</p>
+   */
+  private S3Object getObject(final String key) {
+
+    try {
+      return s3.getObject(bucketName, key);
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * <p>Returns the value of the object of a <b>key</b> that has already been
+   * validated, or <code>null</code> if there is no object for it.</p>
+   */
+  private String getObjectAsString(final String key) {
+
+    try {
+      return s3.getObjectAsString(bucketName, key);
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * <p>Returns the object holding the value of a validated <b>key</b>: the
+   * blob it points to, if it points to one, or otherwise its own object, or
+   * <code>null</code> if there is no object for it.</p>
+   */
+  private S3Object getValueObject(final String key) throws IOException {
+
+    final S3Object object = getObject(key);
+
+    if (object == null) {
+      return null;
+    }
+
+    final String hash = blobHash(object.getObjectMetadata());
+
+    if (hash == null) {
+      return object;
+    }
+
+    object.close();
+
+    return s3.getObject(bucketName, BLOB_PREFIX + hash);
+  }
+
+  /**
+   * <p>Returns the metadata of the object of a validated <b>key</b>, or
+   * <code>null</code> if there is no object for it.</p>
+   */
+  private ObjectMetadata getObjectMetadata(final String key) {
+
+    try {
+      return s3.getObjectMetadata(bucketName, key);
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * <p>Returns the hash of the blob an object points to, or <code>null</code>
+   * if values are not deduplicated or the object holds its own value.</p>
+   */
+  private String blobHash(final ObjectMetadata metadata) {
+    return blobGracePeriod == null
+        ? null
+        : metadata.getUserMetaDataOf(BLOB_METADATA);
+  }
+
+  /**
+   * <p>Returns a request writing the <b>content</b> of a validated
+   * <b>key</b>, or, if values are deduplicated and the <b>content</b> is long
+   * enough, writing a pointer to the blob of the <b>content</b>, which is
+   * stored first. The pointer holds the hash of the blob, rather than nothing,
+   * so that its <i>ETag</i> differs from that of a pointer to any other
+   * blob.</p>
+   */
+  private PutObjectRequest putRequest(
+      final String key,
+      final ByteBuffer content) {
+
+    final ObjectMetadata metadata = new ObjectMetadata();
+    ByteBuffer body = content;
+
+    if (blobGracePeriod != null && content.remaining() >= MINIMUM_BLOB_SIZE) {
+      final String hash = storeBlob(content);
+
+      metadata.addUserMetadata(BLOB_METADATA, hash);
+      body = ByteBuffer.wrap(hash.getBytes(UTF_8));
+    }
+
+    metadata.setContentLength(body.remaining());
+
+    return new PutObjectRequest(bucketName, key, inputStream(body), metadata);
+  }
+
+  /**
+   * <p>Stores the <b>content</b> as a blob, unless a blob of it already
+   * exists, and returns its hash. An existing blob more than half the grace
+   * period old is refreshed by copying it onto itself, so that it is not
+   * collected before the object pointing to it is written; if it has been
+   * collected in the meantime, it is uploaded again.</p>
+   */
+  private String storeBlob(final ByteBuffer content) {
+
+    final String hash = hash(content);
+    final String blobKey = BLOB_PREFIX + hash;
+    final ObjectMetadata existing = getObjectMetadata(blobKey);
+
+    if (existing == null) {
+      uploadBlob(blobKey, content);
+    } else if (existing.getLastModified().toInstant().isBefore(
+        Instant.now().minus(blobGracePeriod.dividedBy(2)))) {
+
+      final ObjectMetadata metadata = new ObjectMetadata();
+
+      metadata.addUserMetadata(REFRESHED_METADATA, Instant.now().toString());
+
+      try {
+        s3.copyObject(new CopyObjectRequest(
+            bucketName,
+            blobKey,
+            bucketName,
+            blobKey).withNewObjectMetadata(metadata));
+      } catch (final AmazonS3Exception e) {
+
+        if (e.getStatusCode() != NOT_FOUND) {
+          throw e;
+        }
+
+        uploadBlob(blobKey, content);
+      }
+    }
+
+    return hash;
+  }
+
+  /**
+   * <p>Uploads the <b>content</b> to <b>blobKey</b> if there is no object
+   * there yet; a blob uploaded by another writer first holds the same
+   * content.</p>
+   */
+  private void uploadBlob(final String blobKey, final ByteBuffer content) {
+
+    final ObjectMetadata metadata = new ObjectMetadata();
+
+    metadata.setContentLength(content.remaining());
+
+    final PutObjectRequest request = new PutObjectRequest(
+        bucketName,
+        blobKey,
+        inputStream(content),
+        metadata);
+
+    request.putCustomRequestHeader(IF_NONE_MATCH, "*");
+
+    try {
+      s3.putObject(request);
+    } catch (final AmazonS3Exception e) {
+
+      final int statusCode = e.getStatusCode();
+
+      if (statusCode != PRECONDITION_FAILED && statusCode != CONFLICT) {
+        throw e;
+      }
+    }
+  }
+
+  private static String hash(final ByteBuffer content) {
+
+    try {
+
+      final MessageDigest digest =
+          MessageDigest.getInstance(BLOB_HASH_ALGORITHM);
+
+      digest.update(content.duplicate());
+
+      return HexFormat.of().formatHex(digest.digest());
+
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * <p>Returns a stream of the bytes remaining in the <b>content</b>, which
+   * reads them straight from its array if it has one, and otherwise from a
+   * duplicate of it, so that a direct buffer is not copied first.</p>
+   */
+  private static InputStream inputStream(final ByteBuffer content) {
+
+    if (content.hasArray()) {
+      return new ByteArrayInputStream(
+          content.array(),
+          content.arrayOffset() + content.position(),
+          content.remaining());
+    }
+
+    return new ByteBufferInputStream(content.duplicate());
+  }
+
+  /**
+   * <p>Takes a transfer buffer from the pool, or allocates one if the pool is
+   * empty. It is offered back once used, and dropped if the pool is
+   * full.</p>
+   */
+  private static byte[] borrowTransferBuffer() {
+
+    final byte[] transfer = TRANSFER_BUFFERS.poll();
+
+    return transfer == null ? new byte[TRANSFER_BUFFER_SIZE] : transfer;
+  }
+
+  /**
+   * <p>Applies the <b>remappingFunction</b> to the current value of a
+   * validated <b>key</b>, and stores the result if the object has not changed
+   * since it was read, retrying from the read until it has not.</p>
+   */
+  private String compareAndCompute(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    while (true) {
+
+      final Stored stored = readStored(key);
+      final String current = stored == null ? null : stored.value();
+      final String value =
+          validateComputedValue(remappingFunction.apply(key, current));
+
+      if (value == null) {
+
+        if (stored == null || delete(key, stored.eTag())) {
+          return null;
+        }
+
+      } else if (write(key, value, stored == null ? null : stored.eTag())) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * <p>Reads the value and <i>ETag</i> of a validated <b>key</b>, returning
+   * <code>null</code> if there is no object for it.</p>
+   */
+  private Stored readStored(final String key) {
+
+    try (final S3Object object = getObject(key)) {
+
+      if (object == null) {
+        return null;
+      }
+
+      final String hash = blobHash(object.getObjectMetadata());
+      final String value = hash == null
+          ? new String(object.getObjectContent().readAllBytes(), UTF_8)
+          : s3.getObjectAsString(bucketName, BLOB_PREFIX + hash);
+
+      return new Stored(
+          value,
+          object.getObjectMetadata().getETag(),
+          object.getObjectMetadata().getUserMetadata());
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>Writes the <b>value</b> of a validated <b>key</b> if the object still
+   * has the <b>eTag</b>, or, if the <b>eTag</b> is <code>null</code>, if there
+   * is still no object, returning <code>false</code> if it has changed.</p>
+   */
+  private boolean write(
+      final String key,
+      final String value,
+      final String eTag) {
+
+    return write(key, value, eTag, Map.of());
+  }
+
+  /**
+   * <p>Writes the <b>value</b> of a validated <b>key</b>, with the
+   * <b>userMetadata</b>, under the same condition as {@link #write(String,
+   * String, String)}.</p>
+   */
+  private boolean write(
+      final String key,
+      final String value,
+      final String eTag,
+      final Map<String, String> userMetadata) {
+
+    final PutObjectRequest request =
+        putRequest(key, ByteBuffer.wrap(value.getBytes(UTF_8)));
+
+    userMetadata.forEach(request.getMetadata()::addUserMetadata);
+
+    if (eTag == null) {
+      request.putCustomRequestHeader(IF_NONE_MATCH, "*");
+    } else {
+      request.putCustomRequestHeader(IF_MATCH, quote(eTag));
+    }
+
+    try {
+      s3.putObject(request);
+    } catch (final AmazonS3Exception e) {
+      return isLostRace(e);
+    }
+
+    if (eTag == null) {
+      added(key);
+    }
+
+    return true;
+  }
+
+  /**
+   * <p>Deletes the object of a validated <b>key</b> if it still has the
+   * <b>eTag</b>, returning <code>false</code> if it has changed.</p>
+   */
+  private boolean delete(final String key, final String eTag) {
+
+    final DeleteObjectRequest request =
+        new DeleteObjectRequest(bucketName, key);
+
+    request.putCustomRequestHeader(IF_MATCH, quote(eTag));
+
+    try {
+      s3.deleteObject(request);
+    } catch (final AmazonS3Exception e) {
+      return isLostRace(e);
+    }
+
+    removed(List.of(key));
+
+    return true;
+  }
+
+  /**
+   * <p>Returns <code>false</code> if the exception reports that a
+   * precondition failed, because another writer got there first; rethrows
+   * it otherwise.</p>
+   */
+  private static boolean isLostRace(final AmazonS3Exception e) {
+
+    final int statusCode = e.getStatusCode();
+
+    if (statusCode == PRECONDITION_FAILED
+        || statusCode == CONFLICT
+        || statusCode == NOT_FOUND) {
+
+      return false;
+    }
+
+    throw e;
+  }
+
+  private static String quote(final String eTag) {
+    return eTag.startsWith("\"") ? eTag : '"' + eTag + '"';
+  }
+
+  private static String validateComputedValue(final String value) {
+
+    if (value != null) {
+      checkNotBlank("value", value);
+    }
+
+    return value;
+  }
+
+  private void deleteObjects(final List<String> keys) {
+
+    s3.deleteObjects(new DeleteObjectsRequest(bucketName)
+        .withKeys(keys.toArray(new String[0]))
+        .withQuiet(true));
+
+    removed(keys);
+  }
+
+  /**
+   * <p>Records the creation of the object of <b>key</b> in the manifest, if
+   * there is one.</p>
+   */
+  private void added(final String key) {
+    if (manifest != null) {
+      manifest.added(key);
+    }
+  }
+
+  /**
+   * <p>Records the deletion of the objects of <b>keys</b> in the manifest, if
+   * there is one.</p>
+   */
+  private void removed(final List<String> keys) {
+    if (manifest != null) {
+      manifest.removed(keys);
+    }
+  }
+
+  /**
+   * <p>Returns <code>true</code> if <b>key</b> is kept by this
+   * <code>S3Mneme</code> for itself, and so hidden from its key set.</p>
+   */
+  private boolean isHidden(final String key) {
+    return isCounterShard(key)
+        || isBlob(key)
+        || manifest != null && manifest.isManifestObject(key);
+  }
+
+  /**
+   * <p>The value of an object, with the <i>ETag</i> and user metadata it was
+   * read at.</p>
+   */
+  private record Stored(
+      String value,
+      String eTag,
+      Map<String, String> userMetadata) { }
+
+  /**
+   * <p>Splits the keys of the bucket by listing page, listing each page as
+   * it is reached. (See: {@link #keySpliterator()} for more
+   * information.)</p>
+   */
+  private final class ListingSpliterator implements Spliterator<String> {
+
+    private static final int CHARACTERISTICS =
+        Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED;
+
+    private ObjectListing listing;
+    private boolean truncated;
+    private String[] keys;
+    private int index;
+
+    private ListingSpliterator(final ObjectListing listing) {
+
+      super();
+
+      page(listing);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super String> action) {
+
+      while (index == keys.length) {
+
+        if (!truncated) {
+          return false;
+        }
+
+        page(s3.listNextBatchOfObjects(listing));
+      }
+
+      action.accept(keys[index++]);
+
+      return true;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+
+      while (index == keys.length && truncated) {
+        page(s3.listNextBatchOfObjects(listing));
+      }
+
+      final int remaining = keys.length - index;
+      final int end = truncated ? keys.length : index + remaining / 2;
+
+      if (end == index) {
+        return null;
+      }
+
+      final Spliterator<String> split =
+          Spliterators.spliterator(keys, index, end, CHARACTERISTICS);
+
+      index = end;
+
+      return split;
+    }
+
+    /**
+     * <p>Returns the keys left in the current page, plus a full page if the
+     * listing goes on, since <i>S3</i> does not report how many remain.</p>
+     */
+    @Override
+    public long estimateSize() {
+
+      final long remaining = keys.length - index;
+
+      return truncated ? remaining + MAXIMUM_LIST_PAGE_SIZE : remaining;
+    }
+
+    @Override
+    public int characteristics() {
+      return CHARACTERISTICS;
+    }
+
+    private void page(final ObjectListing next) {
+
+      listing = next;
+      truncated = next.isTruncated();
+      keys = next.getObjectSummaries()
+          .stream()
+          .map(S3ObjectSummary::getKey)
+          .filter(key -> !isHidden(key))
+          .toArray(String[]::new);
+      index = 0;
+    }
+
+  }
+
+  /**
+   * <p>An {@link InputStream} of the bytes remaining in a buffer, which
+   * supports marking so that the request can be retried.</p>
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      this.buffer = buffer.mark();
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+
+      if (length == 0) {
+        return 0;
+      }
+
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+
+      final int read = Math.min(length, buffer.remaining());
+
+      buffer.get(bytes, offset, read);
+
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(final int readLimit) {
+      buffer.mark();
+    }
+
+    @Override
+    public synchronized void reset() {
+      buffer.reset();
+    }
+
+  }
+
 }
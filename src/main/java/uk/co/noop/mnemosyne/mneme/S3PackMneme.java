@@ -0,0 +1,1334 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.mnemosyne.eunomia.S3BucketNameEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} for storing and retrieving key/value <code>String</code>
+ * pairs in an <i>S3</i> bucket, packing many values into each object, for
+ * datasets of many small values where the cost of each request outweighs the
+ * cost of the bytes it carries.</p>
+ *
+ * <p>Writes are gathered in memory and written together as a new, immutable,
+ * <i>pack</i> object once they reach the pack size, when {@link #flush()} is
+ * called, and in the background every ten seconds. Each pack is written with
+ * an index object recording the offset and length of each value it holds,
+ * and the keys it removes. The index of every key is kept in memory, so a
+ * read is a single ranged GET of the bytes of its value, and the keys are
+ * enumerated without any requests at all.</p>
+ *
+ * <p>Values that are replaced or removed leave dead bytes behind in their
+ * packs. Compaction, which runs in the background and can be run with {@link
+ * #compact()}, copies the live values of small or mostly dead packs into new
+ * packs, writes a checkpoint of the whole index, and then deletes the old
+ * packs. When it is created, an <code>S3PackMneme</code> lists its prefix
+ * once, and reads the checkpoint and the index of every pack written since
+ * it. The background flush and compaction start with the first write.</p>
+ *
+ * <p>Entries are durable once their pack has been written; there is no
+ * write-ahead log, so entries still in memory are lost if the process dies.
+ * The objects under the prefix belong to a single <code>S3PackMneme</code> at
+ * a time, in the way the directory of an {@link LsmMneme} does.</p>
+ *
+ * <p><code>S3PackMneme</code> instances are safe for concurrent use; reads
+ * never wait for writes, and writes only wait for each other to add their
+ * entry to the pack being gathered.</p>
+ *
+ * @see Mneme
+ */
+public class S3PackMneme extends AbstractMneme implements AutoCloseable {
+
+  /**
+   * <p>The default pack size, in bytes.</p>
+   */
+  public static final int DEFAULT_PACK_SIZE = 1 << 23;
+
+  /**
+   * <p>The value used internally to record a removed entry. Valid values are
+   * never blank, so it cannot collide with a stored value.</p>
+   */
+  static final String TOMBSTONE = "";
+
+  private static final String PACKS = "packs/";
+  private static final String INDEXES = "indexes/";
+  private static final String CHECKPOINT = "checkpoint";
+
+  private static final int CHECKPOINT_INTERVAL = 16;
+  private static final int ENTRY_OVERHEAD = 16;
+  private static final int NOT_FOUND = 404;
+  private static final int MAXIMUM_DELETE_BATCH_SIZE = 1000;
+  private static final long COMPACTION_INTERVAL_SECONDS = 10;
+
+  private static final Set<Capability> CAPABILITIES =
+      Collections.unmodifiableSet(EnumSet.of(
+          Capability.BATCH_GET,
+          Capability.BATCH_PUT,
+          Capability.BATCH_DELETE,
+          Capability.CHEAP_SIZE));
+
+  private final AmazonS3 s3;
+  private final String bucketName;
+  private final String prefix;
+  private final int packSize;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final ReentrantLock counterLock = new ReentrantLock();
+  private final Map<String, Location> index = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService compactor;
+  private final AtomicBoolean compacting = new AtomicBoolean();
+
+  // Entries are written to pending, which is swapped for an empty map when
+  // it is flushed; until its pack has been written and indexed, readers find
+  // its entries in sealing. Readers look in pending, then sealing, then the
+  // index, so an entry being flushed is always found in one of them.
+  private volatile Map<String, String> pending = new ConcurrentHashMap<>();
+  private volatile Map<String, String> sealing = Map.of();
+  private volatile boolean closed;
+
+  // Written under writeLock.
+  private volatile int keyCount;
+
+  // Guarded by writeLock.
+  private long pendingBytes;
+
+  // Guarded by flushLock.
+  private final Map<Long, Pack> packs = new HashMap<>();
+  private long nextPack;
+  private int packsSinceCheckpoint;
+
+  /**
+   * <p>Creates a new instance of <code>S3PackMneme</code> keeping its packs
+   * under the specified <b>prefix</b> of the bucket, using the {@link
+   * #DEFAULT_PACK_SIZE}.</p>
+   *
+   * @param s3 An instance of {@link AmazonS3}.
+   * @param bucketName The <i>S3</i> bucket name.
+   * @param prefix The prefix of the packs, their indexes and the checkpoint.
+   *               Any existing packs under it will be loaded.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see AmazonS3
+   */
+  public S3PackMneme(
+      final AmazonS3 s3,
+      final String bucketName,
+      final String prefix) {
+
+    this(s3, bucketName, prefix, DEFAULT_PACK_SIZE);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>S3PackMneme</code> keeping its packs
+   * under the specified <b>prefix</b> of the bucket.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>prefix</b> parameter is validated against blank values using
+   * {@link Themis}, and the <b>packSize</b> parameter is validated against
+   * non-positive values. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()} and {@link
+   * IntegerEunomia#againstNonPositiveIntegers()} for more information.)</p>
+   *
+   * @param s3 An instance of {@link AmazonS3}.
+   * @param bucketName The <i>S3</i> bucket name.
+   * @param prefix The prefix of the packs, their indexes and the checkpoint.
+   *               Any existing packs under it will be loaded.
+   * @param packSize The approximate size, in bytes, at which the gathered
+   *                 entries are written as a pack. Packs smaller than half
+   *                 this are merged by compaction.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see AmazonS3
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see IntegerEunomia#againstNonPositiveIntegers()
+   */
+  public S3PackMneme(
+      final AmazonS3 s3,
+      final String bucketName,
+      final String prefix,
+      final int packSize) {
+
+    super();
+
+    checkNotNull("s3", s3);
+    validate("bucketName", bucketName, S3BucketNameEunomia.class)
+        .againstNonExistentS3BucketNames(s3);
+    checkNotBlank("prefix", prefix);
+    validate("packSize", packSize, IntegerEunomia.class)
+        .againstNonPositiveIntegers();
+
+    this.s3 = s3;
+    this.bucketName = bucketName;
+    this.prefix = prefix.endsWith("/") ? prefix : prefix + '/';
+    this.packSize = packSize;
+
+    load();
+
+    this.keyCount = index.size();
+    this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-pack-compaction");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The keys are counted as they are written, so no requests are made and
+   * no keys are copied.</p>
+   *
+   * @return the number of key-value mappings in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public int size() {
+    ensureOpen();
+    return keyCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return isPresent(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every value is read, a pack at a time, so this is an <i>O(n)</i>
+   * operation.</p>
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+    ensureOpen();
+
+    for (final String storedValue : values()) {
+      if (value.equals(storedValue)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A value that has been written to a pack is read with a single ranged
+   * GET.</p>
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this {@link Mneme} contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Mneme#containsKey(String)
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    return read(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entry is gathered into the next pack. The previous value is read
+   * to be returned, which costs a ranged GET if the key is already in a pack;
+   * {@link #putAll(Map)} stores its entries without reading them.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    ensureOpen();
+
+    final String previousValue = read(key);
+
+    write(Map.of(key, value));
+
+    return previousValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The removal is gathered into the next pack. The previous value is read
+   * to be returned, which costs a ranged GET if the key is in a pack; {@link
+   * #clear()} removes its keys without reading them.</p>
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    final String previousValue = read(key);
+
+    if (previousValue != null) {
+      write(Map.of(key, TOMBSTONE));
+    }
+
+    return previousValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+    * <p>Increments are serialised by a lock of their own, rather than the
+   * write lock, so that the read of the counter (which may cost a ranged GET)
+   * does not hold up other writes. They are therefore atomic with respect to
+   * each other, but a {@link #put(String, String) put} of the same key made
+   * while an increment is in progress may be overwritten by it.</p>
+   *
+   * @param key the key of the counter
+   * @param delta the amount to add, which may be negative
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws NumberFormatException if the <b>key</b> is mapped to a value that
+   * is not a decimal <code>long</code>
+   *
+   * @see Mneme
+   */
+  @Override
+  public void increment(final String key, final long delta) {
+
+    checkNotBlank("key", key);
+    ensureOpen();
+
+    counterLock.lock();
+
+    try {
+
+      final String count = read(key);
+
+      write(Map.of(key, count == null
+          ? Long.toString(delta)
+          : addCounts(count, Long.toString(delta))));
+
+    } finally {
+      counterLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The keys are held in memory, so no requests are made.</p>
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+
+    ensureOpen();
+
+    // Read in the same order as read(String), so that an entry being flushed
+    // is not missed.
+    final Map<String, String> pendingEntries = pending;
+    final Map<String, String> sealingEntries = sealing;
+    final Set<String> keys = new HashSet<>(index.keySet());
+
+    applyTo(keys, sealingEntries);
+    applyTo(keys, pendingEntries);
+
+    return keys;
+  }
+
+  @Override
+  public Set<Capability> getCapabilities() {
+    return CAPABILITIES;
+  }
+
+  /**
+   * <p>Writes the gathered entries as a pack now, rather than waiting for
+   * them to reach the pack size, so that they are durable.</p>
+   */
+  public void flush() {
+    ensureOpen();
+    seal(false);
+  }
+
+  /**
+   * <p>Flushes the gathered entries, then copies the live values of every
+   * pack that is smaller than half the pack size, or is mostly dead, into new
+   * packs, writes a checkpoint of the index, and deletes the old packs.</p>
+   *
+   * <p>Compaction normally runs in the background, but can also be called
+   * directly; only one compaction runs at a time.</p>
+   */
+  public void compact() {
+
+    flush();
+    flushLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final Set<Long> victims = pickVictims();
+
+      if (victims.isEmpty()) {
+        return;
+      }
+
+      final Map<Long, Map<String, Location>> live = new HashMap<>();
+
+      for (final Entry<String, Location> entry : index.entrySet()) {
+        if (victims.contains(entry.getValue().pack())) {
+          live.computeIfAbsent(entry.getValue().pack(), __ -> new HashMap<>())
+              .put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      final Map<String, String> batch = new LinkedHashMap<>();
+      long batchBytes = 0;
+
+      for (final Entry<Long, Map<String, Location>> pack : live.entrySet()) {
+
+        final byte[] content = readPack(pack.getKey());
+
+        for (final Entry<String, Location> entry :
+            pack.getValue().entrySet()) {
+
+          final Location location = entry.getValue();
+
+          batch.put(entry.getKey(), new String(
+              content,
+              location.offset(),
+              location.length(),
+              UTF_8));
+          batchBytes += location.length();
+
+          if (batchBytes >= packSize) {
+            writePack(batch);
+            batch.clear();
+            batchBytes = 0;
+          }
+        }
+      }
+
+      if (!batch.isEmpty()) {
+        writePack(batch);
+      }
+
+      // Only once the checkpoint no longer needs them are the old packs (and
+      // any removals recorded in their indexes) deleted.
+      writeCheckpoint();
+      deletePacks(victims);
+
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Flushes the gathered entries, writes a checkpoint of the index, and
+   * stops background compaction. Once closed, every operation will throw an
+   * <code>IllegalStateException</code>.</p>
+   *
+   * <p>Calling <code>close()</code> more than once has no further effect.</p>
+   */
+  @Override
+  public void close() {
+
+    flushLock.lock();
+    writeLock.lock();
+
+    try {
+
+      compactor.shutdown();
+
+      if (closed) {
+        return;
+      }
+
+      seal(false);
+
+      if (packsSinceCheckpoint > 0) {
+        writeCheckpoint();
+      }
+
+      closed = true;
+
+    } finally {
+      writeLock.unlock();
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Returns the values of the specified <b>keys</b>, reading those in the
+   * same pack with a single ranged GET spanning them.</p>
+   *
+   * @param keys the keys whose values are to be returned
+   *
+   * @return the values of the <b>keys</b> that are present, by key
+   */
+  @Override
+  protected Map<String, String> getBatch(final Collection<String> keys) {
+
+    ensureOpen();
+
+    final Map<String, String> values = new HashMap<>();
+    final Map<Long, Map<String, Location>> packed = new HashMap<>();
+
+    for (final String key : keys) {
+
+      final String value = buffered(key);
+
+      if (value != null) {
+
+        if (!TOMBSTONE.equals(value)) {
+          values.put(key, value);
+        }
+
+        continue;
+      }
+
+      final Location location = index.get(key);
+
+      if (location != null) {
+        packed.computeIfAbsent(location.pack(), __ -> new HashMap<>())
+            .put(key, location);
+      }
+    }
+
+    for (final Entry<Long, Map<String, Location>> pack : packed.entrySet()) {
+
+      int start = Integer.MAX_VALUE;
+      int end = 0;
+
+      for (final Location location : pack.getValue().values()) {
+        start = Math.min(start, location.offset());
+        end = Math.max(end, location.offset() + location.length());
+      }
+
+      final byte[] span;
+
+      try {
+        span = readRange(pack.getKey(), start, end - start);
+      } catch (final AmazonS3Exception e) {
+
+        if (e.getStatusCode() != NOT_FOUND) {
+          throw e;
+        }
+
+        // Compacted away since the locations were read.
+        for (final String key : pack.getValue().keySet()) {
+
+          final String value = read(key);
+
+          if (value != null) {
+            values.put(key, value);
+          }
+        }
+
+        continue;
+      }
+
+      for (final Entry<String, Location> entry : pack.getValue().entrySet()) {
+
+        final Location location = entry.getValue();
+
+        values.put(entry.getKey(), new String(
+            span,
+            location.offset() - start,
+            location.length(),
+            UTF_8));
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * <p>Gathers every entry into the next pack at once, without reading the
+   * previous values.</p>
+   *
+   * @param entries the mappings to be stored
+   */
+  @Override
+  protected void putBatch(
+      final Map<? extends String, ? extends String> entries) {
+
+    entries.forEach((key, value) -> {
+      checkNotBlank("key", key);
+      checkNotBlank("value", value);
+    });
+    ensureOpen();
+
+    write(entries);
+  }
+
+  /**
+   * <p>Gathers the removal of every present key into the next pack at
+   * once.</p>
+   *
+   * @param keys the keys whose mappings are to be removed
+   */
+  @Override
+  protected void removeBatch(final Collection<String> keys) {
+
+    ensureOpen();
+
+    final Map<String, String> removals = new HashMap<>();
+
+    for (final String key : keys) {
+      if (containsKey(key)) {
+        removals.put(key, TOMBSTONE);
+      }
+    }
+
+    write(removals);
+  }
+
+  /**
+   * <p>Returns the keys in the order of their values in the packs, so that
+   * each batch of values is read from as few packs as possible.</p>
+   *
+   * @return a spliterator over the keys of this <code>S3PackMneme</code>
+   */
+  @Override
+  protected Spliterator<String> keySpliterator() {
+
+    final List<Entry<String, Location>> located = new ArrayList<>();
+
+    for (final String key : keySet()) {
+      located.add(new SimpleImmutableEntry<>(key, index.get(key)));
+    }
+
+    located.sort(Entry.comparingByValue(Comparator.nullsFirst(
+        Comparator.comparingLong(Location::pack)
+            .thenComparingInt(Location::offset))));
+
+    return located.stream().map(Entry::getKey).toList().spliterator();
+  }
+
+  private void ensureOpen() {
+
+    if (closed) {
+      throw new IllegalStateException("S3PackMneme has been closed");
+    }
+  }
+
+  /**
+   * <p>Returns the value of <b>key</b> if it has not been indexed yet, which
+   * is {@link #TOMBSTONE} if it has been removed, or <code>null</code>
+   * otherwise.</p>
+   */
+  private String buffered(final String key) {
+
+    final String value = pending.get(key);
+
+    return value == null ? sealing.get(key) : value;
+  }
+
+  private boolean isPresent(final String key) {
+
+    final String value = buffered(key);
+
+    return value == null ? index.containsKey(key) : !TOMBSTONE.equals(value);
+  }
+
+  private String read(final String key) {
+
+    final String value = buffered(key);
+
+    if (value != null) {
+      return TOMBSTONE.equals(value) ? null : value;
+    }
+
+    while (true) {
+
+      final Location location = index.get(key);
+
+      if (location == null) {
+        return null;
+      }
+
+      try {
+        return new String(
+            readRange(location.pack(), location.offset(), location.length()),
+            UTF_8);
+      } catch (final AmazonS3Exception e) {
+
+        // A pack that is missing has been compacted away since the location
+        // was read, so the value has moved.
+        if (e.getStatusCode() != NOT_FOUND
+            || location.equals(index.get(key))) {
+
+          throw e;
+        }
+      }
+    }
+  }
+
+  private void write(final Map<? extends String, ? extends String> entries) {
+
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    final boolean full;
+
+    writeLock.lock();
+
+    try {
+
+      ensureOpen();
+
+      final Map<String, String> target = pending;
+
+      entries.forEach((key, value) -> {
+
+        // An entry being sealed stays readable until it has been indexed,
+        // so whether the key is present does not change while it moves.
+        final boolean present = isPresent(key);
+
+        target.put(key, value);
+        pendingBytes += key.length() + value.length() + ENTRY_OVERHEAD;
+
+        if (present != isPresent(key)) {
+          keyCount += present ? -1 : 1;
+        }
+      });
+
+      full = pendingBytes >= packSize;
+
+      startCompaction();
+
+    } finally {
+      writeLock.unlock();
+    }
+
+    if (full) {
+      seal(true);
+    }
+  }
+
+  /**
+   * <p>Writes the pending entries as a pack and indexes them. If
+   * <b>whenFull</b>, they are only written if they have reached the pack
+   * size, as another writer may have written them already. If the pack
+   * cannot be written, the entries are returned to the pending entries,
+   * unless they have been written again since.</p>
+   */
+  private void seal(final boolean whenFull) {
+
+    flushLock.lock();
+
+    try {
+
+      final Map<String, String> entries;
+
+      writeLock.lock();
+
+      try {
+
+        if (pending.isEmpty() || whenFull && pendingBytes < packSize) {
+          return;
+        }
+
+        entries = pending;
+        sealing = entries;
+        pending = new ConcurrentHashMap<>();
+        pendingBytes = 0;
+
+      } finally {
+        writeLock.unlock();
+      }
+
+      try {
+        writePack(entries);
+      } catch (final RuntimeException e) {
+
+        writeLock.lock();
+
+        try {
+          entries.forEach((key, value) -> {
+            if (pending.putIfAbsent(key, value) == null) {
+              pendingBytes += key.length() + value.length() + ENTRY_OVERHEAD;
+            }
+          });
+        } finally {
+          writeLock.unlock();
+        }
+
+        throw e;
+
+      } finally {
+        sealing = Map.of();
+      }
+
+      if (++packsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+        writeCheckpoint();
+      }
+
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Schedules the background flush and compaction the first time it is
+   * called, so that it never starts before the constructor has returned.
+   * Called while holding the write lock, so never after closing.</p>
+   */
+  private void startCompaction() {
+
+    if (compacting.get() || !compacting.compareAndSet(false, true)) {
+      return;
+    }
+
+    compactor.scheduleWithFixedDelay(
+        this::flushAndCompact,
+        COMPACTION_INTERVAL_SECONDS,
+        COMPACTION_INTERVAL_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  private void flushAndCompact() {
+
+    try {
+      if (!closed) {
+        compact();
+      }
+    } catch (final RuntimeException e) {
+      // Unwritten entries stay pending, so both are retried on the next run.
+    }
+  }
+
+  /**
+   * <p>Writes <b>entries</b> as the next pack, and then its index, which
+   * makes the pack part of this <code>S3PackMneme</code> when it is next
+   * loaded, and then indexes the entries in memory.</p>
+   */
+  private void writePack(final Map<String, String> entries) {
+
+    final long pack = nextPack++;
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    final ByteArrayOutputStream packIndex = new ByteArrayOutputStream();
+    final Map<String, Location> locations = new HashMap<>();
+
+    try (final DataOutputStream output = new DataOutputStream(packIndex)) {
+
+      output.writeInt(entries.size());
+
+      for (final Entry<String, String> entry : entries.entrySet()) {
+
+        output.writeUTF(entry.getKey());
+
+        if (TOMBSTONE.equals(entry.getValue())) {
+          output.writeInt(0);
+          output.writeInt(-1);
+          locations.put(entry.getKey(), null);
+          continue;
+        }
+
+        final byte[] value = entry.getValue().getBytes(UTF_8);
+        final Location location = new Location(pack, data.size(), value.length);
+
+        data.write(value);
+        output.writeInt(location.offset());
+        output.writeInt(location.length());
+        locations.put(entry.getKey(), location);
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    putObject(packKey(pack), data.toByteArray());
+    putObject(indexKey(pack), packIndex.toByteArray());
+
+    packs.put(pack, new Pack(data.size()));
+    locations.forEach(this::install);
+  }
+
+  /**
+   * <p>Points <b>key</b> at <b>location</b>, or removes it if
+   * <code>null</code>, keeping the live bytes of each pack up to date.</p>
+   */
+  private void install(final String key, final Location location) {
+
+    final Location previous = location == null
+        ? index.remove(key)
+        : index.put(key, location);
+
+    if (previous != null) {
+      packs.computeIfAbsent(previous.pack(), __ -> new Pack(0)).live -=
+          previous.length();
+    }
+
+    if (location != null) {
+      packs.computeIfAbsent(location.pack(), __ -> new Pack(0)).live +=
+          location.length();
+    }
+  }
+
+  /**
+   * <p>Returns the packs to be compacted: those smaller than half the pack
+   * size, and those more than half dead, or none if compacting them would
+   * only rewrite a single pack unchanged.</p>
+   */
+  private Set<Long> pickVictims() {
+
+    final Set<Long> victims = new HashSet<>();
+    boolean reclaims = false;
+
+    for (final Entry<Long, Pack> entry : packs.entrySet()) {
+
+      final Pack pack = entry.getValue();
+
+      if (pack.live * 2 < pack.size || pack.size < packSize / 2) {
+        victims.add(entry.getKey());
+        reclaims |= pack.live < pack.size || pack.live == 0;
+      }
+    }
+
+    return victims.size() > 1 || reclaims ? victims : Set.of();
+  }
+
+  private void writeCheckpoint() {
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (final DataOutputStream output =
+             new DataOutputStream(new GZIPOutputStream(bytes))) {
+
+      final List<Entry<String, Location>> entries =
+          new ArrayList<>(index.entrySet());
+
+      output.writeLong(nextPack - 1);
+      output.writeInt(entries.size());
+
+      for (final Entry<String, Location> entry : entries) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue().pack());
+        output.writeInt(entry.getValue().offset());
+        output.writeInt(entry.getValue().length());
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    putObject(prefix + CHECKPOINT, bytes.toByteArray());
+    packsSinceCheckpoint = 0;
+  }
+
+  /**
+   * <p>Lists the packs and their indexes, then reads the checkpoint and
+   * applies the index of every pack written after it, in order. A pack
+   * without an index was never completely written, and is left for
+   * compaction to delete, as is any other pack with no live values.</p>
+   */
+  private void load() {
+
+    final String packPrefix = prefix + PACKS;
+    final String indexPrefix = prefix + INDEXES;
+    final Set<Long> indexed = new TreeSet<>();
+    long lastPack = 0;
+
+    ObjectListing listing = s3.listObjects(bucketName, prefix);
+
+    while (true) {
+
+      for (final S3ObjectSummary summary : listing.getObjectSummaries()) {
+
+        final String objectKey = summary.getKey();
+
+        if (objectKey.startsWith(packPrefix)) {
+
+          final long pack = idOf(objectKey, packPrefix);
+
+          if (pack > 0) {
+            packs.put(pack, new Pack(summary.getSize()));
+            lastPack = Math.max(lastPack, pack);
+          }
+
+        } else if (objectKey.startsWith(indexPrefix)) {
+
+          final long pack = idOf(objectKey, indexPrefix);
+
+          if (pack > 0) {
+            indexed.add(pack);
+            lastPack = Math.max(lastPack, pack);
+          }
+        }
+      }
+
+      if (!listing.isTruncated()) {
+        break;
+      }
+
+      listing = s3.listNextBatchOfObjects(listing);
+    }
+
+    final long checkpoint = readCheckpoint();
+
+    for (final long pack : indexed) {
+
+      packs.putIfAbsent(pack, new Pack(0));
+
+      if (pack > checkpoint) {
+        readPackIndex(pack).forEach((key, location) -> {
+          if (location == null) {
+            index.remove(key);
+          } else {
+            index.put(key, location);
+          }
+        });
+      }
+    }
+
+    for (final Location location : index.values()) {
+      packs.computeIfAbsent(location.pack(), __ -> new Pack(0)).live +=
+          location.length();
+    }
+
+    nextPack = Math.max(lastPack, checkpoint) + 1;
+  }
+
+  /**
+   * <p>Reads the checkpoint into the index, returning the last pack it
+   * includes, or <code>0</code> if there is no checkpoint.</p>
+   */
+  private long readCheckpoint() {
+
+    final byte[] content = getObject(prefix + CHECKPOINT);
+
+    if (content == null) {
+      return 0;
+    }
+
+    try (final DataInputStream input = new DataInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(content)))) {
+
+      final long lastPack = input.readLong();
+      final int count = input.readInt();
+
+      for (int i = 0; i < count; i++) {
+        index.put(
+            input.readUTF(),
+            new Location(input.readLong(), input.readInt(), input.readInt()));
+      }
+
+      return lastPack;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>Returns the locations recorded by the index of <b>pack</b>, in the
+   * order they were written, with <code>null</code> for each removed
+   * key.</p>
+   */
+  private Map<String, Location> readPackIndex(final long pack) {
+
+    final byte[] content = getObject(indexKey(pack));
+    final Map<String, Location> locations = new LinkedHashMap<>();
+
+    if (content == null) {
+      return locations;
+    }
+
+    try (final DataInputStream input =
+             new DataInputStream(new ByteArrayInputStream(content))) {
+
+      final int count = input.readInt();
+
+      for (int i = 0; i < count; i++) {
+
+        final String key = input.readUTF();
+        final int offset = input.readInt();
+        final int length = input.readInt();
+
+        locations.put(
+            key,
+            length < 0 ? null : new Location(pack, offset, length));
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return locations;
+  }
+
+  private void deletePacks(final Set<Long> victims) {
+
+    final List<String> batch = new ArrayList<>(MAXIMUM_DELETE_BATCH_SIZE);
+
+    for (final long pack : victims) {
+
+      batch.add(packKey(pack));
+      batch.add(indexKey(pack));
+      packs.remove(pack);
+
+      if (batch.size() >= MAXIMUM_DELETE_BATCH_SIZE - 1) {
+        deleteObjects(batch);
+        batch.clear();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      deleteObjects(batch);
+    }
+  }
+
+  private void deleteObjects(final List<String> keys) {
+    s3.deleteObjects(new DeleteObjectsRequest(bucketName)
+        .withKeys(keys.toArray(new String[0]))
+        .withQuiet(true));
+  }
+
+  private byte[] readPack(final long pack) {
+
+    try (final S3Object object = s3.getObject(bucketName, packKey(pack))) {
+      return object.getObjectContent().readAllBytes();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private byte[] readRange(
+      final long pack,
+      final int offset,
+      final int length) {
+
+    final GetObjectRequest request = new GetObjectRequest(
+        bucketName,
+        packKey(pack)).withRange(offset, (long) offset + length - 1);
+
+    try (final S3Object object = s3.getObject(request)) {
+      return object.getObjectContent().readAllBytes();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private byte[] getObject(final String objectKey) {
+
+    try (final S3Object object = s3.getObject(bucketName, objectKey)) {
+      return object.getObjectContent().readAllBytes();
+    } catch (final AmazonS3Exception e) {
+
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+
+      throw e;
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void putObject(final String objectKey, final byte[] content) {
+
+    final ObjectMetadata metadata = new ObjectMetadata();
+
+    metadata.setContentLength(content.length);
+
+    s3.putObject(
+        bucketName,
+        objectKey,
+        new ByteArrayInputStream(content),
+        metadata);
+  }
+
+  private String packKey(final long pack) {
+    return prefix + PACKS + pack;
+  }
+
+  private String indexKey(final long pack) {
+    return prefix + INDEXES + pack;
+  }
+
+  private static long idOf(final String objectKey, final String objectPrefix) {
+
+    final String id = objectKey.substring(objectPrefix.length());
+
+    if (id.isEmpty() || !id.chars().allMatch(Character::isDigit)) {
+      return -1;
+    }
+
+    return Long.parseLong(id);
+  }
+
+  private static void applyTo(
+      final Set<String> keys,
+      final Map<String, String> entries) {
+
+    entries.forEach((key, value) -> {
+      if (TOMBSTONE.equals(value)) {
+        keys.remove(key);
+      } else {
+        keys.add(key);
+      }
+    });
+  }
+
+  /**
+   * <p>Where the value of a key is stored: <b>length</b> bytes from
+   * <b>offset</b> in <b>pack</b>.</p>
+   */
+  private record Location(long pack, int offset, int length) { }
+
+  /**
+   * <p>The size of a pack, and how many of its bytes are still the value of
+   * a key.</p>
+   */
+  private static final class Pack {
+
+    private final long size;
+
+    // Guarded by flushLock.
+    private long live;
+
+    private Pack(final long size) {
+      this.size = size;
+    }
+
+  }
+
+}
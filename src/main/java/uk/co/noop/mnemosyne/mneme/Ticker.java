@@ -0,0 +1,38 @@
+package uk.co.noop.mnemosyne.mneme;
+
+/**
+ * <p>The clocks read by a {@link LocalMneme} to expire its entries: a
+ * monotonic clock for the timers of the {@link TimingWheel}, and the wall
+ * clock for the deadlines written to its write-ahead log.</p>
+ *
+ * <p>{@link #SYSTEM} reads {@link System#nanoTime()} and {@link
+ * System#currentTimeMillis()}; tests move time forward with their own.</p>
+ */
+interface Ticker {
+
+  Ticker SYSTEM = new Ticker() {
+
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+
+  };
+
+  /**
+   * <p>Returns the current value of the monotonic clock, in
+   * nanoseconds.</p>
+   */
+  long nanoTime();
+
+  /**
+   * <p>Returns the current time, in milliseconds since the epoch.</p>
+   */
+  long currentTimeMillis();
+
+}
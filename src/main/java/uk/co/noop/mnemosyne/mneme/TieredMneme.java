@@ -0,0 +1,843 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.LongEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>A {@link Mneme} that combines a fast, bounded local tier with a slower,
+ * unbounded cold tier (typically an {@link S3Mneme}), keeping the entries in
+ * use locally so that most reads never leave the process.</p>
+ *
+ * <p>The local tier is a {@link LocalMneme} bounded by a maximum weight, in
+ * bytes. An entry read from the cold tier is promoted to the local tier, and
+ * once the local tier is full its {@link WindowTinyLfuPolicy Window TinyLFU}
+ * policy decides which entries stay: recently and frequently read entries are
+ * kept, while those that have gone cold are demoted by dropping them from the
+ * local tier, to be read from the cold tier again should they be needed. The
+ * cold tier always holds every entry, so demoting one never loses it.</p>
+ *
+ * <p>Writes follow the {@link WritePolicy} given on construction. With
+ * {@link WritePolicy#WRITE_THROUGH} a write is applied to the cold tier before
+ * it returns. With {@link WritePolicy#WRITE_BACK} a write is applied to the
+ * local tier and queued, and the queued writes are applied to the cold tier
+ * in the background every {@value #FLUSH_INTERVAL_SECONDS} second(s), when
+ * more than {@value #MAXIMUM_PENDING_WRITES} are queued, when {@link #flush()}
+ * is called and when the <code>TieredMneme</code> is closed. Only the latest
+ * write of each key is kept while it is queued, and queued writes are lost if
+ * the process ends before they are flushed.</p>
+ *
+ * <p><code>TieredMneme</code> instances are safe for concurrent use. Reads of
+ * entries in the local tier are lock-free; writes, and reads that go to the
+ * cold tier, are serialised per key. Writes made to the cold tier directly
+ * are not seen for keys already held in the local tier.</p>
+ *
+ * <p>For example;</p>
+ *
+ * <pre>
+ * final TieredMneme mneme = new TieredMneme(
+ *     new S3Mneme(s3, "bucket"),
+ *     64 * 1024 * 1024,
+ *     TieredMneme.WritePolicy.WRITE_BACK);
+ * </pre>
+ *
+ * @see Mneme
+ * @see LocalMneme
+ * @see S3Mneme
+ */
+public class TieredMneme extends AbstractMneme implements AutoCloseable {
+
+  /**
+   * <p>The interval, in seconds, at which queued writes are flushed to the
+   * cold tier under {@link WritePolicy#WRITE_BACK}.</p>
+   */
+  public static final long FLUSH_INTERVAL_SECONDS = 1;
+
+  /**
+   * <p>The number of queued writes above which a writer flushes them to the
+   * cold tier itself under {@link WritePolicy#WRITE_BACK}.</p>
+   */
+  public static final int MAXIMUM_PENDING_WRITES = 1 << 16;
+
+  private static final int STRIPES = 1024;
+
+  /**
+   * <p>Marks a queued removal. Compared by identity, and never equal to a
+   * stored value, as blank values are not allowed.</p>
+   */
+  private static final String TOMBSTONE = new String("");
+
+  private final Mneme cold;
+  private final LocalMneme hot;
+  private final WritePolicy writePolicy;
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private final Map<String, String> pending = new ConcurrentHashMap<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final ScheduledExecutorService flusher;
+
+  private final LongAdder localHitCount = new LongAdder();
+  private final LongAdder coldHitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private volatile boolean closed;
+
+  /**
+   * <p>Creates a new instance of <code>TieredMneme</code> over the specified
+   * <b>cold</b> tier, holding up to <b>maximumWeight</b> bytes of entries
+   * locally and writing through to the cold tier.</p>
+   *
+   * @param cold The <code>Mneme</code> holding every entry.
+   * @param maximumWeight The maximum total weight of the entries held
+   *                      locally, in bytes. (See: {@link
+   *                      LocalMneme#LocalMneme(long)} for more
+   *                      information.)
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see #TieredMneme(Mneme, long, WritePolicy)
+   */
+  public TieredMneme(final Mneme cold, final long maximumWeight) {
+    this(cold, maximumWeight, WritePolicy.WRITE_THROUGH);
+  }
+
+  /**
+   * <p>Creates a new instance of <code>TieredMneme</code> over the specified
+   * <b>cold</b> tier, holding up to <b>maximumWeight</b> bytes of entries
+   * locally and writing to the cold tier according to the specified
+   * <b>writePolicy</b>.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>cold</b> and <b>writePolicy</b> parameters are validated against
+   * <code>null</code>, and the <b>maximumWeight</b> parameter against
+   * non-positive values, using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()} and {@link
+   * LongEunomia#againstNonPositiveLongs()} for more information.)</p>
+   *
+   * @param cold The <code>Mneme</code> holding every entry.
+   * @param maximumWeight The maximum total weight of the entries held
+   *                      locally, in bytes. (See: {@link
+   *                      LocalMneme#LocalMneme(long)} for more
+   *                      information.)
+   * @param writePolicy When writes are applied to the cold tier.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see WritePolicy
+   */
+  public TieredMneme(
+      final Mneme cold,
+      final long maximumWeight,
+      final WritePolicy writePolicy) {
+
+    super();
+
+    checkNotNull("cold", cold);
+    validate("maximumWeight", maximumWeight, LongEunomia.class)
+        .againstNonPositiveLongs();
+    checkNotNull("writePolicy", writePolicy);
+
+    this.cold = cold;
+    this.hot = new LocalMneme(maximumWeight);
+    this.writePolicy = writePolicy;
+
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      stripes[stripe] = new ReentrantLock();
+    }
+
+    if (writePolicy == WritePolicy.WRITE_BACK) {
+      flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "mnemosyne-tiered");
+        thread.setDaemon(true);
+        return thread;
+      });
+      flusher.scheduleWithFixedDelay(
+          this::flushQuietly,
+          FLUSH_INTERVAL_SECONDS,
+          FLUSH_INTERVAL_SECONDS,
+          TimeUnit.SECONDS);
+    } else {
+      flusher = null;
+    }
+  }
+
+  /**
+   * <p>Applies every queued write to the cold tier, returning once they have
+   * all been applied. Does nothing under {@link
+   * WritePolicy#WRITE_THROUGH}.</p>
+   *
+   * <p>Writes the cold tier fails to apply remain queued, and are retried by
+   * the next flush.</p>
+   *
+   * @throws RuntimeException any exception thrown by the cold tier.
+   */
+  public void flush() {
+
+    flushLock.lock();
+
+    try {
+      for (final Map.Entry<String, String> write : pending.entrySet()) {
+
+        final String key = write.getKey();
+        final String value = write.getValue();
+
+        if (value == TOMBSTONE) {
+          cold.remove(key);
+        } else {
+          cold.put(key, value);
+        }
+
+        // Left queued if the key was written again while being applied.
+        pending.remove(key, value);
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Returns a snapshot of where the reads of this
+   * <code>TieredMneme</code> were served from, and of the writes queued for
+   * the cold tier.</p>
+   *
+   * @return the current {@link Statistics}
+   */
+  public Statistics getStatistics() {
+    return new Statistics(
+        localHitCount.sum(),
+        coldHitCount.sum(),
+        missCount.sum(),
+        pending.size(),
+        hot.getStatistics().weightedSize());
+  }
+
+  /**
+   * <p>Flushes any queued writes to the cold tier and stops flushing in the
+   * background. Reads are still served, but further writes throw an
+   * <code>IllegalStateException</code>. The cold tier itself is left
+   * open.</p>
+   *
+   * <p>Calling <code>close()</code> more than once has no further
+   * effect.</p>
+   *
+   * @throws RuntimeException any exception thrown by the cold tier while
+   * flushing, in which case the failed writes remain queued.
+   */
+  @Override
+  public void close() {
+
+    closed = true;
+
+    if (flusher != null) {
+      flusher.shutdown();
+      flush();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Under {@link WritePolicy#WRITE_BACK} the queued writes are flushed
+   * first, and the keys are then listed from the cold tier.</p>
+   *
+   * @param value value whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> maps one or more keys
+   * to the specified <b>value</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsValue(final String value) {
+
+    checkNotBlank("value", value);
+
+    flush();
+
+    return cold.containsValue(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entry is promoted to the local tier if it had to be read from the
+   * cold tier.</p>
+   *
+   * @param key key whose presence in this {@link Mneme} is to be tested
+   *
+   * @return <code>true</code> if this <code>Mneme</code> contains a mapping for
+   * the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public boolean containsKey(final String key) {
+    return get(key) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entry is read from the local tier if it is held there, and
+   * otherwise from the cold tier, and promoted to the local tier.</p>
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if this <code>Mneme</code> contains no mapping for the
+   * <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String get(final String key) {
+
+    checkNotBlank("key", key);
+
+    final String local = readLocal(key);
+
+    if (local != null) {
+      return countLocal(local);
+    }
+
+    return lock(key, () -> {
+
+      // Written or promoted by another thread while waiting for the lock.
+      final String written = readLocal(key);
+
+      if (written != null) {
+        return countLocal(written);
+      }
+
+      final String value = cold.get(key);
+
+      if (value == null) {
+        missCount.increment();
+      } else {
+        coldHitCount.increment();
+        hot.put(key, value);
+      }
+
+      return value;
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entry is written to the local tier, and to the cold tier according
+   * to the {@link WritePolicy}.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    final String previous = write(key, () -> {
+
+      final String current;
+
+      if (writePolicy == WritePolicy.WRITE_THROUGH) {
+        current = cold.put(key, value);
+      } else {
+        current = peek(key);
+        pending.put(key, value);
+      }
+
+      hot.put(key, value);
+
+      return current;
+    });
+
+    flushIfFull();
+
+    return previous;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The entry is removed from the local tier, and from the cold tier
+   * according to the {@link WritePolicy}.</p>
+   *
+   * @param key key whose mapping is to be removed from the {@link Mneme}
+   *
+   * @return the previous value associated with <b>key</b>, or <code>null</code>
+   * if there was no mapping for <b>key</b>.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   *
+   * @see Mneme
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   * @see uk.co.noop.themis.exception.ThemisTargetException
+   */
+  @Override
+  public String remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    final String previous = write(key, () -> {
+
+      final String current;
+
+      if (writePolicy == WritePolicy.WRITE_THROUGH) {
+        current = cold.remove(key);
+      } else {
+        current = peek(key);
+
+        if (current != null) {
+          pending.put(key, TOMBSTONE);
+        }
+      }
+
+      hot.remove(key);
+
+      return current;
+    });
+
+    flushIfFull();
+
+    return previous;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Under {@link WritePolicy#WRITE_BACK} the queued writes are flushed
+   * first, and the keys are then listed from the cold tier.</p>
+   *
+   * @return a set view of the keys contained in this {@link Mneme}
+   *
+   * @see Mneme
+   */
+  @Override
+  public Set<String> keySet() {
+
+    flush();
+
+    return cold.keySet();
+  }
+
+  /**
+   * <p>Applies {@link Map#putIfAbsent(Object, Object)} atomically with
+   * respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the current value associated with <b>key</b>, or
+   * <code>null</code> if the <b>value</b> was stored
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String putIfAbsent(final String key, final String value) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> super.putIfAbsent(key, value));
+  }
+
+  /**
+   * <p>Applies {@link Map#remove(Object, Object)} atomically with respect to
+   * other writes of the <b>key</b>.</p>
+   *
+   * @param key key whose mapping is to be removed
+   * @param value value expected to be associated with the <b>key</b>
+   *
+   * @return <code>true</code> if the entry was removed
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public boolean remove(final Object key, final Object value) {
+
+    checkNotNull("key", key);
+
+    if (!(key instanceof String keyString)) {
+      return false;
+    }
+
+    return write(keyString, () -> super.remove(keyString, value));
+  }
+
+  /**
+   * <p>Applies {@link Map#replace(Object, Object, Object)} atomically with
+   * respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param oldValue value expected to be associated with the <b>key</b>
+   * @param newValue value to be associated with the <b>key</b>
+   *
+   * @return <code>true</code> if the value was replaced
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public boolean replace(
+      final String key,
+      final String oldValue,
+      final String newValue) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> super.replace(key, oldValue, newValue));
+  }
+
+  /**
+   * <p>Applies {@link Map#replace(Object, Object)} atomically with respect to
+   * other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the specified <b>value</b> is associated
+   * @param value value to be associated with the <b>key</b>
+   *
+   * @return the previous value associated with <b>key</b>, or
+   * <code>null</code> if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String replace(final String key, final String value) {
+
+    checkNotBlank("key", key);
+
+    return write(key, () -> super.replace(key, value));
+  }
+
+  /**
+   * <p>Applies {@link Map#computeIfAbsent(Object, Function)} atomically with
+   * respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param mappingFunction the function to compute a value
+   *
+   * @return the current (existing or computed) value associated with
+   * <b>key</b>, or <code>null</code> if the computed value is
+   * <code>null</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String computeIfAbsent(
+      final String key,
+      final Function<? super String, ? extends String> mappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("mappingFunction", mappingFunction);
+
+    return write(key, () -> super.computeIfAbsent(key, mappingFunction));
+  }
+
+  /**
+   * <p>Applies {@link Map#computeIfPresent(Object, BiFunction)} atomically
+   * with respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String computeIfPresent(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> super.computeIfPresent(key, remappingFunction));
+  }
+
+  /**
+   * <p>Applies {@link Map#compute(Object, BiFunction)} atomically with
+   * respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the computed value is to be associated
+   * @param remappingFunction the function to compute a value
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String compute(
+      final String key,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> super.compute(key, remappingFunction));
+  }
+
+  /**
+   * <p>Applies {@link Map#merge(Object, Object, BiFunction)} atomically with
+   * respect to other writes of the <b>key</b>.</p>
+   *
+   * @param key key with which the resulting value is to be associated
+   * @param value the value to store, or merge with the existing value
+   * @param remappingFunction the function to merge the values
+   *
+   * @return the new value associated with <b>key</b>, or <code>null</code> if
+   * there is none
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   * @throws IllegalStateException if this <code>TieredMneme</code> has been
+   * closed.
+   */
+  @Override
+  public String merge(
+      final String key,
+      final String value,
+      final BiFunction<? super String, ? super String, ? extends String>
+          remappingFunction) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+    checkNotNull("remappingFunction", remappingFunction);
+
+    return write(key, () -> super.merge(key, value, remappingFunction));
+  }
+
+  /**
+   * <p>Returns the queued write of <b>key</b>, which may be the {@link
+   * #TOMBSTONE}, or else its value in the local tier, or <code>null</code> if
+   * neither holds it.</p>
+   */
+  private String readLocal(final String key) {
+
+    final String queued = pending.get(key);
+
+    return queued != null ? queued : hot.get(key);
+  }
+
+  /**
+   * <p>Returns the current value of <b>key</b> without promoting it, for a
+   * writer holding the lock of its stripe.</p>
+   */
+  private String peek(final String key) {
+
+    final String local = readLocal(key);
+
+    if (local != null) {
+      return local == TOMBSTONE ? null : local;
+    }
+
+    return cold.get(key);
+  }
+
+  private String countLocal(final String local) {
+
+    if (local == TOMBSTONE) {
+      missCount.increment();
+      return null;
+    }
+
+    localHitCount.increment();
+
+    return local;
+  }
+
+  private <T> T write(final String key, final Supplier<T> operation) {
+
+    if (closed) {
+      throw new IllegalStateException("TieredMneme has been closed");
+    }
+
+    return lock(key, operation);
+  }
+
+  /**
+   * <p>Applies <b>operation</b> while holding the lock of the stripe of
+   * <b>key</b>. The locks are reentrant, so compound writes may call the
+   * simple ones.</p>
+   */
+  private <T> T lock(final String key, final Supplier<T> operation) {
+
+    final ReentrantLock stripe =
+        stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+
+    stripe.lock();
+
+    try {
+      return operation.get();
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  private void flushIfFull() {
+
+    if (pending.size() > MAXIMUM_PENDING_WRITES) {
+      flush();
+    }
+  }
+
+  private void flushQuietly() {
+
+    try {
+      flush();
+    } catch (final RuntimeException e) {
+      // Left queued, and retried by the next flush.
+    }
+  }
+
+  /**
+   * <p>When the writes made to a {@link TieredMneme} are applied to its cold
+   * tier.</p>
+   */
+  public enum WritePolicy {
+
+    /**
+     * <p>Each write is applied to the cold tier before it returns, so an
+     * entry is never lost once written, but every write waits for the cold
+     * tier.</p>
+     */
+    WRITE_THROUGH,
+
+    /**
+     * <p>Writes are queued and applied to the cold tier in the background,
+     * so writes of entries held locally only wait for the local tier, and
+     * repeated writes of a key are applied to the cold tier once. Queued
+     * writes are lost if the process ends before they are flushed.</p>
+     */
+    WRITE_BACK
+
+  }
+
+  /**
+   * <p>Read and write statistics for a {@link TieredMneme}.</p>
+   *
+   * @param localHitCount the number of reads served by the local tier
+   * @param coldHitCount the number of reads served by the cold tier, each of
+   *                     which promoted the entry to the local tier
+   * @param missCount the number of reads that found no value in either tier
+   * @param pendingWriteCount the number of writes queued for the cold tier
+   * @param localWeight the current total weight of the entries held in the
+   *                    local tier
+   */
+  public record Statistics(
+      long localHitCount,
+      long coldHitCount,
+      long missCount,
+      long pendingWriteCount,
+      long localWeight) {
+
+    /**
+     * <p>Returns the proportion of reads that found a value which were
+     * served by the local tier, or <code>1.0</code> if no read has found a
+     * value.</p>
+     *
+     * @return the local hit rate, between <code>0.0</code> and
+     * <code>1.0</code>
+     */
+    public double localHitRate() {
+
+      final long hitCount = localHitCount + coldHitCount;
+
+      return hitCount == 0 ? 1.0 : (double) localHitCount / hitCount;
+    }
+
+  }
+
+}
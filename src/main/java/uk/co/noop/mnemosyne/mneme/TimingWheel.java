@@ -0,0 +1,243 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A hierarchical timing wheel of expiry timers, used by {@link LocalMneme}
+ * to expire entries without scanning them.</p>
+ *
+ * <p>The wheel has five levels of 64 buckets and a single overflow bucket.
+ * Each bucket of the first level spans 2<sup>20</sup> nanoseconds (about a
+ * millisecond), and each bucket of the next level spans a whole revolution of
+ * the one below, so the levels cover about 67 milliseconds, 4 seconds,
+ * 4 minutes, 5 hours and 13 days respectively. A timer is placed in the
+ * lowest level that can hold its deadline; as the wheel advances, the buckets
+ * it passes are emptied, and each timer in them either expires or, if its
+ * deadline is still to come, is placed again in a lower level. Scheduling,
+ * cancelling and expiring a timer are therefore all constant time, and an
+ * advance only visits the buckets that have become due.</p>
+ *
+ * <p>Times are passed in by the caller, in nanoseconds, as read from the
+ * {@link Ticker} of its <code>LocalMneme</code>, so the wheel never reads a
+ * clock itself. The wheel is safe for concurrent use.</p>
+ */
+final class TimingWheel {
+
+  private static final int[] SHIFTS = {20, 26, 32, 38, 44, 50};
+  private static final int BUCKETS = 1 << 6;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Timer[][] wheel = new Timer[SHIFTS.length][];
+  private final long origin;
+
+  private volatile long time;
+
+  TimingWheel(final long now) {
+
+    this.origin = now;
+
+    for (int level = 0; level < SHIFTS.length; level++) {
+
+      wheel[level] = new Timer[level == SHIFTS.length - 1 ? 1 : BUCKETS];
+
+      for (int index = 0; index < wheel[level].length; index++) {
+
+        final Timer sentinel = new Timer(null, null, 0);
+
+        sentinel.previous = sentinel;
+        sentinel.next = sentinel;
+        wheel[level][index] = sentinel;
+      }
+    }
+  }
+
+  /**
+   * <p>Schedules a timer for the entry of <b>key</b> and <b>value</b>, due at
+   * the <b>deadline</b>.</p>
+   */
+  Timer schedule(final String key, final String value, final long deadline) {
+
+    final Timer timer = new Timer(key, value, deadline);
+
+    lock.lock();
+
+    try {
+      link(timer);
+    } finally {
+      lock.unlock();
+    }
+
+    return timer;
+  }
+
+  /**
+   * <p>Removes <b>timer</b> from the wheel, if it has not already expired.</p>
+   */
+  void cancel(final Timer timer) {
+
+    lock.lock();
+
+    try {
+      if (timer.next != null) {
+        unlink(timer);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * <p>Returns <code>true</code> if the wheel has not been advanced since the
+   * start of the current first-level bucket.</p>
+   */
+  boolean isBehind(final long now) {
+    return (now - origin) >>> SHIFTS[0] != time >>> SHIFTS[0];
+  }
+
+  /**
+   * <p>Advances the wheel to <b>now</b>, returning the timers that have
+   * expired. These are removed from the wheel.</p>
+   */
+  List<Timer> advance(final long now) {
+
+    final List<Timer> expired = new ArrayList<>();
+
+    lock.lock();
+
+    try {
+
+      final long previous = time;
+      final long current = now - origin;
+
+      if (current < previous) {
+        return expired;
+      }
+
+      time = current;
+
+      for (int level = 0; level < SHIFTS.length; level++) {
+
+        final long previousTicks = previous >>> SHIFTS[level];
+        final long currentTicks = current >>> SHIFTS[level];
+
+        if (level > 0 && currentTicks == previousTicks) {
+          break;
+        }
+
+        final Timer[] buckets = wheel[level];
+
+        // The first level revisits its previous bucket, which may hold timers
+        // that were not yet due when it was last emptied.
+        final long first = level == 0 ? previousTicks : previousTicks + 1;
+        final long count = Math.min(currentTicks - first + 1, buckets.length);
+
+        for (long tick = first; tick < first + count; tick++) {
+          expire(buckets[(int) (tick & (buckets.length - 1))], now, expired);
+        }
+      }
+
+    } finally {
+      lock.unlock();
+    }
+
+    return expired;
+  }
+
+  private void expire(
+      final Timer sentinel,
+      final long now,
+      final List<Timer> expired) {
+
+    Timer timer = sentinel.next;
+
+    sentinel.previous = sentinel;
+    sentinel.next = sentinel;
+
+    while (timer != sentinel) {
+
+      final Timer next = timer.next;
+
+      timer.previous = null;
+      timer.next = null;
+
+      if (timer.hasExpired(now)) {
+        expired.add(timer);
+      } else {
+        link(timer);
+      }
+
+      timer = next;
+    }
+  }
+
+  private void link(final Timer timer) {
+
+    final long deadline = Math.max(timer.deadline - origin, time);
+
+    int level = 0;
+
+    while (level < SHIFTS.length - 1
+        && (deadline >>> SHIFTS[level]) - (time >>> SHIFTS[level]) >= BUCKETS) {
+      level++;
+    }
+
+    final Timer[] buckets = wheel[level];
+    final Timer sentinel =
+        buckets[(int) ((deadline >>> SHIFTS[level]) & (buckets.length - 1))];
+
+    timer.previous = sentinel.previous;
+    timer.next = sentinel;
+    sentinel.previous.next = timer;
+    sentinel.previous = timer;
+  }
+
+  private static void unlink(final Timer timer) {
+
+    timer.previous.next = timer.next;
+    timer.next.previous = timer.previous;
+    timer.previous = null;
+    timer.next = null;
+  }
+
+  /**
+   * <p>The expiry timer of a single entry. A timer only applies to the value
+   * it was scheduled for, so a value that replaces it without a timer of its
+   * own is never expired by it.</p>
+   */
+  static final class Timer {
+
+    private final String key;
+    private final String value;
+    private final long deadline;
+
+    private Timer previous;
+    private Timer next;
+
+    private Timer(final String key, final String value, final long deadline) {
+
+      this.key = key;
+      this.value = value;
+      this.deadline = deadline;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    String getValue() {
+      return value;
+    }
+
+    long getDeadline() {
+      return deadline;
+    }
+
+    boolean hasExpired(final long now) {
+      return now - deadline >= 0;
+    }
+
+  }
+
+}
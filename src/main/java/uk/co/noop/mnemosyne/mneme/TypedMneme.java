@@ -0,0 +1,308 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.IntegerEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotNull;
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>Stores and retrieves values of type <b>V</b> in a {@link Mneme},
+ * converting them with a {@link Codec}.</p>
+ *
+ * <p>Decoding can be skipped for repeated reads by giving the
+ * <code>TypedMneme</code> a cache of decoded values. Each cached value is
+ * kept with the stored <code>String</code> it was decoded from, which acts as
+ * its version: a read only returns the cached value if the <code>Mneme</code>
+ * still holds that same <code>String</code>, so writes made to the
+ * <code>Mneme</code> directly are never hidden. (For local backends, which
+ * return the stored instance, the check is a reference comparison.) The cache
+ * is a fixed number of slots, each key hashing to one slot, so it never grows
+ * and never needs a lock.</p>
+ *
+ * <p>With a cache, <b>V</b> must be immutable. The cache hands the same
+ * instance to every reader, and <code>put</code> caches the instance it was
+ * given. A change made through any one of them would therefore be seen by
+ * later reads, though it was never written to the <code>Mneme</code>.
+ * Mutable types should be used without a cache.</p>
+ *
+ * <p>For example;</p>
+ *
+ * <pre>
+ * final TypedMneme&lt;Point&gt; points =
+ *     new TypedMneme&lt;&gt;(new LocalMneme(), pointCodec, 1024);
+ * points.put("origin", new Point(0, 0));
+ * points.get("origin"); // decoded once, then served from the cache
+ * </pre>
+ *
+ * @param <V> the type of the values
+ *
+ * @see Mneme
+ * @see Codec
+ */
+public class TypedMneme<V> {
+
+  private final Mneme mneme;
+  private final Codec<V> codec;
+  private final AtomicReferenceArray<Decoded<V>> cache;
+  private final int mask;
+
+  /**
+   * <p>Creates a new instance of <code>TypedMneme</code> storing its values in
+   * the specified <b>mneme</b>, converted with the specified <b>codec</b>,
+   * without a cache.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>mneme</b> and <b>codec</b> parameters are validated against
+   * <code>null</code> values using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} for more information.)</p>
+   *
+   * @param mneme The <code>Mneme</code> to store the encoded values in.
+   * @param codec The <code>Codec</code> to convert the values with.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   */
+  public TypedMneme(final Mneme mneme, final Codec<V> codec) {
+
+    super();
+
+    checkNotNull("mneme", mneme);
+    checkNotNull("codec", codec);
+
+    this.mneme = mneme;
+    this.codec = codec;
+    this.cache = null;
+    this.mask = 0;
+  }
+
+  /**
+   * <p>Creates a new instance of <code>TypedMneme</code> storing its values in
+   * the specified <b>mneme</b>, converted with the specified <b>codec</b>,
+   * with a cache of decoded values of <b>cacheSize</b> slots.</p>
+   *
+   * <p>Cached values are shared, so <b>V</b> must be immutable.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>mneme</b> and <b>codec</b> parameters are validated against
+   * <code>null</code> values, and the <b>cacheSize</b> parameter against
+   * values that are not a power of two, using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} and {@link
+   * IntegerEunomia#againstNonPowersOfTwo()} for more information.)</p>
+   *
+   * @param mneme The <code>Mneme</code> to store the encoded values in.
+   * @param codec The <code>Codec</code> to convert the values with.
+   * @param cacheSize The number of decoded values that can be cached; this
+   *                  must be a power of two.
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see IntegerEunomia#againstNonPowersOfTwo()
+   */
+  public TypedMneme(
+      final Mneme mneme,
+      final Codec<V> codec,
+      final int cacheSize) {
+
+    super();
+
+    checkNotNull("mneme", mneme);
+    checkNotNull("codec", codec);
+    validate("cacheSize", cacheSize, IntegerEunomia.class)
+        .againstNonPowersOfTwo();
+
+    this.mneme = mneme;
+    this.codec = codec;
+    this.cache = new AtomicReferenceArray<>(cacheSize);
+    this.mask = cacheSize - 1;
+  }
+
+  /**
+   * <p>Returns <code>true</code> if the {@link Mneme} contains a mapping for
+   * the specified <b>key</b>.</p>
+   *
+   * @param key key whose presence is to be tested
+   *
+   * @return <code>true</code> if the <code>Mneme</code> contains a mapping
+   * for the specified <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme#containsKey(String)
+   */
+  public boolean containsKey(final String key) {
+    return mneme.containsKey(key);
+  }
+
+  /**
+   * <p>Returns the decoded value to which the specified <b>key</b> is mapped,
+   * or <code>null</code> if the {@link Mneme} contains no mapping for the
+   * <b>key</b>.</p>
+   *
+   * @param key the key whose associated value is to be returned
+   *
+   * @return the decoded value to which the specified <b>key</b> is mapped, or
+   * <code>null</code> if there is no mapping for the <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme#get(String)
+   */
+  public V get(final String key) {
+    return decode(key, mneme.get(key));
+  }
+
+  /**
+   * <p>Encodes the specified <b>value</b> and associates it with the
+   * specified <b>key</b> in the {@link Mneme}.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>value</b> parameter is validated against <code>null</code>
+   * values using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   * ObjectEunomia#againstNullObjects()} for more information.)</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return the previous decoded value associated with <b>key</b>, or
+   * <code>null</code> if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme#put(String, String)
+   */
+  public V put(final String key, final V value) {
+
+    checkNotBlank("key", key);
+    checkNotNull("value", value);
+
+    final String encoded = codec.encode(value);
+    final V previous = decode(key, mneme.put(key, encoded));
+
+    // The value being written is already decoded, so it is cached as is.
+    if (cache != null) {
+      cache.set(slot(key), new Decoded<>(key, encoded, value));
+    }
+
+    return previous;
+  }
+
+  /**
+   * <p>Removes the mapping for the specified <b>key</b> from the {@link
+   * Mneme}, if it is present.</p>
+   *
+   * @param key key whose mapping is to be removed
+   *
+   * @return the previous decoded value associated with <b>key</b>, or
+   * <code>null</code> if there was no mapping for <b>key</b>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Mneme#remove(String)
+   */
+  public V remove(final String key) {
+    return decode(key, mneme.remove(key));
+  }
+
+  /**
+   * <p>Returns the keys contained in the {@link Mneme}.</p>
+   *
+   * @return the keys contained in the <code>Mneme</code>
+   *
+   * @see Mneme#keySet()
+   */
+  public Set<String> keySet() {
+    return mneme.keySet();
+  }
+
+  /**
+   * <p>Returns the {@link Mneme} the encoded values are stored in.</p>
+   *
+   * @return the <code>Mneme</code> the encoded values are stored in
+   */
+  public Mneme getMneme() {
+    return mneme;
+  }
+
+  private V decode(final String key, final String encoded) {
+
+    if (encoded == null) {
+      return null;
+    }
+
+    if (cache == null) {
+      return codec.decode(encoded);
+    }
+
+    final int slot = slot(key);
+    final Decoded<V> cached = cache.get(slot);
+
+    if (cached != null && cached.isOf(key, encoded)) {
+      return cached.value;
+    }
+
+    final V value = codec.decode(encoded);
+
+    cache.set(slot, new Decoded<>(key, encoded, value));
+
+    return value;
+  }
+
+  private int slot(final String key) {
+
+    final int hash = key.hashCode();
+
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /**
+   * <p>A decoded value, with the key and the stored <code>String</code> it
+   * was decoded from.</p>
+   */
+  private static final class Decoded<V> {
+
+    private final String key;
+    private final String encoded;
+    private final V value;
+
+    private Decoded(final String key, final String encoded, final V value) {
+
+      super();
+
+      this.key = key;
+      this.encoded = encoded;
+      this.value = value;
+    }
+
+    private boolean isOf(final String key, final String encoded) {
+      return this.key.equals(key)
+          && (this.encoded == encoded || this.encoded.equals(encoded));
+    }
+
+  }
+
+}
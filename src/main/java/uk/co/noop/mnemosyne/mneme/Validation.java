@@ -0,0 +1,165 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.mnemosyne.eunomia.ByteBufferEunomia;
+import uk.co.noop.mnemosyne.eunomia.DurationEunomia;
+import uk.co.noop.mnemosyne.eunomia.LongEunomia;
+import uk.co.noop.themis.Themis;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>Validates the parameters of {@link Mneme} operations without allocating
+ * anything for valid parameters.</p>
+ *
+ * <p>A parameter that is clearly valid is accepted by an inline check. Any
+ * other parameter is handed to {@link Themis}, which decides whether it is
+ * valid, so invalid parameters are rejected with exactly the exceptions
+ * <code>Themis</code> throws.</p>
+ *
+ * @see Themis
+ */
+final class Validation {
+
+  private Validation() {
+    super();
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against <code>null</code>, empty
+   * and blank values.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   */
+  static void checkNotBlank(final String targetName, final String target) {
+
+    // A string starting with a visible character cannot be blank, which covers
+    // almost every key and value; anything else is left to Themis.
+    if (target == null
+        || target.isEmpty()
+        || !isVisible(target.charAt(0))) {
+
+      validate(targetName, target).againstBlankStrings();
+    }
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against <code>null</code>
+   * values.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see uk.co.noop.themis.eunomia.ObjectEunomia#againstNullObjects()
+   */
+  static void checkNotNull(final String targetName, final Object target) {
+
+    if (target == null) {
+      validate(targetName, target).againstNullObjects();
+    }
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against <code>null</code>, zero
+   * and negative durations.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see DurationEunomia#againstNonPositiveDurations()
+   */
+  static void checkPositive(final String targetName, final Duration target) {
+
+    if (target == null || target.isZero() || target.isNegative()) {
+      validate(targetName, target, DurationEunomia.class)
+          .againstNonPositiveDurations();
+    }
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against zero and negative
+   * values.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see LongEunomia#againstNonPositiveLongs()
+   */
+  static void checkPositive(final String targetName, final long target) {
+
+    if (target <= 0) {
+      validate(targetName, target, LongEunomia.class)
+          .againstNonPositiveLongs();
+    }
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against <code>null</code> and
+   * empty buffers.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see ByteBufferEunomia#againstEmptyByteBuffers()
+   */
+  static void checkNotEmpty(final String targetName, final ByteBuffer target) {
+
+    if (target == null || !target.hasRemaining()) {
+      validate(targetName, target, ByteBufferEunomia.class)
+          .againstEmptyByteBuffers();
+    }
+  }
+
+  /**
+   * <p>Validates the specified <b>target</b> against <code>null</code> and
+   * read-only buffers.</p>
+   *
+   * @param targetName the name of the parameter being validated
+   * @param target the value of the parameter being validated
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown if the <b>target</b> is invalid.
+   *
+   * @see ByteBufferEunomia#againstReadOnlyByteBuffers()
+   */
+  static void checkWritable(final String targetName, final ByteBuffer target) {
+
+    if (target == null || target.isReadOnly()) {
+      validate(targetName, target, ByteBufferEunomia.class)
+          .againstReadOnlyByteBuffers();
+    }
+  }
+
+  private static boolean isVisible(final char character) {
+    return character > ' '
+        && !Character.isWhitespace(character)
+        && !Character.isSpaceChar(character);
+  }
+
+}
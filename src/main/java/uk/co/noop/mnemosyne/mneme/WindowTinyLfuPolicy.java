@@ -0,0 +1,420 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>A <i>Window TinyLFU</i> eviction policy that keeps a map within a maximum
+ * total weight, used by a bounded {@link LocalMneme}.</p>
+ *
+ * <p>New entries enter a small LRU <i>window</i> (1% of the maximum weight).
+ * Entries leaving the window become candidates for the <i>main</i> space, a
+ * segmented LRU of a <i>probation</i> and a <i>protected</i> segment (80% of
+ * the main space). A candidate is only admitted to the main space if a
+ * {@link FrequencySketch} estimates it has been used more often than the
+ * entry it would displace, so a scan of one-off keys passes through the window
+ * without flushing the frequently used entries.</p>
+ *
+ * <p>Writes are applied to the map, and the policy updated, while holding a
+ * single lock. Reads never wait for the lock; they are recorded in a lossy
+ * ring buffer that is replayed against the policy by whichever thread next
+ * holds the lock.</p>
+ */
+final class WindowTinyLfuPolicy {
+
+  private static final double WINDOW_RATIO = 0.01;
+  private static final double PROTECTED_RATIO = 0.8;
+  private static final int READ_BUFFER_SIZE = 1 << 7;
+  private static final int READ_DRAIN_THRESHOLD = 1 << 5;
+  private static final int ADMIT_HASH_FLOOD_FREQUENCY = 6;
+
+  private final Map<String, String> map;
+  private final long maximumWeight;
+  private final long windowMaximum;
+  private final long protectedMaximum;
+  private final EvictionListener listener;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Node> nodes = new HashMap<>();
+  private final AccessOrder window = new AccessOrder();
+  private final AccessOrder probation = new AccessOrder();
+  private final AccessOrder protectedSegment = new AccessOrder();
+  private final FrequencySketch sketch = new FrequencySketch();
+  private final AtomicReferenceArray<String> readBuffer =
+      new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+  private final AtomicLong readsRecorded = new AtomicLong();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private volatile long readsDrained;
+  private volatile long evictionCount;
+  private volatile long evictionWeight;
+  private volatile long totalWeight;
+  private long windowWeight;
+  private long protectedWeight;
+
+  WindowTinyLfuPolicy(
+      final Map<String, String> map,
+      final long maximumWeight,
+      final EvictionListener listener) {
+
+    this.map = map;
+    this.maximumWeight = maximumWeight;
+    this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_RATIO));
+    this.protectedMaximum =
+        (long) ((maximumWeight - windowMaximum) * PROTECTED_RATIO);
+    this.listener = listener;
+  }
+
+  /**
+   * <p>The weight of an entry: the number of bytes needed to hold the
+   * characters of its key and value as UTF-16.</p>
+   */
+  static long weigh(final String key, final String value) {
+    return 2L * (key.length() + value.length());
+  }
+
+  /**
+   * <p>Records a read of <b>key</b>, which found a value if <b>hit</b> is
+   * <code>true</code>.</p>
+   */
+  void recordRead(final String key, final boolean hit) {
+
+    if (!hit) {
+      missCount.increment();
+      return;
+    }
+
+    hitCount.increment();
+
+    final long index = readsRecorded.getAndIncrement();
+    final long pending = index - readsDrained;
+
+    if (pending < READ_BUFFER_SIZE) {
+      readBuffer.lazySet((int) index & (READ_BUFFER_SIZE - 1), key);
+    }
+
+    if (pending >= READ_DRAIN_THRESHOLD && lock.tryLock()) {
+      try {
+        drainReads();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * <p>Applies <b>operation</b>, which may change the mapping for <b>key</b>,
+   * then brings the policy up to date and evicts entries until the map is
+   * within its maximum weight. Evicted entries are passed to the listener
+   * once the lock has been released.</p>
+   */
+  <T> T write(final String key, final Supplier<T> operation) {
+
+    final List<Entry<String, String>> evicted;
+    final T result;
+
+    lock.lock();
+
+    try {
+      drainReads();
+      result = operation.get();
+      update(key);
+      evicted = evict();
+    } finally {
+      lock.unlock();
+    }
+
+    if (listener != null) {
+      for (final Entry<String, String> entry : evicted) {
+        listener.onEviction(entry.getKey(), entry.getValue());
+      }
+    }
+
+    return result;
+  }
+
+  long getHitCount() {
+    return hitCount.sum();
+  }
+
+  long getMissCount() {
+    return missCount.sum();
+  }
+
+  long getEvictionCount() {
+    return evictionCount;
+  }
+
+  long getEvictionWeight() {
+    return evictionWeight;
+  }
+
+  long getWeightedSize() {
+    return totalWeight;
+  }
+
+  private void drainReads() {
+
+    final long recorded = readsRecorded.get();
+
+    long drained = readsDrained;
+
+    for (; drained < recorded; drained++) {
+
+      final String key =
+          readBuffer.getAndSet((int) drained & (READ_BUFFER_SIZE - 1), null);
+
+      if (key != null) {
+
+        final Node node = nodes.get(key);
+
+        if (node != null) {
+          onAccess(node);
+        }
+      }
+    }
+
+    readsDrained = drained;
+  }
+
+  private void update(final String key) {
+
+    final String value = map.get(key);
+    final Node node = nodes.get(key);
+
+    if (value == null) {
+
+      if (node != null) {
+        unlink(node);
+        nodes.remove(key);
+      }
+
+    } else if (node == null) {
+
+      final Node added = new Node(key, weigh(key, value));
+
+      nodes.put(key, added);
+      sketch.ensureCapacity(nodes.size());
+      sketch.increment(key);
+      window.addLast(added);
+      added.segment = window;
+      windowWeight += added.weight;
+      totalWeight += added.weight;
+
+    } else {
+
+      final long weight = weigh(key, value);
+      final long difference = weight - node.weight;
+
+      node.weight = weight;
+      totalWeight += difference;
+
+      if (node.segment == window) {
+        windowWeight += difference;
+      } else if (node.segment == protectedSegment) {
+        protectedWeight += difference;
+      }
+
+      onAccess(node);
+    }
+  }
+
+  private void onAccess(final Node node) {
+
+    sketch.increment(node.key);
+
+    if (node.segment == probation) {
+
+      probation.remove(node);
+      protectedSegment.addLast(node);
+      node.segment = protectedSegment;
+      protectedWeight += node.weight;
+
+      while (protectedWeight > protectedMaximum
+          && protectedSegment.head != node) {
+
+        final Node demoted = protectedSegment.head;
+
+        protectedSegment.remove(demoted);
+        protectedWeight -= demoted.weight;
+        probation.addLast(demoted);
+        demoted.segment = probation;
+      }
+
+    } else {
+      node.segment.moveToLast(node);
+    }
+  }
+
+  private List<Entry<String, String>> evict() {
+
+    final List<Entry<String, String>> evicted = new ArrayList<>();
+
+    Node candidate = null;
+
+    while (windowWeight > windowMaximum && window.head != null) {
+
+      final Node node = window.head;
+
+      window.remove(node);
+      windowWeight -= node.weight;
+      probation.addLast(node);
+      node.segment = probation;
+
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+
+    while (totalWeight > maximumWeight) {
+
+      final Node victim = probation.head;
+
+      if (victim == null) {
+        evict(protectedSegment.head != null
+            ? protectedSegment.head
+            : window.head, evicted);
+        continue;
+      }
+
+      if (candidate == null) {
+        evict(victim, evicted);
+        continue;
+      }
+
+      final Node next = candidate.next;
+
+      if (candidate == victim
+          || candidate.weight > maximumWeight
+          || !admit(candidate, victim)) {
+        evict(candidate, evicted);
+      } else {
+        evict(victim, evicted);
+      }
+
+      candidate = next;
+    }
+
+    return evicted;
+  }
+
+  private boolean admit(final Node candidate, final Node victim) {
+
+    final int candidateFrequency = sketch.frequency(candidate.key);
+
+    if (candidateFrequency > sketch.frequency(victim.key)) {
+      return true;
+    }
+
+    // Occasionally admit a warm candidate, so that an attacker cannot keep a
+    // victim in place by inflating its frequency through hash collisions.
+    return candidateFrequency >= ADMIT_HASH_FLOOD_FREQUENCY
+        && ThreadLocalRandom.current().nextInt(128) == 0;
+  }
+
+  private void evict(
+      final Node node,
+      final List<Entry<String, String>> evicted) {
+
+    unlink(node);
+    nodes.remove(node.key);
+    evictionCount++;
+    evictionWeight += node.weight;
+
+    final String value = map.remove(node.key);
+
+    if (value != null) {
+      evicted.add(new SimpleImmutableEntry<>(node.key, value));
+    }
+  }
+
+  private void unlink(final Node node) {
+
+    node.segment.remove(node);
+    totalWeight -= node.weight;
+
+    if (node.segment == window) {
+      windowWeight -= node.weight;
+    } else if (node.segment == protectedSegment) {
+      protectedWeight -= node.weight;
+    }
+  }
+
+  private static final class Node {
+
+    private final String key;
+
+    private long weight;
+    private AccessOrder segment;
+    private Node previous;
+    private Node next;
+
+    private Node(final String key, final long weight) {
+      this.key = key;
+      this.weight = weight;
+    }
+
+  }
+
+  /**
+   * <p>An intrusive doubly-linked list of nodes, least recently used
+   * first.</p>
+   */
+  private static final class AccessOrder {
+
+    private Node head;
+    private Node tail;
+
+    private void addLast(final Node node) {
+
+      node.previous = tail;
+      node.next = null;
+
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+
+      tail = node;
+    }
+
+    private void remove(final Node node) {
+
+      if (node.previous == null) {
+        head = node.next;
+      } else {
+        node.previous.next = node.next;
+      }
+
+      if (node.next == null) {
+        tail = node.previous;
+      } else {
+        node.next.previous = node.previous;
+      }
+
+      node.previous = null;
+      node.next = null;
+    }
+
+    private void moveToLast(final Node node) {
+
+      if (tail != node) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+  }
+
+}
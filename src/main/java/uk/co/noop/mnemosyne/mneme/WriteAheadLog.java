@@ -0,0 +1,848 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * <p>A write-ahead log of the changes to a durable {@link LocalMneme}, which
+ * are replayed to restore its entries when it is next opened.</p>
+ *
+ * <p>The log is a directory of numbered generation files (<code>
+ * 000000000001.log</code>, ...) and a <code>snapshot</code> file. Each change
+ * is appended to the current generation as a record of the form:</p>
+ *
+ * <pre>
+ * [checksum: int][length: int][type: byte]
+ * [key length: int][key: UTF-8]
+ * [value length: int][value: UTF-8]      (puts only)
+ * [deadline: long]                       (expiring puts only)
+ * </pre>
+ *
+ * <p>where the CRC32 checksum covers everything after it. The changes of a
+ * {@link WriteBatch} are appended as a single record of type <code>BATCH
+ * </code>, holding the number of changes and then the type, key, value and
+ * deadline of each, so that replaying the log restores all of them or none.
+ * Records are first appended to an in-memory buffer, and are written to the
+ * file (and, depending on the {@link Durability}, forced to the device) by
+ * whichever writer next needs its record to be committed. Writers that arrive while a commit is in
+ * progress wait for it, then commit everything appended in the meantime with
+ * a single write and force, so the cost of each force is shared between
+ * concurrent writers.</p>
+ *
+ * <p>Once a generation grows past {@link #SNAPSHOT_THRESHOLD} bytes, a
+ * snapshot is taken in the background: the log moves on to a new generation,
+ * the entries are written to a temporary file that is forced and atomically
+ * renamed over the previous snapshot, and the older generations are deleted.
+ * As changes made while the snapshot is written are also in the new
+ * generation, replaying the snapshot and then every later generation restores
+ * the latest entries. A record that is torn or fails its checksum ends the
+ * replay of its generation, as it and anything after it were never
+ * committed.</p>
+ */
+final class WriteAheadLog {
+
+  static final long SNAPSHOT_THRESHOLD = 1L << 26;
+
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final byte PUT_EXPIRING = 3;
+  private static final byte BATCH = 4;
+  private static final int HEADER_SIZE = 8;
+  private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+  private static final long SNAPSHOT_MAGIC = 0x4d6e656d6f534e50L;
+  private static final String LOG_SUFFIX = ".log";
+  private static final String SNAPSHOT_NAME = "snapshot";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private final Path directory;
+  private final Durability durability;
+  private final Consumer<EntryConsumer> entries;
+  private final Lock quiesce;
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final ReentrantLock commitLock = new ReentrantLock();
+  private final ReentrantLock snapshotLock = new ReentrantLock();
+  private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+  private final ScheduledExecutorService executor;
+
+  private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  private long appended;
+  private long generationStart;
+  private long generation;
+  private long position;
+  private Path path;
+  private FileChannel channel;
+
+  private volatile boolean closed;
+  private volatile long written;
+  private volatile long durable;
+  private volatile UncheckedIOException failure;
+
+  /**
+   * <p>Opens the log in <b>directory</b>, creating it if needed, and replays
+   * its snapshot and generations into <b>restore</b>. Later snapshots are
+   * written from the entries passed by <b>entries</b> to the consumer it is
+   * given. Holding <b>quiesce</b> must exclude any change that is appended
+   * to the log but not yet visible to <b>entries</b>.</p>
+   */
+  WriteAheadLog(
+      final Path directory,
+      final Durability durability,
+      final EntryConsumer restore,
+      final Consumer<EntryConsumer> entries,
+      final Lock quiesce) {
+
+    this.directory = directory;
+    this.durability = durability;
+    this.entries = entries;
+    this.quiesce = quiesce;
+
+    try {
+      Files.createDirectories(directory);
+      Files.deleteIfExists(directory.resolve(SNAPSHOT_NAME + TEMPORARY_SUFFIX));
+
+      final Path snapshot = directory.resolve(SNAPSHOT_NAME);
+      final long first =
+          Files.exists(snapshot) ? replaySnapshot(snapshot, restore) : 0;
+
+      long last = first - 1;
+
+      for (final long id : generations()) {
+        if (id < first) {
+          Files.delete(logPath(id));
+        } else {
+          replayLog(logPath(id), restore);
+          last = id;
+        }
+      }
+
+      generation = Math.max(first, last + 1);
+      path = logPath(generation);
+      channel = FileChannel.open(path, CREATE_NEW, READ, WRITE);
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "mnemosyne-wal");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    if (durability.getMode() == Durability.Mode.PERIODIC) {
+
+      final long interval = durability.getInterval().toNanos();
+
+      executor.scheduleAtFixedRate(
+          this::forceAppended,
+          interval,
+          interval,
+          TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * <p>Appends the change of <b>key</b> to <b>value</b> (or its removal, if
+   * <b>value</b> is <code>null</code>), which expires at the epoch
+   * millisecond <b>deadline</b> unless it is zero. Returns the sequence to
+   * pass to {@link #commit(long)}.</p>
+   *
+   * @throws IllegalStateException if the log has been closed
+   */
+  long append(final String key, final String value, final long deadline) {
+    return append(encode(key, value, deadline));
+  }
+
+  /**
+   * <p>Appends every one of the <b>changes</b>, as a single record, so that
+   * replaying the log restores all of them or none. Returns the sequence to
+   * pass to {@link #commit(long)}.</p>
+   *
+   * @throws IllegalStateException if the log has been closed
+   */
+  long append(final List<JournalEntry> changes) {
+    return append(encode(changes));
+  }
+
+  /**
+   * <p>Appends an encoded <b>record</b>, returning its sequence.</p>
+   */
+  private long append(final ByteBuffer record) {
+
+    final long sequence;
+    final boolean full;
+
+    appendLock.lock();
+
+    try {
+
+      if (closed) {
+        throw new IllegalStateException("LocalMneme has been closed");
+      }
+
+      if (pending.remaining() < record.remaining()) {
+        pending = grow(pending, record.remaining());
+      }
+
+      pending.put(record);
+      appended += record.limit();
+      sequence = appended;
+      full = appended - generationStart > SNAPSHOT_THRESHOLD;
+
+    } finally {
+      appendLock.unlock();
+    }
+
+    if (full && snapshotScheduled.compareAndSet(false, true)) {
+      executor.execute(this::snapshotQuietly);
+    }
+
+    return sequence;
+  }
+
+  /**
+   * <p>Returns once the record of <b>sequence</b>, and every record before
+   * it, is as durable as the {@link Durability} of the log requires.</p>
+   *
+   * @throws UncheckedIOException if the log could not be written
+   */
+  void commit(final long sequence) {
+
+    switch (durability.getMode()) {
+      case EVERY_WRITE -> sync(sequence, true);
+      case OPERATING_SYSTEM -> sync(sequence, false);
+      default -> checkFailure();
+    }
+  }
+
+  /**
+   * <p>Writes a snapshot of the entries and deletes the generations it
+   * replaces.</p>
+   *
+   * @throws UncheckedIOException if the snapshot could not be written
+   */
+  void snapshot() {
+
+    snapshotLock.lock();
+
+    try {
+
+      final long first = rotate();
+      final Path snapshot = directory.resolve(SNAPSHOT_NAME);
+      final Path temporary =
+          directory.resolve(SNAPSHOT_NAME + TEMPORARY_SUFFIX);
+
+      try (FileChannel output =
+               FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+
+        final SnapshotWriter writer = new SnapshotWriter(output);
+
+        writer.header(first);
+        entries.accept(writer);
+        writer.flush();
+        output.force(false);
+      }
+
+      Files.move(temporary, snapshot, ATOMIC_MOVE, REPLACE_EXISTING);
+
+      for (final long id : generations()) {
+        if (id < first) {
+          Files.deleteIfExists(logPath(id));
+        }
+      }
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      snapshotScheduled.set(false);
+      snapshotLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Forces every appended record to the device and closes the log. Later
+   * appends throw {@link IllegalStateException}.</p>
+   */
+  void close() {
+
+    snapshotLock.lock();
+
+    try {
+
+      commitLock.lock();
+
+      try {
+
+        appendLock.lock();
+
+        try {
+          if (closed) {
+            return;
+          }
+          closed = true;
+        } finally {
+          appendLock.unlock();
+        }
+
+        executor.shutdownNow();
+
+        try {
+          if (failure == null) {
+            flush(true);
+          }
+        } finally {
+          channel.close();
+        }
+
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        commitLock.unlock();
+      }
+
+    } finally {
+      snapshotLock.unlock();
+    }
+  }
+
+  private void sync(final long sequence, final boolean force) {
+
+    if ((force ? durable : written) >= sequence) {
+      return;
+    }
+
+    commitLock.lock();
+
+    try {
+      checkFailure();
+
+      // A writer that waited for the lock may find its record was committed
+      // by the one that held it.
+      if ((force ? durable : written) < sequence) {
+        flush(force);
+      }
+    } finally {
+      commitLock.unlock();
+    }
+  }
+
+  private void forceAppended() {
+
+    commitLock.lock();
+
+    try {
+      if (!closed && failure == null && durable < appendedSequence()) {
+        flush(true);
+      }
+    } catch (final UncheckedIOException e) {
+      // Remembered as the failure, and thrown to the next writer to commit.
+    } finally {
+      commitLock.unlock();
+    }
+  }
+
+  /**
+   * <p>Writes every appended record, forcing them to the device if
+   * <b>force</b> is <code>true</code>. Must be called holding the commit
+   * lock.</p>
+   */
+  private void flush(final boolean force) {
+
+    final ByteBuffer batch;
+    final long end;
+
+    appendLock.lock();
+
+    try {
+      batch = pending;
+      pending = spare;
+      end = appended;
+    } finally {
+      appendLock.unlock();
+    }
+
+    try {
+      batch.flip();
+      write(batch);
+      written = end;
+
+      if (force) {
+        force();
+        durable = end;
+      }
+
+    } catch (final IOException e) {
+      failure = new UncheckedIOException(e);
+      throw failure;
+    } finally {
+      batch.clear();
+      spare = batch;
+    }
+  }
+
+  /**
+   * <p>Commits every appended record to the current generation and moves on
+   * to the next, returning its number.</p>
+   */
+  private long rotate() throws IOException {
+
+    // Waiting for the changes in progress means that every change in the
+    // older generations is visible to the snapshot.
+    quiesce.lock();
+    commitLock.lock();
+
+    try {
+      checkFailure();
+
+      appendLock.lock();
+
+      try {
+
+        if (closed) {
+          throw new IllegalStateException("LocalMneme has been closed");
+        }
+
+        flush(true);
+
+        final Path next = logPath(generation + 1);
+        final FileChannel opened =
+            FileChannel.open(next, CREATE_NEW, READ, WRITE);
+
+        channel.close();
+        channel = opened;
+        path = next;
+        position = 0;
+        generation++;
+        generationStart = appended;
+
+        return generation;
+
+      } finally {
+        appendLock.unlock();
+      }
+
+    } finally {
+      commitLock.unlock();
+      quiesce.unlock();
+    }
+  }
+
+  private void snapshotQuietly() {
+    try {
+      snapshot();
+    } catch (final UncheckedIOException | IllegalStateException e) {
+      // The generations are kept, so a failed snapshot loses nothing, and
+      // another is scheduled by the next append.
+    }
+  }
+
+  private long appendedSequence() {
+
+    appendLock.lock();
+
+    try {
+      return appended;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void write(final ByteBuffer batch) throws IOException {
+
+    boolean interrupted = Thread.interrupted();
+
+    try {
+      while (batch.hasRemaining()) {
+        try {
+          position += channel.write(batch, position);
+        } catch (final ClosedByInterruptException e) {
+          interrupted |= Thread.interrupted();
+          channel = FileChannel.open(path, READ, WRITE);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void force() throws IOException {
+
+    final boolean interrupted = Thread.interrupted();
+
+    try {
+      channel.force(false);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private Path logPath(final long id) {
+    return directory.resolve(String.format("%012d%s", id, LOG_SUFFIX));
+  }
+
+  private List<Long> generations() throws IOException {
+
+    final List<Long> ids = new ArrayList<>();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      files.map(file -> file.getFileName().toString())
+          .filter(name -> name.matches("\\d{12}" + LOG_SUFFIX))
+          .map(name -> Long.parseLong(
+              name.substring(0, name.length() - LOG_SUFFIX.length())))
+          .sorted()
+          .forEach(ids::add);
+    }
+
+    return ids;
+  }
+
+  private static long replaySnapshot(
+      final Path snapshot,
+      final EntryConsumer restore) throws IOException {
+
+    try (DataInputStream input = open(snapshot)) {
+
+      if (input.readLong() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a snapshot: " + snapshot);
+      }
+
+      final long first = input.readLong();
+
+      if (!replay(input, restore)) {
+        throw new IOException("Corrupt snapshot: " + snapshot);
+      }
+
+      return first;
+    }
+  }
+
+  private static void replayLog(
+      final Path log,
+      final EntryConsumer restore) throws IOException {
+
+    try (DataInputStream input = open(log)) {
+      replay(input, restore);
+    }
+  }
+
+  /**
+   * <p>Replays the records of <b>input</b>, returning <code>false</code> if
+   * it ended with a torn or corrupt record.</p>
+   */
+  private static boolean replay(
+      final DataInputStream input,
+      final EntryConsumer restore) throws IOException {
+
+    final CRC32 crc = new CRC32();
+
+    byte[] body = new byte[READ_BUFFER_SIZE];
+
+    while (true) {
+
+      final int checksum;
+      final int length;
+
+      try {
+        checksum = input.readInt();
+      } catch (final EOFException e) {
+        return true;
+      }
+
+      try {
+        length = input.readInt();
+
+        if (length <= 0) {
+          return false;
+        }
+
+        if (body.length < length) {
+          body = new byte[Math.max(length, body.length * 2)];
+        }
+
+        input.readFully(body, 0, length);
+
+      } catch (final EOFException e) {
+        return false;
+      }
+
+      crc.reset();
+      crc.update(length >>> 24);
+      crc.update(length >>> 16);
+      crc.update(length >>> 8);
+      crc.update(length);
+      crc.update(body, 0, length);
+
+      if ((int) crc.getValue() != checksum || !decode(body, length, restore)) {
+        return false;
+      }
+    }
+  }
+
+  private static boolean decode(
+      final byte[] body,
+      final int length,
+      final EntryConsumer restore) {
+
+    final ByteBuffer buffer = ByteBuffer.wrap(body, 0, length);
+
+    try {
+
+      if (buffer.get(0) != BATCH) {
+        return decode(buffer, restore);
+      }
+
+      buffer.get();
+
+      final int count = buffer.getInt();
+      final List<JournalEntry> changes = new ArrayList<>();
+
+      // Decoded in full before any is restored, so that a batch is never
+      // restored in part.
+      for (int i = 0; i < count; i++) {
+        final boolean known = decode(buffer, (key, value, deadline) ->
+            changes.add(new JournalEntry(key, value, deadline)));
+
+        if (!known) {
+          return false;
+        }
+      }
+
+      for (final JournalEntry change : changes) {
+        restore.accept(change.key(), change.value(), change.deadline());
+      }
+
+      return true;
+
+    } catch (final RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * <p>Decodes a single change from <b>buffer</b>, returning
+   * <code>false</code> if its type is unknown.</p>
+   */
+  private static boolean decode(
+      final ByteBuffer buffer,
+      final EntryConsumer restore) {
+
+    final byte type = buffer.get();
+    final String key = string(buffer);
+
+    switch (type) {
+      case PUT -> restore.accept(key, string(buffer), 0);
+      case REMOVE -> restore.accept(key, null, 0);
+      case PUT_EXPIRING -> {
+        final String value = string(buffer);
+        restore.accept(key, value, buffer.getLong());
+      }
+      default -> {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static String string(final ByteBuffer buffer) {
+
+    final int length = buffer.getInt();
+    final String string =
+        new String(buffer.array(), buffer.position(), length, UTF_8);
+
+    buffer.position(buffer.position() + length);
+
+    return string;
+  }
+
+  private static ByteBuffer encode(
+      final String key,
+      final String value,
+      final long deadline) {
+
+    final byte[] keyBytes = key.getBytes(UTF_8);
+    final byte[] valueBytes = value == null ? null : value.getBytes(UTF_8);
+    final byte type =
+        value == null ? REMOVE : deadline == 0 ? PUT : PUT_EXPIRING;
+    final int length = 1 + 4 + keyBytes.length
+        + (valueBytes == null ? 0 : 4 + valueBytes.length)
+        + (type == PUT_EXPIRING ? 8 : 0);
+    final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+
+    record.position(4);
+    record.putInt(length);
+    record.put(type);
+    record.putInt(keyBytes.length);
+    record.put(keyBytes);
+
+    if (valueBytes != null) {
+      record.putInt(valueBytes.length);
+      record.put(valueBytes);
+    }
+
+    if (type == PUT_EXPIRING) {
+      record.putLong(deadline);
+    }
+
+    return seal(record);
+  }
+
+  private static ByteBuffer encode(final List<JournalEntry> changes) {
+
+    final List<ByteBuffer> encoded = new ArrayList<>(changes.size());
+    int length = 1 + 4;
+
+    for (final JournalEntry change : changes) {
+
+      final ByteBuffer record =
+          encode(change.key(), change.value(), change.deadline());
+
+      // Only the type, key, value and deadline of each change are kept; the
+      // batch has a single checksum and length.
+      record.position(HEADER_SIZE);
+      encoded.add(record);
+      length += record.remaining();
+    }
+
+    final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+
+    record.position(4);
+    record.putInt(length);
+    record.put(BATCH);
+    record.putInt(encoded.size());
+    encoded.forEach(record::put);
+
+    return seal(record);
+  }
+
+  /**
+   * <p>Writes the checksum of the <b>record</b> written so far, and flips it
+   * for reading.</p>
+   */
+  private static ByteBuffer seal(final ByteBuffer record) {
+
+    final CRC32 crc = new CRC32();
+
+    crc.update(record.array(), 4, record.position() - 4);
+    record.putInt(0, (int) crc.getValue());
+    record.flip();
+
+    return record;
+  }
+
+  private static ByteBuffer grow(final ByteBuffer buffer, final int needed) {
+
+    final ByteBuffer grown = ByteBuffer.allocate(
+        Math.max(buffer.capacity() * 2, buffer.position() + needed));
+
+    buffer.flip();
+    grown.put(buffer);
+
+    return grown;
+  }
+
+  private static DataInputStream open(final Path path) throws IOException {
+
+    final InputStream input = Files.newInputStream(path);
+
+    return new DataInputStream(
+        new BufferedInputStream(input, READ_BUFFER_SIZE));
+  }
+
+  /**
+   * <p>Writes the entries of a snapshot through a buffer, in the same record
+   * format as the log.</p>
+   */
+  private static final class SnapshotWriter implements EntryConsumer {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private SnapshotWriter(final FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public void accept(
+        final String key,
+        final String value,
+        final long deadline) {
+
+      final ByteBuffer record = encode(key, value, deadline);
+
+      try {
+        if (buffer.remaining() < record.remaining()) {
+          flush();
+        }
+
+        if (buffer.remaining() < record.remaining()) {
+          write(record);
+        } else {
+          buffer.put(record);
+        }
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private void header(final long first) throws IOException {
+      buffer.putLong(SNAPSHOT_MAGIC);
+      buffer.putLong(first);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      write(buffer);
+      buffer.clear();
+    }
+
+    private void write(final ByteBuffer source) throws IOException {
+      while (source.hasRemaining()) {
+        channel.write(source);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,128 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import uk.co.noop.themis.Themis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static uk.co.noop.mnemosyne.mneme.Validation.checkNotBlank;
+
+/**
+ * <p>A group of puts and removes to be applied to a {@link LocalMneme} as a
+ * single atomic step. (See: {@link LocalMneme#apply(WriteBatch)} for more
+ * information.)</p>
+ *
+ * <p>A later write of a key replaces any earlier write of it in the same
+ * batch. A <code>WriteBatch</code> is not thread-safe, but may be applied any
+ * number of times, and changing it does not affect a batch already being
+ * applied.</p>
+ *
+ * @see LocalMneme#apply(WriteBatch)
+ */
+public final class WriteBatch {
+
+  // Stands in for the value of a removed key, since the updates cannot hold
+  // null values for readers to look up. Compared by reference, so it is
+  // never confused with a value.
+  static final String REMOVED = new String();
+
+  private final Map<String, String> updates = new HashMap<>();
+
+  /**
+   * <p>Creates a new, empty, instance of <code>WriteBatch</code>.</p>
+   */
+  public WriteBatch() {
+    super();
+  }
+
+  /**
+   * <p>Adds a put of the specified <b>value</b> for the specified <b>key</b>
+   * to this batch.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> and <b>value</b> parameters are validated against
+   * <code>null</code>, empty and whitespace-only strings using {@link
+   * Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()} for more
+   * information.)</p>
+   *
+   * @param key key with which the specified <b>value</b> is to be associated
+   * @param value value to be associated with the specified <b>key</b>
+   *
+   * @return this <code>WriteBatch</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   */
+  public WriteBatch put(final String key, final String value) {
+
+    checkNotBlank("key", key);
+    checkNotBlank("value", value);
+
+    updates.put(key, value);
+
+    return this;
+  }
+
+  /**
+   * <p>Adds a removal of the specified <b>key</b> to this batch.</p>
+   *
+   * <p>Note:</p>
+   *
+   * <p>The <b>key</b> parameter is validated against <code>null</code>, empty
+   * and whitespace-only strings using {@link Themis}. (See: {@link
+   * uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()} for more
+   * information.)</p>
+   *
+   * @param key key whose mapping is to be removed
+   *
+   * @return this <code>WriteBatch</code>
+   *
+   * @throws uk.co.noop.themis.exception.ThemisTargetException Extensions of
+   * {@link uk.co.noop.themis.exception.ThemisTargetException
+   * ThemisTargetException} will be thrown for any invalid parameter scenarios.
+   *
+   * @see Themis
+   * @see uk.co.noop.themis.eunomia.StringEunomia#againstBlankStrings()
+   */
+  public WriteBatch remove(final String key) {
+
+    checkNotBlank("key", key);
+
+    updates.put(key, REMOVED);
+
+    return this;
+  }
+
+  /**
+   * <p>Returns the number of keys written by this batch.</p>
+   *
+   * @return the number of keys written by this batch
+   */
+  public int size() {
+    return updates.size();
+  }
+
+  /**
+   * <p>Returns <code>true</code> if this batch writes no keys.</p>
+   *
+   * @return <code>true</code> if this batch writes no keys
+   */
+  public boolean isEmpty() {
+    return updates.isEmpty();
+  }
+
+  /**
+   * <p>Returns a copy of the updates of this batch, mapping each removed key
+   * to {@link #REMOVED}.</p>
+   */
+  Map<String, String> updates() {
+    return new HashMap<>(updates);
+  }
+
+}
@@ -2,19 +2,35 @@ package uk.co.noop.mnemosyne;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.co.noop.mnemosyne.mneme.Mneme;
 import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
 import uk.co.noop.themis.exception.ThemisEmptyTargetException;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
 import uk.co.noop.themis.exception.ThemisNullTargetException;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MnemosyneTest {
 
@@ -28,27 +44,55 @@ public class MnemosyneTest {
   private static final String TEST_KEY = "Test Key";
   private static final String TEST_VALUE = "Test Value";
 
+  private Path directory;
+
+  @BeforeEach
+  public void create_directory() throws IOException {
+    directory = Files.createTempDirectory("mnemosyne");
+  }
+
   @AfterEach
   public void teardown() {
 
-    final Field field;
-
     try {
 
-      field = Mnemosyne.class.getDeclaredField("LOCAL_MNEMES");
-      field.setAccessible(true);
-      
-      final Object value = field.get(null);
-      
-      if (value instanceof Map<?, ?> map) {
-        map.clear();
+      clear("LOCAL_MNEMES");
+      clear("DISK_MNEMES");
+
+      if (directory != null) {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+          for (final Path path : paths.sorted(Comparator.reverseOrder())
+              .collect(toList())) {
+            Files.delete(path);
+          }
+        }
       }
-      
+
     } catch (final Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  private static void clear(final String name) throws Exception {
+
+    final Field field = Mnemosyne.class.getDeclaredField(name);
+    field.setAccessible(true);
+
+    final Object value = field.get(null);
+
+    if (value instanceof Map<?, ?> map) {
+
+      // Copied, as closing a disk Mneme removes it from the map.
+      for (final Object mneme : Set.copyOf(map.values())) {
+        if (mneme instanceof AutoCloseable closeable) {
+          closeable.close();
+        }
+      }
+
+      map.clear();
+    }
+  }
+
   @BeforeAll
   public static void teardown_test() {
 
@@ -106,6 +150,92 @@ public class MnemosyneTest {
     assertEquals(TEST_VALUE, mneme.get(TEST_KEY));
   }
 
+  @Test
+  public void getMneme_local_concurrentCallers_shouldReturnSingleInstance()
+      throws InterruptedException {
+
+    final Set<Mneme> mnemes = ConcurrentHashMap.newKeySet();
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int i = 0; i < 8; i++) {
+      executor.execute(() -> {
+        try {
+          start.await();
+          mnemes.add(Mnemosyne.getMneme(TEST_NAME));
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertEquals(1, mnemes.size());
+  }
+
+  @Test
+  public void getMneme_disk_nullDirectory_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> Mnemosyne.getMneme(TEST_NAME, (Path) null));
+  }
+
+  @Test
+  public void getMneme_disk_blankName_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> Mnemosyne.getMneme(" ", Path.of(".")));
+  }
+
+  @Test
+  public void getMneme_disk_pathName_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Mnemosyne.getMneme("../" + TEST_NAME, directory));
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Mnemosyne.getMneme(TEST_NAME + "/" + TEST_NAME, directory));
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Mnemosyne.getMneme(
+            directory.resolve(TEST_NAME).toAbsolutePath().toString(),
+            directory));
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Mnemosyne.getMneme("..", directory));
+  }
+
+  @Test
+  public void getMneme_disk_shouldReturnSingleInstance() {
+
+    Mneme mneme = Mnemosyne.getMneme(TEST_NAME, directory);
+    mneme.put(TEST_KEY, TEST_VALUE);
+
+    mneme = Mnemosyne.getMneme(TEST_NAME, directory);
+    assertEquals(TEST_VALUE, mneme.get(TEST_KEY));
+    assertTrue(Files.isDirectory(directory.resolve(TEST_NAME)));
+  }
+
+  @Test
+  public void getMneme_disk_closed_shouldReturnNewInstance() throws Exception {
+
+    final Mneme mneme = Mnemosyne.getMneme(TEST_NAME, directory);
+    mneme.put(TEST_KEY, TEST_VALUE);
+
+    ((AutoCloseable) mneme).close();
+
+    final Mneme reopened = Mnemosyne.getMneme(TEST_NAME, directory);
+
+    assertNotSame(mneme, reopened);
+    assertEquals(TEST_VALUE, reopened.get(TEST_KEY));
+  }
+
   @Test
   public void getMneme_s3_nullAwsAccessKey_shouldThrowThemisNullTarget() {
 
@@ -0,0 +1,59 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares {@link LocalMneme#increment(String, long)} with updating a
+ * numeric value through <code>merge</code>, with every thread incrementing a
+ * single counter.</p>
+ *
+ * <p>Run with an increasing thread count to see how each scales, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=CounterBenchmark
+ * -Dbenchmark.threads=8
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterBenchmark {
+
+  private static final String KEY = "counter";
+
+  private LocalMneme mneme;
+
+  @Setup
+  public void setup() {
+    mneme = new LocalMneme();
+  }
+
+  @Benchmark
+  public void increment() {
+    mneme.increment(KEY, 1);
+  }
+
+  @Benchmark
+  public String merge() {
+    return mneme.merge(
+        KEY,
+        "1",
+        (count, delta) -> Long.toString(Long.parseLong(count) + 1));
+  }
+
+}
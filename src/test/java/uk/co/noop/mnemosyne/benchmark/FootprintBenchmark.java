@@ -0,0 +1,104 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.CompactMneme;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+import uk.co.noop.mnemosyne.mneme.RadixMneme;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the heap retained per entry by {@link LocalMneme}, by a plain
+ * <code>HashMap</code> (the layout it replaced) and by {@link CompactMneme},
+ * with and without value deduplication, and by {@link RadixMneme}.</p>
+ *
+ * <p>Each invocation fills a fresh instance and reports the growth in used
+ * heap, after a full collection, divided by the number of entries as the
+ * <code>bytesPerEntry</code> counter, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=FootprintBenchmark
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-Xmx4g"})
+public class FootprintBenchmark {
+
+  private static final int DISTINCT_VALUES = 1 << 10;
+
+  @Param({"hashMap", "local", "compact", "compactDeduplicated", "radix"})
+  public String implementation;
+
+  @Param({"1000000"})
+  public int entries;
+
+  @Benchmark
+  public Map<String, String> fill(final Footprint footprint) {
+
+    final long before = usedHeap();
+    final Map<String, String> map = create();
+
+    for (int i = 0; i < entries; i++) {
+      map.put("key-" + i, "value-" + (i % DISTINCT_VALUES));
+    }
+
+    footprint.bytesPerEntry = (usedHeap() - before) / entries;
+
+    return map;
+  }
+
+  private Map<String, String> create() {
+
+    switch (implementation) {
+      case "local":
+        return new LocalMneme();
+      case "compact":
+        return new CompactMneme();
+      case "compactDeduplicated":
+        return new CompactMneme(true);
+      case "radix":
+        return new RadixMneme();
+      default:
+        return new HashMap<>();
+    }
+  }
+
+  private static long usedHeap() {
+
+    final Runtime runtime = Runtime.getRuntime();
+
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * <p>The heap retained per entry by the most recently filled instance.</p>
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long bytesPerEntry;
+
+  }
+
+}
@@ -0,0 +1,96 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares {@link LocalMneme} with a synchronised <code>HashMap</code> (the
+ * cheapest thread-safe form of the previous layout) under a shared,
+ * read-mostly workload.</p>
+ *
+ * <p>Run with an increasing thread count to see how each scales, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=LocalMnemeBenchmark
+ * -Dbenchmark.threads=8
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalMnemeBenchmark {
+
+  private static final int KEYS = 1 << 16;
+
+  @Param({"local", "synchronized"})
+  public String implementation;
+
+  private Map<String, String> map;
+  private String[] keys;
+
+  @Setup
+  public void setup() {
+
+    map = "local".equals(implementation)
+        ? new LocalMneme()
+        : Collections.synchronizedMap(new HashMap<>());
+
+    keys = new String[KEYS];
+
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "key-" + i;
+      map.put(keys[i], "value-" + i);
+    }
+  }
+
+  @Benchmark
+  public String get() {
+    return map.get(randomKey());
+  }
+
+  @Benchmark
+  public String put() {
+    return map.put(randomKey(), "value");
+  }
+
+  @Benchmark
+  public String readMostly() {
+
+    final String key = randomKey();
+
+    if (ThreadLocalRandom.current().nextInt(10) == 0) {
+      return map.put(key, "value");
+    }
+
+    return map.get(key);
+  }
+
+  @Benchmark
+  public String merge() {
+    return map.merge(randomKey(), "value", (a, b) -> b);
+  }
+
+  private String randomKey() {
+    return keys[ThreadLocalRandom.current().nextInt(KEYS)];
+  }
+
+}
@@ -0,0 +1,167 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.DiskMneme;
+import uk.co.noop.mnemosyne.mneme.Durability;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+import uk.co.noop.mnemosyne.mneme.LsmMneme;
+import uk.co.noop.mnemosyne.mneme.Mneme;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * <p>Compares {@link LsmMneme} with {@link DiskMneme} and a
+ * {@link LocalMneme} journalled to its write-ahead log under a write-heavy
+ * workload, over a key space that is reused so that compaction and merging
+ * both have stale entries to drop. None of them forces its writes to the
+ * storage device.</p>
+ *
+ * <p>The flushes, compactions and write stalls of the <code>LsmMneme</code>
+ * in each iteration are reported alongside the throughput, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=LsmMnemeBenchmark
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LsmMnemeBenchmark {
+
+  private static final int KEYS = 1 << 20;
+
+  @Param({"lsm", "disk", "local"})
+  public String implementation;
+
+  private final AtomicBoolean reported = new AtomicBoolean();
+
+  private Path directory;
+  private Mneme mneme;
+  private String value;
+
+  @Setup
+  public void setup() throws IOException {
+
+    directory = Files.createTempDirectory("lsm-mneme-benchmark");
+
+    switch (implementation) {
+      case "lsm":
+        mneme = new LsmMneme(directory);
+        break;
+      case "disk":
+        mneme = new DiskMneme(directory);
+        break;
+      default:
+        mneme = new LocalMneme(directory, Durability.operatingSystem());
+    }
+
+    value = "value-".repeat(16);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    reported.set(false);
+  }
+
+  @TearDown
+  public void teardown() throws Exception {
+
+    ((AutoCloseable) mneme).close();
+
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (final Path path : (Iterable<Path>) paths
+          .sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public String put(final Compaction compaction) {
+    return mneme.put(randomKey(), value);
+  }
+
+  @Benchmark
+  public String writeHeavy(final Compaction compaction) {
+
+    final String key = randomKey();
+
+    if (ThreadLocalRandom.current().nextInt(5) == 0) {
+      return mneme.get(key);
+    }
+
+    return mneme.put(key, value);
+  }
+
+  private static String randomKey() {
+    return "key-" + ThreadLocalRandom.current().nextInt(KEYS);
+  }
+
+  /**
+   * <p>The flushes, compactions and write stalls of the {@link LsmMneme} in
+   * the most recent iteration, reported by a single thread; zero for the
+   * other implementations.</p>
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Compaction {
+
+    public long flushes;
+    public long compactions;
+    public long writeStalls;
+
+    private LsmMneme.Metrics before;
+
+    @Setup(Level.Iteration)
+    public void setup(final LsmMnemeBenchmark benchmark) {
+
+      flushes = 0;
+      compactions = 0;
+      writeStalls = 0;
+
+      if (benchmark.mneme instanceof LsmMneme lsm) {
+        before = lsm.getMetrics();
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown(final LsmMnemeBenchmark benchmark) {
+
+      if (!(benchmark.mneme instanceof LsmMneme lsm)
+          || !benchmark.reported.compareAndSet(false, true)) {
+        return;
+      }
+
+      final LsmMneme.Metrics after = lsm.getMetrics();
+
+      flushes = after.flushes() - before.flushes();
+      compactions = after.compactions() - before.compactions();
+      writeStalls = after.writeStalls() - before.writeStalls();
+    }
+
+  }
+
+}
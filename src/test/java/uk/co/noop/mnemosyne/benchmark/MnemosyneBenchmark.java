@@ -0,0 +1,59 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.Mnemosyne;
+import uk.co.noop.mnemosyne.mneme.Mneme;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link Mnemosyne#getMneme(String)} under heavy contention, both
+ * for a single hot name and for a spread of existing names.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class MnemosyneBenchmark {
+
+  private static final int NAMES = 64;
+
+  private String[] names;
+
+  @Setup
+  public void setup() {
+
+    names = new String[NAMES];
+
+    for (int i = 0; i < NAMES; i++) {
+      names[i] = "mneme-" + i;
+      Mnemosyne.getMneme(names[i]);
+    }
+  }
+
+  @Benchmark
+  public Mneme getMneme_hotName() {
+    return Mnemosyne.getMneme(names[0]);
+  }
+
+  @Benchmark
+  public Mneme getMneme_existingNames() {
+    return Mnemosyne.getMneme(
+        names[ThreadLocalRandom.current().nextInt(NAMES)]);
+  }
+
+}
@@ -0,0 +1,92 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+import uk.co.noop.mnemosyne.mneme.Mneme;
+import uk.co.noop.mnemosyne.mneme.RadixMneme;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * <p>Compares {@link RadixMneme} with {@link LocalMneme} over hierarchical
+ * <code>tenant/entity/id</code> keys, reading single keys and listing the
+ * keys of one tenant (a filtered scan of every key for the
+ * <code>LocalMneme</code>).</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=RadixMnemeBenchmark
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadixMnemeBenchmark {
+
+  private static final int TENANTS = 1 << 8;
+  private static final int IDS = 1 << 10;
+
+  @Param({"radix", "local"})
+  public String implementation;
+
+  private Mneme mneme;
+
+  @Setup
+  public void setup() {
+
+    mneme = "radix".equals(implementation)
+        ? new RadixMneme()
+        : new LocalMneme();
+
+    for (int tenant = 0; tenant < TENANTS; tenant++) {
+      for (int id = 0; id < IDS; id++) {
+        mneme.put(key(tenant, id), "value-" + id);
+      }
+    }
+  }
+
+  @Benchmark
+  public String get() {
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    return mneme.get(key(random.nextInt(TENANTS), random.nextInt(IDS)));
+  }
+
+  @Benchmark
+  public Set<String> keysWithPrefix() {
+
+    final String prefix =
+        "tenant-" + ThreadLocalRandom.current().nextInt(TENANTS) + "/";
+
+    if (mneme instanceof RadixMneme) {
+      return ((RadixMneme) mneme).keysWithPrefix(prefix);
+    }
+
+    return mneme.keySet()
+        .stream()
+        .filter(key -> key.startsWith(prefix))
+        .collect(toSet());
+  }
+
+  private static String key(final int tenant, final int id) {
+    return "tenant-" + tenant + "/entity/" + id;
+  }
+
+}
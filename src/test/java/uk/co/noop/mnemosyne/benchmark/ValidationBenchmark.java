@@ -0,0 +1,109 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static uk.co.noop.themis.Themis.validate;
+
+/**
+ * <p>Measures the heap allocated per call by the hot operations of {@link
+ * LocalMneme}, against the allocation of validating a single key with
+ * <code>Themis</code> (what every operation paid before validation gained an
+ * allocation-free path).</p>
+ *
+ * <p>Each invocation makes a fixed number of calls on the current thread and
+ * reports the bytes it allocated, divided by the number of calls, as the
+ * <code>bytesPerOperation</code> counter, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=ValidationBenchmark
+ * </code></p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidationBenchmark {
+
+  private static final int KEYS = 1 << 10;
+  private static final int OPERATIONS = 1 << 20;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @Param({"themis", "containsKey", "get", "put"})
+  public String operation;
+
+  private LocalMneme mneme;
+  private String[] keys;
+
+  @Setup
+  public void setup() {
+
+    mneme = new LocalMneme();
+    keys = new String[KEYS];
+
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "key-" + i;
+      mneme.put(keys[i], "value-" + i);
+    }
+  }
+
+  @Benchmark
+  public void run(final Allocation allocation, final Blackhole blackhole) {
+
+    final long before = THREADS.getCurrentThreadAllocatedBytes();
+
+    for (int i = 0; i < OPERATIONS; i++) {
+
+      final String key = keys[i & (KEYS - 1)];
+
+      switch (operation) {
+        case "containsKey":
+          blackhole.consume(mneme.containsKey(key));
+          break;
+        case "get":
+          blackhole.consume(mneme.get(key));
+          break;
+        case "put":
+          blackhole.consume(mneme.put(key, "value"));
+          break;
+        default:
+          blackhole.consume(validate("key", key).againstBlankStrings());
+      }
+    }
+
+    allocation.bytesPerOperation =
+        (double) (THREADS.getCurrentThreadAllocatedBytes() - before)
+            / OPERATIONS;
+  }
+
+  /**
+   * <p>The heap allocated per call by the most recent invocation.</p>
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Allocation {
+
+    public double bytesPerOperation;
+
+  }
+
+}
@@ -0,0 +1,117 @@
+package uk.co.noop.mnemosyne.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.noop.mnemosyne.mneme.Durability;
+import uk.co.noop.mnemosyne.mneme.LocalMneme;
+import uk.co.noop.mnemosyne.mneme.WriteBatch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>Measures the write throughput of a {@link LocalMneme} for each
+ * {@link Durability} of its write-ahead log, against one without a log, and
+ * of the same writes made individually and as a {@link WriteBatch}. Group
+ * commit shares each force between concurrent writers, so it is best run with
+ * several threads, e.g.;</p>
+ *
+ * <p><code>
+ * mvn -P benchmark test -Dbenchmark=WriteAheadLogBenchmark
+ * -Dbenchmark.threads=8
+ * </code></p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+  private static final int KEYS = 1 << 16;
+  private static final int BATCH_SIZE = 16;
+
+  @Param({"none", "everyWrite", "periodic", "operatingSystem"})
+  public String durability;
+
+  private Path directory;
+  private LocalMneme mneme;
+  private String value;
+
+  @Setup
+  public void setup() throws IOException {
+
+    directory = Files.createTempDirectory("wal-benchmark");
+    mneme = switch (durability) {
+      case "everyWrite" -> new LocalMneme(directory, Durability.everyWrite());
+      case "periodic" -> new LocalMneme(
+          directory,
+          Durability.periodic(Duration.ofMillis(10)));
+      case "operatingSystem" ->
+          new LocalMneme(directory, Durability.operatingSystem());
+      default -> new LocalMneme();
+    };
+    value = "value-".repeat(16);
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+
+    mneme.close();
+
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (final Path path : (Iterable<Path>) paths
+          .sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public String put() {
+    return mneme.put(
+        "key-" + ThreadLocalRandom.current().nextInt(KEYS),
+        value);
+  }
+
+  @Benchmark
+  public void puts() {
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      mneme.put("key-" + random.nextInt(KEYS), value);
+    }
+  }
+
+  @Benchmark
+  public void batch() {
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final WriteBatch batch = new WriteBatch();
+
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.put("key-" + random.nextInt(KEYS), value);
+    }
+
+    mneme.apply(batch);
+  }
+
+}
@@ -0,0 +1,201 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactMnemeTest {
+
+  @Test
+  public void get_nullKey_shouldThrowThemisNullTarget() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    assertThrows(ThemisNullTargetException.class, () -> mneme.get(null));
+  }
+
+  @Test
+  public void put_blankValue_shouldThrowThemisBlankTargetString() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> mneme.put("Test Key 1", " "));
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    assertNull(mneme.put("Test Key 1", "Test Value 1"));
+    assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+    assertEquals(1, mneme.size());
+  }
+
+  @Test
+  public void put_multiByteCharacters_shouldRoundTrip() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    mneme.put("Tëst Kéy 1", "Tést Välue 1");
+    mneme.put("Test Key ☺", "Test Value 😀");
+
+    assertEquals("Tést Välue 1", mneme.get("Tëst Kéy 1"));
+    assertEquals("Test Value 😀", mneme.get("Test Key ☺"));
+    assertNull(mneme.get("Test Key ?"));
+    assertTrue(mneme.containsValue("Test Value 😀"));
+  }
+
+  @Test
+  public void put_largerThanArena_shouldStore() {
+
+    final CompactMneme mneme = new CompactMneme();
+    final String value = "Test Value ".repeat(200_000);
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", value);
+
+    assertEquals(value, mneme.get("Test Key 2"));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void remove_shouldRemoveAndReturnPreviousValue() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertEquals("Test Value 1", mneme.remove("Test Key 1"));
+    assertNull(mneme.remove("Test Key 1"));
+    assertFalse(mneme.containsKey("Test Key 1"));
+    assertTrue(mneme.isEmpty());
+  }
+
+  @Test
+  public void put_manyOverwrites_shouldReclaimSpace() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10_000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i + "/" + round);
+      }
+    }
+
+    assertEquals(10_000, mneme.size());
+    assertEquals("Test Value 1234/19", mneme.get("Test Key 1234"));
+    assertTrue(mneme.getAllocatedBytes() < 8L << 20);
+  }
+
+  @Test
+  public void put_deduplicatedValues_shouldShareStorage() {
+
+    final CompactMneme plain = new CompactMneme();
+    final CompactMneme deduplicated = new CompactMneme(true);
+    final String value = "Test Value ".repeat(10);
+
+    for (int i = 0; i < 50_000; i++) {
+      plain.put("Test Key " + i, value);
+      deduplicated.put("Test Key " + i, value);
+    }
+
+    assertEquals(value, deduplicated.get("Test Key 49999"));
+    assertTrue(deduplicated.containsValue(value));
+    assertTrue(
+        deduplicated.getAllocatedBytes() < plain.getAllocatedBytes() / 2);
+  }
+
+  @Test
+  public void remove_deduplicatedValue_shouldKeepOtherReferences() {
+
+    final CompactMneme mneme = new CompactMneme(true);
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 1");
+    mneme.remove("Test Key 1");
+
+    assertEquals("Test Value 1", mneme.get("Test Key 2"));
+    assertTrue(mneme.containsValue("Test Value 1"));
+
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertFalse(mneme.containsValue("Test Value 1"));
+  }
+
+  @Test
+  public void put_deduplicatedOverwrites_shouldReclaimSpace() {
+
+    final CompactMneme mneme = new CompactMneme(true);
+
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10_000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + (i % 100) + "/" + round);
+      }
+    }
+
+    assertEquals(10_000, mneme.size());
+    assertEquals("Test Value 34/19", mneme.get("Test Key 1234"));
+    assertTrue(mneme.containsValue("Test Value 99/19"));
+    assertFalse(mneme.containsValue("Test Value 99/18"));
+  }
+
+  @Test
+  public void keySet_shouldReturnAllKeys() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertEquals(Set.of("Test Key 1", "Test Key 2"), mneme.keySet());
+  }
+
+  @Test
+  public void clear_shouldRemoveAll() {
+
+    final CompactMneme mneme = new CompactMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.clear();
+
+    assertTrue(mneme.isEmpty());
+    assertNull(mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    final CompactMneme mneme = new CompactMneme();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 1000; i++) {
+          mneme.increment("Test Key 1", 1);
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(8000, mneme.getCounter("Test Key 1"));
+  }
+
+}
@@ -0,0 +1,326 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskMnemeTest {
+
+  private Path directory;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("disk-mneme");
+  }
+
+  @AfterEach
+  public void teardown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder())
+          .collect(toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void constructor_nullDirectory_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new DiskMneme(null));
+  }
+
+  @Test
+  public void put_blankKey_shouldThrowThemisBlankTargetString() {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      assertThrows(
+          ThemisBlankTargetStringException.class,
+          () -> mneme.put(" ", "Test Value 1"));
+    }
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+
+      assertNull(mneme.put("Test Key 1", "Test Value 1"));
+      assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertEquals(1, mneme.size());
+    }
+  }
+
+  @Test
+  public void remove_shouldRemoveAndReturnPreviousValue() {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+
+      assertEquals("Test Value 1", mneme.remove("Test Key 1"));
+      assertNull(mneme.remove("Test Key 1"));
+      assertFalse(mneme.containsKey("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void reopen_shouldRestoreEntriesFromHints() {
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+      for (int i = 0; i < 100; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+      mneme.put("Test Key 1", "Test Value 1B");
+      mneme.remove("Test Key 2");
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+
+      assertEquals(99, mneme.size());
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertNull(mneme.get("Test Key 2"));
+      assertEquals("Test Value 99", mneme.get("Test Key 99"));
+
+      mneme.put("Test Key 100", "Test Value 100");
+      assertEquals(100, mneme.size());
+    }
+  }
+
+  @Test
+  public void reopen_withoutHints_shouldRestoreEntriesFromData()
+      throws IOException {
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+      for (int i = 0; i < 100; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+      mneme.remove("Test Key 2");
+    }
+
+    for (final Path hint : files(".hint")) {
+      Files.delete(hint);
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+      assertEquals(99, mneme.size());
+      assertEquals("Test Value 50", mneme.get("Test Key 50"));
+    }
+  }
+
+  @Test
+  public void reopen_tornWrite_shouldDiscardTail() throws IOException {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      mneme.put("Test Key 1", "Test Value 1");
+    }
+
+    for (final Path hint : files(".hint")) {
+      Files.delete(hint);
+    }
+
+    try (final FileChannel channel =
+             FileChannel.open(files(".data").get(0), APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7}));
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      assertEquals(Set.of("Test Key 1"), mneme.keySet());
+      mneme.put("Test Key 2", "Test Value 2");
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      assertEquals("Test Value 1", mneme.get("Test Key 1"));
+      assertEquals("Test Value 2", mneme.get("Test Key 2"));
+    }
+  }
+
+  @Test
+  public void put_largerThanSegment_shouldStore() {
+
+    final String value = "Test Value ".repeat(100);
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", value);
+      assertEquals(value, mneme.get("Test Key 2"));
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 256, false)) {
+      assertEquals(value, mneme.get("Test Key 2"));
+    }
+  }
+
+  @Test
+  public void merge_shouldDropStaleRecords() throws IOException {
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 512, false)) {
+
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < 20; i++) {
+          mneme.put("Test Key " + i, "Test Value " + i + "/" + round);
+        }
+      }
+
+      final long before = dataBytes();
+
+      mneme.merge();
+
+      assertTrue(dataBytes() < before / 5);
+
+      for (int i = 0; i < 20; i++) {
+        assertEquals("Test Value " + i + "/9", mneme.get("Test Key " + i));
+      }
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory, 512, false)) {
+      assertEquals(20, mneme.size());
+      assertEquals("Test Value 7/9", mneme.get("Test Key 7"));
+    }
+  }
+
+  @Test
+  public void reopen_interruptedMerge_shouldFinishDeletions()
+      throws IOException {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.merge();
+      mneme.remove("Test Key 1");
+    }
+
+    final List<Path> superseded = files(".data");
+    final Path merged = superseded.get(superseded.size() - 1);
+    final Path mergedHint = files(".hint").get(superseded.size() - 1);
+    final byte[] mergedBytes = Files.readAllBytes(merged);
+    final byte[] mergedHintBytes = Files.readAllBytes(mergedHint);
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      mneme.merge();
+      assertTrue(files("superseded").isEmpty());
+    }
+
+    Files.write(merged, mergedBytes);
+    Files.write(mergedHint, mergedHintBytes);
+    writeSuperseded(superseded);
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      assertNull(mneme.get("Test Key 1"));
+      assertEquals("Test Value 2", mneme.get("Test Key 2"));
+    }
+
+    assertFalse(Files.exists(merged));
+    assertTrue(files("superseded").isEmpty());
+  }
+
+  @Test
+  public void clear_shouldRemoveAll() {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.clear();
+      assertTrue(mneme.isEmpty());
+    }
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+      assertTrue(mneme.isEmpty());
+    }
+  }
+
+  @Test
+  public void close_shouldRejectFurtherOperations() {
+
+    final DiskMneme mneme = new DiskMneme(directory);
+
+    mneme.close();
+
+    assertThrows(IllegalStateException.class, () -> mneme.get("Test Key 1"));
+  }
+
+  private List<Path> files(final String suffix) throws IOException {
+    try (final Stream<Path> paths = Files.list(directory)) {
+      return paths.filter(path -> path.toString().endsWith(suffix))
+          .sorted()
+          .collect(toList());
+    }
+  }
+
+  private void writeSuperseded(final List<Path> segments) throws IOException {
+
+    final ByteBuffer marker =
+        ByteBuffer.allocate(Long.BYTES * segments.size() + 4);
+    final CRC32 crc = new CRC32();
+
+    for (final Path segment : segments) {
+      final String name = segment.getFileName().toString();
+      marker.putLong(Long.parseLong(name.substring(0, name.indexOf('.'))));
+    }
+
+    crc.update(marker.array(), 0, marker.position());
+    marker.putInt((int) crc.getValue());
+
+    Files.write(directory.resolve("superseded"), marker.array());
+  }
+
+  private long dataBytes() throws IOException {
+
+    long bytes = 0;
+
+    for (final Path path : files(".data")) {
+      bytes += Files.size(path);
+    }
+
+    return bytes;
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    try (final DiskMneme mneme = new DiskMneme(directory)) {
+
+      final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+      for (int thread = 0; thread < 8; thread++) {
+        executor.execute(() -> {
+          for (int i = 0; i < 250; i++) {
+            mneme.increment("Test Key 1", 1);
+          }
+        });
+      }
+
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+      assertEquals(2000, mneme.getCounter("Test Key 1"));
+    }
+  }
+
+}
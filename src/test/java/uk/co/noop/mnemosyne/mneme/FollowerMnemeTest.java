@@ -0,0 +1,260 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FollowerMnemeTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @Test
+  public void constructor_nullPrimary_shouldThrowThemisNullTarget() {
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new FollowerMneme(null));
+  }
+
+  @Test
+  public void put_shouldThrowUnsupportedOperation() {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final FollowerMneme follower =
+             new FollowerMneme(primary.getAddress())) {
+
+      assertThrows(
+          UnsupportedOperationException.class,
+          () -> follower.put("Test Key 1", "Test Value 1"));
+      assertThrows(
+          UnsupportedOperationException.class,
+          () -> follower.remove("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void constructor_attachedPrimary_shouldThrowIllegalState() {
+
+    try (final ReplicationPrimary primary = newPrimary()) {
+
+      new LocalMneme(primary);
+
+      assertThrows(IllegalStateException.class, () -> new LocalMneme(primary));
+    }
+  }
+
+  @Test
+  public void follower_shouldBootstrapFromSnapshot()
+      throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary)) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+
+      try (final FollowerMneme follower =
+               new FollowerMneme(primary.getAddress())) {
+
+        assertTrue(follower.awaitSequence(primary.getSequence(), TIMEOUT));
+        assertEquals(
+            Map.of("Test Key 1", "Test Value 1", "Test Key 2", "Test Value 2"),
+            new HashMap<>(follower));
+      }
+    }
+  }
+
+  @Test
+  public void follower_shouldApplyLiveWrites() throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary);
+         final FollowerMneme first = new FollowerMneme(primary.getAddress());
+         final FollowerMneme second = new FollowerMneme(primary.getAddress())) {
+
+      assertTrue(first.awaitSequence(0, TIMEOUT));
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.remove("Test Key 2");
+      mneme.merge("Test Key 1", "B", String::concat);
+
+      final long sequence = primary.getSequence();
+
+      assertTrue(first.awaitSequence(sequence, TIMEOUT));
+      assertTrue(second.awaitSequence(sequence, TIMEOUT));
+      assertEquals(Set.of("Test Key 1"), first.keySet());
+      assertEquals("Test Value 1B", first.get("Test Key 1"));
+      assertNull(second.get("Test Key 2"));
+      assertTrue(second.containsValue("Test Value 1B"));
+
+      final FollowerMneme.ReplicationStatus status =
+          first.getReplicationStatus();
+
+      assertTrue(status.connected());
+      assertEquals(sequence, status.appliedSequence());
+      assertEquals(0, status.sequenceLag());
+    }
+  }
+
+  @Test
+  public void follower_concurrentWritesDuringBootstrap_shouldConverge()
+      throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary)) {
+
+      for (int i = 0; i < 10_000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+
+      final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+      for (int thread = 0; thread < 4; thread++) {
+
+        final int offset = thread;
+
+        executor.execute(() -> {
+          for (int i = offset; i < 20_000; i += 4) {
+            if (i % 3 == 0) {
+              mneme.remove("Test Key " + i);
+            } else {
+              mneme.put("Test Key " + i, "Test Value " + i + "B");
+            }
+          }
+        });
+      }
+
+      try (final FollowerMneme follower =
+               new FollowerMneme(primary.getAddress())) {
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(follower.awaitSequence(primary.getSequence(), TIMEOUT));
+        assertEquals(new HashMap<>(mneme), new HashMap<>(follower));
+      }
+    }
+  }
+
+  @Test
+  public void follower_batch_shouldApplyItAsOneFrame()
+      throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary);
+         final FollowerMneme follower =
+             new FollowerMneme(primary.getAddress())) {
+
+      assertTrue(follower.awaitSequence(0, TIMEOUT));
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.apply(new WriteBatch()
+          .remove("Test Key 1")
+          .put("Test Key 2", "Test Value 2")
+          .put("Test Key 3", "Test Value 3"));
+
+      // Every change of the batch is numbered.
+      assertEquals(4, primary.getSequence());
+      assertTrue(follower.awaitSequence(4, TIMEOUT));
+      assertEquals(
+          Map.of("Test Key 2", "Test Value 2", "Test Key 3", "Test Value 3"),
+          new HashMap<>(follower));
+    }
+  }
+
+  @Test
+  public void keySet_removeOnPrimary_shouldReachFollower()
+      throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary);
+         final FollowerMneme follower =
+             new FollowerMneme(primary.getAddress())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.keySet().remove("Test Key 1");
+
+      assertTrue(follower.awaitSequence(primary.getSequence(), TIMEOUT));
+      assertEquals(Set.of("Test Key 2"), follower.keySet());
+      assertThrows(
+          UnsupportedOperationException.class,
+          () -> follower.keySet().remove("Test Key 2"));
+    }
+  }
+
+  @Test
+  public void follower_expiringWrite_shouldExpire()
+      throws InterruptedException {
+
+    try (final ReplicationPrimary primary = newPrimary();
+         final LocalMneme mneme = new LocalMneme(primary);
+         final FollowerMneme follower =
+             new FollowerMneme(primary.getAddress())) {
+
+      mneme.put("Test Key 1", "Test Value 1", Duration.ofMillis(200));
+      mneme.put("Test Key 2", "Test Value 2");
+
+      assertTrue(follower.awaitSequence(primary.getSequence(), TIMEOUT));
+      assertTrue(follower.containsKey("Test Key 1"));
+
+      Thread.sleep(400);
+
+      assertFalse(follower.containsKey("Test Key 1"));
+      assertEquals(Set.of("Test Key 2"), follower.keySet());
+    }
+  }
+
+  @Test
+  public void close_primary_shouldRefuseWritesAndDisconnect()
+      throws InterruptedException {
+
+    final ReplicationPrimary primary = newPrimary();
+    final LocalMneme mneme = new LocalMneme(primary);
+
+    try (final FollowerMneme follower =
+             new FollowerMneme(primary.getAddress())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+
+      assertTrue(follower.awaitSequence(primary.getSequence(), TIMEOUT));
+
+      mneme.close();
+
+      assertThrows(
+          IllegalStateException.class,
+          () -> mneme.put("Test Key 2", "Test Value 2"));
+      assertNull(mneme.get("Test Key 2"));
+
+      final long deadline = System.nanoTime() + TIMEOUT.toNanos();
+
+      while (follower.getReplicationStatus().connected()
+          && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertFalse(follower.getReplicationStatus().connected());
+      assertEquals("Test Value 1", follower.get("Test Key 1"));
+    }
+  }
+
+  private static ReplicationPrimary newPrimary() {
+    return new ReplicationPrimary(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+  }
+
+}
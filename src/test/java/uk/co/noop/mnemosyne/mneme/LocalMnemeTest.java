@@ -1,13 +1,39 @@
 package uk.co.noop.mnemosyne.mneme;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
 import uk.co.noop.themis.exception.ThemisEmptyTargetException;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
 import uk.co.noop.themis.exception.ThemisNullTargetException;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -16,6 +42,23 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LocalMnemeTest {
 
+  private Path directory;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("local-mneme");
+  }
+
+  @AfterEach
+  public void teardown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder())
+          .collect(toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
   @Test
   public void size_empty_shouldReturnZero() {
     assertEquals(0, new LocalMneme().size());
@@ -449,6 +492,35 @@ public class LocalMnemeTest {
     assertTrue(mneme.keySet().containsAll(map.keySet()));
   }
 
+  @Test
+  public void keySet_removeDurable_shouldJournalRemoval() {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.put("Test Key 3", "Test Value 3");
+
+      assertTrue(mneme.keySet().remove("Test Key 1"));
+      assertFalse(mneme.keySet().remove("Test Key 4"));
+
+      final Iterator<String> iterator = mneme.keySet().iterator();
+
+      while (iterator.hasNext()) {
+        if (iterator.next().equals("Test Key 2")) {
+          iterator.remove();
+        }
+      }
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(Set.of("Test Key 3"), mneme.keySet());
+    }
+  }
+
   @Test
   public void values_shouldReturnAllValues() {
 
@@ -475,4 +547,884 @@ public class LocalMnemeTest {
     assertEquals(map.size(), mneme.entrySet().size());
   }
 
+  @Test
+  public void values_iteratorRemove_shouldWriteThrough() {
+
+    final Mneme mneme = new LocalMneme();
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 1");
+
+    assertEquals(2, mneme.values().size());
+
+    final Iterator<String> values = mneme.values().iterator();
+
+    assertEquals("Test Value 1", values.next());
+
+    values.remove();
+
+    assertEquals(1, mneme.size());
+    assertEquals(List.of("Test Value 1"), List.copyOf(mneme.values()));
+  }
+
+  @Test
+  public void entrySet_parallelStream_shouldReturnAllEntries() {
+
+    final Mneme mneme = new LocalMneme();
+    final Map<String, String> map = new HashMap<>();
+
+    for (int i = 0; i < 10_000; i++) {
+      map.put("Test Key " + i, "Test Value " + i);
+    }
+
+    mneme.putAll(map);
+
+    assertEquals(
+        map,
+        mneme.entrySet()
+            .parallelStream()
+            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    assertTrue(
+        mneme.entrySet().contains(Map.entry("Test Key 1", "Test Value 1")));
+    assertFalse(
+        mneme.entrySet().contains(Map.entry("Test Key 1", "Test Value 2")));
+  }
+
+  @Test
+  public void putIfAbsent_blankValue_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> new LocalMneme().putIfAbsent("Test Key 1", " "));
+  }
+
+  @Test
+  public void putIfAbsent_withPreviousValue_shouldNotReplace() {
+
+    final Mneme mneme = new LocalMneme();
+
+    assertNull(mneme.putIfAbsent("Test Key 1", "Test Value 1"));
+    assertEquals(
+        "Test Value 1",
+        mneme.putIfAbsent("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void replace_expectedValue_shouldReplace() {
+
+    final Mneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertFalse(mneme.replace("Test Key 1", "Test Value 2", "Test Value 1B"));
+    assertTrue(mneme.replace("Test Key 1", "Test Value 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void compute_blankResult_shouldThrowThemisBlankTargetString() {
+
+    final Mneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> mneme.compute("Test Key 1", (k, v) -> " "));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void compute_nullResult_shouldRemove() {
+
+    final Mneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertNull(mneme.compute("Test Key 1", (k, v) -> null));
+    assertFalse(mneme.containsKey("Test Key 1"));
+  }
+
+  @Test
+  public void merge_withPreviousValue_shouldMerge() {
+
+    final Mneme mneme = new LocalMneme();
+
+    mneme.merge("Test Key 1", "A", String::concat);
+    mneme.merge("Test Key 1", "B", String::concat);
+
+    assertEquals("AB", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void merge_concurrentWriters_shouldNotLoseUpdates()
+      throws InterruptedException {
+
+    final Mneme mneme = new LocalMneme();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int i = 0; i < 8; i++) {
+
+      final int writer = i;
+
+      executor.execute(() -> {
+        for (int j = 0; j < 1000; j++) {
+          mneme.merge("Test Key 1", "1", (a, b) ->
+              String.valueOf(Integer.parseInt(a) + Integer.parseInt(b)));
+          mneme.put("Test Key " + writer + "/" + j, "Test Value");
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    assertEquals("8000", mneme.get("Test Key 1"));
+    assertEquals(8001, mneme.size());
+  }
+
+  @Test
+  public void constructor_nonPositiveMaximumWeight_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new LocalMneme(0));
+  }
+
+  @Test
+  public void put_overMaximumWeight_shouldEvictAndNotifyListener() {
+
+    final List<String> evictedKeys = new ArrayList<>();
+    final LocalMneme mneme = new LocalMneme(
+        1000,
+        (key, value) -> evictedKeys.add(key));
+
+    for (int i = 0; i < 100; i++) {
+      mneme.put(String.format("Test Key %02d", i), "Test Value 1");
+    }
+
+    final LocalMneme.Statistics statistics = mneme.getStatistics();
+
+    assertTrue(statistics.weightedSize() <= 1000);
+    assertEquals(statistics.evictionCount(), evictedKeys.size());
+    assertEquals(100, mneme.size() + evictedKeys.size());
+    assertEquals(mneme.size() * 46L, statistics.weightedSize());
+
+    for (final String key : evictedKeys) {
+      assertFalse(mneme.containsKey(key));
+    }
+  }
+
+  @Test
+  public void put_heavierThanMaximumWeight_shouldEvictIt() {
+
+    final LocalMneme mneme = new LocalMneme(100);
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value ".repeat(10));
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertNull(mneme.get("Test Key 2"));
+  }
+
+  @Test
+  public void put_oneOffScan_shouldKeepFrequentlyUsedEntries() {
+
+    final LocalMneme mneme = new LocalMneme(100 * 46);
+
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (mneme.get(String.format("Test Key %02d", i)) == null) {
+          mneme.put(String.format("Test Key %02d", i), "Test Value 1");
+        }
+      }
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      mneme.put(String.format("Scan Key %04d", i), "Scan Value");
+    }
+
+    int retained = 0;
+
+    for (int i = 0; i < 50; i++) {
+      if (mneme.containsKey(String.format("Test Key %02d", i))) {
+        retained++;
+      }
+    }
+
+    assertTrue(retained >= 45, "Only " + retained + " hot entries retained");
+  }
+
+  @Test
+  public void getStatistics_shouldCountHitsAndMisses() {
+
+    final LocalMneme mneme = new LocalMneme(1000);
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.get("Test Key 1");
+    mneme.get("Test Key 1");
+    mneme.get("Test Key 2");
+
+    final LocalMneme.Statistics statistics = mneme.getStatistics();
+
+    assertEquals(2, statistics.hitCount());
+    assertEquals(1, statistics.missCount());
+    assertEquals(2.0 / 3, statistics.hitRate(), 0.0001);
+  }
+
+  @Test
+  public void put_boundedConcurrentWriters_shouldStayWithinMaximumWeight()
+      throws InterruptedException {
+
+    final LocalMneme mneme = new LocalMneme(10_000);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int i = 0; i < 8; i++) {
+      executor.execute(() -> {
+        for (int j = 0; j < 10_000; j++) {
+
+          final String key = "Test Key " + ThreadLocalRandom.current()
+              .nextInt(1000);
+
+          if (j % 4 == 0) {
+            mneme.merge(key, "Test Value 1", (a, b) -> b);
+          } else if (mneme.get(key) == null) {
+            mneme.putIfAbsent(key, "Test Value " + j);
+          }
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    long weight = 0;
+
+    for (final String key : mneme.keySet()) {
+      weight += 2L * (key.length() + mneme.get(key).length());
+    }
+
+    assertTrue(weight <= 10_000);
+    assertEquals(weight, mneme.getStatistics().weightedSize());
+  }
+
+  @Test
+  public void constructor_nonPositiveDefaultTimeToLive_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new LocalMneme(Duration.ZERO));
+  }
+
+  @Test
+  public void put_nullTimeToLive_shouldThrowThemisNullTarget() {
+
+    final LocalMneme mneme = new LocalMneme();
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> mneme.put("Test Key 1", "Test Value 1", null));
+  }
+
+  @Test
+  public void put_timeToLive_shouldExpireEntry() {
+
+    final ManualTicker ticker = new ManualTicker();
+    final LocalMneme mneme = new LocalMneme(ticker);
+
+    assertNull(
+        mneme.put("Test Key 1", "Test Value 1", Duration.ofMillis(200)));
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+
+    ticker.advance(Duration.ofMillis(400));
+
+    assertNull(mneme.get("Test Key 1"));
+    assertFalse(mneme.containsKey("Test Key 1"));
+    assertFalse(mneme.containsValue("Test Value 1"));
+    assertEquals(Set.of("Test Key 2"), mneme.keySet());
+    assertNull(mneme.putIfAbsent("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void put_withoutTimeToLive_shouldReplaceTimeToLive() {
+
+    final ManualTicker ticker = new ManualTicker();
+    final LocalMneme mneme = new LocalMneme(ticker);
+
+    mneme.put("Test Key 1", "Test Value 1", Duration.ofMillis(200));
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2", Duration.ofMillis(200));
+    mneme.put("Test Key 2", "Test Value 2", Duration.ofMinutes(1));
+
+    ticker.advance(Duration.ofMillis(400));
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertEquals("Test Value 2", mneme.get("Test Key 2"));
+  }
+
+  @Test
+  public void put_defaultTimeToLive_shouldExpireAllEntries() {
+
+    final ManualTicker ticker = new ManualTicker();
+    final LocalMneme mneme = new LocalMneme(Duration.ofMillis(200), ticker);
+
+    for (int i = 0; i < 10_000; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    assertEquals(10_000, mneme.size());
+
+    ticker.advance(Duration.ofMillis(400));
+
+    mneme.put("Test Key 1", "Test Value 1B");
+
+    assertEquals(1, mneme.size());
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+    assertEquals(
+        "Test Value 2",
+        mneme.merge("Test Key 2", "Test Value 2", String::concat));
+  }
+
+  @Test
+  public void put_boundedWithDefaultTimeToLive_shouldReleaseExpiredWeight() {
+
+    final ManualTicker ticker = new ManualTicker();
+    final List<String> evicted = new ArrayList<>();
+    final LocalMneme mneme = new LocalMneme(
+        10_000,
+        (key, value) -> evicted.add(key),
+        Duration.ofMillis(200),
+        ticker);
+
+    for (int i = 0; i < 10; i++) {
+      mneme.put("Test Key " + i, "Test Value 1");
+    }
+
+    ticker.advance(Duration.ofMillis(400));
+
+    assertTrue(mneme.isEmpty());
+    assertEquals(0, mneme.getStatistics().weightedSize());
+    assertTrue(evicted.isEmpty());
+  }
+
+  @Test
+  public void constructor_nullDurability_shouldThrowThemisNullTarget() {
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new LocalMneme(directory, null));
+  }
+
+  @Test
+  public void constructor_durable_shouldRestoreEntries() {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.put("Test Key 3", "Test Value 3");
+      mneme.remove("Test Key 2");
+      mneme.merge("Test Key 3", "B", String::concat);
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(
+          Map.of("Test Key 1", "Test Value 1", "Test Key 3", "Test Value 3B"),
+          new HashMap<>(mneme));
+    }
+  }
+
+  @Test
+  public void constructor_durableWithTornRecord_shouldRestoreCommittedEntries()
+      throws IOException {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.operatingSystem())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+    }
+
+    final Path log;
+
+    try (final Stream<Path> paths = Files.list(directory)) {
+      log = paths.filter(path -> path.toString().endsWith(".log"))
+          .max(Comparator.naturalOrder())
+          .orElseThrow();
+    }
+
+    // A record cut short part of the way through its key.
+    Files.write(
+        log,
+        new byte[] {0, 0, 0, 1, 0, 0, 0, 40, 1, 0, 0, 0, 10, 'T', 'e'},
+        StandardOpenOption.APPEND);
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.operatingSystem())) {
+
+      assertEquals(2, mneme.size());
+
+      mneme.put("Test Key 3", "Test Value 3");
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.operatingSystem())) {
+
+      assertEquals(3, mneme.size());
+      assertEquals("Test Value 3", mneme.get("Test Key 3"));
+    }
+  }
+
+  @Test
+  public void snapshot_durable_shouldTruncateLog() throws IOException {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.operatingSystem())) {
+
+      for (int round = 0; round < 5; round++) {
+        for (int i = 0; i < 1_000; i++) {
+          mneme.put("Test Key " + i, "Test Value " + i + "/" + round);
+        }
+        mneme.snapshot();
+      }
+
+      mneme.put("Test Key 1", "Test Value 1");
+    }
+
+    try (final Stream<Path> paths = Files.list(directory)) {
+      assertEquals(
+          1,
+          paths.filter(path -> path.toString().endsWith(".log")).count());
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.operatingSystem())) {
+
+      assertEquals(1_000, mneme.size());
+      assertEquals("Test Value 1", mneme.get("Test Key 1"));
+      assertEquals("Test Value 999/4", mneme.get("Test Key 999"));
+    }
+  }
+
+  @Test
+  public void put_durableWithTimeToLive_shouldNotRestoreExpiredEntries() {
+
+    final ManualTicker ticker = new ManualTicker();
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite(), ticker)) {
+
+      mneme.put("Test Key 1", "Test Value 1", Duration.ofMillis(200));
+      mneme.put("Test Key 2", "Test Value 2", Duration.ofMinutes(1));
+      mneme.put("Test Key 3", "Test Value 3");
+      mneme.snapshot();
+      mneme.put("Test Key 4", "Test Value 4", Duration.ofMillis(200));
+    }
+
+    ticker.advance(Duration.ofMillis(400));
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite(), ticker)) {
+
+      assertEquals(Set.of("Test Key 2", "Test Key 3"), mneme.keySet());
+    }
+  }
+
+  @Test
+  public void put_closedDurable_shouldThrowIllegalState() {
+
+    final LocalMneme mneme =
+        new LocalMneme(directory, Durability.everyWrite());
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.close();
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void put_durableConcurrentWriters_shouldRestoreAllEntries()
+      throws InterruptedException {
+
+    try (final LocalMneme mneme = new LocalMneme(
+        directory,
+        Durability.periodic(Duration.ofMillis(5)))) {
+
+      final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+      for (int thread = 0; thread < 4; thread++) {
+
+        final int offset = thread * 1_000;
+
+        executor.execute(() -> {
+          for (int i = offset; i < offset + 1_000; i++) {
+            mneme.put("Test Key " + i, "Test Value " + i);
+          }
+        });
+      }
+
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(4_000, mneme.size());
+      assertEquals("Test Value 3999", mneme.get("Test Key 3999"));
+    }
+  }
+
+  @Test
+  public void putBytes_shouldStoreBase64Value() {
+
+    final LocalMneme mneme = new LocalMneme();
+    final byte[] bytes = {0, 1, 2, (byte) 0xFF};
+
+    mneme.putBytes("Test Key 1", ByteBuffer.wrap(bytes));
+
+    assertEquals(
+        Base64.getEncoder().encodeToString(bytes),
+        mneme.get("Test Key 1"));
+    assertEquals(ByteBuffer.wrap(bytes), mneme.getBytes("Test Key 1"));
+    assertTrue(mneme.getBytes("Test Key 1").isReadOnly());
+    assertNull(mneme.getBytes("Test Key 2"));
+  }
+
+  @Test
+  public void getBytes_shouldReturnCurrentValue() {
+
+    final LocalMneme mneme = new LocalMneme();
+    final byte[] bytes = {1, 2, 3};
+
+    mneme.putBytes("Test Key 1", ByteBuffer.wrap(bytes));
+    bytes[0] = 9;
+
+    assertEquals(
+        ByteBuffer.wrap(new byte[] {1, 2, 3}),
+        mneme.getBytes("Test Key 1"));
+
+    mneme.putBytes("Test Key 1", ByteBuffer.wrap(new byte[] {4, 5}));
+
+    assertEquals(
+        ByteBuffer.wrap(new byte[] {4, 5}),
+        mneme.getBytes("Test Key 1"));
+
+    mneme.put(
+        "Test Key 1",
+        Base64.getEncoder().encodeToString(new byte[] {6}));
+
+    assertEquals(
+        ByteBuffer.wrap(new byte[] {6}),
+        mneme.getBytes("Test Key 1"));
+  }
+
+  @Test
+  public void read_shouldFillDestination() {
+
+    final LocalMneme mneme = new LocalMneme();
+    final ByteBuffer destination = ByteBuffer.allocateDirect(8);
+
+    mneme.putBytes("Test Key 1", ByteBuffer.wrap(new byte[] {1, 2, 3}));
+
+    assertEquals(3, mneme.read("Test Key 1", destination));
+    assertEquals(3, destination.position());
+    assertEquals(-1, mneme.read("Test Key 2", destination));
+    assertThrows(
+        BufferOverflowException.class,
+        () -> mneme.read("Test Key 1", ByteBuffer.allocate(2)));
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> mneme.read("Test Key 1", destination.asReadOnlyBuffer()));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    final LocalMneme mneme = new LocalMneme();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 1000; i++) {
+          mneme.increment("Test Key 1", 1);
+          if (i % 100 == 0) {
+            mneme.get("Test Key 1");
+          }
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(8000, mneme.getCounter("Test Key 1"));
+    assertEquals("8000", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_shouldAddToStoredValue() {
+
+    final LocalMneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "40");
+    mneme.increment("Test Key 1", 5);
+    mneme.increment("Test Key 1", -3);
+
+    assertEquals("42", mneme.get("Test Key 1"));
+    assertEquals(Set.of("Test Key 1"), mneme.keySet());
+    assertEquals(0, mneme.getCounter("Test Key 2"));
+  }
+
+  @Test
+  public void size_pendingCounter_shouldCountIt() {
+
+    final LocalMneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.increment("Test Key 2", 5);
+
+    assertEquals(2, mneme.size());
+    assertFalse(mneme.isEmpty());
+    assertEquals("5", mneme.get("Test Key 2"));
+    assertEquals(2, mneme.size());
+  }
+
+  @Test
+  public void increment_durable_shouldRestoreCounter() {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      mneme.increment("Test Key 1", 7);
+      mneme.increment("Test Key 1", 5);
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(12, mneme.getCounter("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void increment_nonNumericValue_shouldThrowNumberFormat() {
+
+    final LocalMneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertThrows(
+        NumberFormatException.class,
+        () -> mneme.increment("Test Key 1", 1));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_durable_shouldJournalBeforeReturning() {
+
+    final LocalMneme mneme =
+        new LocalMneme(directory, Durability.everyWrite());
+
+    try {
+
+      mneme.increment("Test Key 1", 7);
+
+      // Restored without the first instance being read or closed.
+      try (final LocalMneme restored =
+               new LocalMneme(directory, Durability.everyWrite())) {
+
+        assertEquals(7, restored.getCounter("Test Key 1"));
+      }
+
+    } finally {
+      mneme.close();
+    }
+  }
+
+  @Test
+  public void increment_closedDurable_shouldThrowIllegalState() {
+
+    final LocalMneme mneme =
+        new LocalMneme(directory, Durability.everyWrite());
+
+    mneme.increment("Test Key 1", 7);
+    mneme.close();
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> mneme.increment("Test Key 1", 1));
+    assertEquals("7", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void apply_shouldPutAndRemove() {
+
+    final LocalMneme mneme = new LocalMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+
+    mneme.apply(new WriteBatch()
+        .put("Test Key 1", "Test Value 3")
+        .remove("Test Key 2")
+        .put("Test Key 4", "Test Value 4"));
+
+    assertEquals(
+        Map.of("Test Key 1", "Test Value 3", "Test Key 4", "Test Value 4"),
+        new HashMap<>(mneme));
+  }
+
+  @Test
+  public void apply_blankValue_shouldThrowThemisBlankTargetString() {
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> new WriteBatch().put("Test Key 1", " "));
+  }
+
+  @Test
+  public void apply_nullBatch_shouldThrowThemisNullTarget() {
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new LocalMneme().apply(null));
+  }
+
+  @Test
+  public void apply_concurrentReaders_shouldNeverSeePartialBatch()
+      throws InterruptedException {
+
+    final LocalMneme mneme = new LocalMneme();
+    final AtomicBoolean applying = new AtomicBoolean(true);
+    final AtomicBoolean partial = new AtomicBoolean();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    mneme.apply(batchOfGeneration(0));
+
+    for (int thread = 0; thread < 3; thread++) {
+      executor.execute(() -> {
+        while (applying.get()) {
+          final long first = Long.parseLong(mneme.get("Test Key 0"));
+          final long last = Long.parseLong(mneme.get("Test Key 63"));
+          if (last < first) {
+            partial.set(true);
+          }
+        }
+      });
+    }
+
+    executor.execute(() -> {
+      for (int generation = 1; generation <= 2000; generation++) {
+        mneme.apply(batchOfGeneration(generation));
+      }
+      applying.set(false);
+    });
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertFalse(partial.get());
+    assertEquals("2000", mneme.get("Test Key 0"));
+  }
+
+  @Test
+  public void apply_durable_shouldRestoreBatch() {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.apply(new WriteBatch()
+          .remove("Test Key 1")
+          .put("Test Key 2", "Test Value 2")
+          .put("Test Key 3", "Test Value 3"));
+    }
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(
+          Map.of("Test Key 2", "Test Value 2", "Test Key 3", "Test Value 3"),
+          new HashMap<>(mneme));
+    }
+  }
+
+  @Test
+  public void apply_durableTornBatch_shouldRestoreNoneOfIt()
+      throws IOException {
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.apply(new WriteBatch()
+          .put("Test Key 1", "Test Value 1B")
+          .put("Test Key 2", "Test Value 2"));
+    }
+
+    final Path log;
+
+    try (final Stream<Path> paths = Files.list(directory)) {
+      log = paths.filter(path -> path.toString().endsWith(".log"))
+          .max(Comparator.naturalOrder())
+          .orElseThrow();
+    }
+
+    // The batch record cut short part of the way through its last change.
+    final byte[] bytes = Files.readAllBytes(log);
+
+    Files.write(log, Arrays.copyOf(bytes, bytes.length - 4));
+
+    try (final LocalMneme mneme =
+             new LocalMneme(directory, Durability.everyWrite())) {
+
+      assertEquals(Map.of("Test Key 1", "Test Value 1"), new HashMap<>(mneme));
+    }
+  }
+
+  private static WriteBatch batchOfGeneration(final long generation) {
+
+    final WriteBatch batch = new WriteBatch();
+
+    for (int i = 0; i < 64; i++) {
+      batch.put("Test Key " + i, Long.toString(generation));
+    }
+
+    return batch;
+  }
+
+  /**
+   * <p>A {@link Ticker} that only moves when it is advanced.</p>
+   */
+  private static final class ManualTicker implements Ticker {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong millis =
+        new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    public long nanoTime() {
+      return nanos.get();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return millis.get();
+    }
+
+    private void advance(final Duration duration) {
+      nanos.addAndGet(duration.toNanos());
+      millis.addAndGet(duration.toMillis());
+    }
+
+  }
+
 }
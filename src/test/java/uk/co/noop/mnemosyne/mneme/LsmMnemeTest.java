@@ -0,0 +1,289 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LsmMnemeTest {
+
+  private Path directory;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("lsm-mneme");
+  }
+
+  @AfterEach
+  public void teardown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder())
+          .collect(toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void constructor_nullDirectory_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new LsmMneme(null));
+  }
+
+  @Test
+  public void put_blankKey_shouldThrowThemisBlankTargetString() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+      assertThrows(
+          ThemisBlankTargetStringException.class,
+          () -> mneme.put(" ", "Test Value 1"));
+    }
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      assertNull(mneme.put("Test Key 1", "Test Value 1"));
+      assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertEquals(1, mneme.size());
+    }
+  }
+
+  @Test
+  public void remove_flushed_shouldHideOlderValue() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.flush();
+
+      assertEquals("Test Value 1", mneme.remove("Test Key 1"));
+      assertNull(mneme.remove("Test Key 1"));
+      assertFalse(mneme.containsKey("Test Key 1"));
+
+      mneme.flush();
+
+      assertNull(mneme.get("Test Key 1"));
+      assertTrue(mneme.isEmpty());
+    }
+  }
+
+  @Test
+  public void reopen_shouldRestoreEntries() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+      for (int i = 0; i < 100; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+      mneme.put("Test Key 1", "Test Value 1B");
+      mneme.remove("Test Key 2");
+    }
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      assertEquals(99, mneme.size());
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertNull(mneme.get("Test Key 2"));
+      assertEquals("Test Value 99", mneme.get("Test Key 99"));
+    }
+  }
+
+  @Test
+  public void compact_shouldKeepLatestValues() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory, 1024)) {
+
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < 200; i++) {
+          mneme.put(key(i), "Test Value " + i + "/" + round);
+        }
+      }
+
+      for (int i = 0; i < 10; i++) {
+        mneme.remove(key(i));
+      }
+
+      mneme.compact();
+
+      final LsmMneme.Metrics metrics = mneme.getMetrics();
+
+      assertTrue(metrics.flushes() > 0);
+      assertTrue(metrics.compactions() > 0);
+      assertTrue(metrics.tablesPerLevel().get(0) < 4);
+      assertEquals(190, mneme.size());
+
+      for (int i = 10; i < 200; i++) {
+        assertEquals("Test Value " + i + "/9", mneme.get(key(i)));
+      }
+
+      assertNull(mneme.get(key(5)));
+    }
+
+    try (final LsmMneme mneme = new LsmMneme(directory, 1024)) {
+      assertEquals(190, mneme.size());
+      assertEquals("Test Value 150/9", mneme.get(key(150)));
+    }
+  }
+
+  @Test
+  public void scan_shouldReturnRangeInOrder() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory, 1024)) {
+
+      for (int i = 0; i < 100; i++) {
+        mneme.put(key(i), "Test Value " + i);
+      }
+
+      mneme.flush();
+      mneme.put(key(20), "Test Value 20B");
+      mneme.remove(key(21));
+
+      final List<String> keys = new ArrayList<>();
+      final List<String> values = new ArrayList<>();
+
+      mneme.scan(key(19), key(24)).forEach(entry -> {
+        keys.add(entry.getKey());
+        values.add(entry.getValue());
+      });
+
+      assertEquals(List.of(key(19), key(20), key(22), key(23)), keys);
+      assertEquals("Test Value 20B", values.get(1));
+    }
+  }
+
+  @Test
+  public void keySet_shouldReturnKeysInOrder() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.flush();
+      mneme.put("Test Key 1", "Test Value 1");
+
+      assertEquals(
+          List.of("Test Key 1", "Test Key 2"),
+          new ArrayList<>(mneme.keySet()));
+    }
+  }
+
+  @Test
+  public void values_shouldScanValuesInKeyOrder() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.put("Test Key 3", "Test Value 3");
+      mneme.flush();
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.remove("Test Key 3");
+
+      assertEquals(
+          List.of("Test Value 1", "Test Value 2"),
+          new ArrayList<>(mneme.values()));
+      assertEquals(
+          List.of("Test Key 1", "Test Key 2"),
+          mneme.entrySet().stream().map(Map.Entry::getKey).collect(toList()));
+    }
+  }
+
+  @Test
+  public void scanEntries_shouldReturnEntriesInKeyOrder() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      final OrderedScan scan = mneme;
+
+      assertFalse(scan.scanEntries().hasNext());
+
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.flush();
+      mneme.put("Test Key 1", "Test Value 1");
+
+      final List<String> keys = new ArrayList<>();
+
+      scan.scanEntries().forEachRemaining(entry -> keys.add(entry.getKey()));
+
+      assertEquals(List.of("Test Key 1", "Test Key 2"), keys);
+      assertFalse(mneme.isEmpty());
+    }
+  }
+
+  @Test
+  public void clear_shouldRemoveAll() {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.flush();
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.clear();
+      assertTrue(mneme.isEmpty());
+    }
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+      assertTrue(mneme.isEmpty());
+    }
+  }
+
+  @Test
+  public void close_shouldRejectFurtherOperations() {
+
+    final LsmMneme mneme = new LsmMneme(directory);
+
+    mneme.close();
+
+    assertThrows(IllegalStateException.class, () -> mneme.get("Test Key 1"));
+  }
+
+  private static String key(final int i) {
+    return String.format("Test Key %03d", i);
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    try (final LsmMneme mneme = new LsmMneme(directory)) {
+
+      final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+      for (int thread = 0; thread < 8; thread++) {
+        executor.execute(() -> {
+          for (int i = 0; i < 250; i++) {
+            mneme.increment("Test Key 1", 1);
+          }
+        });
+      }
+
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+      assertEquals(2000, mneme.getCounter("Test Key 1"));
+    }
+  }
+
+}
@@ -0,0 +1,233 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ObservableMnemeTest {
+
+  @Test
+  public void constructor_nullMneme_shouldThrowThemisNullTarget() {
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new ObservableMneme(null));
+  }
+
+  @Test
+  public void subscribe_nonPositiveBufferSize_shouldThrowThemisInvalidTarget() {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> mneme.subscribe(
+            new Recorder(Long.MAX_VALUE),
+            0,
+            ObservableMneme.Overflow.DROP));
+  }
+
+  @Test
+  public void put_shouldPassThroughAndPublishInOrder()
+      throws InterruptedException {
+
+    final LocalMneme local = new LocalMneme();
+    final ObservableMneme mneme = new ObservableMneme(local);
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    mneme.subscribe(recorder);
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 1", "Test Value 1B");
+    mneme.remove("Test Key 1");
+    mneme.remove("Test Key 2");
+    mneme.close();
+
+    assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+    assertEquals(
+        List.of(
+            MnemeEvent.put("Test Key 1", "Test Value 1"),
+            MnemeEvent.put("Test Key 1", "Test Value 1B"),
+            MnemeEvent.remove("Test Key 1")),
+        recorder.events);
+    assertTrue(local.isEmpty());
+  }
+
+  @Test
+  public void compute_shouldPublishOnlyChanges() throws InterruptedException {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    mneme.subscribe(recorder);
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+    mneme.putIfAbsent("Test Key 1", "Test Value 1B");
+    mneme.computeIfAbsent("Test Key 1", key -> "Test Value 1C");
+    mneme.merge("Test Key 1", "D", String::concat);
+    mneme.computeIfPresent("Test Key 2", (key, value) -> "Test Value 2");
+    mneme.compute("Test Key 2", (key, value) -> "Test Value 2");
+    mneme.replace("Test Key 2", "Test Value 2", "Test Value 2B");
+    mneme.remove("Test Key 2", "Test Value 2");
+    mneme.compute("Test Key 2", (key, value) -> null);
+    mneme.close();
+
+    assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+    assertEquals(
+        List.of(
+            MnemeEvent.put("Test Key 1", "Test Value 1"),
+            MnemeEvent.put("Test Key 1", "Test Value 1D"),
+            MnemeEvent.put("Test Key 2", "Test Value 2"),
+            MnemeEvent.put("Test Key 2", "Test Value 2B"),
+            MnemeEvent.remove("Test Key 2")),
+        recorder.events);
+  }
+
+  @Test
+  public void put_fullBufferWithDrop_shouldDropEvents()
+      throws InterruptedException {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+    final Recorder recorder = new Recorder(0);
+
+    mneme.subscribe(recorder, 4, ObservableMneme.Overflow.DROP);
+
+    // Subscribers are called asynchronously, so wait to be subscribed.
+    assertTrue(recorder.subscribed.await(5, TimeUnit.SECONDS));
+
+    for (int i = 0; i < 10; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    assertEquals(6, mneme.getDroppedCount());
+    assertEquals(10, mneme.size());
+
+    recorder.subscription.request(Long.MAX_VALUE);
+    mneme.close();
+
+    assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+    assertEquals(4, recorder.events.size());
+    assertEquals(
+        MnemeEvent.put("Test Key 0", "Test Value 0"),
+        recorder.events.get(0));
+  }
+
+  @Test
+  public void put_fullBufferWithBlock_shouldWaitForSubscriber()
+      throws InterruptedException {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+    final Recorder recorder = new Recorder(0);
+
+    mneme.subscribe(recorder, 4, ObservableMneme.Overflow.BLOCK);
+
+    assertTrue(recorder.subscribed.await(5, TimeUnit.SECONDS));
+
+    final Thread writer = new Thread(() -> {
+      for (int i = 0; i < 10; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+    });
+
+    writer.start();
+    writer.join(300);
+
+    assertTrue(writer.isAlive());
+
+    recorder.subscription.request(Long.MAX_VALUE);
+    writer.join(5_000);
+
+    assertFalse(writer.isAlive());
+
+    mneme.close();
+
+    assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+    assertEquals(10, recorder.events.size());
+    assertEquals(0, mneme.getDroppedCount());
+  }
+
+  @Test
+  public void subscribe_cancelled_shouldStopPublishing()
+      throws InterruptedException {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    mneme.subscribe(recorder, 1, ObservableMneme.Overflow.BLOCK);
+
+    assertTrue(recorder.subscribed.await(5, TimeUnit.SECONDS));
+
+    recorder.subscription.cancel();
+
+    // Would block forever on the single-event buffer if still subscribed.
+    for (int i = 0; i < 10; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    assertEquals(10, mneme.size());
+  }
+
+  @Test
+  public void subscribe_closed_shouldComplete() throws InterruptedException {
+
+    final ObservableMneme mneme = new ObservableMneme(new LocalMneme());
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    mneme.close();
+    mneme.subscribe(recorder);
+
+    assertTrue(recorder.completed.await(5, TimeUnit.SECONDS));
+  }
+
+  private static final class Recorder
+      implements Flow.Subscriber<MnemeEvent> {
+
+    private final long initialDemand;
+    private final List<MnemeEvent> events = new CopyOnWriteArrayList<>();
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private volatile Flow.Subscription subscription;
+
+    private Recorder(final long initialDemand) {
+      this.initialDemand = initialDemand;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+
+      this.subscription = subscription;
+
+      if (initialDemand > 0) {
+        subscription.request(initialDemand);
+      }
+
+      subscribed.countDown();
+    }
+
+    @Override
+    public void onNext(final MnemeEvent event) {
+      events.add(event);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      completed.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+
+  }
+
+}
@@ -0,0 +1,188 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapMnemeTest {
+
+  @Test
+  public void constructor_nonPowerOfTwoSlabSize_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new OffHeapMneme(1000));
+  }
+
+  @Test
+  public void get_nullKey_shouldThrowThemisNullTarget() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+      assertThrows(ThemisNullTargetException.class, () -> mneme.get(null));
+    }
+  }
+
+  @Test
+  public void put_blankValue_shouldThrowThemisBlankTargetString() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+      assertThrows(
+          ThemisBlankTargetStringException.class,
+          () -> mneme.put("Test Key 1", " "));
+    }
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+
+      assertNull(mneme.put("Test Key 1", "Test Value 1"));
+      assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertEquals(1, mneme.size());
+    }
+  }
+
+  @Test
+  public void put_largerValue_shouldMoveEntry() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme(1 << 10)) {
+
+      final String value = "Test Value ".repeat(200);
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 1", value);
+
+      assertEquals(value, mneme.get("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void put_multiByteCharacters_shouldRoundTrip() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+
+      mneme.put("Μνημοσύνη/鍵", "Τιμή/値 🙂");
+
+      assertEquals("Τιμή/値 🙂", mneme.get("Μνημοσύνη/鍵"));
+      assertTrue(mneme.containsValue("Τιμή/値 🙂"));
+    }
+  }
+
+  @Test
+  public void remove_shouldRemoveAndReuseSpace() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme(1 << 16)) {
+
+      for (int i = 0; i < 1000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+
+      final long allocatedBytes = mneme.getAllocatedBytes();
+
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("Test Value " + i, mneme.remove("Test Key " + i));
+      }
+
+      for (int i = 0; i < 1000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+
+      assertEquals(allocatedBytes, mneme.getAllocatedBytes());
+      assertEquals(1000, mneme.size());
+    }
+  }
+
+  @Test
+  public void put_manyEntries_shouldGrowIndex() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme(1 << 16)) {
+
+      for (int i = 0; i < 50_000; i++) {
+        mneme.put("Test Key " + i, "Test Value " + i);
+      }
+
+      assertEquals(50_000, mneme.size());
+
+      for (int i = 0; i < 50_000; i++) {
+        assertEquals("Test Value " + i, mneme.get("Test Key " + i));
+      }
+
+      assertFalse(mneme.containsKey("Test Key 50000"));
+    }
+  }
+
+  @Test
+  public void keySet_shouldReturnAllKeys() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.put("Test Key 2", "Test Value 2");
+      mneme.remove("Test Key 2");
+
+      assertEquals(Set.of("Test Key 1"), mneme.keySet());
+    }
+  }
+
+  @Test
+  public void clear_shouldRemoveAll() {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      mneme.clear();
+
+      assertTrue(mneme.isEmpty());
+      assertNull(mneme.get("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void close_shouldRejectFurtherOperations() {
+
+    final OffHeapMneme mneme = new OffHeapMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.close();
+
+    assertThrows(IllegalStateException.class, () -> mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    try (final OffHeapMneme mneme = new OffHeapMneme()) {
+
+      final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+      for (int thread = 0; thread < 8; thread++) {
+        executor.execute(() -> {
+          for (int i = 0; i < 1000; i++) {
+            mneme.increment("Test Key 1", 1);
+          }
+        });
+      }
+
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+      assertEquals(8000, mneme.getCounter("Test Key 1"));
+    }
+  }
+
+}
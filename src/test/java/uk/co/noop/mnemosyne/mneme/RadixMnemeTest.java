@@ -0,0 +1,255 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RadixMnemeTest {
+
+  @Test
+  public void get_nullKey_shouldThrowThemisNullTarget() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    assertThrows(ThemisNullTargetException.class, () -> mneme.get(null));
+  }
+
+  @Test
+  public void put_blankValue_shouldThrowThemisBlankTargetString() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> mneme.put("Test Key 1", " "));
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    assertNull(mneme.put("Test Key 1", "Test Value 1"));
+    assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+    assertEquals(1, mneme.size());
+  }
+
+  @Test
+  public void put_sharedPrefixes_shouldKeepKeysDistinct() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 10", "Test Value 10");
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 100", "Test Value 100");
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertEquals("Test Value 10", mneme.get("Test Key 10"));
+    assertEquals("Test Value 100", mneme.get("Test Key 100"));
+    assertNull(mneme.get("Test Key"));
+    assertNull(mneme.get("Test Key 1000"));
+    assertTrue(mneme.containsValue("Test Value 100"));
+    assertEquals(4, mneme.size());
+  }
+
+  @Test
+  public void remove_shouldRemoveAndReturnPreviousValue() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 10", "Test Value 10");
+    mneme.put("Test Key 11", "Test Value 11");
+
+    assertEquals("Test Value 1", mneme.remove("Test Key 1"));
+    assertNull(mneme.remove("Test Key 1"));
+    assertFalse(mneme.containsKey("Test Key 1"));
+    assertEquals("Test Value 10", mneme.remove("Test Key 10"));
+    assertEquals("Test Value 11", mneme.get("Test Key 11"));
+    assertEquals(1, mneme.size());
+  }
+
+  @Test
+  public void keySet_shouldReturnKeysInOrder() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.put("Test Key 10", "Test Value 10");
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertEquals(
+        List.of("Test Key 1", "Test Key 10", "Test Key 2"),
+        new ArrayList<>(mneme.keySet()));
+  }
+
+  @Test
+  public void keysWithPrefix_shouldOnlyReturnMatchingKeys() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    for (int tenant = 0; tenant < 3; tenant++) {
+      for (int id = 0; id < 100; id++) {
+        mneme.put(
+            "tenant-" + tenant + "/entity/" + id,
+            "Test Value " + id);
+      }
+    }
+
+    assertEquals(300, mneme.keysWithPrefix("").size());
+    assertEquals(100, mneme.keysWithPrefix("tenant-1/").size());
+    assertEquals(
+        List.of("tenant-2/entity/9", "tenant-2/entity/90",
+            "tenant-2/entity/91", "tenant-2/entity/92", "tenant-2/entity/93",
+            "tenant-2/entity/94", "tenant-2/entity/95", "tenant-2/entity/96",
+            "tenant-2/entity/97", "tenant-2/entity/98", "tenant-2/entity/99"),
+        new ArrayList<>(mneme.keysWithPrefix("tenant-2/entity/9")));
+    assertEquals(300, mneme.keysWithPrefix("tenant-").size());
+    assertTrue(mneme.keysWithPrefix("tenant-3/").isEmpty());
+    assertTrue(mneme.keysWithPrefix("tenant-1/entity/990").isEmpty());
+  }
+
+  @Test
+  public void subMap_shouldReturnRangeInOrder() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    for (int i = 0; i < 100; i++) {
+      mneme.put(String.format("Test Key %03d", i), "Test Value " + i);
+    }
+
+    final Map<String, String> range =
+        mneme.subMap("Test Key 019", "Test Key 023");
+
+    assertEquals(
+        List.of("Test Key 019", "Test Key 020", "Test Key 021",
+            "Test Key 022"),
+        new ArrayList<>(range.keySet()));
+    assertEquals("Test Value 20", range.get("Test Key 020"));
+    assertEquals(
+        List.of("Test Key 020", "Test Key 021", "Test Key 022",
+            "Test Key 023"),
+        new ArrayList<>(
+            mneme.subMap("Test Key 019", false, "Test Key 023", true)
+                .keySet()));
+  }
+
+  @Test
+  public void ceilingKey_shouldNavigateInOrder() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 3", "Test Value 3");
+    mneme.put("Test Key 30", "Test Value 30");
+
+    assertEquals("Test Key 1", mneme.firstKey());
+    assertEquals("Test Key 30", mneme.lastKey());
+    assertEquals("Test Key 3", mneme.ceilingKey("Test Key 2"));
+    assertEquals("Test Key 3", mneme.ceilingKey("Test Key 3"));
+    assertEquals("Test Key 30", mneme.higherKey("Test Key 3"));
+    assertEquals("Test Key 1", mneme.floorKey("Test Key 2"));
+    assertEquals("Test Key 3", mneme.lowerKey("Test Key 30"));
+    assertNull(mneme.higherKey("Test Key 30"));
+    assertNull(mneme.lowerKey("Test Key 1"));
+  }
+
+  @Test
+  public void firstKey_empty_shouldThrowNoSuchElement() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    assertThrows(NoSuchElementException.class, mneme::firstKey);
+  }
+
+  @Test
+  public void put_manyChildren_shouldStoreAndRemoveAll() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    for (char c = 0x20; c < 0x200; c++) {
+      mneme.put("Test Key " + c, "Test Value " + (int) c);
+    }
+
+    assertEquals(0x1e0, mneme.size());
+    assertEquals("Test Value 65", mneme.get("Test Key A"));
+    assertEquals("Test Key ǿ", mneme.lastKey());
+
+    for (char c = 0x20; c < 0x200; c++) {
+      assertEquals(
+          "Test Value " + (int) c,
+          mneme.remove("Test Key " + c));
+    }
+
+    assertTrue(mneme.isEmpty());
+    assertTrue(mneme.keySet().isEmpty());
+  }
+
+  @Test
+  public void entrySet_shouldReturnEntriesInKeyOrder() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 3", "Test Value 3");
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertEquals(
+        List.of("Test Value 1", "Test Value 2", "Test Value 3"),
+        new ArrayList<>(mneme.values()));
+    assertEquals(
+        List.of("Test Key 1", "Test Key 2", "Test Key 3"),
+        mneme.entrySet().stream().map(Map.Entry::getKey).collect(toList()));
+  }
+
+  @Test
+  public void clear_shouldRemoveAll() {
+
+    final RadixMneme mneme = new RadixMneme();
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.clear();
+
+    assertTrue(mneme.isEmpty());
+    assertNull(mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    final RadixMneme mneme = new RadixMneme();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 1000; i++) {
+          mneme.increment("Test Key 1", 1);
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(8000, mneme.getCounter("Test Key 1"));
+  }
+
+}
@@ -0,0 +1,329 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * <p>Tests the conditional writes of {@link S3Mneme} against an in-memory
+ * stand-in for <i>S3</i>, and the sharded counters built on them. (See:
+ * {@link S3StandIn} for more information.)</p>
+ */
+public class S3MnemeConditionalTest {
+
+  private static final String TEST_BUCKET_NAME = "Test Bucket Name";
+
+  private S3StandIn standIn;
+  private S3Mneme mneme;
+
+  @BeforeEach
+  public void mock_standIn() {
+
+    standIn = new S3StandIn(TEST_BUCKET_NAME);
+    mneme = new S3Mneme(standIn.s3(), TEST_BUCKET_NAME);
+  }
+
+  @Test
+  public void putIfAbsent_absent_shouldStoreValue() {
+
+    assertNull(mneme.putIfAbsent("Test Key 1", "Test Value 1"));
+    assertEquals("Test Value 1", standIn.value("Test Key 1"));
+  }
+
+  @Test
+  public void putIfAbsent_present_shouldReturnCurrentValue() {
+
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+
+    assertEquals(
+        "Test Value 1",
+        mneme.putIfAbsent("Test Key 1", "Test Value 2"));
+    assertEquals("Test Value 1", standIn.value("Test Key 1"));
+  }
+
+  @Test
+  public void putIfAbsent_blankValue_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> mneme.putIfAbsent("Test Key 1", " "));
+  }
+
+  @Test
+  public void replace_matchingValue_shouldReplace() {
+
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+
+    assertTrue(mneme.replace("Test Key 1", "Test Value 1", "Test Value 2"));
+    assertFalse(mneme.replace("Test Key 1", "Test Value 1", "Test Value 3"));
+    assertEquals("Test Value 2", standIn.value("Test Key 1"));
+  }
+
+  @Test
+  public void replace_absent_shouldReturnNull() {
+    assertNull(mneme.replace("Test Key 1", "Test Value 1"));
+    assertFalse(standIn.contains("Test Key 1"));
+  }
+
+  @Test
+  public void remove_keyValue_shouldOnlyRemoveMatchingValue() {
+
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+
+    assertFalse(mneme.remove("Test Key 1", "Test Value 2"));
+    assertTrue(mneme.remove("Test Key 1", "Test Value 1"));
+    assertFalse(standIn.contains("Test Key 1"));
+  }
+
+  @Test
+  public void compute_concurrentWrite_shouldRetryWithNewValue() {
+
+    mneme.putIfAbsent("Test Key 1", "1");
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    final String value = mneme.compute("Test Key 1", (key, current) -> {
+
+      // Another writer gets in between the first read and write.
+      if (calls.incrementAndGet() == 1) {
+        assertTrue(mneme.replace(key, "1", "10"));
+      }
+
+      return String.valueOf(Integer.parseInt(current) + 1);
+    });
+
+    assertEquals(2, calls.get());
+    assertEquals("11", value);
+    assertEquals("11", standIn.value("Test Key 1"));
+  }
+
+  @Test
+  public void compute_nullValue_shouldRemove() {
+
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+
+    assertNull(mneme.compute("Test Key 1", (key, current) -> null));
+    assertFalse(standIn.contains("Test Key 1"));
+  }
+
+  @Test
+  public void compute_concurrentWriters_shouldNotLoseUpdates()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 50; i++) {
+          mneme.merge(
+              "Test Key 1",
+              "1",
+              (current, one) -> String.valueOf(Integer.parseInt(current) + 1));
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals("400", standIn.value("Test Key 1"));
+  }
+
+  @Test
+  public void computeIfAbsent_present_shouldNotCallFunction() {
+
+    mneme.putIfAbsent("Test Key 1", "Test Value 1");
+
+    assertEquals(
+        "Test Value 1",
+        mneme.computeIfAbsent("Test Key 1", key -> {
+          throw new AssertionError();
+        }));
+  }
+
+  @Test
+  public void computeIfPresent_absent_shouldNotStore() {
+
+    assertNull(mneme.computeIfPresent("Test Key 1", (key, current) -> "x"));
+    assertFalse(standIn.contains("Test Key 1"));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 50; i++) {
+          mneme.increment("Test Key 1", 1);
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(400, mneme.getCounter("Test Key 1"));
+  }
+
+  @Test
+  public void increment_shouldNotReportShardsAsKeys() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.increment("Test Key 2", 5);
+
+    final Set<String> keys = mneme.keySet();
+
+    assertTrue(keys.contains("Test Key 1"));
+    assertTrue(keys.stream().noneMatch(key -> key.startsWith("mnemosyne-")));
+    assertEquals(5, mneme.getCounter("Test Key 2"));
+  }
+
+  @Test
+  public void getCounter_absent_shouldReturnZero() {
+    assertEquals(0, mneme.getCounter("Test Key 1"));
+  }
+
+  @Test
+  public void getCounter_shouldIgnoreCountersOfLongerKeys() {
+
+    mneme.increment("Test Key", 2);
+    mneme.increment("Test Key/1", 3);
+
+    assertEquals(2, mneme.getCounter("Test Key"));
+    assertEquals(3, mneme.getCounter("Test Key/1"));
+  }
+
+  @Test
+  public void compactCounter_shouldGatherShardsIntoKey() {
+
+    for (int i = 0; i < 100; i++) {
+      mneme.increment("Test Key 1", i % 2 == 0 ? 3 : -1);
+    }
+
+    mneme.compactCounter("Test Key 1");
+
+    assertEquals("100", mneme.get("Test Key 1"));
+    assertEquals(100, mneme.getCounter("Test Key 1"));
+    assertEquals(Set.of("Test Key 1"), standIn.keys());
+  }
+
+  @Test
+  public void compactCounter_concurrentIncrements_shouldNotDoubleCount()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      final boolean compacting = thread % 2 == 0;
+      executor.execute(() -> {
+        for (int i = 0; i < 50; i++) {
+          mneme.increment("Test Key 1", 1);
+          if (compacting) {
+            mneme.compactCounter("Test Key 1");
+          }
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(400, mneme.getCounter("Test Key 1"));
+  }
+
+  @Test
+  public void compactCounter_interruptedBeforeDelete_shouldNotLoseCounts() {
+
+    for (int i = 0; i < 40; i++) {
+      mneme.increment("Test Key 1", 1);
+    }
+
+    standIn.failDeletes(true);
+
+    assertThrows(
+        AmazonS3Exception.class,
+        () -> mneme.compactCounter("Test Key 1"));
+    assertEquals(40, mneme.getCounter("Test Key 1"));
+
+    for (int i = 0; i < 40; i++) {
+      mneme.increment("Test Key 1", 1);
+    }
+
+    assertEquals(80, mneme.getCounter("Test Key 1"));
+
+    standIn.failDeletes(false);
+    mneme.compactCounter("Test Key 1");
+
+    assertEquals("80", mneme.get("Test Key 1"));
+    assertEquals(80, mneme.getCounter("Test Key 1"));
+    assertEquals(Set.of("Test Key 1"), standIn.keys());
+  }
+
+  @Test
+  public void remove_shouldRemoveShards() {
+
+    mneme.increment("Test Key 1", 5);
+    mneme.compactCounter("Test Key 1");
+    mneme.increment("Test Key 1", 5);
+
+    assertEquals("5", mneme.remove("Test Key 1"));
+    assertEquals(0, mneme.getCounter("Test Key 1"));
+    assertTrue(standIn.isEmpty());
+  }
+
+  @Test
+  public void remove_uncompactedCounter_shouldRemoveShards() {
+
+    mneme.increment("Test Key 1", 5);
+
+    assertEquals("0", mneme.remove("Test Key 1"));
+    assertEquals(0, mneme.getCounter("Test Key 1"));
+    assertTrue(standIn.isEmpty());
+  }
+
+  @Test
+  public void remove_numericValue_shouldNotListShards() {
+
+    mneme.put("Test Key 1", "5");
+
+    clearInvocations(standIn.s3());
+
+    assertEquals("5", mneme.remove("Test Key 1"));
+
+    verify(standIn.s3(), never())
+        .listObjects(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void clear_shouldRemoveShards() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.increment("Test Key 2", 5);
+
+    mneme.clear();
+
+    assertTrue(standIn.isEmpty());
+  }
+
+}
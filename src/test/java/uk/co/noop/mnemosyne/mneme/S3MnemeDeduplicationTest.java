@@ -0,0 +1,242 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisTargetException;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * <p>Tests the value deduplication of {@link S3Mneme} against an in-memory
+ * stand-in for <i>S3</i>. (See: {@link S3StandIn} for more
+ * information.)</p>
+ */
+public class S3MnemeDeduplicationTest {
+
+  private static final String TEST_BUCKET_NAME = "Test Bucket Name";
+  private static final Duration TEST_GRACE_PERIOD = Duration.ofHours(1);
+  private static final String BLOB_PREFIX = "mnemosyne-blobs/";
+
+  private static final String TEST_LARGE_VALUE_1 = "Test Value 1 ".repeat(100);
+  private static final String TEST_LARGE_VALUE_2 = "Test Value 2 ".repeat(100);
+
+  private S3StandIn standIn;
+  private AmazonS3 s3;
+  private S3Mneme mneme;
+
+  @BeforeEach
+  public void mock_standIn() {
+
+    standIn = new S3StandIn(TEST_BUCKET_NAME);
+    s3 = standIn.s3();
+    mneme = new S3Mneme(s3, TEST_BUCKET_NAME, TEST_GRACE_PERIOD);
+  }
+
+  @Test
+  public void constructor_nonPositiveGracePeriod_shouldThrowThemisTarget() {
+
+    assertThrows(
+        ThemisTargetException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME, Duration.ZERO));
+  }
+
+  @Test
+  public void put_identicalLargeValues_shouldStoreOneBlob() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+    mneme.put("Test Key 2", TEST_LARGE_VALUE_1);
+
+    assertEquals(1, blobCount());
+    assertEquals(standIn.value("Test Key 1"), standIn.value("Test Key 2"));
+    assertTrue(standIn.contains(BLOB_PREFIX + standIn.value("Test Key 1")));
+    assertEquals(TEST_LARGE_VALUE_1, mneme.get("Test Key 1"));
+    assertEquals(TEST_LARGE_VALUE_1, mneme.get("Test Key 2"));
+  }
+
+  @Test
+  public void put_existingBlob_shouldNotUploadItAgain() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+
+    clearInvocations(s3);
+
+    mneme.put("Test Key 2", TEST_LARGE_VALUE_1);
+
+    // Only the pointer is written.
+    verify(s3, times(1)).putObject(any(PutObjectRequest.class));
+    verify(s3, never()).copyObject(any(CopyObjectRequest.class));
+  }
+
+  @Test
+  public void put_smallValue_shouldStoreValueInPlace() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+
+    assertEquals("Test Value 1", standIn.value("Test Key 1"));
+    assertEquals(0, blobCount());
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void put_shouldReturnPreviousLargeValue() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+
+    assertEquals(
+        TEST_LARGE_VALUE_1,
+        mneme.put("Test Key 1", TEST_LARGE_VALUE_2));
+    assertEquals(TEST_LARGE_VALUE_2, mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void keySet_shouldHideBlobs() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+    mneme.put("Test Key 2", "Test Value 2");
+
+    assertEquals(Set.of("Test Key 1", "Test Key 2"), mneme.keySet());
+    assertTrue(mneme.containsValue(TEST_LARGE_VALUE_1));
+  }
+
+  @Test
+  public void replace_largeValue_shouldCompareResolvedValue() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+
+    assertTrue(mneme.replace(
+        "Test Key 1",
+        TEST_LARGE_VALUE_1,
+        TEST_LARGE_VALUE_2));
+    assertFalse(mneme.replace(
+        "Test Key 1",
+        TEST_LARGE_VALUE_1,
+        "Test Value 3"));
+    assertEquals(TEST_LARGE_VALUE_2, mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void compute_concurrentWriters_shouldNotLoseUpdates()
+      throws InterruptedException {
+
+    mneme.put("Test Key 1", countedValue(0));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 25; i++) {
+          mneme.compute(
+              "Test Key 1",
+              (key, value) -> countedValue(count(value) + 1));
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(countedValue(200), mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void putBytes_largeValue_shouldRoundTripThroughBlob() {
+
+    final byte[] bytes = TEST_LARGE_VALUE_1.getBytes(UTF_8);
+
+    mneme.putBytes("Test Key 1", ByteBuffer.wrap(bytes));
+    mneme.putBytes("Test Key 2", ByteBuffer.wrap(bytes));
+
+    assertEquals(1, blobCount());
+    assertEquals(ByteBuffer.wrap(bytes), mneme.getBytes("Test Key 1"));
+
+    final ByteBuffer destination = ByteBuffer.allocate(bytes.length);
+
+    assertEquals(bytes.length, mneme.read("Test Key 2", destination));
+    assertEquals(ByteBuffer.wrap(bytes), destination.flip());
+  }
+
+  @Test
+  public void put_agedBlob_shouldRefreshIt() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+
+    standIn.age(TEST_GRACE_PERIOD);
+    mneme.put("Test Key 2", TEST_LARGE_VALUE_1);
+    mneme.remove("Test Key 1");
+    mneme.remove("Test Key 2");
+
+    verify(s3).copyObject(any(CopyObjectRequest.class));
+
+    // The refreshed blob is unreferenced but within its grace period.
+    assertEquals(0, mneme.collectGarbage());
+    assertEquals(1, blobCount());
+  }
+
+  @Test
+  public void collectGarbage_shouldDeleteOnlyUnreferencedOldBlobs() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+    mneme.put("Test Key 2", TEST_LARGE_VALUE_1);
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_2);
+    mneme.remove("Test Key 2");
+
+    standIn.age(TEST_GRACE_PERIOD.multipliedBy(2));
+
+    assertEquals(1, mneme.collectGarbage());
+    assertEquals(1, blobCount());
+    assertEquals(TEST_LARGE_VALUE_2, mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void collectGarbage_recentBlobs_shouldKeepThem() {
+
+    mneme.put("Test Key 1", TEST_LARGE_VALUE_1);
+    mneme.remove("Test Key 1");
+
+    assertEquals(0, mneme.collectGarbage());
+    assertEquals(1, blobCount());
+  }
+
+  @Test
+  public void collectGarbage_noDeduplication_shouldThrowIllegalState() {
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME).collectGarbage());
+  }
+
+  private static String countedValue(final int count) {
+    return count + " " + TEST_LARGE_VALUE_1;
+  }
+
+  private static int count(final String value) {
+    return Integer.parseInt(value.substring(0, value.indexOf(' ')));
+  }
+
+  private long blobCount() {
+    return standIn.keys()
+        .stream()
+        .filter(key -> key.startsWith(BLOB_PREFIX))
+        .count();
+  }
+
+}
@@ -0,0 +1,213 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * <p>Tests the key manifest of {@link S3Mneme} against an in-memory stand-in
+ * for <i>S3</i>. (See: {@link S3StandIn} for more information.)</p>
+ */
+public class S3MnemeManifestTest {
+
+  private static final String TEST_BUCKET_NAME = "Test Bucket Name";
+  private static final String TEST_MANIFEST_KEY = "Test Manifest";
+
+  private S3StandIn standIn;
+  private AmazonS3 s3;
+  private S3Mneme mneme;
+
+  @BeforeEach
+  public void mock_standIn() {
+
+    standIn = new S3StandIn(TEST_BUCKET_NAME);
+    s3 = standIn.s3();
+    mneme = new S3Mneme(s3, TEST_BUCKET_NAME, TEST_MANIFEST_KEY);
+  }
+
+  @Test
+  public void constructor_blankManifestKey_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME, " "));
+  }
+
+  @Test
+  public void keySet_shouldNotListBucketOnceManifestExists() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.keySet();
+    mneme.put("Test Key 2", "Test Value 2");
+
+    clearInvocations(s3);
+
+    assertEquals(Set.of("Test Key 1", "Test Key 2"), mneme.keySet());
+    assertEquals(2, mneme.size());
+
+    verify(s3, never()).listObjects(eq(TEST_BUCKET_NAME));
+    verify(s3, never()).listObjects(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void keySet_existingObjects_shouldBuildManifestFromListing() {
+
+    s3.putObject(TEST_BUCKET_NAME, "Test Key 1", "Test Value 1");
+
+    assertEquals(Set.of("Test Key 1"), mneme.keySet());
+    assertTrue(standIn.contains(TEST_MANIFEST_KEY));
+
+    clearInvocations(s3);
+
+    assertEquals(Set.of("Test Key 1"), mneme.keySet());
+
+    verify(s3, never()).listObjects(eq(TEST_BUCKET_NAME));
+  }
+
+  @Test
+  public void keySet_shouldReflectEveryWrite() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 1", "Test Value 2");
+    mneme.putIfAbsent("Test Key 2", "Test Value 2");
+    mneme.putBytes(
+        "Test Key 3",
+        ByteBuffer.wrap("Test Value 3".getBytes(UTF_8)));
+    mneme.put("Test Key 4", "Test Value 4");
+    mneme.remove("Test Key 4");
+    mneme.compute("Test Key 2", (key, value) -> null);
+
+    assertEquals(Set.of("Test Key 1", "Test Key 3"), mneme.keySet());
+
+    // A new instance reads the same manifest.
+    assertEquals(
+        Set.of("Test Key 1", "Test Key 3"),
+        new S3Mneme(s3, TEST_BUCKET_NAME, TEST_MANIFEST_KEY).keySet());
+  }
+
+  @Test
+  public void put_presentKeyMissingFromManifest_shouldRecordIt() {
+
+    mneme.keySet();
+
+    // Present in the bucket but not the manifest, as a key removed by
+    // another writer between the read and the write of a put would be.
+    s3.putObject(TEST_BUCKET_NAME, "Test Key 1", "Test Value 1");
+
+    assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals(Set.of("Test Key 1"), mneme.keySet());
+  }
+
+  @Test
+  public void keySet_shouldHideManifestAndShards() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.increment("Test Key 2", 5);
+
+    // The counter is reported by its own key, and its shards are not.
+    assertEquals(Set.of("Test Key 1", "Test Key 2"), mneme.keySet());
+    assertEquals(5, mneme.getCounter("Test Key 2"));
+    assertTrue(standIn.contains(TEST_MANIFEST_KEY));
+  }
+
+  @Test
+  public void put_manyKeys_shouldCompactManifest() {
+
+    for (int i = 0; i < S3Manifest.COMPACTION_INTERVAL * 2 + 1; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    assertEquals(S3Manifest.COMPACTION_INTERVAL * 2 + 1, mneme.size());
+    assertTrue(standIn.keys()
+        .stream()
+        .filter(key -> key.startsWith(TEST_MANIFEST_KEY + '/'))
+        .count() < S3Manifest.COMPACTION_INTERVAL);
+  }
+
+  @Test
+  public void put_concurrentWriters_shouldNotLoseKeys()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      final int offset = thread * 50;
+      executor.execute(() -> {
+        for (int i = 0; i < 50; i++) {
+          mneme.put("Test Key " + (offset + i), "Test Value");
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(400, mneme.size());
+    assertEquals(
+        400,
+        new S3Mneme(s3, TEST_BUCKET_NAME, TEST_MANIFEST_KEY).size());
+  }
+
+  @Test
+  public void reconcileManifest_shouldPickUpExternalWrites() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.keySet();
+
+    s3.putObject(TEST_BUCKET_NAME, "Test Key 3", "Test Value 3");
+    s3.deleteObject(TEST_BUCKET_NAME, "Test Key 2");
+
+    assertEquals(Set.of("Test Key 1", "Test Key 2"), mneme.keySet());
+
+    mneme.reconcileManifest();
+
+    assertEquals(Set.of("Test Key 1", "Test Key 3"), mneme.keySet());
+    assertTrue(standIn.keys()
+        .stream()
+        .noneMatch(key -> key.startsWith(TEST_MANIFEST_KEY + '/')));
+  }
+
+  @Test
+  public void reconcileManifest_noManifest_shouldThrowIllegalState() {
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME).reconcileManifest());
+  }
+
+  @Test
+  public void clear_shouldRemoveEveryKey() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.increment("Test Key 2", 5);
+
+    mneme.clear();
+
+    assertTrue(mneme.isEmpty());
+    assertFalse(standIn.contains("Test Key 1"));
+    assertTrue(standIn.keys()
+        .stream()
+        .allMatch(key -> key.equals(TEST_MANIFEST_KEY)
+            || key.startsWith(TEST_MANIFEST_KEY + '/')));
+  }
+
+}
@@ -1,7 +1,11 @@
 package uk.co.noop.mnemosyne.mneme;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,18 +18,28 @@ import uk.co.noop.themis.exception.ThemisEmptyTargetException;
 import uk.co.noop.themis.exception.ThemisInvalidTargetException;
 import uk.co.noop.themis.exception.ThemisNullTargetException;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -69,9 +83,52 @@ public class S3MnemeTest {
           return null;
         });
 
+    lenient().when(s3.putObject(
+            eq(TEST_BUCKET_NAME),
+            anyString(),
+            any(InputStream.class),
+            any(ObjectMetadata.class)))
+        .thenAnswer(i -> {
+          map.put(
+              i.getArgument(1, String.class),
+              new String(
+                  i.getArgument(2, InputStream.class).readAllBytes(),
+                  ISO_8859_1));
+          return null;
+        });
+
+    lenient().when(s3.getObject(eq(TEST_BUCKET_NAME), anyString()))
+        .thenAnswer(i -> {
+
+          final String value = map.get(i.getArgument(1, String.class));
+
+          if (value == null) {
+            final AmazonS3Exception exception =
+                new AmazonS3Exception("Not Found");
+            exception.setStatusCode(404);
+            throw exception;
+          }
+
+          final S3Object object = new S3Object();
+          final byte[] content = value.getBytes(ISO_8859_1);
+
+          object.getObjectMetadata().setContentLength(content.length);
+          object.setObjectContent(new ByteArrayInputStream(content));
+
+          return object;
+        });
+
     lenient().doAnswer(i -> map.remove(i.getArgument(1, String.class)))
         .when(s3).deleteObject(eq(TEST_BUCKET_NAME), anyString());
 
+    lenient().when(s3.deleteObjects(any(DeleteObjectsRequest.class)))
+        .thenAnswer(i -> {
+          i.getArgument(0, DeleteObjectsRequest.class)
+              .getKeys()
+              .forEach(keyVersion -> map.remove(keyVersion.getKey()));
+          return null;
+        });
+
     lenient().when(s3.listObjects(eq(TEST_BUCKET_NAME)))
         .thenReturn(objectListing);
 
@@ -94,6 +151,31 @@ public class S3MnemeTest {
         .thenReturn(objectSummaries);
   }
 
+  /**
+   * <p>Lists the first two keys of the map on the first page, and the rest on
+   * the <b>nextListing</b>.</p>
+   */
+  public void mock_truncatedListing(final ObjectListing nextListing) {
+
+    final List<S3ObjectSummary> objectSummaries =
+        map.keySet()
+            .stream()
+            .sorted()
+            .map(key -> {
+              final S3ObjectSummary objectSummary = new S3ObjectSummary();
+              objectSummary.setKey(key);
+              return objectSummary;
+            })
+            .collect(toList());
+
+    when(objectListing.getObjectSummaries())
+        .thenReturn(objectSummaries.subList(0, 2));
+    when(objectListing.isTruncated()).thenReturn(true);
+    when(s3.listNextBatchOfObjects(eq(objectListing))).thenReturn(nextListing);
+    when(nextListing.getObjectSummaries())
+        .thenReturn(objectSummaries.subList(2, objectSummaries.size()));
+  }
+
   @AfterEach
   public void verify_NoMoreInteractions() {
     verifyNoMoreInteractions(s3, objectListing);
@@ -159,6 +241,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -174,6 +257,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -184,6 +268,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -199,6 +284,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -335,6 +421,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -351,8 +438,9 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
 
-    verify(s3, times(map.size()))
+    verify(s3, atMost(map.size()))
         .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
@@ -396,8 +484,9 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
 
-    verify(s3, times(map.size()))
+    verify(s3, atMost(map.size()))
         .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
@@ -447,6 +536,21 @@ public class S3MnemeTest {
     verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
   }
 
+  @Test
+  public void get_string_missingKey_shouldReturnNull() {
+
+    final AmazonS3Exception exception = new AmazonS3Exception("Not Found");
+    exception.setStatusCode(404);
+
+    when(s3.getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1")))
+        .thenThrow(exception);
+
+    assertNull(new S3Mneme(s3, TEST_BUCKET_NAME).get("Test Key 1"));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
   @Test
   public void get_object_nullKey_shouldThrowThemisNullTarget() {
 
@@ -576,7 +680,8 @@ public class S3MnemeTest {
 
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).doesObjectExist(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
-    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+    verify(s3, times(2))
+        .getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
 
     verify(s3)
         .putObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"), eq("Test Value 1B"));
@@ -722,8 +827,6 @@ public class S3MnemeTest {
     map.put("Test Key 1", "Test Value 1");
     map.put("Test Key 2", "Test Value 2");
 
-    final int mapSize = map.size();
-
     mock_objectSummaries_happyPath();
 
     new S3Mneme(s3, TEST_BUCKET_NAME).clear();
@@ -733,14 +836,29 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
 
-    verify(s3, times(mapSize))
-        .doesObjectExist(eq(TEST_BUCKET_NAME), anyString());
+    verify(s3).deleteObjects(any(DeleteObjectsRequest.class));
+  }
 
-    verify(s3, times(mapSize))
-        .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
+  @Test
+  public void clear_manyKeys_shouldDeleteInBatches() {
 
-    verify(s3, times(mapSize)).deleteObject(eq(TEST_BUCKET_NAME), anyString());
+    for (int i = 0; i < 1001; i++) {
+      map.put("Test Key " + i, "Test Value " + i);
+    }
+
+    mock_objectSummaries_happyPath();
+
+    new S3Mneme(s3, TEST_BUCKET_NAME).clear();
+
+    assertTrue(map.isEmpty());
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3, times(2)).deleteObjects(any(DeleteObjectsRequest.class));
   }
 
   @Test
@@ -757,6 +875,7 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
   }
 
   @Test
@@ -773,11 +892,59 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+
+    verify(s3, times(map.size()))
+        .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void values_duplicateValues_shouldKeepDuplicates() {
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 1");
+
+    mock_objectSummaries_happyPath();
+
+    assertEquals(
+        List.of("Test Value 1", "Test Value 1"),
+        new S3Mneme(s3, TEST_BUCKET_NAME).values().stream().collect(toList()));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
 
     verify(s3, times(map.size()))
         .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
+  @Test
+  public void values_contains_shouldStopAtFirstMatch() {
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 1");
+
+    mock_objectSummaries_happyPath();
+
+    assertTrue(
+        new S3Mneme(s3, TEST_BUCKET_NAME).values().contains("Test Value 1"));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void entrySet_shouldNotReadBeforeIterating() {
+
+    new S3Mneme(s3, TEST_BUCKET_NAME).entrySet();
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+  }
+
   @Test
   public void entrySet_shouldReturnAllEntries() {
 
@@ -793,9 +960,88 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3, never()).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
+  @Test
+  public void entrySet_parallelStream_shouldReadEveryPage() {
+
+    final ObjectListing nextListing = mock(ObjectListing.class);
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 2");
+    map.put("Test Key 3", "Test Value 3");
+
+    mock_truncatedListing(nextListing);
+
+    assertEquals(
+        map,
+        new S3Mneme(s3, TEST_BUCKET_NAME)
+            .entrySet()
+            .parallelStream()
+            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue)));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3).listNextBatchOfObjects(eq(objectListing));
+    verify(s3, times(map.size()))
+        .getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void keySpliterator_truncatedListing_shouldSplitByPage() {
+
+    final ObjectListing nextListing = mock(ObjectListing.class);
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 2");
+    map.put("Test Key 3", "Test Value 3");
+
+    mock_truncatedListing(nextListing);
+
+    final Spliterator<String> keys =
+        new S3Mneme(s3, TEST_BUCKET_NAME).keySpliterator();
+
+    assertEquals(1002, keys.estimateSize());
+
+    final Spliterator<String> firstPage = keys.trySplit();
+
+    assertEquals(2, firstPage.estimateSize());
+    assertEquals(1000, keys.estimateSize());
+    assertTrue(keys.tryAdvance(key -> assertEquals("Test Key 3", key)));
+    assertFalse(keys.tryAdvance(key -> { }));
+    assertEquals(0, keys.estimateSize());
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3).listNextBatchOfObjects(eq(objectListing));
+  }
+
+  @Test
+  public void keySet_truncatedListing_shouldReturnEveryPage() {
+
+    final ObjectListing nextListing = mock(ObjectListing.class);
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 2");
+    map.put("Test Key 3", "Test Value 3");
+
+    mock_truncatedListing(nextListing);
+
+    assertEquals(map.keySet(), new S3Mneme(s3, TEST_BUCKET_NAME).keySet());
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3).listNextBatchOfObjects(eq(objectListing));
+  }
+
   @Test
   public void entry_constructor_nullKey_shouldThrowThemisNullTarget() {
 
@@ -804,11 +1050,15 @@ public class S3MnemeTest {
 
     assertThrows(
         ThemisNullTargetException.class,
-        () -> new S3Mneme(s3, TEST_BUCKET_NAME).entrySet());
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME)
+            .entrySet()
+            .iterator()
+            .next());
 
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3, never()).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
@@ -824,11 +1074,15 @@ public class S3MnemeTest {
 
     assertThrows(
         ThemisEmptyTargetException.class,
-        () -> new S3Mneme(s3, TEST_BUCKET_NAME).entrySet());
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME)
+            .entrySet()
+            .iterator()
+            .next());
 
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3, never()).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
@@ -844,11 +1098,15 @@ public class S3MnemeTest {
 
     assertThrows(
         ThemisBlankTargetStringException.class,
-        () -> new S3Mneme(s3, TEST_BUCKET_NAME).entrySet());
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME)
+            .entrySet()
+            .iterator()
+            .next());
 
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3, never()).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
   }
 
@@ -870,11 +1128,12 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
-    verify(s3, never()).getObjectAsString(eq(TEST_BUCKET_NAME), anyString());
+    verify(objectListing).isTruncated();
+    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
   }
 
   @Test
-  public void entry_getValue_shouldLazyLoadValue() {
+  public void entry_getValue_shouldReturnValueReadOnIteration() {
 
     map.put("Test Key 1", "Test Value 1");
 
@@ -891,9 +1150,36 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
   }
 
+  @Test
+  public void entrySet_removedKey_shouldSkipIt() {
+
+    map.put("Test Key 1", "Test Value 1");
+    map.put("Test Key 2", "Test Value 2");
+
+    mock_objectSummaries_happyPath();
+
+    // Removed after being listed.
+    map.remove("Test Key 2");
+
+    assertEquals(
+        Map.of("Test Key 1", "Test Value 1"),
+        new S3Mneme(s3, TEST_BUCKET_NAME)
+            .entrySet()
+            .stream()
+            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue)));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).listObjects(eq(TEST_BUCKET_NAME));
+    verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
+    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 2"));
+  }
+
   @Test
   public void entry_setValue_happyPath_shouldReturnPreviousValue() {
 
@@ -912,11 +1198,137 @@ public class S3MnemeTest {
     verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
     verify(s3).listObjects(eq(TEST_BUCKET_NAME));
     verify(objectListing).getObjectSummaries();
+    verify(objectListing).isTruncated();
     verify(s3).doesObjectExist(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
-    verify(s3).getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+    verify(s3, times(2))
+        .getObjectAsString(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
 
     verify(s3)
         .putObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"), eq("Test Value 1B"));
   }
 
+  @Test
+  public void putBytes_emptyValue_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME)
+            .putBytes("Test Key 1", ByteBuffer.allocate(0)));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+  }
+
+  @Test
+  public void putBytes_happyPath_shouldStoreRawBytes() {
+
+    final ByteBuffer value =
+        ByteBuffer.wrap("Test Value 1".getBytes(UTF_8));
+
+    new S3Mneme(s3, TEST_BUCKET_NAME).putBytes("Test Key 1", value);
+
+    assertFalse(value.hasRemaining());
+    assertEquals("Test Value 1", map.get("Test Key 1"));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).putObject(
+        eq(TEST_BUCKET_NAME),
+        eq("Test Key 1"),
+        any(InputStream.class),
+        any(ObjectMetadata.class));
+  }
+
+  @Test
+  public void putBytes_directValue_shouldStoreRawBytes() {
+
+    final byte[] bytes = {0, 1, 2, (byte) 0xFF};
+    final ByteBuffer value = ByteBuffer.allocateDirect(bytes.length);
+
+    value.put(bytes).flip();
+
+    new S3Mneme(s3, TEST_BUCKET_NAME).putBytes("Test Key 1", value);
+
+    assertFalse(value.hasRemaining());
+    assertEquals(new String(bytes, ISO_8859_1), map.get("Test Key 1"));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).putObject(
+        eq(TEST_BUCKET_NAME),
+        eq("Test Key 1"),
+        any(InputStream.class),
+        any(ObjectMetadata.class));
+  }
+
+  @Test
+  public void getBytes_happyPath_shouldReturnReadOnlyBytes() {
+
+    map.put("Test Key 1", "Test Value 1");
+
+    final ByteBuffer value =
+        new S3Mneme(s3, TEST_BUCKET_NAME).getBytes("Test Key 1");
+
+    assertTrue(value.isReadOnly());
+    assertEquals(ByteBuffer.wrap("Test Value 1".getBytes(UTF_8)), value);
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
+  @Test
+  public void getBytes_missingKey_shouldReturnNull() {
+
+    assertNull(new S3Mneme(s3, TEST_BUCKET_NAME).getBytes("Test Key 1"));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
+  @Test
+  public void read_directDestination_shouldFillDestination() {
+
+    map.put("Test Key 1", "Test Value 1");
+
+    final ByteBuffer destination = ByteBuffer.allocateDirect(64);
+
+    assertEquals(
+        12,
+        new S3Mneme(s3, TEST_BUCKET_NAME).read("Test Key 1", destination));
+
+    destination.flip();
+
+    assertEquals(ByteBuffer.wrap("Test Value 1".getBytes(UTF_8)), destination);
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
+  @Test
+  public void read_smallDestination_shouldThrowBufferOverflow() {
+
+    map.put("Test Key 1", "Test Value 1");
+
+    final ByteBuffer destination = ByteBuffer.allocate(11);
+
+    assertThrows(
+        BufferOverflowException.class,
+        () -> new S3Mneme(s3, TEST_BUCKET_NAME)
+            .read("Test Key 1", destination));
+
+    assertEquals(0, destination.position());
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
+  @Test
+  public void read_missingKey_shouldReturnMinusOne() {
+
+    assertEquals(
+        -1,
+        new S3Mneme(s3, TEST_BUCKET_NAME)
+            .read("Test Key 1", ByteBuffer.allocate(64)));
+
+    verify(s3).doesBucketExistV2(eq(TEST_BUCKET_NAME));
+    verify(s3).getObject(eq(TEST_BUCKET_NAME), eq("Test Key 1"));
+  }
+
 }
@@ -0,0 +1,345 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * <p>Tests {@link S3PackMneme} against an in-memory stand-in for <i>S3</i>.
+ * (See: {@link S3StandIn} for more information.)</p>
+ */
+public class S3PackMnemeTest {
+
+  private static final String TEST_BUCKET_NAME = "Test Bucket Name";
+  private static final String TEST_PREFIX = "Test Prefix/";
+  private static final int TEST_PACK_SIZE = 1024;
+
+  private S3StandIn standIn;
+  private AmazonS3 s3;
+  private S3PackMneme mneme;
+
+  @BeforeEach
+  public void mock_standIn() {
+
+    standIn = new S3StandIn(TEST_BUCKET_NAME);
+    s3 = standIn.s3();
+    mneme = new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+  }
+
+  @AfterEach
+  public void close() {
+    mneme.close();
+  }
+
+  @Test
+  public void constructor_blankPrefix_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> new S3PackMneme(s3, TEST_BUCKET_NAME, " "));
+  }
+
+  @Test
+  public void put_shouldStoreAndReturnPreviousValue() {
+
+    assertNull(mneme.put("Test Key 1", "Test Value 1"));
+    assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+    assertEquals(1, mneme.size());
+  }
+
+  @Test
+  public void put_shouldGatherEntriesUntilFlushed() {
+
+    for (int i = 0; i < 10; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    verify(s3, never()).putObject(
+        eq(TEST_BUCKET_NAME),
+        anyString(),
+        any(InputStream.class),
+        any(ObjectMetadata.class));
+
+    mneme.flush();
+
+    // One pack and its index.
+    verify(s3, times(2)).putObject(
+        eq(TEST_BUCKET_NAME),
+        anyString(),
+        any(InputStream.class),
+        any(ObjectMetadata.class));
+    assertTrue(standIn.contains(TEST_PREFIX + "packs/1"));
+    assertTrue(standIn.contains(TEST_PREFIX + "indexes/1"));
+  }
+
+  @Test
+  public void put_packSizeReached_shouldWritePack() {
+
+    for (int i = 0; i < 100; i++) {
+      mneme.put("Test Key " + i, "Test Value " + i);
+    }
+
+    assertTrue(standIn.contains(TEST_PREFIX + "packs/1"));
+  }
+
+  @Test
+  public void get_flushed_shouldReadRangeOfPack() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.flush();
+
+    clearInvocations(s3);
+
+    assertEquals("Test Value 2", mneme.get("Test Key 2"));
+
+    verify(s3).getObject(any(GetObjectRequest.class));
+    verify(s3, never()).getObject(eq(TEST_BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void remove_flushed_shouldHideOlderValue() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.flush();
+
+    assertEquals("Test Value 1", mneme.remove("Test Key 1"));
+    assertNull(mneme.get("Test Key 1"));
+    assertFalse(mneme.containsKey("Test Key 1"));
+
+    mneme.flush();
+
+    assertNull(mneme.get("Test Key 1"));
+    assertTrue(mneme.isEmpty());
+  }
+
+  @Test
+  public void putAll_shouldNotReadPreviousValues() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.flush();
+
+    clearInvocations(s3);
+
+    mneme.putAll(Map.of(
+        "Test Key 1", "Test Value 1B",
+        "Test Key 2", "Test Value 2"));
+
+    verify(s3, never()).getObject(any(GetObjectRequest.class));
+    assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+    assertEquals(2, mneme.size());
+  }
+
+  @Test
+  public void clear_shouldNotReadPreviousValues() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.flush();
+
+    clearInvocations(s3);
+
+    mneme.clear();
+
+    verify(s3, never()).getObject(any(GetObjectRequest.class));
+    assertTrue(mneme.isEmpty());
+  }
+
+  @Test
+  public void size_shouldCountKeysAsTheyAreWritten() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.flush();
+    mneme.put("Test Key 2", "Test Value 2B");
+    mneme.remove("Test Key 1");
+    mneme.remove("Test Key 3");
+    mneme.putAll(Map.of(
+        "Test Key 3", "Test Value 3",
+        "Test Key 4", "Test Value 4"));
+
+    assertEquals(3, mneme.size());
+
+    mneme.flush();
+    mneme.compact();
+
+    assertEquals(3, mneme.size());
+
+    final S3PackMneme reopened =
+        new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+
+    try (reopened) {
+      assertEquals(3, reopened.size());
+    }
+  }
+
+  @Test
+  public void entrySet_shouldReadEachPackOnce() {
+
+    final Map<String, String> expected = new HashMap<>();
+
+    for (int i = 0; i < 20; i++) {
+      expected.put("Test Key " + i, "Test Value " + i);
+    }
+
+    mneme.putAll(expected);
+    mneme.flush();
+
+    clearInvocations(s3);
+
+    assertEquals(expected, new HashMap<>(mneme));
+
+    verify(s3).getObject(any(GetObjectRequest.class));
+  }
+
+  @Test
+  public void constructor_existingPacks_shouldLoadIndex() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.flush();
+    mneme.remove("Test Key 1");
+    mneme.put("Test Key 3", "Test Value 3");
+    mneme.flush();
+
+    final S3PackMneme reopened =
+        new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+
+    try (reopened) {
+      assertEquals(Set.of("Test Key 2", "Test Key 3"), reopened.keySet());
+      assertEquals("Test Value 3", reopened.get("Test Key 3"));
+    }
+  }
+
+  @Test
+  public void compact_shouldReclaimDeadPacks() {
+
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 10; i++) {
+        mneme.put("Test Key " + i, "Test Value " + round);
+      }
+      mneme.flush();
+    }
+
+    mneme.compact();
+
+    assertEquals(
+        Set.of(
+            TEST_PREFIX + "checkpoint",
+            TEST_PREFIX + "packs/6",
+            TEST_PREFIX + "indexes/6"),
+        standIn.keys());
+    assertEquals("Test Value 4", mneme.get("Test Key 3"));
+
+    final S3PackMneme reopened =
+        new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+
+    try (reopened) {
+      assertEquals(10, reopened.size());
+      assertEquals("Test Value 4", reopened.get("Test Key 3"));
+    }
+  }
+
+  @Test
+  public void compact_shouldKeepRemovalsAfterReopening() {
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.put("Test Key 2", "Test Value 2");
+    mneme.flush();
+    mneme.remove("Test Key 1");
+    mneme.flush();
+    mneme.compact();
+    mneme.close();
+
+    final S3PackMneme reopened =
+        new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+
+    try (reopened) {
+      assertEquals(Set.of("Test Key 2"), reopened.keySet());
+    }
+  }
+
+  @Test
+  public void put_concurrentWriters_shouldNotLoseEntries()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      final int offset = thread * 100;
+      executor.execute(() -> {
+        for (int i = 0; i < 100; i++) {
+          mneme.put("Test Key " + (offset + i), "Test Value " + (offset + i));
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    mneme.close();
+
+    final S3PackMneme reopened =
+        new S3PackMneme(s3, TEST_BUCKET_NAME, TEST_PREFIX, TEST_PACK_SIZE);
+
+    try (reopened) {
+      assertEquals(800, reopened.size());
+      assertEquals("Test Value 799", reopened.get("Test Key 799"));
+    }
+  }
+
+  @Test
+  public void close_shouldRejectFurtherOperations() {
+
+    mneme.close();
+
+    assertThrows(IllegalStateException.class, () -> mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void increment_concurrentWriters_shouldNotLoseIncrements()
+      throws InterruptedException {
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 100; i++) {
+          mneme.increment("Test Key 1", 1);
+        }
+      });
+    }
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    assertEquals(800, mneme.getCounter("Test Key 1"));
+  }
+
+}
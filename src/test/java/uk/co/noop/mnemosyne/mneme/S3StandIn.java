@@ -0,0 +1,390 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>An in-memory stand-in for an <i>S3</i> bucket, behind a mock of {@link
+ * AmazonS3}, that enforces <code>If-Match</code> and
+ * <code>If-None-Match</code> preconditions, derives the <i>ETag</i> of each
+ * object from its content, as <i>S3</i> does, keeps the user metadata and last modified time of each
+ * object, and serves ranged reads.</p>
+ */
+final class S3StandIn {
+
+  private final Map<String, StoredObject> objects = new HashMap<>();
+  private final AmazonS3 s3 = mock(AmazonS3.class);
+  private boolean failingDeletes;
+
+  S3StandIn(final String bucketName) {
+
+    when(s3.doesBucketExistV2(eq(bucketName))).thenReturn(true);
+
+    when(s3.getObject(eq(bucketName), anyString()))
+        .thenAnswer(i -> getObject(i.getArgument(1, String.class)));
+
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(i -> getObject(i.getArgument(0, GetObjectRequest.class)));
+
+    when(s3.getObjectMetadata(eq(bucketName), anyString()))
+        .thenAnswer(i -> getObjectMetadata(i.getArgument(1, String.class)));
+
+    when(s3.putObject(any(PutObjectRequest.class)))
+        .thenAnswer(i -> putObject(i.getArgument(0, PutObjectRequest.class)));
+
+    when(s3.putObject(eq(bucketName), anyString(), anyString()))
+        .thenAnswer(i -> putObject(new PutObjectRequest(
+            bucketName,
+            i.getArgument(1, String.class),
+            new ByteArrayInputStream(
+                i.getArgument(2, String.class).getBytes(UTF_8)),
+            new ObjectMetadata())));
+
+    when(s3.putObject(
+        eq(bucketName),
+        anyString(),
+        any(InputStream.class),
+        any(ObjectMetadata.class)))
+        .thenAnswer(i -> putObject(new PutObjectRequest(
+            bucketName,
+            i.getArgument(1, String.class),
+            i.getArgument(2, InputStream.class),
+            i.getArgument(3, ObjectMetadata.class))));
+
+    doAnswer(i -> deleteObject(i.getArgument(0, DeleteObjectRequest.class)))
+        .when(s3).deleteObject(any(DeleteObjectRequest.class));
+
+    doAnswer(i -> deleteObject(new DeleteObjectRequest(
+        bucketName,
+        i.getArgument(1, String.class))))
+        .when(s3).deleteObject(eq(bucketName), anyString());
+
+    when(s3.doesObjectExist(eq(bucketName), anyString()))
+        .thenAnswer(i -> contains(i.getArgument(1, String.class)));
+
+    when(s3.getObjectAsString(eq(bucketName), anyString()))
+        .thenAnswer(i -> getObjectAsString(i.getArgument(1, String.class)));
+
+    when(s3.listObjects(eq(bucketName)))
+        .thenAnswer(i -> listObjects(""));
+
+    when(s3.listObjects(eq(bucketName), anyString()))
+        .thenAnswer(i -> listObjects(i.getArgument(1, String.class)));
+
+    when(s3.copyObject(any(CopyObjectRequest.class)))
+        .thenAnswer(i -> copyObject(i.getArgument(0, CopyObjectRequest.class)));
+
+    when(s3.deleteObjects(any(DeleteObjectsRequest.class)))
+        .thenAnswer(i -> deleteObjects(
+            i.getArgument(0, DeleteObjectsRequest.class)));
+  }
+
+  /**
+   * <p>Returns the mock of {@link AmazonS3} backed by this stand-in.</p>
+   */
+  AmazonS3 s3() {
+    return s3;
+  }
+
+  /**
+   * <p>Returns the content of the object of <b>key</b> as a string, or
+   * <code>null</code> if there is none.</p>
+   */
+  synchronized String value(final String key) {
+
+    final StoredObject stored = objects.get(key);
+
+    return stored == null ? null : new String(stored.content(), UTF_8);
+  }
+
+  synchronized boolean contains(final String key) {
+    return objects.containsKey(key);
+  }
+
+  synchronized Set<String> keys() {
+    return new HashSet<>(objects.keySet());
+  }
+
+  synchronized boolean isEmpty() {
+    return objects.isEmpty();
+  }
+
+  /**
+   * <p>Makes every single-object delete fail while <b>failing</b>, as if the
+   * writer had stopped before making it.</p>
+   */
+  synchronized void failDeletes(final boolean failing) {
+    failingDeletes = failing;
+  }
+
+  /**
+   * <p>Moves the last modified time of every object back by <b>age</b>, as
+   * if they had been written that much earlier.</p>
+   */
+  synchronized void age(final Duration age) {
+    objects.replaceAll((key, stored) -> new StoredObject(
+        stored.content(),
+        stored.userMetadata(),
+        stored.eTag(),
+        stored.lastModified().minus(age)));
+  }
+
+  private synchronized S3Object getObject(final String key) {
+
+    final StoredObject stored = objects.get(key);
+
+    if (stored == null) {
+      throw exception(404);
+    }
+
+    final S3Object object = new S3Object();
+
+    object.setObjectMetadata(metadata(stored));
+    object.setObjectContent(new ByteArrayInputStream(stored.content()));
+
+    return object;
+  }
+
+  private synchronized S3Object getObject(final GetObjectRequest request) {
+
+    final StoredObject stored = objects.get(request.getKey());
+
+    if (stored == null) {
+      throw exception(404);
+    }
+
+    final long[] range = request.getRange();
+    final byte[] content = range == null
+        ? stored.content()
+        : Arrays.copyOfRange(
+            stored.content(),
+            (int) range[0],
+            (int) Math.min(range[1] + 1, stored.content().length));
+    final S3Object object = new S3Object();
+
+    object.setObjectMetadata(metadata(stored));
+    object.getObjectMetadata().setContentLength(content.length);
+    object.setObjectContent(new ByteArrayInputStream(content));
+
+    return object;
+  }
+
+  private synchronized ObjectMetadata getObjectMetadata(final String key) {
+
+    final StoredObject stored = objects.get(key);
+
+    if (stored == null) {
+      throw exception(404);
+    }
+
+    return metadata(stored);
+  }
+
+  private synchronized PutObjectResult putObject(
+      final PutObjectRequest request) {
+
+    checkPreconditions(request.getKey(), request.getCustomRequestHeaders());
+
+    final Map<String, String> userMetadata = request.getMetadata() == null
+        ? Map.of()
+        : Map.copyOf(request.getMetadata().getUserMetadata());
+
+    try {
+
+      final byte[] content = request.getInputStream().readAllBytes();
+
+      objects.put(request.getKey(), new StoredObject(
+          content,
+          userMetadata,
+          eTag(content),
+          Instant.now()));
+
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return new PutObjectResult();
+  }
+
+  private synchronized CopyObjectResult copyObject(
+      final CopyObjectRequest request) {
+
+    final StoredObject source = objects.get(request.getSourceKey());
+
+    if (source == null) {
+      throw exception(404);
+    }
+
+    final ObjectMetadata metadata = request.getNewObjectMetadata();
+
+    objects.put(request.getDestinationKey(), new StoredObject(
+        source.content(),
+        metadata == null
+            ? source.userMetadata()
+            : Map.copyOf(metadata.getUserMetadata()),
+        source.eTag(),
+        Instant.now()));
+
+    return new CopyObjectResult();
+  }
+
+  private synchronized Void deleteObject(final DeleteObjectRequest request) {
+
+    if (failingDeletes) {
+      throw exception(500);
+    }
+
+    checkPreconditions(request.getKey(), request.getCustomRequestHeaders());
+
+    objects.remove(request.getKey());
+
+    return null;
+  }
+
+  private synchronized String getObjectAsString(final String key) {
+
+    final StoredObject stored = objects.get(key);
+
+    if (stored == null) {
+      throw exception(404);
+    }
+
+    return new String(stored.content(), UTF_8);
+  }
+
+  private synchronized ObjectListing listObjects(final String prefix) {
+
+    final ObjectListing listing = new ObjectListing();
+
+    objects.keySet()
+        .stream()
+        .filter(key -> key.startsWith(prefix))
+        .forEach(key -> {
+          final S3ObjectSummary summary = new S3ObjectSummary();
+          summary.setKey(key);
+          summary.setSize(objects.get(key).content().length);
+          summary.setLastModified(
+              Date.from(objects.get(key).lastModified()));
+          listing.getObjectSummaries().add(summary);
+        });
+
+    return listing;
+  }
+
+  private synchronized DeleteObjectsResult deleteObjects(
+      final DeleteObjectsRequest request) {
+
+    request.getKeys()
+        .forEach(keyVersion -> objects.remove(keyVersion.getKey()));
+
+    return null;
+  }
+
+  private void checkPreconditions(
+      final String key,
+      final Map<String, String> headers) {
+
+    final StoredObject stored = objects.get(key);
+
+    if (headers == null) {
+      return;
+    }
+
+    if ("*".equals(headers.get("If-None-Match")) && stored != null) {
+      throw exception(412);
+    }
+
+    final String ifMatch = headers.get("If-Match");
+
+    if (ifMatch != null) {
+
+      if (stored == null) {
+        throw exception(404);
+      }
+
+      if (!ifMatch.equals('"' + stored.eTag() + '"')) {
+        throw exception(412);
+      }
+    }
+  }
+
+  private static ObjectMetadata metadata(final StoredObject stored) {
+
+    final ObjectMetadata metadata = new ObjectMetadata();
+
+    metadata.setContentLength(stored.content().length);
+    metadata.setHeader("ETag", stored.eTag());
+    metadata.setUserMetadata(new HashMap<>(stored.userMetadata()));
+    metadata.setLastModified(Date.from(stored.lastModified()));
+
+    return metadata;
+  }
+
+  /**
+   * <p>Returns the <i>ETag</i> <i>S3</i> gives an object uploaded in a single
+   * part: the <i>MD5</i> digest of its content, so objects with the same
+   * content have the same <i>ETag</i>.</p>
+   */
+  private static String eTag(final byte[] content) {
+
+    try {
+      return HexFormat.of().formatHex(
+          MessageDigest.getInstance("MD5").digest(content));
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static AmazonS3Exception exception(final int statusCode) {
+
+    final AmazonS3Exception exception =
+        new AmazonS3Exception("Status " + statusCode);
+
+    exception.setStatusCode(statusCode);
+
+    return exception;
+  }
+
+  private record StoredObject(
+      byte[] content,
+      Map<String, String> userMetadata,
+      String eTag,
+      Instant lastModified) { }
+
+}
@@ -0,0 +1,297 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TieredMnemeTest {
+
+  @Test
+  public void constructor_nullCold_shouldThrowThemisNullTarget() {
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new TieredMneme(null, 1024));
+  }
+
+  @Test
+  public void constructor_zeroWeight_shouldThrowThemisInvalidTarget() {
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new TieredMneme(new ColdMneme(), 0));
+  }
+
+  @Test
+  public void put_writeThrough_shouldWriteColdTierAndServeLocally() {
+
+    final ColdMneme cold = new ColdMneme();
+    final TieredMneme mneme = new TieredMneme(cold, 1024 * 1024);
+
+    assertNull(mneme.put("Test Key 1", "Test Value 1"));
+    assertEquals("Test Value 1", cold.get("Test Key 1"));
+
+    cold.reads.set(0);
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+    assertEquals("Test Value 1B", cold.get("Test Key 1"));
+    assertEquals(1, mneme.getStatistics().localHitCount());
+
+    assertEquals("Test Value 1B", mneme.remove("Test Key 1"));
+    assertFalse(cold.containsKey("Test Key 1"));
+    assertNull(mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void get_coldEntry_shouldPromoteToLocalTier() {
+
+    final ColdMneme cold = new ColdMneme();
+
+    cold.put("Test Key 1", "Test Value 1");
+
+    final TieredMneme mneme = new TieredMneme(cold, 1024 * 1024);
+
+    cold.reads.set(0);
+
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertTrue(mneme.containsKey("Test Key 1"));
+    assertNull(mneme.get("Test Key 2"));
+    assertEquals(2, cold.reads.get());
+
+    final TieredMneme.Statistics statistics = mneme.getStatistics();
+
+    assertEquals(2, statistics.localHitCount());
+    assertEquals(1, statistics.coldHitCount());
+    assertEquals(1, statistics.missCount());
+  }
+
+  @Test
+  public void get_localTierFull_shouldKeepFrequentlyReadEntries() {
+
+    final ColdMneme cold = new ColdMneme();
+
+    for (int i = 0; i < 1_000; i++) {
+      cold.put("Test Key " + i, "Test Value " + i);
+    }
+
+    final TieredMneme mneme = new TieredMneme(cold, 4 * 1024);
+
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 10; i++) {
+        mneme.get("Test Key " + i);
+      }
+    }
+
+    for (int i = 10; i < 1_000; i++) {
+      assertEquals("Test Value " + i, mneme.get("Test Key " + i));
+    }
+
+    cold.reads.set(0);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("Test Value " + i, mneme.get("Test Key " + i));
+    }
+
+    assertEquals(0, cold.reads.get());
+    assertTrue(mneme.getStatistics().localWeight() <= 4 * 1024);
+  }
+
+  @Test
+  public void put_writeBack_shouldQueueUntilFlushed() {
+
+    final ColdMneme cold = new ColdMneme();
+
+    cold.put("Test Key 2", "Test Value 2");
+    cold.writes.set(0);
+
+    try (final TieredMneme mneme = new TieredMneme(
+        cold,
+        1024 * 1024,
+        TieredMneme.WritePolicy.WRITE_BACK)) {
+
+      assertNull(mneme.put("Test Key 1", "Test Value 1"));
+      assertEquals("Test Value 1", mneme.put("Test Key 1", "Test Value 1B"));
+      assertEquals("Test Value 2", mneme.remove("Test Key 2"));
+
+      assertFalse(cold.containsKey("Test Key 1"));
+      assertTrue(cold.containsKey("Test Key 2"));
+      assertEquals("Test Value 1B", mneme.get("Test Key 1"));
+      assertNull(mneme.get("Test Key 2"));
+      assertEquals(2, mneme.getStatistics().pendingWriteCount());
+
+      mneme.flush();
+
+      assertEquals(Map.of("Test Key 1", "Test Value 1B"), cold.entries);
+      assertEquals(2, cold.writes.get());
+      assertEquals(0, mneme.getStatistics().pendingWriteCount());
+    }
+  }
+
+  @Test
+  public void put_writeBack_shouldFlushInBackground()
+      throws InterruptedException {
+
+    final ColdMneme cold = new ColdMneme();
+
+    try (final TieredMneme mneme = new TieredMneme(
+        cold,
+        1024 * 1024,
+        TieredMneme.WritePolicy.WRITE_BACK)) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+
+      final long deadline = System.nanoTime() + 10_000_000_000L;
+
+      while (!cold.containsKey("Test Key 1") && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertEquals("Test Value 1", cold.get("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void flush_coldTierFails_shouldKeepWritesQueued() {
+
+    final ColdMneme cold = new ColdMneme();
+
+    try (final TieredMneme mneme = new TieredMneme(
+        cold,
+        1024 * 1024,
+        TieredMneme.WritePolicy.WRITE_BACK)) {
+
+      mneme.put("Test Key 1", "Test Value 1");
+      cold.failing = true;
+
+      assertThrows(IllegalStateException.class, mneme::flush);
+      assertEquals(1, mneme.getStatistics().pendingWriteCount());
+
+      cold.failing = false;
+      mneme.flush();
+
+      assertEquals("Test Value 1", cold.get("Test Key 1"));
+    }
+  }
+
+  @Test
+  public void close_writeBack_shouldFlushAndRefuseWrites() {
+
+    final ColdMneme cold = new ColdMneme();
+    final TieredMneme mneme = new TieredMneme(
+        cold,
+        1024 * 1024,
+        TieredMneme.WritePolicy.WRITE_BACK);
+
+    mneme.put("Test Key 1", "Test Value 1");
+    mneme.close();
+
+    assertEquals("Test Value 1", cold.get("Test Key 1"));
+    assertEquals("Test Value 1", mneme.get("Test Key 1"));
+    assertThrows(
+        IllegalStateException.class,
+        () -> mneme.put("Test Key 2", "Test Value 2"));
+  }
+
+  @Test
+  public void compute_writeBack_shouldApplyAtomically() {
+
+    final ColdMneme cold = new ColdMneme();
+
+    cold.put("Test Key 1", "Test Value 1");
+
+    try (final TieredMneme mneme = new TieredMneme(
+        cold,
+        1024 * 1024,
+        TieredMneme.WritePolicy.WRITE_BACK)) {
+
+      assertEquals("Test Value 1", mneme.putIfAbsent("Test Key 1", "X"));
+      assertEquals(
+          "Test Value 1B",
+          mneme.merge("Test Key 1", "B", String::concat));
+      assertTrue(
+          mneme.replace("Test Key 1", "Test Value 1B", "Test Value 1C"));
+      assertEquals(
+          "Test Value 2",
+          mneme.computeIfAbsent("Test Key 2", key -> "Test Value 2"));
+      assertTrue(mneme.remove("Test Key 2", "Test Value 2"));
+      assertEquals(Set.of("Test Key 1"), mneme.keySet());
+      assertEquals(
+          Map.of("Test Key 1", "Test Value 1C"),
+          new HashMap<>(mneme));
+    }
+  }
+
+  /**
+   * <p>A cold tier that counts its reads and writes, and can be made to
+   * fail.</p>
+   */
+  private static final class ColdMneme extends AbstractMneme {
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private volatile boolean failing;
+
+    @Override
+    public boolean containsKey(final String key) {
+      return entries.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final String value) {
+      return entries.containsValue(value);
+    }
+
+    @Override
+    public String get(final String key) {
+
+      reads.incrementAndGet();
+
+      return entries.get(key);
+    }
+
+    @Override
+    public String put(final String key, final String value) {
+
+      fail();
+      writes.incrementAndGet();
+
+      return entries.put(key, value);
+    }
+
+    @Override
+    public String remove(final String key) {
+
+      fail();
+      writes.incrementAndGet();
+
+      return entries.remove(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return Set.copyOf(entries.keySet());
+    }
+
+    private void fail() {
+      if (failing) {
+        throw new IllegalStateException("Test Failure");
+      }
+    }
+
+  }
+
+}
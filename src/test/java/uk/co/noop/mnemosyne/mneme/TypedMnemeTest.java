@@ -0,0 +1,119 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TypedMnemeTest {
+
+  private static final Codec<Point> CODEC = new BinaryCodec<>() {
+
+    @Override
+    protected void write(final Point point, final DataOutput output)
+        throws IOException {
+
+      output.writeInt(point.x());
+      output.writeInt(point.y());
+    }
+
+    @Override
+    protected Point read(final DataInput input) throws IOException {
+      return new Point(input.readInt(), input.readInt());
+    }
+
+  };
+
+  @Test
+  public void constructor_nullCodec_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> new TypedMneme<>(new LocalMneme(), null));
+  }
+
+  @Test
+  public void constructor_nonPowerOfTwoCacheSize_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> new TypedMneme<>(new LocalMneme(), CODEC, 100));
+  }
+
+  @Test
+  public void put_shouldStoreEncodedValueAndReturnPrevious() {
+
+    final TypedMneme<Point> mneme = new TypedMneme<>(new LocalMneme(), CODEC);
+
+    assertNull(mneme.put("Test Key 1", new Point(1, 2)));
+    assertEquals(new Point(1, 2), mneme.put("Test Key 1", new Point(3, 4)));
+    assertEquals(new Point(3, 4), mneme.get("Test Key 1"));
+    assertEquals(8, mneme.getMneme().getBytes("Test Key 1").remaining());
+    assertTrue(mneme.containsKey("Test Key 1"));
+    assertEquals(new Point(3, 4), mneme.remove("Test Key 1"));
+    assertFalse(mneme.containsKey("Test Key 1"));
+    assertNull(mneme.get("Test Key 1"));
+  }
+
+  @Test
+  public void get_cached_shouldDecodeOnce() {
+
+    final AtomicInteger decodes = new AtomicInteger();
+    final Codec<Integer> codec = Codec.of(
+        String::valueOf,
+        value -> {
+          decodes.incrementAndGet();
+          return Integer.valueOf(value);
+        });
+
+    final LocalMneme local = new LocalMneme();
+    final TypedMneme<Integer> mneme = new TypedMneme<>(local, codec, 16);
+
+    local.put("Test Key 1", "1");
+
+    final Integer value = mneme.get("Test Key 1");
+
+    assertSame(value, mneme.get("Test Key 1"));
+    assertEquals(1, decodes.get());
+
+    local.put("Test Key 1", "2");
+
+    assertEquals(2, mneme.get("Test Key 1"));
+    assertEquals(2, decodes.get());
+  }
+
+  @Test
+  public void get_uncached_shouldDecodeEachTime() {
+
+    final AtomicInteger decodes = new AtomicInteger();
+    final Codec<Integer> codec = Codec.of(
+        String::valueOf,
+        value -> {
+          decodes.incrementAndGet();
+          return Integer.valueOf(value);
+        });
+
+    final TypedMneme<Integer> mneme =
+        new TypedMneme<>(new LocalMneme(), codec);
+
+    mneme.put("Test Key 1", 1);
+    mneme.get("Test Key 1");
+    mneme.get("Test Key 1");
+
+    assertEquals(2, decodes.get());
+  }
+
+  private record Point(int x, int y) { }
+
+}
@@ -0,0 +1,92 @@
+package uk.co.noop.mnemosyne.mneme;
+
+import org.junit.jupiter.api.Test;
+import uk.co.noop.themis.exception.ThemisBlankTargetStringException;
+import uk.co.noop.themis.exception.ThemisEmptyTargetException;
+import uk.co.noop.themis.exception.ThemisInvalidTargetException;
+import uk.co.noop.themis.exception.ThemisNullTargetException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ValidationTest {
+
+  @Test
+  public void checkNotBlank_nullTarget_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> Validation.checkNotBlank("key", null));
+  }
+
+  @Test
+  public void checkNotBlank_emptyTarget_shouldThrowThemisEmptyTarget() {
+
+    assertThrows(
+        ThemisEmptyTargetException.class,
+        () -> Validation.checkNotBlank("key", ""));
+  }
+
+  @Test
+  public void checkNotBlank_blankTarget_shouldThrowThemisBlankTargetString() {
+
+    assertThrows(
+        ThemisBlankTargetStringException.class,
+        () -> Validation.checkNotBlank("key", " \t\n"));
+  }
+
+  @Test
+  public void checkNotBlank_validTarget_shouldNotThrow() {
+    assertDoesNotThrow(() -> Validation.checkNotBlank("key", "Test Key 1"));
+  }
+
+  @Test
+  public void checkNotBlank_leadingWhitespace_shouldNotThrow() {
+    assertDoesNotThrow(() -> Validation.checkNotBlank("key", " Test Key 1"));
+  }
+
+  @Test
+  public void checkNotNull_nullTarget_shouldThrowThemisNullTarget() {
+
+    assertThrows(
+        ThemisNullTargetException.class,
+        () -> Validation.checkNotNull("key", null));
+  }
+
+  @Test
+  public void checkNotNull_validTarget_shouldNotThrow() {
+    assertDoesNotThrow(() -> Validation.checkNotNull("key", new Object()));
+  }
+
+  @Test
+  public void checkPositive_zeroTarget_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Validation.checkPositive("timeToLive", Duration.ZERO));
+  }
+
+  @Test
+  public void checkPositive_validTarget_shouldNotThrow() {
+
+    assertDoesNotThrow(
+        () -> Validation.checkPositive("timeToLive", Duration.ofSeconds(1)));
+  }
+
+  @Test
+  public void checkPositive_zeroLongTarget_shouldThrowThemisInvalidTarget() {
+
+    assertThrows(
+        ThemisInvalidTargetException.class,
+        () -> Validation.checkPositive("maximumWeight", 0L));
+  }
+
+  @Test
+  public void checkPositive_validLongTarget_shouldNotThrow() {
+
+    assertDoesNotThrow(() -> Validation.checkPositive("maximumWeight", 1L));
+  }
+
+}